@@ -0,0 +1,67 @@
+package com.kyancey.inventory.benchmarks;
+
+import com.kyancey.inventory.entities.InHouse;
+import com.kyancey.inventory.entities.Inventory;
+import com.kyancey.inventory.entities.Outsourced;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+
+import java.util.Random;
+
+/**
+ * <p>Fills the inventory with a synthetic catalog for benchmarks.</p>
+ * <p>Inventory is static, so every benchmark relies on JMH running each
+ * parameter combination in a fresh fork and fills the catalog once per trial.</p>
+ */
+final class CatalogFixture {
+    static final String[] WORDS = {"bolt", "nut", "washer", "gear", "spring", "axle", "frame", "seat",
+            "chain", "pedal", "brake", "cable", "wheel", "spoke", "tire", "tube"};
+
+    private CatalogFixture() {
+    }
+
+    /**
+     * <p>Adds parts with ids 0..parts-1 and products with ids 0..products-1.
+     * Names are two words plus the id so both unique and shared substrings exist.</p>
+     * @param parts Number of parts.
+     * @param products Number of products.
+     */
+    static void fill(int parts, int products) {
+        Random random = new Random(42);
+        for (int i = 0; i < parts; i++) {
+            Inventory.addPart(createPart(i, random));
+        }
+        for (int i = 0; i < products; i++) {
+            Product product = new Product(i, name(i, random), 10 + random.nextInt(1000) / 100.0, 5, 1, 100);
+            for (int j = 0; j < 4 && parts > 0; j++) {
+                product.addAssociatedPart(Inventory.lookupPart(random.nextInt(parts)));
+            }
+            Inventory.addProduct(product);
+        }
+    }
+
+    /**
+     * <p>Creates a part that is not yet in inventory.</p>
+     * @param id Part id.
+     * @param random Random source.
+     * @return New part.
+     */
+    static Part createPart(int id, Random random) {
+        int stock = 1 + random.nextInt(99);
+        if (random.nextBoolean()) {
+            return new InHouse(id, name(id, random), random.nextInt(10000) / 100.0, stock, 0, 100, random.nextInt(64));
+        }
+        return new Outsourced(id, name(id, random), random.nextInt(10000) / 100.0, stock, 0, 100,
+                "Supplier " + random.nextInt(64));
+    }
+
+    /**
+     * <p>Builds a name for the given id.</p>
+     * @param id Entity id.
+     * @param random Random source.
+     * @return Name such as "gear spring 42".
+     */
+    static String name(int id, Random random) {
+        return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + id;
+    }
+}
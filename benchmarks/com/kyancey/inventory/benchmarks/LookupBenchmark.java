@@ -0,0 +1,75 @@
+package com.kyancey.inventory.benchmarks;
+
+import com.kyancey.inventory.entities.Inventory;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Lookups by id and by exact name, for hits and misses.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LookupBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private int[] ids;
+    private String[] partNames;
+    private String[] productNames;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CatalogFixture.fill(size, size / 10);
+        Random random = new Random(7);
+        ids = new int[1024];
+        partNames = new String[ids.length];
+        productNames = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = random.nextInt(size);
+            partNames[i] = Inventory.lookupPart(ids[i]).getName();
+            productNames[i] = Inventory.lookupProduct(ids[i] % (size / 10)).getName();
+        }
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (ids.length - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public Part lookupPartById() {
+        return Inventory.lookupPart(ids[next()]);
+    }
+
+    @Benchmark
+    public Part lookupPartByIdMiss() {
+        return Inventory.lookupPart(size + ids[next()]);
+    }
+
+    @Benchmark
+    public Product lookupProductById() {
+        return Inventory.lookupProduct(ids[next()] % (size / 10));
+    }
+
+    @Benchmark
+    public ObservableList<Part> lookupPartByName() {
+        return Inventory.lookupPart(partNames[next()]);
+    }
+
+    @Benchmark
+    public ObservableList<Part> lookupPartByNameMiss() {
+        return Inventory.lookupPart("no such part");
+    }
+
+    @Benchmark
+    public ObservableList<Product> lookupProductByName() {
+        return Inventory.lookupProduct(productNames[next()]);
+    }
+}
@@ -0,0 +1,45 @@
+package com.kyancey.inventory.benchmarks;
+
+import com.kyancey.inventory.entities.MaterialPlan;
+import com.kyancey.inventory.entities.MaterialPlanning;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A requirements run with a target for every product, over the memoized
+ * explosions, at catalog sizes up to a million parts.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MaterialPlanningBenchmark {
+    @Param({"100000", "1000000"})
+    public int parts;
+
+    @Param({"10000", "100000"})
+    public int products;
+
+    private int[] productIds;
+    private int[] quantities;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CatalogFixture.fill(parts, products);
+        Random random = new Random(7);
+        productIds = new int[products];
+        quantities = new int[products];
+        for (int i = 0; i < products; i++) {
+            productIds[i] = i;
+            quantities[i] = 1 + random.nextInt(20);
+        }
+        // Explode the catalog and build the id order outside the measurement.
+        MaterialPlanning.run(productIds, quantities);
+    }
+
+    @Benchmark
+    public MaterialPlan run() {
+        return MaterialPlanning.run(productIds, quantities);
+    }
+}
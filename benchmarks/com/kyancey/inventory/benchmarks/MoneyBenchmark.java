@@ -0,0 +1,83 @@
+package com.kyancey.inventory.benchmarks;
+
+import com.kyancey.inventory.entities.Inventory;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.util.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Price cells and price edits the way the tables and forms did them before
+ * prices were stored in cents (String.format and Double.parseDouble) against
+ * Money, plus an inventory value total summed in doubles and in cents.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoneyBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private long[] cents;
+    private String[] texts;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CatalogFixture.fill(size, 0);
+        Random random = new Random(11);
+        cents = new long[1024];
+        texts = new String[cents.length];
+        for (int i = 0; i < cents.length; i++) {
+            cents[i] = random.nextInt(10_000_000);
+            texts[i] = Money.format(cents[i]);
+        }
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (cents.length - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public String formatDouble() {
+        return String.format("%.2f", cents[next()] / 100.0);
+    }
+
+    @Benchmark
+    public String formatCents() {
+        return Money.format(cents[next()]);
+    }
+
+    @Benchmark
+    public double parseDouble() {
+        return Double.parseDouble(texts[next()]);
+    }
+
+    @Benchmark
+    public long parseCents() {
+        return Money.parse(texts[next()]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double valueDouble() {
+        double total = 0;
+        for (Part part : Inventory.getAllPartsView()) {
+            total += part.getPrice() * part.getStock();
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long valueCents() {
+        long total = 0;
+        for (Part part : Inventory.getAllPartsView()) {
+            total += part.getPriceCents() * part.getStock();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,104 @@
+package com.kyancey.inventory.benchmarks;
+
+import com.kyancey.inventory.entities.InHouse;
+import com.kyancey.inventory.entities.Inventory;
+import com.kyancey.inventory.entities.Outsourced;
+import com.kyancey.inventory.entities.Part;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Add, delete, update and id generation. Each invocation leaves the catalog
+ * the same size it found it so results do not drift over a run.</p>
+ * <p>Targets come from a table of random ids drawn once per iteration rather
+ * than from a per-invocation setup, whose timing overhead would swamp
+ * operations this short. Updates flip a field or the type each time, so every
+ * call is a real change.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MutationBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private static final int TARGETS = 4096;
+
+    private final int[] targets = new int[TARGETS];
+    private int next;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CatalogFixture.fill(size, 0);
+        random = new Random(11);
+    }
+
+    @Setup(Level.Iteration)
+    public void pickTargets() {
+        for (int i = 0; i < TARGETS; i++) {
+            targets[i] = random.nextInt(size);
+        }
+    }
+
+    private int nextTarget() {
+        return targets[next++ & (TARGETS - 1)];
+    }
+
+    /**
+     * <p>Adds a part with a fresh id at the end of the list and deletes it again.</p>
+     */
+    @Benchmark
+    public boolean addThenDeleteLast() {
+        Part part = CatalogFixture.createPart(size, random);
+        Inventory.addPart(part);
+        return Inventory.deletePart(part);
+    }
+
+    /**
+     * <p>Deletes a random part and adds it back, which moves it to the end of the list.</p>
+     */
+    @Benchmark
+    public boolean deleteThenAddRandom() {
+        Part part = Inventory.lookupPart(nextTarget());
+        boolean deleted = Inventory.deletePart(part);
+        Inventory.addPart(part);
+        return deleted;
+    }
+
+    /**
+     * <p>Updates a random part with a new part of the same type.</p>
+     */
+    @Benchmark
+    public boolean updatePartSameType() {
+        int target = nextTarget();
+        Part part = Inventory.lookupPart(target);
+        Part updated = part instanceof InHouse
+                ? new InHouse(target, part.getName(), part.getPrice(), part.getStock() ^ 1, 0, 100, 1)
+                : new Outsourced(target, part.getName(), part.getPrice(), part.getStock() ^ 1, 0, 100, "Acme");
+        return Inventory.updatePart(updated);
+    }
+
+    /**
+     * <p>Updates a random part with a new part of the other type.</p>
+     */
+    @Benchmark
+    public boolean updatePartTypeSwitch() {
+        int target = nextTarget();
+        Part part = Inventory.lookupPart(target);
+        Part updated = part instanceof InHouse
+                ? new Outsourced(target, part.getName(), part.getPrice(), part.getStock(), 0, 100, "Acme")
+                : new InHouse(target, part.getName(), part.getPrice(), part.getStock(), 0, 100, 1);
+        return Inventory.updatePart(updated);
+    }
+
+    /**
+     * <p>Generates the next part id, which reads a counter whatever the catalog size.</p>
+     */
+    @Benchmark
+    public int generatePartID() {
+        return Inventory.generatePartID();
+    }
+}
@@ -0,0 +1,49 @@
+package com.kyancey.inventory.benchmarks;
+
+import com.kyancey.inventory.entities.Inventory;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.query.InventoryQuery;
+import com.kyancey.inventory.query.QueryPlan;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A selective query answered through the planner, which reads the supplier
+ * group and tests the rest on its members, against testing every part.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private static final String QUERY = "company:\"Supplier 7\" price<10 stock<=max name:gear*";
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CatalogFixture.fill(size, 0);
+        // Build the orders the planner reads outside the measurement.
+        InventoryQuery.findParts(QUERY);
+    }
+
+    @Benchmark
+    public List<Part> planned() {
+        return InventoryQuery.planParts(QUERY).execute();
+    }
+
+    @Benchmark
+    public List<Part> fullScan() {
+        QueryPlan<Part> plan = InventoryQuery.planParts(QUERY);
+        List<Part> result = new ArrayList<>();
+        for (Part part : Inventory.getAllPartsView()) {
+            if (plan.test(part)) {
+                result.add(part);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,51 @@
+package com.kyancey.inventory.benchmarks;
+
+import com.kyancey.inventory.entities.InHouse;
+import com.kyancey.inventory.entities.Inventory;
+import com.kyancey.inventory.entities.ParallelScan;
+import com.kyancey.inventory.entities.Part;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * <p>An ad-hoc filter over part fields that no index covers, run the way
+ * FilteredList would (one thread) and through ParallelScan. Run with
+ * -Dinventory.scan.parallelism=N in the jmh jvmArgs to see how it scales.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ScanBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private static final Predicate<Part> FILTER = part -> part.getStock() < 20
+            && part.getPriceCents() > 1000
+            && (!(part instanceof InHouse) || ((InHouse) part).getMachineId() % 3 == 0)
+            && part.getName().contains("gear");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CatalogFixture.fill(size, 0);
+    }
+
+    @Benchmark
+    public List<Part> sequential() {
+        List<Part> result = new ArrayList<>();
+        for (Part part : Inventory.getAllPartsView()) {
+            if (FILTER.test(part)) {
+                result.add(part);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Part> parallel() {
+        return ParallelScan.filterParts(FILTER);
+    }
+}
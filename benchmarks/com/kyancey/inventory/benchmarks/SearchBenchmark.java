@@ -0,0 +1,50 @@
+package com.kyancey.inventory.benchmarks;
+
+import com.kyancey.inventory.controllers.SearchPredicates;
+import com.kyancey.inventory.entities.Inventory;
+import com.kyancey.inventory.entities.Part;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * <p>The search field predicate, per part and as a full scan of the catalog
+ * the way FilteredList evaluates it on each keystroke.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"gear", "42", "zzz"})
+    public String text;
+
+    private ObservableList<Part> parts;
+    private Part sample;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CatalogFixture.fill(size, 0);
+        parts = Inventory.getAllPartsView();
+        sample = parts.get(parts.size() / 2);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean searchFindsPart() {
+        return SearchPredicates.searchFindsPart(sample, text);
+    }
+
+    @Benchmark
+    public void filterAllParts(Blackhole blackhole) {
+        Predicate<Part> predicate = SearchPredicates.createPartPredicate(text);
+        for (Part part : parts) {
+            blackhole.consume(predicate.test(part));
+        }
+    }
+}
@@ -1,6 +1,16 @@
 package com.kyancey.inventory;
 
+import com.kyancey.inventory.cluster.ChangeFeed;
+import com.kyancey.inventory.cluster.ChangeFeedServer;
+import com.kyancey.inventory.cluster.InventoryPublisher;
+import com.kyancey.inventory.cluster.ReplicationPrimary;
 import com.kyancey.inventory.controllers.MainController;
+import com.kyancey.inventory.entities.InventoryRegistry;
+import com.kyancey.inventory.entities.InventoryStore;
+import com.kyancey.inventory.entities.StockHistory;
+import com.kyancey.inventory.metrics.HotPath;
+import com.kyancey.inventory.metrics.Metrics;
+import com.kyancey.inventory.metrics.StallDetector;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -8,29 +18,51 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>Main class - Starts the program.</p>
  * @author Kyle Yancey
  */
 public class Main extends Application {
+    private static InventoryPublisher publisher;
+
     /**
-     * Initializes app.
+     * Initializes app. Starts the FX stall detector first and has it watch every
+     * event the window handles; its threshold and log location come from the
+     * inventory.stall.thresholdMillis and inventory.stall.log system properties. If inventory.name is set, the
+     * window shows the store with that name instead of the default one,
+     * limited by the inventory.budget.maxParts, inventory.budget.maxProducts
+     * and inventory.budget.maxOperationsPerSecond properties (0, no limit, if
+     * unset).
      * @param primaryStage Primary Stage
      * @throws IOException
      */
     @Override
     public void start(Stage primaryStage) throws IOException {
+        StallDetector.start(Long.getLong("inventory.stall.thresholdMillis", 200),
+                System.getProperty("inventory.stall.log", System.getProperty("user.home") + "/.inventory/stalls%g.log"));
+        StallDetector.watch(primaryStage);
+
         // Load the fxml file
         FXMLLoader loader = new FXMLLoader();
         loader.setLocation(getClass().getResource("fxml/main.fxml"));
+        long start = System.nanoTime();
         Parent root = loader.load();
+        HotPath.FXML_LOAD.recordSince(start);
 
 
         // Set the scene and pass inventory to the controller
         Scene scene = new Scene(root);
         MainController controller = loader.getController();
         controller.setStage(primaryStage);
+        String inventoryName = System.getProperty("inventory.name");
+        if (inventoryName != null) {
+            controller.setInventory(InventoryRegistry.getOrCreate(inventoryName, new InventoryStore.Budget(
+                    Integer.getInteger("inventory.budget.maxParts", 0),
+                    Integer.getInteger("inventory.budget.maxProducts", 0),
+                    Integer.getInteger("inventory.budget.maxOperationsPerSecond", 0))));
+        }
 
         // Set the window up
         primaryStage.setTitle("Inventory Management System");
@@ -38,7 +70,46 @@ public class Main extends Application {
         primaryStage.show();
     }
 
-    public static void main(String[] args) {
+    /**
+     * <p>Entry point. Exposes hot path metrics over JMX and, if the
+     * inventory.metrics.logSeconds system property is set, logs a summary
+     * at that interval. If inventory.replication.port is set, read replicas
+     * can connect on that loopback port. A change feed keeping the last
+     * inventory.feed.logSize changes (default 100000) is always kept, and
+     * getPublisher() streams it in process; if inventory.feed.port is set, it
+     * is also served on that loopback port. Stock history older than
+     * inventory.ledger.retentionHours (default 24) is compacted hourly.</p>
+     * @param args Command line arguments.
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        Metrics.register();
+        long logSeconds = Long.getLong("inventory.metrics.logSeconds", 0);
+        if (logSeconds > 0) {
+            Metrics.startLogging(logSeconds);
+        }
+        StockHistory.startCompaction(TimeUnit.HOURS.toMillis(Long.getLong("inventory.ledger.retentionHours", 24)),
+                TimeUnit.HOURS.toSeconds(1));
+        Integer replicationPort = Integer.getInteger("inventory.replication.port");
+        if (replicationPort != null) {
+            new ReplicationPrimary(replicationPort, Integer.getInteger("inventory.replication.logSize", 100_000));
+        }
+        ChangeFeed feed = new ChangeFeed(Integer.getInteger("inventory.feed.logSize", 100_000));
+        publisher = new InventoryPublisher(feed);
+        Integer feedPort = Integer.getInteger("inventory.feed.port");
+        if (feedPort != null) {
+            new ChangeFeedServer(feed, feedPort);
+        }
         launch(args);
     }
+
+    /**
+     * <p>Gets the publisher of part, product and stock changes, for consumers
+     * in this process.</p>
+     * @return Publisher, set up by main() whether or not the feed is also
+     * served on a port.
+     */
+    public static InventoryPublisher getPublisher() {
+        return publisher;
+    }
 }
\ No newline at end of file
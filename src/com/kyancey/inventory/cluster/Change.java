@@ -0,0 +1,566 @@
+package com.kyancey.inventory.cluster;
+
+import com.kyancey.inventory.entities.InHouse;
+import com.kyancey.inventory.entities.InventorySnapshot;
+import com.kyancey.inventory.entities.Outsourced;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+import com.kyancey.inventory.util.Money;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <p>One entry of the change feed: a part or product inserted, updated or
+ * deleted. An insert carries every field, an update only the fields that
+ * changed, and a delete only the id. Values are absolute, so applying a change
+ * twice is harmless.</p>
+ * <p>Immutable. Getters for fields that are not included return 0 or null;
+ * check hasField() first.</p>
+ */
+public final class Change {
+    /**
+     * <p>What happened to the entity.</p>
+     */
+    public enum Kind {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    /**
+     * <p>The fields a change can carry. Machine id is only set for In-House
+     * parts, company name only for Outsourced parts, and the last two only
+     * for products.</p>
+     */
+    public enum Field {
+        NAME,
+        PRICE,
+        STOCK,
+        MIN,
+        MAX,
+        MACHINE_ID,
+        COMPANY_NAME,
+        ASSOCIATED_PARTS,
+        SUB_ASSEMBLIES
+    }
+
+    static final byte INSERT_PART = 1;
+    static final byte UPDATE_PART = 2;
+    static final byte DELETE_PART = 3;
+    static final byte INSERT_PRODUCT = 4;
+    static final byte UPDATE_PRODUCT = 5;
+    static final byte DELETE_PRODUCT = 6;
+
+    private static final Field[] FIELDS = Field.values();
+    private static final int[] NONE = new int[0];
+
+    private final long seq;
+    private final long timestamp;
+    private final Kind kind;
+    private final boolean part;
+    private final int id;
+    private long version;
+    private int fields;
+    private String name;
+    private long priceCents;
+    private int stock;
+    private int min;
+    private int max;
+    private int machineId;
+    private String companyName;
+    private int[] associatedPartIds = NONE;
+    private int[] associatedPartQuantities = NONE;
+    private int[] subAssemblyIds = NONE;
+    private int[] subAssemblyQuantities = NONE;
+
+    private Change(long seq, long timestamp, Kind kind, boolean part, int id) {
+        this.seq = seq;
+        this.timestamp = timestamp;
+        this.kind = kind;
+        this.part = part;
+        this.id = id;
+    }
+
+    /**
+     * @return Sequence number in the feed. Later changes have higher numbers.
+     */
+    public long getSeq() {
+        return seq;
+    }
+
+    /**
+     * @return Time the change was recorded, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return Insert, update or delete.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return True for a part, false for a product.
+     */
+    public boolean isPart() {
+        return part;
+    }
+
+    /**
+     * @return Id of the part or product.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return Version stamp after the change, 0 for a delete.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * <p>Whether the change carries a field.</p>
+     * @param field Field to check.
+     * @return True for every field of an insert and the changed fields of an update.
+     */
+    public boolean hasField(Field field) {
+        return (fields & bit(field)) != 0;
+    }
+
+    /**
+     * @return The fields the change carries.
+     */
+    public Set<Field> getFields() {
+        Set<Field> result = EnumSet.noneOf(Field.class);
+        for (Field field : FIELDS) {
+            if (hasField(field)) {
+                result.add(field);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the price, in dollars
+     */
+    public double getPrice() {
+        return Money.toDouble(priceCents);
+    }
+
+    /**
+     * @return the price in cents
+     */
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    /**
+     * @return the stock
+     */
+    public int getStock() {
+        return stock;
+    }
+
+    /**
+     * @return the min
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * @return the max
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * @return the machine id
+     */
+    public int getMachineId() {
+        return machineId;
+    }
+
+    /**
+     * @return the company name
+     */
+    public String getCompanyName() {
+        return companyName;
+    }
+
+    /**
+     * @return Copy of the associated part ids.
+     */
+    public int[] getAssociatedPartIds() {
+        return associatedPartIds.clone();
+    }
+
+    /**
+     * @return Copy of the associated part quantities, matching getAssociatedPartIds().
+     */
+    public int[] getAssociatedPartQuantities() {
+        return associatedPartQuantities.clone();
+    }
+
+    /**
+     * @return Copy of the sub-assembly product ids.
+     */
+    public int[] getSubAssemblyIds() {
+        return subAssemblyIds.clone();
+    }
+
+    /**
+     * @return Copy of the sub-assembly quantities, matching getSubAssemblyIds().
+     */
+    public int[] getSubAssemblyQuantities() {
+        return subAssemblyQuantities.clone();
+    }
+
+    /**
+     * <p>Creates the part an insert describes.</p>
+     * @return New In-House or Outsourced part.
+     * @throws IllegalStateException If this is not a part insert.
+     */
+    public Part toPart() {
+        if (kind != Kind.INSERT || !part) {
+            throw new IllegalStateException("Not a part insert: " + this);
+        }
+        Part result = hasField(Field.COMPANY_NAME)
+                ? Outsourced.ofCents(id, name, priceCents, stock, min, max, companyName)
+                : InHouse.ofCents(id, name, priceCents, stock, min, max, machineId);
+        result.setVersion(version);
+        return result;
+    }
+
+    /**
+     * <p>Creates the product an insert describes.</p>
+     * @return New product with its associated parts and sub-assemblies.
+     * @throws IllegalStateException If this is not a product insert.
+     */
+    public Product toProduct() {
+        if (kind != Kind.INSERT || part) {
+            throw new IllegalStateException("Not a product insert: " + this);
+        }
+        Product result = Product.ofCents(id, name, priceCents, stock, min, max);
+        result.setAssociatedParts(associatedPartIds, associatedPartQuantities);
+        result.setSubAssemblies(subAssemblyIds, subAssemblyQuantities);
+        result.setVersion(version);
+        return result;
+    }
+
+    /**
+     * <p>Copies the fields an update carries onto a client's copy of the part.
+     * A part never changes type through an update; the feed sends a delete and
+     * an insert instead.</p>
+     * @param target Part with this change's id.
+     */
+    public void applyTo(Part target) {
+        target.setVersion(version);
+        target.edit(() -> {
+            if (hasField(Field.NAME)) {
+                target.setName(name);
+            }
+            if (hasField(Field.PRICE)) {
+                target.setPriceCents(priceCents);
+            }
+            if (hasField(Field.STOCK)) {
+                target.setStock(stock);
+            }
+            if (hasField(Field.MIN)) {
+                target.setMin(min);
+            }
+            if (hasField(Field.MAX)) {
+                target.setMax(max);
+            }
+            if (hasField(Field.MACHINE_ID) && target instanceof InHouse) {
+                ((InHouse) target).setMachineId(machineId);
+            }
+            if (hasField(Field.COMPANY_NAME) && target instanceof Outsourced) {
+                ((Outsourced) target).setCompanyName(companyName);
+            }
+        });
+    }
+
+    /**
+     * <p>Copies the fields an update carries onto a client's copy of the product.</p>
+     * @param target Product with this change's id.
+     */
+    public void applyTo(Product target) {
+        target.setVersion(version);
+        target.edit(() -> {
+            if (hasField(Field.NAME)) {
+                target.setName(name);
+            }
+            if (hasField(Field.PRICE)) {
+                target.setPriceCents(priceCents);
+            }
+            if (hasField(Field.STOCK)) {
+                target.setStock(stock);
+            }
+            if (hasField(Field.MIN)) {
+                target.setMin(min);
+            }
+            if (hasField(Field.MAX)) {
+                target.setMax(max);
+            }
+            if (hasField(Field.ASSOCIATED_PARTS)) {
+                target.setAssociatedParts(associatedPartIds, associatedPartQuantities);
+            }
+            if (hasField(Field.SUB_ASSEMBLIES)) {
+                target.setSubAssemblies(subAssemblyIds, subAssemblyQuantities);
+            }
+        });
+    }
+
+    /**
+     * <p>Combines two changes to the same entity into one with the same
+     * effect, for consumers that only need the latest state. An update on top
+     * of an insert or update adds its fields to the earlier ones, newer values
+     * winning; an insert or delete replaces whatever came before.</p>
+     * @param older Earlier change.
+     * @param newer Later change to the same part or product.
+     * @return Combined change numbered as the newer one.
+     */
+    static Change merge(Change older, Change newer) {
+        if (newer.kind != Kind.UPDATE || older.kind == Kind.DELETE) {
+            return newer;
+        }
+        Change merged = new Change(newer.seq, newer.timestamp, older.kind, newer.part, newer.id);
+        merged.version = newer.version;
+        merged.fields = older.fields | newer.fields;
+        merged.name = (newer.hasField(Field.NAME) ? newer : older).name;
+        merged.priceCents = (newer.hasField(Field.PRICE) ? newer : older).priceCents;
+        merged.stock = (newer.hasField(Field.STOCK) ? newer : older).stock;
+        merged.min = (newer.hasField(Field.MIN) ? newer : older).min;
+        merged.max = (newer.hasField(Field.MAX) ? newer : older).max;
+        merged.machineId = (newer.hasField(Field.MACHINE_ID) ? newer : older).machineId;
+        merged.companyName = (newer.hasField(Field.COMPANY_NAME) ? newer : older).companyName;
+        Change lines = newer.hasField(Field.ASSOCIATED_PARTS) ? newer : older;
+        merged.associatedPartIds = lines.associatedPartIds;
+        merged.associatedPartQuantities = lines.associatedPartQuantities;
+        Change subs = newer.hasField(Field.SUB_ASSEMBLIES) ? newer : older;
+        merged.subAssemblyIds = subs.subAssemblyIds;
+        merged.subAssemblyQuantities = subs.subAssemblyQuantities;
+        return merged;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + seq + " " + kind + (part ? " part " : " product ") + id + " " + getFields();
+    }
+
+    /**
+     * <p>Finds which fields differ between two versions of a part.</p>
+     * @param before Row before the change, or null for an insert.
+     * @param after Row after the change.
+     * @return Bit set of Field ordinals.
+     */
+    static int changedFields(InventorySnapshot.PartRow before, InventorySnapshot.PartRow after) {
+        int changed = 0;
+        changed |= flag(Field.NAME, before == null || !Objects.equals(before.getName(), after.getName()));
+        changed |= flag(Field.PRICE, before == null || before.getPriceCents() != after.getPriceCents());
+        changed |= flag(Field.STOCK, before == null || before.getStock() != after.getStock());
+        changed |= flag(Field.MIN, before == null || before.getMin() != after.getMin());
+        changed |= flag(Field.MAX, before == null || before.getMax() != after.getMax());
+        changed |= flag(Field.MACHINE_ID, after.getMachineId() != null
+                && (before == null || !Objects.equals(before.getMachineId(), after.getMachineId())));
+        changed |= flag(Field.COMPANY_NAME, after.getCompanyName() != null
+                && (before == null || !Objects.equals(before.getCompanyName(), after.getCompanyName())));
+        return changed;
+    }
+
+    /**
+     * <p>Finds which fields differ between two versions of a product.</p>
+     * @param before Row before the change, or null for an insert.
+     * @param after Row after the change.
+     * @return Bit set of Field ordinals.
+     */
+    static int changedFields(InventorySnapshot.ProductRow before, InventorySnapshot.ProductRow after) {
+        int changed = 0;
+        changed |= flag(Field.NAME, before == null || !Objects.equals(before.getName(), after.getName()));
+        changed |= flag(Field.PRICE, before == null || before.getPriceCents() != after.getPriceCents());
+        changed |= flag(Field.STOCK, before == null || before.getStock() != after.getStock());
+        changed |= flag(Field.MIN, before == null || before.getMin() != after.getMin());
+        changed |= flag(Field.MAX, before == null || before.getMax() != after.getMax());
+        changed |= flag(Field.ASSOCIATED_PARTS, before == null
+                || !Arrays.equals(before.getAssociatedPartIds(), after.getAssociatedPartIds())
+                || !Arrays.equals(before.getAssociatedPartQuantities(), after.getAssociatedPartQuantities()));
+        changed |= flag(Field.SUB_ASSEMBLIES, before == null
+                || !Arrays.equals(before.getSubAssemblyIds(), after.getSubAssemblyIds())
+                || !Arrays.equals(before.getSubAssemblyQuantities(), after.getSubAssemblyQuantities()));
+        return changed;
+    }
+
+    private static int flag(Field field, boolean set) {
+        return set ? bit(field) : 0;
+    }
+
+    private static int bit(Field field) {
+        return 1 << field.ordinal();
+    }
+
+    /**
+     * <p>Encodes a part insert or update with the given fields.</p>
+     */
+    static byte[] encode(InventorySnapshot.PartRow row, int changed) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeHeader(out, row.getId(), row.getVersion(), changed);
+            writeCommon(out, changed, row.getName(), row.getPriceCents(), row.getStock(), row.getMin(), row.getMax());
+            if ((changed & bit(Field.MACHINE_ID)) != 0) {
+                out.writeInt(row.getMachineId());
+            }
+            if ((changed & bit(Field.COMPANY_NAME)) != 0) {
+                WireFormat.writeString(out, row.getCompanyName());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * <p>Encodes a product insert or update with the given fields.</p>
+     */
+    static byte[] encode(InventorySnapshot.ProductRow row, int changed) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeHeader(out, row.getId(), row.getVersion(), changed);
+            writeCommon(out, changed, row.getName(), row.getPriceCents(), row.getStock(), row.getMin(), row.getMax());
+            if ((changed & bit(Field.ASSOCIATED_PARTS)) != 0) {
+                writeLines(out, row.getAssociatedPartIds(), row.getAssociatedPartQuantities());
+            }
+            if ((changed & bit(Field.SUB_ASSEMBLIES)) != 0) {
+                writeLines(out, row.getSubAssemblyIds(), row.getSubAssemblyQuantities());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * <p>Encodes a delete.</p>
+     */
+    static byte[] encodeDelete(int id) {
+        return new byte[] {(byte) (id >>> 24), (byte) (id >>> 16), (byte) (id >>> 8), (byte) id};
+    }
+
+    /**
+     * <p>Decodes a feed log entry.</p>
+     * @param seq Sequence number of the entry.
+     * @param timestamp Time of the entry.
+     * @param op One of the INSERT, UPDATE and DELETE codes.
+     * @param payload Bytes from encode() or encodeDelete().
+     * @return Decoded change.
+     * @throws IOException If the entry is malformed.
+     */
+    static Change decode(long seq, long timestamp, byte op, byte[] payload) throws IOException {
+        if (op < INSERT_PART || op > DELETE_PRODUCT) {
+            throw new IOException("Unknown change op " + op);
+        }
+        boolean part = op <= DELETE_PART;
+        Kind kind = Kind.values()[(op - 1) % 3];
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            Change change = new Change(seq, timestamp, kind, part, in.readInt());
+            if (kind == Kind.DELETE) {
+                return change;
+            }
+            change.version = in.readLong();
+            change.fields = in.readUnsignedShort();
+            if (change.hasField(Field.NAME)) {
+                change.name = WireFormat.readString(in);
+            }
+            if (change.hasField(Field.PRICE)) {
+                change.priceCents = in.readLong();
+            }
+            if (change.hasField(Field.STOCK)) {
+                change.stock = in.readInt();
+            }
+            if (change.hasField(Field.MIN)) {
+                change.min = in.readInt();
+            }
+            if (change.hasField(Field.MAX)) {
+                change.max = in.readInt();
+            }
+            if (change.hasField(Field.MACHINE_ID)) {
+                change.machineId = in.readInt();
+            }
+            if (change.hasField(Field.COMPANY_NAME)) {
+                change.companyName = WireFormat.readString(in);
+            }
+            if (change.hasField(Field.ASSOCIATED_PARTS)) {
+                change.associatedPartIds = new int[WireFormat.readCount(in)];
+                change.associatedPartQuantities = readLines(in, change.associatedPartIds);
+            }
+            if (change.hasField(Field.SUB_ASSEMBLIES)) {
+                change.subAssemblyIds = new int[WireFormat.readCount(in)];
+                change.subAssemblyQuantities = readLines(in, change.subAssemblyIds);
+            }
+            return change;
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, int id, long version, int changed) throws IOException {
+        out.writeInt(id);
+        out.writeLong(version);
+        out.writeShort(changed);
+    }
+
+    private static void writeCommon(DataOutputStream out, int changed, String name, long priceCents,
+                                    int stock, int min, int max) throws IOException {
+        if ((changed & bit(Field.NAME)) != 0) {
+            WireFormat.writeString(out, name);
+        }
+        if ((changed & bit(Field.PRICE)) != 0) {
+            out.writeLong(priceCents);
+        }
+        if ((changed & bit(Field.STOCK)) != 0) {
+            out.writeInt(stock);
+        }
+        if ((changed & bit(Field.MIN)) != 0) {
+            out.writeInt(min);
+        }
+        if ((changed & bit(Field.MAX)) != 0) {
+            out.writeInt(max);
+        }
+    }
+
+    private static void writeLines(DataOutputStream out, int[] ids, int[] quantities) throws IOException {
+        out.writeInt(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            out.writeInt(ids[i]);
+            out.writeInt(quantities[i]);
+        }
+    }
+
+    private static int[] readLines(DataInputStream in, int[] ids) throws IOException {
+        int[] quantities = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = in.readInt();
+            quantities[i] = in.readInt();
+        }
+        return quantities;
+    }
+}
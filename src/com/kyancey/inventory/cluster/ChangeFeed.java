@@ -0,0 +1,295 @@
+package com.kyancey.inventory.cluster;
+
+import com.kyancey.inventory.entities.Inventory;
+import com.kyancey.inventory.entities.InventorySnapshot;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>A feed of changes to this process's Inventory, numbered in order, for
+ * clients that keep their own view of the data and want to refresh it without
+ * reloading everything.</p>
+ * <p>Each insert, update and delete is recorded as a Change on the thread that
+ * makes it. An update carries only the fields that changed, found by comparing
+ * the entity's row in the inventory snapshot before and after. Changes are
+ * encoded once into a bounded ReplicationLog, so a client that is behind by n
+ * changes catches up in O(n) no matter how large the catalog is. A client
+ * whose changes have dropped off the log, or that is new, gets a snapshot
+ * first. Sequence numbers belong to one feed, identified by getEpoch(); a
+ * client that saved its position for later should save the epoch with it.</p>
+ * <p>Read the feed in process with poll() and snapshot() or subscribe(), or
+ * serve it over a loopback socket with ChangeFeedServer.</p>
+ */
+public class ChangeFeed implements Closeable {
+    /**
+     * <p>The whole inventory as of one sequence number.</p>
+     */
+    public static final class Snapshot {
+        private final long seq;
+        private final InventorySnapshot inventory;
+
+        Snapshot(long seq, InventorySnapshot inventory) {
+            this.seq = seq;
+            this.inventory = inventory;
+        }
+
+        /**
+         * @return Sequence number of the last change the snapshot includes.
+         */
+        public long getSeq() {
+            return seq;
+        }
+
+        /**
+         * @return Inventory as of that change.
+         */
+        public InventorySnapshot getInventory() {
+            return inventory;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(ChangeFeed.class.getName());
+    static final long HEARTBEAT_MILLIS = 1000;
+    static final int BATCH_SIZE = 1024;
+
+    private final ReplicationLog log;
+    private final ObservableList<Part> parts = Inventory.getAllPartsView();
+    private final ObservableList<Product> products = Inventory.getAllProductsView();
+    private final ListChangeListener<Part> partListener = this::onPartsChanged;
+    private final ListChangeListener<Product> productListener = this::onProductsChanged;
+    private final List<Thread> subscribers = new ArrayList<>();
+
+    // The snapshot as of the last recorded change. Only the editing thread
+    // writes it; readers grab the reference.
+    private volatile Snapshot latest;
+
+    /**
+     * <p>Starts recording inventory changes.</p>
+     * @param logCapacity Number of changes kept for clients that fall behind.
+     */
+    public ChangeFeed(int logCapacity) {
+        log = new ReplicationLog(logCapacity);
+        latest = new Snapshot(0, Inventory.snapshot());
+        parts.addListener(partListener);
+        products.addListener(productListener);
+    }
+
+    /**
+     * <p>Gets the random, nonzero number that tells this feed's sequence
+     * numbers from those of any other feed, such as the one this process had
+     * before it restarted.</p>
+     * @return Epoch.
+     */
+    public long getEpoch() {
+        return log.getEpoch();
+    }
+
+    /**
+     * <p>Gets the sequence number of the newest change.</p>
+     * @return Head sequence number, 0 if nothing has changed yet.
+     */
+    public long getHeadSeq() {
+        return log.getHeadSeq();
+    }
+
+    /**
+     * <p>Gets the whole inventory together with the sequence number it covers,
+     * for a client to start from. O(1); safe to call from any thread.</p>
+     * @return Current snapshot.
+     */
+    public Snapshot snapshot() {
+        return latest;
+    }
+
+    /**
+     * <p>Gets the changes after a sequence number, waiting for some if there
+     * are none yet. Safe to call from any thread.</p>
+     * @param afterSeq Last sequence number the client has.
+     * @param max Largest number of changes to return.
+     * @param timeoutMillis How long to wait for a change, 0 to return at once.
+     * @return Changes in order, empty on timeout, or null if the client is too
+     * far behind, or ahead of this feed, and has to start over from snapshot().
+     * @throws InterruptedException
+     */
+    public List<Change> poll(long afterSeq, int max, long timeoutMillis) throws InterruptedException {
+        long head = log.getHeadSeq();
+        if (afterSeq > head) {
+            return null;
+        }
+        if (afterSeq == head && timeoutMillis <= 0) {
+            return new ArrayList<>();
+        }
+        List<ReplicationLog.Entry> entries = log.readAfter(afterSeq, max, timeoutMillis);
+        if (entries == null) {
+            return null;
+        }
+        List<Change> changes = new ArrayList<>(entries.size());
+        for (ReplicationLog.Entry entry : entries) {
+            changes.add(decode(entry));
+        }
+        return changes;
+    }
+
+    /**
+     * <p>Streams the feed to a listener on a background thread, starting after
+     * a sequence number. A client with nothing yet passes 0 and gets a
+     * snapshot first.</p>
+     * @param afterSeq Last sequence number the client has.
+     * @param listener Receives the snapshot, if one is needed, and the changes.
+     * @return Closing it stops the stream.
+     */
+    public Closeable subscribe(long afterSeq, FeedListener listener) {
+        Thread thread = new Thread(() -> stream(afterSeq, listener), "change-feed-" + listener.getClass().getSimpleName());
+        thread.setDaemon(true);
+        synchronized (subscribers) {
+            subscribers.add(thread);
+        }
+        thread.start();
+        return () -> {
+            thread.interrupt();
+            synchronized (subscribers) {
+                subscribers.remove(thread);
+            }
+        };
+    }
+
+    /**
+     * <p>Stops recording changes and ends every subscription.</p>
+     */
+    @Override
+    public void close() {
+        parts.removeListener(partListener);
+        products.removeListener(productListener);
+        synchronized (subscribers) {
+            subscribers.forEach(Thread::interrupt);
+            subscribers.clear();
+        }
+    }
+
+    ReplicationLog getLog() {
+        return log;
+    }
+
+    static Change decode(ReplicationLog.Entry entry) {
+        try {
+            return Change.decode(entry.seq, entry.timestamp, entry.op, entry.payload);
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt change feed entry " + entry.seq, e);
+        }
+    }
+
+    private void stream(long afterSeq, FeedListener listener) {
+        try {
+            long delivered = afterSeq;
+            if (delivered == 0) {
+                delivered = deliverSnapshot(listener);
+            }
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Change> changes = poll(delivered, BATCH_SIZE, HEARTBEAT_MILLIS);
+                if (changes == null) {
+                    delivered = deliverSnapshot(listener);
+                } else if (!changes.isEmpty()) {
+                    listener.onChanges(changes);
+                    delivered = changes.get(changes.size() - 1).getSeq();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Change feed listener failed, ending its subscription", e);
+        }
+    }
+
+    private long deliverSnapshot(FeedListener listener) {
+        Snapshot snapshot = latest;
+        List<Part> partCopies = new ArrayList<>();
+        snapshot.getInventory().getAllParts().forEach(row -> partCopies.add(row.toPart()));
+        List<Product> productCopies = new ArrayList<>();
+        snapshot.getInventory().getAllProducts().forEach(row -> productCopies.add(row.toProduct()));
+        listener.onSnapshot(snapshot.getSeq(), partCopies, productCopies);
+        return snapshot.getSeq();
+    }
+
+    private void onPartsChanged(ListChangeListener.Change<? extends Part> c) {
+        InventorySnapshot before = latest.getInventory();
+        InventorySnapshot after = Inventory.snapshot();
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    Part p = parts.get(i);
+                    int id = p.getId();
+                    if (p.getPreviousId() != id) {
+                        // The id moved in place; the row under the old id is gone.
+                        log.append(Change.DELETE_PART, Change.encodeDelete(p.getPreviousId()));
+                    }
+                    InventorySnapshot.PartRow old = before.lookupPart(id);
+                    InventorySnapshot.PartRow row = after.lookupPart(id);
+                    if (row == null) {
+                        continue;
+                    }
+                    int changed = Change.changedFields(old, row);
+                    if (changed != 0) {
+                        log.append(old == null ? Change.INSERT_PART : Change.UPDATE_PART, Change.encode(row, changed));
+                    }
+                }
+            } else {
+                for (Part p : c.getRemoved()) {
+                    log.append(Change.DELETE_PART, Change.encodeDelete(p.getId()));
+                }
+                for (Part p : c.getAddedSubList()) {
+                    InventorySnapshot.PartRow row = after.lookupPart(p.getId());
+                    if (row != null) {
+                        log.append(Change.INSERT_PART, Change.encode(row, Change.changedFields(null, row)));
+                    }
+                }
+            }
+        }
+        latest = new Snapshot(log.getHeadSeq(), after);
+    }
+
+    private void onProductsChanged(ListChangeListener.Change<? extends Product> c) {
+        InventorySnapshot before = latest.getInventory();
+        InventorySnapshot after = Inventory.snapshot();
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    Product p = products.get(i);
+                    int id = p.getId();
+                    if (p.getPreviousId() != id) {
+                        // The id moved in place; the row under the old id is gone.
+                        log.append(Change.DELETE_PRODUCT, Change.encodeDelete(p.getPreviousId()));
+                    }
+                    InventorySnapshot.ProductRow old = before.lookupProduct(id);
+                    InventorySnapshot.ProductRow row = after.lookupProduct(id);
+                    if (row == null) {
+                        continue;
+                    }
+                    int changed = Change.changedFields(old, row);
+                    if (changed != 0) {
+                        log.append(old == null ? Change.INSERT_PRODUCT : Change.UPDATE_PRODUCT, Change.encode(row, changed));
+                    }
+                }
+            } else {
+                for (Product p : c.getRemoved()) {
+                    log.append(Change.DELETE_PRODUCT, Change.encodeDelete(p.getId()));
+                }
+                for (Product p : c.getAddedSubList()) {
+                    InventorySnapshot.ProductRow row = after.lookupProduct(p.getId());
+                    if (row != null) {
+                        log.append(Change.INSERT_PRODUCT, Change.encode(row, Change.changedFields(null, row)));
+                    }
+                }
+            }
+        }
+        latest = new Snapshot(log.getHeadSeq(), after);
+    }
+}
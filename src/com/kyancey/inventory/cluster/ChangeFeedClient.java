@@ -0,0 +1,178 @@
+package com.kyancey.inventory.cluster;
+
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * <p>Follows a ChangeFeedServer and hands what it receives to a FeedListener.</p>
+ * <p>Changes are delivered in batches, one per read from the server, on the
+ * client's receive thread. If the connection drops, the client reconnects and
+ * asks for everything after the last change it delivered, so the listener
+ * sees each change once, or a snapshot if the server can no longer supply
+ * them or is serving a different feed than the one they came from.</p>
+ */
+public class ChangeFeedClient implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(ChangeFeedClient.class.getName());
+    private static final long RECONNECT_MILLIS = 1000;
+
+    private final InetSocketAddress server;
+    private final FeedListener listener;
+    private final Thread receiver;
+
+    private volatile Socket socket;
+    private volatile boolean closed;
+    private volatile long epoch;
+    private volatile long deliveredSeq;
+    private volatile long serverHeadSeq;
+
+    /**
+     * <p>Starts following a feed on a background thread, from a snapshot.</p>
+     * @param server Address of the ChangeFeedServer.
+     * @param listener Receives the snapshot and then the changes.
+     */
+    public ChangeFeedClient(InetSocketAddress server, FeedListener listener) {
+        this(server, 0, 0, listener);
+    }
+
+    /**
+     * <p>Starts following a feed on a background thread, after a change the
+     * client already has. If the server is no longer serving that feed, the
+     * client starts from a snapshot instead.</p>
+     * @param server Address of the ChangeFeedServer.
+     * @param epoch Epoch of the feed afterSeq came from, as getEpoch() or ChangeFeed.getEpoch() reported it.
+     * @param afterSeq Last sequence number the client already has.
+     * @param listener Receives the snapshot, if one is needed, and the changes.
+     */
+    public ChangeFeedClient(InetSocketAddress server, long epoch, long afterSeq, FeedListener listener) {
+        this.server = server;
+        this.listener = listener;
+        this.epoch = epoch;
+        this.deliveredSeq = afterSeq;
+        receiver = new Thread(this::receiveLoop, "change-feed-receive");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /**
+     * <p>Gets the epoch of the feed the delivered changes came from, to save
+     * along with getDeliveredSeq().</p>
+     * @return Epoch, 0 before the first snapshot.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * <p>Gets the sequence number of the last change delivered to the listener.</p>
+     * @return Delivered sequence number.
+     */
+    public long getDeliveredSeq() {
+        return deliveredSeq;
+    }
+
+    /**
+     * <p>Gets how many changes the client is behind the server.</p>
+     * @return Number of changes not yet delivered.
+     */
+    public long getLagEntries() {
+        return Math.max(0, serverHeadSeq - deliveredSeq);
+    }
+
+    /**
+     * <p>Stops following the feed.</p>
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        receiver.interrupt();
+        Socket s = socket;
+        if (s != null) {
+            s.close();
+        }
+    }
+
+    private void receiveLoop() {
+        while (!closed) {
+            try (Socket s = new Socket()) {
+                socket = s;
+                s.setTcpNoDelay(true);
+                s.connect(server);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                out.writeLong(epoch);
+                out.writeLong(deliveredSeq);
+                out.flush();
+                List<Change> batch = new ArrayList<>();
+                while (!closed) {
+                    readFrame(in, batch);
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    LOGGER.info("Lost change feed " + server + " (" + e + "), reconnecting");
+                }
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void readFrame(DataInputStream in, List<Change> batch) throws IOException {
+        byte frame = in.readByte();
+        switch (frame) {
+            case ReplicationPrimary.FRAME_SNAPSHOT: {
+                long snapshotEpoch = in.readLong();
+                long seq = in.readLong();
+                in.readLong();
+                List<Part> parts = new ArrayList<>();
+                for (int n = WireFormat.readCount(in); n > 0; n--) {
+                    parts.add(WireFormat.readPart(in));
+                }
+                List<Product> products = new ArrayList<>();
+                for (int n = WireFormat.readCount(in); n > 0; n--) {
+                    products.add(WireFormat.readProduct(in));
+                }
+                batch.clear();
+                listener.onSnapshot(seq, parts, products);
+                deliveredSeq = seq;
+                epoch = snapshotEpoch;
+                break;
+            }
+            case ReplicationPrimary.FRAME_ENTRY: {
+                long seq = in.readLong();
+                long timestamp = in.readLong();
+                byte op = in.readByte();
+                byte[] payload = WireFormat.readPayload(in);
+                batch.add(Change.decode(seq, timestamp, op, payload));
+                break;
+            }
+            case ReplicationPrimary.FRAME_HEARTBEAT:
+                serverHeadSeq = in.readLong();
+                in.readLong();
+                // The server ends every batch with a heartbeat.
+                if (!batch.isEmpty()) {
+                    listener.onChanges(new ArrayList<>(batch));
+                    deliveredSeq = batch.get(batch.size() - 1).getSeq();
+                    batch.clear();
+                }
+                break;
+            default:
+                throw new IOException("Unknown change feed frame " + frame);
+        }
+    }
+}
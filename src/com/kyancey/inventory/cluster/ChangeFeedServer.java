@@ -0,0 +1,146 @@
+package com.kyancey.inventory.cluster;
+
+import com.kyancey.inventory.entities.InventorySnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Serves a ChangeFeed to ChangeFeedClients over a loopback socket.</p>
+ * <p>A client connects and sends the feed epoch and last sequence number it
+ * has. Each connection has its own thread that streams the encoded changes
+ * from there, exactly as they sit in the log, using the same frames as
+ * replication. A new client, one that fell behind the log, or one whose
+ * position belongs to another feed because this process restarted, gets a
+ * snapshot first.</p>
+ */
+public class ChangeFeedServer implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(ChangeFeedServer.class.getName());
+
+    private final ChangeFeed feed;
+    private final ReplicationLog log;
+    private final ServerSocket serverSocket;
+
+    /**
+     * <p>Starts accepting clients on a daemon thread.</p>
+     * @param feed Feed to serve.
+     * @param port Loopback port to listen on, or 0 for any free port.
+     * @throws IOException
+     */
+    public ChangeFeedServer(ChangeFeed feed, int port) throws IOException {
+        this.feed = feed;
+        this.log = feed.getLog();
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+
+        Thread acceptor = new Thread(this::acceptLoop, "change-feed-accept-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * <p>Gets the port the server is listening on.</p>
+     * @return Port number.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * <p>Stops accepting clients. Connected clients are dropped when their
+     * next write fails.</p>
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread sender = new Thread(() -> stream(socket), "change-feed-send-" + socket.getPort());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    LOGGER.log(Level.WARNING, "Accept failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Streams the feed to one client until it disconnects.</p>
+     */
+    private void stream(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            long epoch = in.readLong();
+            long sent = in.readLong();
+            if (epoch != log.getEpoch() || sent == 0 || sent > log.getHeadSeq() || sent + 1 < log.getFirstSeq()) {
+                sent = sendSnapshot(out);
+            }
+            while (!serverSocket.isClosed()) {
+                List<ReplicationLog.Entry> entries = log.readAfter(sent, ChangeFeed.BATCH_SIZE, ChangeFeed.HEARTBEAT_MILLIS);
+                if (entries == null) {
+                    LOGGER.info("Feed client on port " + s.getPort() + " fell behind the log, resending snapshot");
+                    sent = sendSnapshot(out);
+                    continue;
+                }
+                for (ReplicationLog.Entry entry : entries) {
+                    out.writeByte(ReplicationPrimary.FRAME_ENTRY);
+                    out.writeLong(entry.seq);
+                    out.writeLong(entry.timestamp);
+                    out.writeByte(entry.op);
+                    out.writeInt(entry.payload.length);
+                    out.write(entry.payload);
+                    sent = entry.seq;
+                }
+                out.writeByte(ReplicationPrimary.FRAME_HEARTBEAT);
+                out.writeLong(log.getHeadSeq());
+                out.writeLong(log.getHeadTimestamp());
+                out.flush();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Feed client disconnected", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * <p>Sends the whole inventory and returns the sequence number it covers.</p>
+     */
+    private long sendSnapshot(DataOutputStream out) throws IOException {
+        ChangeFeed.Snapshot snapshot = feed.snapshot();
+        out.writeByte(ReplicationPrimary.FRAME_SNAPSHOT);
+        out.writeLong(log.getEpoch());
+        out.writeLong(snapshot.getSeq());
+        out.writeLong(System.currentTimeMillis());
+        List<InventorySnapshot.PartRow> partRows = snapshot.getInventory().getAllParts();
+        out.writeInt(partRows.size());
+        for (InventorySnapshot.PartRow row : partRows) {
+            WireFormat.writePart(out, row.toPart());
+        }
+        List<InventorySnapshot.ProductRow> productRows = snapshot.getInventory().getAllProducts();
+        out.writeInt(productRows.size());
+        for (InventorySnapshot.ProductRow row : productRows) {
+            WireFormat.writeProduct(out, row.toProduct());
+        }
+        out.flush();
+        return snapshot.getSeq();
+    }
+}
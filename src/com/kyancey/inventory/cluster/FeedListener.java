@@ -0,0 +1,31 @@
+package com.kyancey.inventory.cluster;
+
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+
+import java.util.List;
+
+/**
+ * <p>Receives the change feed, either in process from ChangeFeed.subscribe()
+ * or over a socket through ChangeFeedClient.</p>
+ * <p>Calls come one at a time, in sequence order, on the subscription's own
+ * thread. A JavaFX client should hand them to Platform.runLater.</p>
+ */
+public interface FeedListener {
+    /**
+     * <p>Replaces everything the client holds. Sent first to a new subscriber,
+     * and again to one that fell so far behind that the changes it needs are
+     * gone. Changes delivered afterwards may repeat ones the snapshot already
+     * includes; they are absolute, so applying them again is harmless.</p>
+     * @param seq Sequence number the snapshot covers.
+     * @param parts Every part.
+     * @param products Every product.
+     */
+    void onSnapshot(long seq, List<Part> parts, List<Product> products);
+
+    /**
+     * <p>Delivers the next changes in order.</p>
+     * @param changes One or more changes, the last one being the newest.
+     */
+    void onChanges(List<Change> changes);
+}
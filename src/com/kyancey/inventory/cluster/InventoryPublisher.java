@@ -0,0 +1,391 @@
+package com.kyancey.inventory.cluster;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Streams inventory changes to Flow subscribers that pull them at their
+ * own pace: every part change, every product change, or only the changes to
+ * stock.</p>
+ * <p>Each subscription reads the ChangeFeed on its own thread into a buffer
+ * of its own, and hands changes to the subscriber only as it requests them.
+ * Writers only ever append to the feed's log, so a slow or stuck subscriber
+ * never slows down an edit. When the buffer fills, the subscription's
+ * Overflow policy decides what gives.</p>
+ * <p>A subscription that falls more than the feed's log capacity behind gets
+ * onError and ends. Under CONFLATE and DROP that only happens if the
+ * subscriber spends longer in onNext than the log takes to wrap. Closing the
+ * publisher completes every subscription.</p>
+ */
+public class InventoryPublisher implements Closeable {
+    /**
+     * <p>What a subscription does with a change that arrives while its buffer
+     * is full.</p>
+     */
+    public enum Overflow {
+        /**
+         * Merge the change into the buffered one for the same part or product,
+         * so the subscriber sees the latest state of each and no field is lost.
+         * Only a change to an id not yet buffered has to wait for room.
+         */
+        CONFLATE,
+        /**
+         * Discard the change and count it.
+         */
+        DROP,
+        /**
+         * Stop reading the feed until the subscriber requests more. Nothing is
+         * lost unless the subscriber falls off the end of the log.
+         */
+        BLOCK
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(InventoryPublisher.class.getName());
+    /** How long a subscription with buffered changes but no demand waits between reads of the feed. */
+    static final long IDLE_MILLIS = 10;
+
+    private final ChangeFeed feed;
+    private final List<EventSubscription> subscriptions = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * <p>Creates a publisher over a change feed. Subscriptions start at the
+     * feed's newest change when they subscribe.</p>
+     * @param feed Feed to read. Closing the publisher leaves it open.
+     */
+    public InventoryPublisher(ChangeFeed feed) {
+        this.feed = feed;
+    }
+
+    /**
+     * <p>Publishes every insert, update and delete of a part.</p>
+     * @param bufferSize Changes buffered per subscription.
+     * @param overflow What to do when the buffer is full.
+     * @return Publisher; each subscriber gets its own subscription.
+     */
+    public Flow.Publisher<Change> parts(int bufferSize, Overflow overflow) {
+        return publisher(Change::isPart, bufferSize, overflow);
+    }
+
+    /**
+     * <p>Publishes every insert, update and delete of a product.</p>
+     * @param bufferSize Changes buffered per subscription.
+     * @param overflow What to do when the buffer is full.
+     * @return Publisher; each subscriber gets its own subscription.
+     */
+    public Flow.Publisher<Change> products(int bufferSize, Overflow overflow) {
+        return publisher(c -> !c.isPart(), bufferSize, overflow);
+    }
+
+    /**
+     * <p>Publishes the changes to stock of parts and products: inserts,
+     * deletes, and the updates that carry Field.STOCK. An update that changed
+     * other fields as well still carries them.</p>
+     * @param bufferSize Changes buffered per subscription.
+     * @param overflow What to do when the buffer is full.
+     * @return Publisher; each subscriber gets its own subscription.
+     */
+    public Flow.Publisher<Change> stock(int bufferSize, Overflow overflow) {
+        return publisher(c -> c.getKind() != Change.Kind.UPDATE || c.hasField(Change.Field.STOCK), bufferSize, overflow);
+    }
+
+    /**
+     * <p>Completes every subscription. Changes still buffered are discarded.</p>
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (subscriptions) {
+            subscriptions.forEach(EventSubscription::wake);
+            subscriptions.clear();
+        }
+    }
+
+    private Flow.Publisher<Change> publisher(Predicate<Change> filter, int bufferSize, Overflow overflow) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be at least 1: " + bufferSize);
+        }
+        Objects.requireNonNull(overflow);
+        return subscriber -> {
+            Objects.requireNonNull(subscriber);
+            EventSubscription subscription = new EventSubscription(subscriber, filter, bufferSize, overflow, feed.getHeadSeq());
+            synchronized (subscriptions) {
+                subscriptions.add(subscription);
+            }
+            Thread thread = new Thread(subscription::pump, "inventory-publisher-" + subscriber.getClass().getSimpleName());
+            thread.setDaemon(true);
+            thread.start();
+        };
+    }
+
+    /**
+     * <p>One subscriber's place in the feed and its buffer. Every signal to the
+     * subscriber comes from the subscription's own thread, one at a time;
+     * request() and cancel() may be called from any thread.</p>
+     * <p>Under CONFLATE, changes are delivered in the order their ids first
+     * changed since the last delivery, each numbered as the newest change
+     * merged into it.</p>
+     */
+    public final class EventSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super Change> subscriber;
+        private final Predicate<Change> filter;
+        private final int capacity;
+        private final Overflow overflow;
+        private final Object lock = new Object();
+
+        // Only the pump thread touches these.
+        private final ArrayDeque<Change> queue = new ArrayDeque<>();
+        private final LinkedHashMap<Long, Change> conflated = new LinkedHashMap<>();
+        private final ArrayDeque<Change> pending = new ArrayDeque<>();
+        private long seq;
+
+        // Guarded by lock.
+        private long demand;
+        private boolean badRequest;
+        private long badRequestCount;
+
+        private volatile boolean cancelled;
+        private volatile long dropped;
+        private volatile long merged;
+
+        EventSubscription(Flow.Subscriber<? super Change> subscriber, Predicate<Change> filter,
+                          int capacity, Overflow overflow, long afterSeq) {
+            this.subscriber = subscriber;
+            this.filter = filter;
+            this.capacity = capacity;
+            this.overflow = overflow;
+            this.seq = afterSeq;
+        }
+
+        /**
+         * <p>Asks for more changes. Demand adds up and saturates at
+         * Long.MAX_VALUE, which means unbounded.</p>
+         * @param n Number of changes, greater than 0. Anything else ends the
+         * subscription with an IllegalArgumentException.
+         */
+        @Override
+        public void request(long n) {
+            synchronized (lock) {
+                if (n <= 0) {
+                    badRequest = true;
+                    badRequestCount = n;
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * <p>Stops the subscription. No signals follow once the current one,
+         * if any, returns.</p>
+         */
+        @Override
+        public void cancel() {
+            cancelled = true;
+            wake();
+        }
+
+        /**
+         * @return Changes discarded under DROP because the buffer was full.
+         */
+        public long getDroppedCount() {
+            return dropped;
+        }
+
+        /**
+         * @return Changes merged into a buffered one under CONFLATE.
+         */
+        public long getConflatedCount() {
+            return merged;
+        }
+
+        /**
+         * @return Sequence number of the last change read from the feed.
+         */
+        public long getSeq() {
+            return seq;
+        }
+
+        void wake() {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+
+        void pump() {
+            try {
+                subscriber.onSubscribe(this);
+                while (!cancelled) {
+                    if (closed) {
+                        subscriber.onComplete();
+                        return;
+                    }
+                    boolean bad;
+                    long count;
+                    synchronized (lock) {
+                        bad = badRequest;
+                        count = badRequestCount;
+                    }
+                    if (bad) {
+                        cancelled = true;
+                        subscriber.onError(new IllegalArgumentException("request(" + count + "): demand must be positive"));
+                        return;
+                    }
+                    if (deliverOne()) {
+                        // Keep reading between deliveries so a subscriber that requests as it goes
+                        // does not starve the buffer of conflation and drops.
+                        if (read(0) < 0) {
+                            return;
+                        }
+                        continue;
+                    }
+                    if (!pending.isEmpty()) {
+                        // Buffer full and nothing more can go in: stop reading until the subscriber catches up.
+                        awaitDemand(ChangeFeed.HEARTBEAT_MILLIS);
+                        continue;
+                    }
+                    boolean buffered = size() > 0;
+                    int read = read(buffered ? 0 : ChangeFeed.HEARTBEAT_MILLIS);
+                    if (read < 0) {
+                        return;
+                    }
+                    if (read == 0 && buffered) {
+                        awaitDemand(IDLE_MILLIS);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                cancelled = true;
+                LOGGER.log(Level.WARNING, "Inventory subscriber failed, ending its subscription", e);
+            } finally {
+                synchronized (subscriptions) {
+                    subscriptions.remove(this);
+                }
+            }
+        }
+
+        /**
+         * <p>Hands the subscriber the oldest buffered change if it has asked
+         * for one.</p>
+         * @return False if the buffer is empty or there is no demand.
+         */
+        private boolean deliverOne() {
+            if (size() == 0) {
+                return false;
+            }
+            synchronized (lock) {
+                if (demand == 0 || badRequest) {
+                    return false;
+                }
+                if (demand != Long.MAX_VALUE) {
+                    demand--;
+                }
+            }
+            subscriber.onNext(take());
+            return true;
+        }
+
+        /**
+         * <p>Reads the next batch from the feed into the buffer, unless changes
+         * read earlier are still waiting for room.</p>
+         * @param timeoutMillis How long to wait for a change.
+         * @return Number of changes read, or -1 if the subscription fell off the
+         * end of the log and has been ended with onError.
+         * @throws InterruptedException
+         */
+        private int read(long timeoutMillis) throws InterruptedException {
+            if (!pending.isEmpty()) {
+                fill();
+                return 0;
+            }
+            List<Change> changes = feed.poll(seq, ChangeFeed.BATCH_SIZE, timeoutMillis);
+            if (changes == null) {
+                cancelled = true;
+                subscriber.onError(new IllegalStateException("Subscription fell behind the change feed log after seq " + seq));
+                return -1;
+            }
+            for (Change change : changes) {
+                seq = change.getSeq();
+                if (filter.test(change)) {
+                    pending.add(change);
+                }
+            }
+            fill();
+            return changes.size();
+        }
+
+        private void awaitDemand(long millis) throws InterruptedException {
+            synchronized (lock) {
+                if (demand == 0 && !badRequest && !cancelled && !closed) {
+                    lock.wait(millis);
+                }
+            }
+        }
+
+        /**
+         * <p>Moves pending changes into the buffer until it refuses one.</p>
+         */
+        private void fill() {
+            while (!pending.isEmpty() && offer(pending.peek())) {
+                pending.poll();
+            }
+        }
+
+        private boolean offer(Change change) {
+            switch (overflow) {
+                case CONFLATE:
+                    long key = (change.isPart() ? 1L << 32 : 0) | (change.getId() & 0xFFFFFFFFL);
+                    Change older = conflated.get(key);
+                    if (older != null) {
+                        conflated.put(key, Change.merge(older, change));
+                        merged++;
+                        return true;
+                    }
+                    if (conflated.size() >= capacity) {
+                        return false;
+                    }
+                    conflated.put(key, change);
+                    return true;
+                case DROP:
+                    if (queue.size() >= capacity) {
+                        dropped++;
+                    } else {
+                        queue.add(change);
+                    }
+                    return true;
+                default:
+                    if (queue.size() >= capacity) {
+                        return false;
+                    }
+                    queue.add(change);
+                    return true;
+            }
+        }
+
+        private int size() {
+            return overflow == Overflow.CONFLATE ? conflated.size() : queue.size();
+        }
+
+        private Change take() {
+            if (overflow != Overflow.CONFLATE) {
+                return queue.poll();
+            }
+            Iterator<Map.Entry<Long, Change>> first = conflated.entrySet().iterator();
+            Change change = first.next().getValue();
+            first.remove();
+            return change;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.kyancey.inventory.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>Bounded, in-order log of encoded inventory mutations. Sequence numbers start
+ * at 1 and never repeat. When the log is full the oldest entry is dropped, and a
+ * reader that still needed it has to start over from a snapshot.</p>
+ * <p>Sequence numbers only mean something within one log, and a restarted
+ * process starts a new log from 1 again. Each log therefore has a random,
+ * nonzero epoch, and a reader that presents a different epoch than the log's
+ * has to start over from a snapshot too.</p>
+ */
+final class ReplicationLog {
+    /**
+     * <p>One encoded mutation.</p>
+     */
+    static final class Entry {
+        final long seq;
+        final long timestamp;
+        final byte op;
+        final byte[] payload;
+
+        Entry(long seq, long timestamp, byte op, byte[] payload) {
+            this.seq = seq;
+            this.timestamp = timestamp;
+            this.op = op;
+            this.payload = payload;
+        }
+    }
+
+    private final Entry[] ring;
+    private final long epoch;
+    private long headSeq;
+    private long headTimestamp;
+
+    ReplicationLog(int capacity) {
+        ring = new Entry[capacity];
+        long random;
+        do {
+            random = ThreadLocalRandom.current().nextLong();
+        } while (random == 0);
+        epoch = random;
+    }
+
+    /**
+     * <p>Gets the epoch that identifies this log, never 0.</p>
+     * @return Epoch.
+     */
+    long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * <p>Appends a mutation and wakes any waiting readers.</p>
+     * @param op Operation code.
+     * @param payload Encoded mutation.
+     * @return Sequence number assigned to the entry.
+     */
+    synchronized long append(byte op, byte[] payload) {
+        long seq = ++headSeq;
+        headTimestamp = System.currentTimeMillis();
+        ring[(int) (seq % ring.length)] = new Entry(seq, headTimestamp, op, payload);
+        notifyAll();
+        return seq;
+    }
+
+    /**
+     * <p>Gets the sequence number of the newest entry, 0 if nothing was appended.</p>
+     * @return Head sequence number.
+     */
+    synchronized long getHeadSeq() {
+        return headSeq;
+    }
+
+    /**
+     * <p>Gets the time the newest entry was appended.</p>
+     * @return Milliseconds since the epoch, 0 if nothing was appended.
+     */
+    synchronized long getHeadTimestamp() {
+        return headTimestamp;
+    }
+
+    /**
+     * <p>Gets the oldest sequence number still held.</p>
+     * @return First available sequence number.
+     */
+    synchronized long getFirstSeq() {
+        return Math.max(1, headSeq - ring.length + 1);
+    }
+
+    /**
+     * <p>Waits until there are entries after afterSeq, then returns up to max of them.</p>
+     * @param afterSeq Last sequence number the reader has.
+     * @param max Largest number of entries to return.
+     * @param timeoutMillis How long to wait for new entries.
+     * @return Entries in order, empty on timeout, or null if the entry right after
+     * afterSeq has already been dropped.
+     * @throws InterruptedException
+     */
+    synchronized List<Entry> readAfter(long afterSeq, int max, long timeoutMillis) throws InterruptedException {
+        if (headSeq <= afterSeq) {
+            wait(timeoutMillis);
+        }
+        if (afterSeq + 1 < getFirstSeq()) {
+            return null;
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (long seq = afterSeq + 1; seq <= headSeq && entries.size() < max; seq++) {
+            entries.add(ring[(int) (seq % ring.length)]);
+        }
+        return entries;
+    }
+}
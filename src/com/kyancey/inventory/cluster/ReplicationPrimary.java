@@ -0,0 +1,253 @@
+package com.kyancey.inventory.cluster;
+
+import com.kyancey.inventory.entities.Inventory;
+import com.kyancey.inventory.entities.InventorySnapshot;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Ships every change to this process's Inventory to read replicas over a
+ * loopback socket.</p>
+ * <p>Changes are picked up from the inventory list events on the thread that
+ * makes them, encoded once, and appended to a bounded log. Each replica
+ * connection has its own thread that streams the log from wherever that replica
+ * left off. A replica that is new, or so far behind that the entries it needs
+ * have been dropped, gets a full snapshot first and then continues from the log.
+ * So does a replica whose position comes from another log, such as the one this
+ * process had before it restarted: it presents the epoch of the log its position
+ * belongs to, and a snapshot is sent whenever that is not this log's epoch.</p>
+ * <p>Entries are full upserts and deletes by id, so applying one twice is
+ * harmless. That lets the snapshot be taken without pausing writers: the log
+ * head is read before the snapshot, so the snapshot is at least that new, and
+ * anything it already includes is simply applied again.</p>
+ */
+public class ReplicationPrimary implements Closeable {
+    static final byte FRAME_SNAPSHOT = 1;
+    static final byte FRAME_ENTRY = 2;
+    static final byte FRAME_HEARTBEAT = 3;
+
+    static final byte UPSERT_PART = 1;
+    static final byte DELETE_PART = 2;
+    static final byte UPSERT_PRODUCT = 3;
+    static final byte DELETE_PRODUCT = 4;
+
+    private static final Logger LOGGER = Logger.getLogger(ReplicationPrimary.class.getName());
+    private static final long HEARTBEAT_MILLIS = 1000;
+    private static final int BATCH_SIZE = 1024;
+
+    private final ReplicationLog log;
+    private final ServerSocket serverSocket;
+    private final ObservableList<Part> parts = Inventory.getAllPartsView();
+    private final ObservableList<Product> products = Inventory.getAllProductsView();
+    private final ListChangeListener<Part> partListener = this::onPartsChanged;
+    private final ListChangeListener<Product> productListener = this::onProductsChanged;
+
+    /**
+     * <p>Starts recording inventory changes and accepting replicas.</p>
+     * @param port Loopback port to listen on, or 0 for any free port.
+     * @param logCapacity Number of changes kept for replicas that fall behind.
+     * @throws IOException
+     */
+    public ReplicationPrimary(int port, int logCapacity) throws IOException {
+        log = new ReplicationLog(logCapacity);
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        parts.addListener(partListener);
+        products.addListener(productListener);
+
+        Thread acceptor = new Thread(this::acceptLoop, "replication-accept-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * <p>Gets the port the primary is listening on.</p>
+     * @return Port number.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * <p>Gets the sequence number of the newest recorded change.</p>
+     * @return Head sequence number.
+     */
+    public long getHeadSeq() {
+        return log.getHeadSeq();
+    }
+
+    /**
+     * <p>Stops recording changes and disconnects replicas.</p>
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        parts.removeListener(partListener);
+        products.removeListener(productListener);
+        serverSocket.close();
+    }
+
+    private void onPartsChanged(ListChangeListener.Change<? extends Part> c) {
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    Part p = parts.get(i);
+                    if (p.getPreviousId() != p.getId()) {
+                        log.append(DELETE_PART, encodeId(p.getPreviousId()));
+                    }
+                    log.append(UPSERT_PART, encodePart(p));
+                }
+            } else {
+                for (Part p : c.getRemoved()) {
+                    log.append(DELETE_PART, encodeId(p.getId()));
+                }
+                for (Part p : c.getAddedSubList()) {
+                    log.append(UPSERT_PART, encodePart(p));
+                }
+            }
+        }
+    }
+
+    private void onProductsChanged(ListChangeListener.Change<? extends Product> c) {
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    Product p = products.get(i);
+                    if (p.getPreviousId() != p.getId()) {
+                        log.append(DELETE_PRODUCT, encodeId(p.getPreviousId()));
+                    }
+                    log.append(UPSERT_PRODUCT, encodeProduct(p));
+                }
+            } else {
+                for (Product p : c.getRemoved()) {
+                    log.append(DELETE_PRODUCT, encodeId(p.getId()));
+                }
+                for (Product p : c.getAddedSubList()) {
+                    log.append(UPSERT_PRODUCT, encodeProduct(p));
+                }
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread sender = new Thread(() -> stream(socket), "replication-send-" + socket.getPort());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    LOGGER.log(Level.WARNING, "Accept failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Streams the log to one replica until it disconnects.</p>
+     */
+    private void stream(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            long epoch = in.readLong();
+            long sent = in.readLong();
+            if (epoch != log.getEpoch() || sent == 0 || sent > log.getHeadSeq() || sent + 1 < log.getFirstSeq()) {
+                sent = sendSnapshot(out);
+            }
+            while (!serverSocket.isClosed()) {
+                List<ReplicationLog.Entry> entries = log.readAfter(sent, BATCH_SIZE, HEARTBEAT_MILLIS);
+                if (entries == null) {
+                    LOGGER.info("Replica on port " + s.getPort() + " fell behind the log, resending snapshot");
+                    sent = sendSnapshot(out);
+                    continue;
+                }
+                for (ReplicationLog.Entry entry : entries) {
+                    out.writeByte(FRAME_ENTRY);
+                    out.writeLong(entry.seq);
+                    out.writeLong(entry.timestamp);
+                    out.writeByte(entry.op);
+                    out.writeInt(entry.payload.length);
+                    out.write(entry.payload);
+                    sent = entry.seq;
+                }
+                out.writeByte(FRAME_HEARTBEAT);
+                out.writeLong(log.getHeadSeq());
+                out.writeLong(log.getHeadTimestamp());
+                out.flush();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Replica disconnected", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * <p>Sends the whole inventory and returns the sequence number it covers.</p>
+     */
+    private long sendSnapshot(DataOutputStream out) throws IOException {
+        // Read the head before the snapshot; see the class comment.
+        long seq = log.getHeadSeq();
+        long timestamp = log.getHeadTimestamp();
+        InventorySnapshot snapshot = Inventory.snapshot();
+
+        out.writeByte(FRAME_SNAPSHOT);
+        out.writeLong(log.getEpoch());
+        out.writeLong(seq);
+        out.writeLong(timestamp);
+        List<InventorySnapshot.PartRow> partRows = snapshot.getAllParts();
+        out.writeInt(partRows.size());
+        for (InventorySnapshot.PartRow row : partRows) {
+            WireFormat.writePart(out, row.toPart());
+        }
+        List<InventorySnapshot.ProductRow> productRows = snapshot.getAllProducts();
+        out.writeInt(productRows.size());
+        for (InventorySnapshot.ProductRow row : productRows) {
+            WireFormat.writeProduct(out, row.toProduct());
+        }
+        out.flush();
+        return seq;
+    }
+
+    private static byte[] encodePart(Part part) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            WireFormat.writePart(out, part);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeProduct(Product product) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            WireFormat.writeProduct(out, product);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeId(int id) {
+        return new byte[] {(byte) (id >>> 24), (byte) (id >>> 16), (byte) (id >>> 8), (byte) id};
+    }
+}
@@ -0,0 +1,263 @@
+package com.kyancey.inventory.cluster;
+
+import com.kyancey.inventory.entities.Inventory;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Keeps this process's Inventory a read-only copy of a primary's.</p>
+ * <p>Entries are applied in order through the given executor; a JavaFX replica
+ * should pass Platform::runLater, a headless one can apply on the receiving
+ * thread. If the connection drops, the replica reconnects and asks for
+ * everything after the last entry it applied, and the primary falls back to a
+ * snapshot if those entries are gone or the primary has restarted since.</p>
+ */
+public class ReplicationReplica implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(ReplicationReplica.class.getName());
+    private static final long RECONNECT_MILLIS = 1000;
+
+    private final InetSocketAddress primary;
+    private final Executor applier;
+    private final Thread receiver;
+
+    private volatile Socket socket;
+    private volatile boolean closed;
+    private volatile long epoch;
+    private volatile long appliedSeq;
+    private volatile long appliedTimestamp;
+    private volatile long primaryHeadSeq;
+    private volatile long primaryHeadTimestamp;
+
+    /**
+     * <p>Starts replicating from a primary on a background thread.</p>
+     * @param primary Address of the ReplicationPrimary.
+     * @param applier Executor that applies changes to Inventory, in submission order.
+     */
+    public ReplicationReplica(InetSocketAddress primary, Executor applier) {
+        this.primary = primary;
+        this.applier = applier;
+        receiver = new Thread(this::receiveLoop, "replication-receive");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /**
+     * <p>Gets the sequence number of the last change applied here.</p>
+     * @return Applied sequence number.
+     */
+    public long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    /**
+     * <p>Gets the newest sequence number the primary has reported.</p>
+     * @return Primary head sequence number.
+     */
+    public long getPrimaryHeadSeq() {
+        return primaryHeadSeq;
+    }
+
+    /**
+     * <p>Gets how many changes the replica is behind the primary.</p>
+     * @return Number of changes not yet applied.
+     */
+    public long getLagEntries() {
+        return Math.max(0, primaryHeadSeq - appliedSeq);
+    }
+
+    /**
+     * <p>Gets how far behind the replica's data is, as the time between the
+     * primary's newest change and the newest change applied here.</p>
+     * @return Lag in milliseconds, 0 when caught up.
+     */
+    public long getLagMillis() {
+        if (getLagEntries() == 0) {
+            return 0;
+        }
+        return Math.max(0, primaryHeadTimestamp - appliedTimestamp);
+    }
+
+    /**
+     * <p>Stops replicating. Changes already received are still applied.</p>
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        receiver.interrupt();
+        Socket s = socket;
+        if (s != null) {
+            s.close();
+        }
+    }
+
+    private void receiveLoop() {
+        while (!closed) {
+            try (Socket s = new Socket()) {
+                socket = s;
+                s.setTcpNoDelay(true);
+                s.connect(primary);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                out.writeLong(epoch);
+                out.writeLong(appliedSeq);
+                out.flush();
+                while (!closed) {
+                    readFrame(in);
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    LOGGER.info("Lost primary " + primary + " (" + e + "), reconnecting");
+                }
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void readFrame(DataInputStream in) throws IOException {
+        byte frame = in.readByte();
+        switch (frame) {
+            case ReplicationPrimary.FRAME_SNAPSHOT: {
+                long snapshotEpoch = in.readLong();
+                long seq = in.readLong();
+                long timestamp = in.readLong();
+                List<Part> parts = new ArrayList<>();
+                for (int n = WireFormat.readCount(in); n > 0; n--) {
+                    parts.add(WireFormat.readPart(in));
+                }
+                List<Product> products = new ArrayList<>();
+                for (int n = WireFormat.readCount(in); n > 0; n--) {
+                    products.add(WireFormat.readProduct(in));
+                }
+                applier.execute(() -> {
+                    Inventory.clear();
+                    for (Part part : parts) {
+                        long version = part.getVersion();
+                        Inventory.addPart(part);
+                        part.setVersion(version);
+                    }
+                    for (Product product : products) {
+                        long version = product.getVersion();
+                        Inventory.addProduct(product);
+                        product.setVersion(version);
+                    }
+                    applied(seq, timestamp);
+                    // After the position, so a reconnect never pairs this
+                    // epoch with a position from the old log.
+                    epoch = snapshotEpoch;
+                });
+                break;
+            }
+            case ReplicationPrimary.FRAME_ENTRY: {
+                long seq = in.readLong();
+                long timestamp = in.readLong();
+                byte op = in.readByte();
+                byte[] payload = WireFormat.readPayload(in);
+                applier.execute(() -> {
+                    apply(op, payload);
+                    applied(seq, timestamp);
+                });
+                break;
+            }
+            case ReplicationPrimary.FRAME_HEARTBEAT:
+                primaryHeadSeq = in.readLong();
+                primaryHeadTimestamp = in.readLong();
+                break;
+            default:
+                throw new IOException("Unknown replication frame " + frame);
+        }
+    }
+
+    private void applied(long seq, long timestamp) {
+        appliedSeq = seq;
+        appliedTimestamp = timestamp;
+        if (seq > primaryHeadSeq) {
+            primaryHeadSeq = seq;
+            primaryHeadTimestamp = timestamp;
+        }
+    }
+
+    private static void apply(byte op, byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            switch (op) {
+                case ReplicationPrimary.UPSERT_PART: {
+                    Part part = WireFormat.readPart(in);
+                    long version = part.getVersion();
+                    if (!Inventory.updatePart(part)) {
+                        Inventory.addPart(part);
+                    }
+                    // Mirror the primary's version over the local stamp so a
+                    // client that read here can compare-and-update at the primary.
+                    Inventory.lookupPart(part.getId()).setVersion(version);
+                    break;
+                }
+                case ReplicationPrimary.DELETE_PART: {
+                    Part part = Inventory.lookupPart(in.readInt());
+                    // The primary already checked the delete. Products here
+                    // may still list the part until their own entries arrive.
+                    if (part != null) {
+                        Inventory.forceDeletePart(part);
+                    }
+                    break;
+                }
+                case ReplicationPrimary.UPSERT_PRODUCT: {
+                    Product updated = WireFormat.readProduct(in);
+                    long version = updated.getVersion();
+                    if (!Inventory.updateProduct(updated)) {
+                        Inventory.addProduct(updated);
+                    }
+                    Inventory.lookupProduct(updated.getId()).setVersion(version);
+                    break;
+                }
+                case ReplicationPrimary.DELETE_PRODUCT: {
+                    Product product = Inventory.lookupProduct(in.readInt());
+                    if (product != null) {
+                        Inventory.forceDeleteProduct(product);
+                    }
+                    break;
+                }
+                default:
+                    LOGGER.warning("Skipping unknown replication op " + op);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Corrupt replication entry", e);
+        }
+    }
+
+    /**
+     * <p>Runs a headless replica that logs its lag every few seconds.</p>
+     * @param args Primary port, and optionally host (defaults to loopback).
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7100;
+        InetAddress host = args.length > 1 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+        ReplicationReplica replica = new ReplicationReplica(new InetSocketAddress(host, port), Runnable::run);
+        while (true) {
+            Thread.sleep(5000);
+            LOGGER.info(String.format("applied=%d head=%d lag=%d entries / %d ms, parts=%d products=%d",
+                    replica.getAppliedSeq(), replica.getPrimaryHeadSeq(), replica.getLagEntries(),
+                    replica.getLagMillis(), Inventory.snapshot().getPartCount(), Inventory.snapshot().getProductCount()));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.kyancey.inventory.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * <p>One connection from a router to a shard. Requests are synchronous, so
+ * callers hold the client's lock from writing the request to reading the
+ * reply; see call().</p>
+ * <p>If a request fails part way, the connection is closed: the reply may be
+ * half read, and anything read after it would be decoded out of step. Later
+ * calls fail rather than return garbage.</p>
+ */
+final class ShardClient implements Closeable {
+    private final InetSocketAddress address;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    ShardClient(InetSocketAddress address) throws IOException {
+        this.address = address;
+        this.socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(address);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * <p>Writes the body of a request.</p>
+     */
+    interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * <p>Reads the reply to a request.</p>
+     * @param <T> Reply type.
+     */
+    interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * <p>Sends one request and reads its reply.</p>
+     * @param op Operation code from ShardServer.
+     * @param writer Writes the request body.
+     * @param reader Reads the reply.
+     * @param <T> Reply type.
+     * @return Reply.
+     * @throws IOException
+     */
+    synchronized <T> T call(byte op, Writer writer, Reader<T> reader) throws IOException {
+        try {
+            out.writeByte(op);
+            writer.write(out);
+            out.flush();
+            return reader.read(in);
+        } catch (IOException | RuntimeException e) {
+            try {
+                socket.close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+    }
+
+    InetSocketAddress getAddress() {
+        return address;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,388 @@
+package com.kyancey.inventory.cluster;
+
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+import com.kyancey.inventory.query.QueryParser;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>Front end for an inventory partitioned across several shard processes. Parts
+ * and products are assigned to a shard by hashing their id, so lookups and
+ * mutations by id go to exactly one shard, while name lookups are sent to every
+ * shard in parallel and merged in id order.</p>
+ * <p>A product and its associated parts usually live on different shards.
+ * Products come back holding part ids and quantities only, like every
+ * Product; lookupAssociatedParts() resolves them with one batched request per
+ * shard involved. Parts that no longer exist are left out.</p>
+ * <p>Deletes ask every shard whether one of its products still uses the part
+ * or product, and refuse it if so, like Inventory does. The check and the
+ * delete are separate requests, so a product added on another shard in
+ * between can still end up with a line for a deleted id.</p>
+ * <p>The shard list must be the same, in the same order, for every router that
+ * talks to a given set of shards.</p>
+ */
+public class ShardRouter implements Closeable {
+    private final List<ShardClient> shards = new ArrayList<>();
+    private final ExecutorService fanOut;
+
+    /**
+     * <p>Connects to every shard.</p>
+     * @param addresses Shard addresses, in a fixed order.
+     * @throws IOException
+     */
+    public ShardRouter(List<InetSocketAddress> addresses) throws IOException {
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        try {
+            for (InetSocketAddress address : addresses) {
+                shards.add(new ShardClient(address));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        fanOut = Executors.newFixedThreadPool(addresses.size(), r -> {
+            Thread thread = new Thread(r, "shard-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * <p>Gets the index of the shard that owns an id.</p>
+     * @param id Part or product id.
+     * @return Shard index.
+     */
+    public int shardFor(int id) {
+        // Spread sequential ids evenly; the constant is the 32-bit golden ratio.
+        return Math.floorMod(Integer.rotateLeft(id * 0x9E3779B9, 16), shards.size());
+    }
+
+    /**
+     * <p>Adds a part to its owning shard.</p>
+     * @param part Part to add.
+     * @throws IOException
+     */
+    public void addPart(Part part) throws IOException {
+        owner(part.getId()).call(ShardServer.ADD_PART, out -> WireFormat.writePart(out, part), DataInputStream::readBoolean);
+    }
+
+    /**
+     * <p>Adds a product to its owning shard. Associated parts are sent as ids
+     * and must be added to their own shards separately.</p>
+     * @param product Product to add.
+     * @throws IOException
+     */
+    public void addProduct(Product product) throws IOException {
+        owner(product.getId()).call(ShardServer.ADD_PRODUCT, out -> WireFormat.writeProduct(out, product),
+                DataInputStream::readBoolean);
+    }
+
+    /**
+     * <p>Looks up a part on its owning shard.</p>
+     * @param partId Part id.
+     * @return Copy of the part or null if no part matches.
+     * @throws IOException
+     */
+    public Part lookupPart(int partId) throws IOException {
+        return owner(partId).call(ShardServer.LOOKUP_PART, out -> out.writeInt(partId),
+                in -> in.readBoolean() ? WireFormat.readPart(in) : null);
+    }
+
+    /**
+     * <p>Looks up a product on its owning shard.</p>
+     * @param productId Product id.
+     * @return Copy of the product or null if no product matches.
+     * @throws IOException
+     */
+    public Product lookupProduct(int productId) throws IOException {
+        return owner(productId).call(ShardServer.LOOKUP_PRODUCT, out -> out.writeInt(productId),
+                in -> in.readBoolean() ? WireFormat.readProduct(in) : null);
+    }
+
+    /**
+     * <p>Resolves a product's associated parts from whichever shards own them.</p>
+     * @param product Product, usually from this router.
+     * @return Copies of the parts that still exist, in the product's line order.
+     * @throws IOException
+     */
+    public ObservableList<Part> lookupAssociatedParts(Product product) throws IOException {
+        int[] partIds = product.getAssociatedPartIds();
+        Map<Integer, Part> resolved = lookupParts(partIds);
+        ObservableList<Part> result = FXCollections.observableArrayList();
+        for (int id : partIds) {
+            Part part = resolved.get(id);
+            if (part != null) {
+                result.add(part);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * <p>Looks up parts by id, sending one batched lookup to each shard that
+     * owns any of them.</p>
+     * @param partIds Part ids, repeats allowed.
+     * @return Copies of the parts found, by id.
+     * @throws IOException
+     */
+    public Map<Integer, Part> lookupParts(int[] partIds) throws IOException {
+        Map<Integer, List<Integer>> idsByShard = new HashMap<>();
+        for (int id : partIds) {
+            idsByShard.computeIfAbsent(shardFor(id), k -> new ArrayList<>()).add(id);
+        }
+
+        Map<Integer, Part> resolved = new HashMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : idsByShard.entrySet()) {
+            int[] ids = entry.getValue().stream().mapToInt(Integer::intValue).distinct().toArray();
+            shards.get(entry.getKey()).call(ShardServer.LOOKUP_PARTS, out -> WireFormat.writeIds(out, ids), in -> {
+                for (int ignored : ids) {
+                    if (in.readBoolean()) {
+                        Part part = WireFormat.readPart(in);
+                        resolved.put(part.getId(), part);
+                    }
+                }
+                return null;
+            });
+        }
+        return resolved;
+    }
+
+    /**
+     * <p>Finds parts with an exact name on every shard.</p>
+     * @param partName Part name, case sensitive.
+     * @return Matching parts ordered by id.
+     * @throws IOException
+     */
+    public ObservableList<Part> lookupPart(String partName) throws IOException {
+        List<Part> result = fanOut(ShardServer.FIND_PARTS_BY_NAME, out -> WireFormat.writeString(out, partName), in -> {
+            List<Part> parts = new ArrayList<>();
+            for (int n = in.readInt(); n > 0; n--) {
+                parts.add(WireFormat.readPart(in));
+            }
+            return parts;
+        });
+        result.sort(Comparator.comparingInt(Part::getId));
+        return FXCollections.observableArrayList(result);
+    }
+
+    /**
+     * <p>Finds products with an exact name on every shard.</p>
+     * @param productName Product name, case sensitive.
+     * @return Matching products ordered by id.
+     * @throws IOException
+     */
+    public ObservableList<Product> lookupProduct(String productName) throws IOException {
+        List<Product> result = fanOut(ShardServer.FIND_PRODUCTS_BY_NAME, out -> WireFormat.writeString(out, productName), in -> {
+            List<Product> products = new ArrayList<>();
+            for (int n = in.readInt(); n > 0; n--) {
+                products.add(WireFormat.readProduct(in));
+            }
+            return products;
+        });
+        result.sort(Comparator.comparingInt(Product::getId));
+        return FXCollections.observableArrayList(result);
+    }
+
+    /**
+     * <p>Runs a query on every shard. Each shard plans it against its own indexes.</p>
+     * @param query Query text, as accepted by InventoryQuery.
+     * @return Matching parts ordered by id.
+     * @throws IOException
+     * @throws IllegalArgumentException If the query is not valid.
+     */
+    public ObservableList<Part> queryParts(String query) throws IOException {
+        QueryParser.parse(query);
+        List<Part> result = fanOut(ShardServer.QUERY_PARTS, out -> WireFormat.writeString(out, query), in -> {
+            List<Part> parts = new ArrayList<>();
+            for (int n = in.readInt(); n > 0; n--) {
+                parts.add(WireFormat.readPart(in));
+            }
+            return parts;
+        });
+        result.sort(Comparator.comparingInt(Part::getId));
+        return FXCollections.observableArrayList(result);
+    }
+
+    /**
+     * <p>Runs a query on every shard for products.</p>
+     * @param query Query text, as accepted by InventoryQuery.
+     * @return Matching products ordered by id.
+     * @throws IOException
+     * @throws IllegalArgumentException If the query is not valid.
+     */
+    public ObservableList<Product> queryProducts(String query) throws IOException {
+        QueryParser.parse(query);
+        List<Product> result = fanOut(ShardServer.QUERY_PRODUCTS, out -> WireFormat.writeString(out, query), in -> {
+            List<Product> products = new ArrayList<>();
+            for (int n = in.readInt(); n > 0; n--) {
+                products.add(WireFormat.readProduct(in));
+            }
+            return products;
+        });
+        result.sort(Comparator.comparingInt(Product::getId));
+        return FXCollections.observableArrayList(result);
+    }
+
+    /**
+     * <p>Updates a part on its owning shard.</p>
+     * @param part Part with updated data.
+     * @return True if the part existed.
+     * @throws IOException
+     */
+    public boolean updatePart(Part part) throws IOException {
+        return owner(part.getId()).call(ShardServer.UPDATE_PART, out -> WireFormat.writePart(out, part), DataInputStream::readBoolean);
+    }
+
+    /**
+     * <p>Updates a product and its associated part ids on its owning shard.</p>
+     * @param product Product with updated data.
+     * @return True if the product existed.
+     * @throws IOException
+     */
+    public boolean updateProduct(Product product) throws IOException {
+        return owner(product.getId()).call(ShardServer.UPDATE_PRODUCT, out -> WireFormat.writeProduct(out, product),
+                DataInputStream::readBoolean);
+    }
+
+    /**
+     * <p>Updates a part on its owning shard only if it still has the version
+     * it was read at. See Inventory.compareAndUpdatePart(Part, long).</p>
+     * @param part Part with updated data.
+     * @param expectedVersion Version of the part when it was read.
+     * @return True if the part was updated. False if it was not found or has
+     * changed since.
+     * @throws IOException
+     */
+    public boolean compareAndUpdatePart(Part part, long expectedVersion) throws IOException {
+        return owner(part.getId()).call(ShardServer.COMPARE_AND_UPDATE_PART, out -> {
+            out.writeLong(expectedVersion);
+            WireFormat.writePart(out, part);
+        }, DataInputStream::readBoolean);
+    }
+
+    /**
+     * <p>Updates a product on its owning shard only if it still has the
+     * version it was read at. See Inventory.compareAndUpdateProduct(Product, long).</p>
+     * @param product Product with updated data.
+     * @param expectedVersion Version of the product when it was read.
+     * @return True if the product was updated. False if it was not found or
+     * has changed since.
+     * @throws IOException
+     */
+    public boolean compareAndUpdateProduct(Product product, long expectedVersion) throws IOException {
+        return owner(product.getId()).call(ShardServer.COMPARE_AND_UPDATE_PRODUCT, out -> {
+            out.writeLong(expectedVersion);
+            WireFormat.writeProduct(out, product);
+        }, DataInputStream::readBoolean);
+    }
+
+    /**
+     * <p>Deletes a part from its owning shard, unless a product on any shard
+     * still uses it.</p>
+     * @param partId Part id.
+     * @return True if the part existed. False if it was not found or a product
+     * still uses it.
+     * @throws IOException
+     */
+    public boolean deletePart(int partId) throws IOException {
+        if (isUsedAnywhere(ShardServer.PART_IN_USE, partId)) {
+            return false;
+        }
+        return owner(partId).call(ShardServer.DELETE_PART, out -> out.writeInt(partId), DataInputStream::readBoolean);
+    }
+
+    /**
+     * <p>Deletes a product from its owning shard, unless a product on any
+     * shard still uses it as a sub-assembly.</p>
+     * @param productId Product id.
+     * @return True if the product existed. False if it was not found or
+     * another product still uses it.
+     * @throws IOException
+     */
+    public boolean deleteProduct(int productId) throws IOException {
+        if (isUsedAnywhere(ShardServer.PRODUCT_IN_USE, productId)) {
+            return false;
+        }
+        return owner(productId).call(ShardServer.DELETE_PRODUCT, out -> out.writeInt(productId), DataInputStream::readBoolean);
+    }
+
+    /**
+     * <p>Closes every shard connection.</p>
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (fanOut != null) {
+            fanOut.shutdownNow();
+        }
+        IOException failure = null;
+        for (ShardClient shard : shards) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private ShardClient owner(int id) {
+        return shards.get(shardFor(id));
+    }
+
+    /**
+     * <p>Asks every shard whether one of its products uses an id.</p>
+     */
+    private boolean isUsedAnywhere(byte op, int id) throws IOException {
+        return fanOut(op, out -> out.writeInt(id), in -> Collections.singletonList(in.readBoolean())).contains(true);
+    }
+
+    /**
+     * <p>Sends the same request to every shard in parallel and concatenates the replies.</p>
+     */
+    private <T> List<T> fanOut(byte op, ShardClient.Writer writer, ShardClient.Reader<List<T>> reader) throws IOException {
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+        for (ShardClient shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return shard.call(op, writer, reader);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, fanOut));
+        }
+        List<T> result = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<T>> future : futures) {
+                result.addAll(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        return result;
+    }
+}
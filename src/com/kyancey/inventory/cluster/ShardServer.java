@@ -0,0 +1,282 @@
+package com.kyancey.inventory.cluster;
+
+import com.kyancey.inventory.entities.BomExplosion;
+import com.kyancey.inventory.entities.InventoryRegistry;
+import com.kyancey.inventory.entities.InventoryStore;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+import com.kyancey.inventory.query.InventoryQuery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Serves one InventoryStore as one shard of a partitioned catalog, the
+ * default Inventory unless another store is given. A ShardRouter decides which
+ * shard owns which id; the server just stores what it is sent and answers
+ * lookups. Each server has its own store, so several shards can run in one
+ * process.</p>
+ * <p>Products refer to their associated parts by id, and those parts usually
+ * live on other shards. The ids are stored and handed back as they are; the
+ * router resolves them against the owning shards. For the same reason a shard
+ * only knows whether its own products use a part or product; before a delete
+ * the router asks every shard with PART_IN_USE or PRODUCT_IN_USE.</p>
+ * <p>Run one per process: <code>java ... com.kyancey.inventory.cluster.ShardServer 7001</code></p>
+ */
+public class ShardServer implements Closeable {
+    static final byte ADD_PART = 1;
+    static final byte ADD_PRODUCT = 2;
+    static final byte LOOKUP_PART = 3;
+    static final byte LOOKUP_PARTS = 4;
+    static final byte LOOKUP_PRODUCT = 5;
+    static final byte FIND_PARTS_BY_NAME = 6;
+    static final byte FIND_PRODUCTS_BY_NAME = 7;
+    static final byte UPDATE_PART = 8;
+    static final byte UPDATE_PRODUCT = 9;
+    static final byte DELETE_PART = 10;
+    static final byte DELETE_PRODUCT = 11;
+    static final byte QUERY_PARTS = 12;
+    static final byte QUERY_PRODUCTS = 13;
+    static final byte COMPARE_AND_UPDATE_PART = 14;
+    static final byte COMPARE_AND_UPDATE_PRODUCT = 15;
+    static final byte PART_IN_USE = 16;
+    static final byte PRODUCT_IN_USE = 17;
+
+    private static final Logger LOGGER = Logger.getLogger(ShardServer.class.getName());
+
+    private final InventoryStore store;
+    private final ServerSocket serverSocket;
+
+    /**
+     * <p>Serves the default Inventory. Binds to a loopback port and starts
+     * accepting routers on a daemon thread.</p>
+     * @param port Port to listen on, or 0 for any free port.
+     * @throws IOException
+     */
+    public ShardServer(int port) throws IOException {
+        this(InventoryRegistry.getDefault(), port);
+    }
+
+    /**
+     * <p>Serves a store. Binds to a loopback port and starts accepting routers
+     * on a daemon thread.</p>
+     * @param store Store that holds this shard.
+     * @param port Port to listen on, or 0 for any free port.
+     * @throws IOException
+     */
+    public ShardServer(InventoryStore store, int port) throws IOException {
+        this.store = store;
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "shard-accept-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * <p>Gets the store this shard serves.</p>
+     * @return Store.
+     */
+    public InventoryStore getStore() {
+        return store;
+    }
+
+    /**
+     * <p>Gets the port the server is listening on.</p>
+     * @return Port number.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * <p>Stops accepting connections.</p>
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread worker = new Thread(() -> serve(socket), "shard-conn-" + socket.getPort());
+                worker.setDaemon(true);
+                worker.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    LOGGER.log(Level.WARNING, "Accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                // A store is not thread safe, so requests from different
+                // connections, and other servers of the same store, take turns.
+                synchronized (store) {
+                    handle(op, in, out);
+                }
+                out.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Leaving the try closes the socket. After a request that does not
+            // decode, the stream is out of step, so nothing more is read from it.
+            LOGGER.log(Level.FINE, "Router connection closed", e);
+        }
+    }
+
+    private void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+            case ADD_PART:
+                out.writeBoolean(store.addPart(WireFormat.readPart(in)));
+                break;
+            case ADD_PRODUCT:
+                out.writeBoolean(store.addProduct(WireFormat.readProduct(in)));
+                break;
+            case LOOKUP_PART: {
+                Part part = store.lookupPart(in.readInt());
+                out.writeBoolean(part != null);
+                if (part != null) {
+                    WireFormat.writePart(out, part);
+                }
+                break;
+            }
+            case LOOKUP_PARTS: {
+                int[] ids = WireFormat.readIds(in);
+                for (int id : ids) {
+                    Part part = store.lookupPart(id);
+                    out.writeBoolean(part != null);
+                    if (part != null) {
+                        WireFormat.writePart(out, part);
+                    }
+                }
+                break;
+            }
+            case LOOKUP_PRODUCT: {
+                Product product = store.lookupProduct(in.readInt());
+                out.writeBoolean(product != null);
+                if (product != null) {
+                    WireFormat.writeProduct(out, product);
+                }
+                break;
+            }
+            case FIND_PARTS_BY_NAME: {
+                List<Part> parts = store.lookupPart(WireFormat.readString(in));
+                out.writeInt(parts.size());
+                for (Part part : parts) {
+                    WireFormat.writePart(out, part);
+                }
+                break;
+            }
+            case FIND_PRODUCTS_BY_NAME: {
+                List<Product> products = store.lookupProduct(WireFormat.readString(in));
+                out.writeInt(products.size());
+                for (Product product : products) {
+                    WireFormat.writeProduct(out, product);
+                }
+                break;
+            }
+            case UPDATE_PART:
+                out.writeBoolean(store.updatePart(WireFormat.readPart(in)));
+                break;
+            case UPDATE_PRODUCT:
+                out.writeBoolean(store.updateProduct(WireFormat.readProduct(in)));
+                break;
+            case COMPARE_AND_UPDATE_PART: {
+                long expectedVersion = in.readLong();
+                out.writeBoolean(store.compareAndUpdatePart(WireFormat.readPart(in), expectedVersion));
+                break;
+            }
+            case COMPARE_AND_UPDATE_PRODUCT: {
+                long expectedVersion = in.readLong();
+                out.writeBoolean(store.compareAndUpdateProduct(WireFormat.readProduct(in), expectedVersion));
+                break;
+            }
+            case DELETE_PART: {
+                Part part = store.lookupPart(in.readInt());
+                out.writeBoolean(part != null && store.deletePart(part));
+                break;
+            }
+            case DELETE_PRODUCT: {
+                Product product = store.lookupProduct(in.readInt());
+                out.writeBoolean(product != null && store.deleteProduct(product));
+                break;
+            }
+            case PART_IN_USE:
+                out.writeBoolean(BomExplosion.isPartUsed(store, in.readInt()));
+                break;
+            case PRODUCT_IN_USE:
+                out.writeBoolean(BomExplosion.isUsedAsSubAssembly(store, in.readInt()));
+                break;
+            case QUERY_PARTS: {
+                List<Part> parts = queryOrEmpty(WireFormat.readString(in), text -> InventoryQuery.findParts(store, text));
+                out.writeInt(parts.size());
+                for (Part part : parts) {
+                    WireFormat.writePart(out, part);
+                }
+                break;
+            }
+            case QUERY_PRODUCTS: {
+                List<Product> products = queryOrEmpty(WireFormat.readString(in), text -> InventoryQuery.findProducts(store, text));
+                out.writeInt(products.size());
+                for (Product product : products) {
+                    WireFormat.writeProduct(out, product);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown shard operation " + op);
+        }
+    }
+
+    /**
+     * <p>Runs a query, answering an invalid one with no matches so the connection
+     * stays in step with the router. The router checks queries before sending.</p>
+     */
+    private static <T> List<T> queryOrEmpty(String query, Function<String, List<T>> find) {
+        try {
+            return find.apply(query);
+        } catch (IllegalArgumentException e) {
+            LOGGER.fine("Rejected query " + query + ": " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * <p>Starts a shard server and keeps the process running.</p>
+     * @param args Port to listen on.
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7001;
+        ShardServer server = new ShardServer(port);
+        LOGGER.info("Shard listening on 127.0.0.1:" + server.getPort());
+        Thread.currentThread().join();
+    }
+}
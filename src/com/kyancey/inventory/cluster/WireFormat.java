@@ -0,0 +1,228 @@
+package com.kyancey.inventory.cluster;
+
+import com.kyancey.inventory.entities.InHouse;
+import com.kyancey.inventory.entities.Outsourced;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Binary encoding of parts and products shared by everything in this package
+ * that talks over a socket. Products travel with the ids and quantities of
+ * their associated parts and sub-assemblies, which is all a product holds
+ * anyway. Prices travel as a long number of cents, exactly as stored.</p>
+ * <p>Strings are a length in bytes followed by UTF-8, so unlike writeUTF()
+ * there is no 64 KB limit. Lengths read from the wire are checked before
+ * anything is allocated, and a bad one is an IOException, so a reader that
+ * is out of step fails instead of allocating whatever it happens to read.</p>
+ */
+final class WireFormat {
+    private static final byte IN_HOUSE = 0;
+    private static final byte OUTSOURCED = 1;
+
+    /** Longest string accepted, in UTF-8 bytes. */
+    static final int MAX_STRING_BYTES = 16 * 1024 * 1024;
+
+    /** Most ids or lines accepted in one array. */
+    static final int MAX_COUNT = 64 * 1024 * 1024;
+
+    /** Longest encoded entry accepted, in bytes. */
+    static final int MAX_PAYLOAD_BYTES = 64 * 1024 * 1024;
+
+    private WireFormat() {
+    }
+
+    /**
+     * <p>Writes a part.</p>
+     * @param out Stream to write to.
+     * @param part Part to write.
+     * @throws IOException
+     */
+    static void writePart(DataOutputStream out, Part part) throws IOException {
+        out.writeByte(part instanceof Outsourced ? OUTSOURCED : IN_HOUSE);
+        out.writeInt(part.getId());
+        out.writeLong(part.getVersion());
+        writeString(out, part.getName());
+        out.writeLong(part.getPriceCents());
+        out.writeInt(part.getStock());
+        out.writeInt(part.getMin());
+        out.writeInt(part.getMax());
+        if (part instanceof Outsourced) {
+            writeString(out, ((Outsourced) part).getCompanyName());
+        } else {
+            out.writeInt(((InHouse) part).getMachineId());
+        }
+    }
+
+    /**
+     * <p>Reads a part written by writePart().</p>
+     * @param in Stream to read from.
+     * @return New part.
+     * @throws IOException
+     */
+    static Part readPart(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        int id = in.readInt();
+        long version = in.readLong();
+        String name = readString(in);
+        long priceCents = in.readLong();
+        int stock = in.readInt();
+        int min = in.readInt();
+        int max = in.readInt();
+        Part part = type == OUTSOURCED
+                ? Outsourced.ofCents(id, name, priceCents, stock, min, max, readString(in))
+                : InHouse.ofCents(id, name, priceCents, stock, min, max, in.readInt());
+        part.setVersion(version);
+        return part;
+    }
+
+    /**
+     * <p>Writes a product with its associated part and sub-assembly ids and
+     * quantities.</p>
+     * @param out Stream to write to.
+     * @param product Product to write.
+     * @throws IOException
+     */
+    static void writeProduct(DataOutputStream out, Product product) throws IOException {
+        out.writeInt(product.getId());
+        out.writeLong(product.getVersion());
+        writeString(out, product.getName());
+        out.writeLong(product.getPriceCents());
+        out.writeInt(product.getStock());
+        out.writeInt(product.getMin());
+        out.writeInt(product.getMax());
+        int[] partIds = product.getAssociatedPartIds();
+        int[] quantities = product.getAssociatedPartQuantities();
+        out.writeInt(partIds.length);
+        for (int i = 0; i < partIds.length; i++) {
+            out.writeInt(partIds[i]);
+            out.writeInt(quantities[i]);
+        }
+        int[] subIds = product.getSubAssemblyIds();
+        int[] subQuantities = product.getSubAssemblyQuantities();
+        out.writeInt(subIds.length);
+        for (int i = 0; i < subIds.length; i++) {
+            out.writeInt(subIds[i]);
+            out.writeInt(subQuantities[i]);
+        }
+    }
+
+    /**
+     * <p>Reads a product written by writeProduct().</p>
+     * @param in Stream to read from.
+     * @return New product.
+     * @throws IOException
+     */
+    static Product readProduct(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        long version = in.readLong();
+        String name = readString(in);
+        long priceCents = in.readLong();
+        Product product = Product.ofCents(id, name, priceCents, in.readInt(), in.readInt(), in.readInt());
+        int[] partIds = new int[readCount(in)];
+        int[] quantities = new int[partIds.length];
+        for (int i = 0; i < partIds.length; i++) {
+            partIds[i] = in.readInt();
+            quantities[i] = in.readInt();
+        }
+        product.setAssociatedParts(partIds, quantities);
+        int[] subIds = new int[readCount(in)];
+        int[] subQuantities = new int[subIds.length];
+        for (int i = 0; i < subIds.length; i++) {
+            subIds[i] = in.readInt();
+            subQuantities[i] = in.readInt();
+        }
+        product.setSubAssemblies(subIds, subQuantities);
+        product.setVersion(version);
+        return product;
+    }
+
+    /**
+     * <p>Writes a length-prefixed array of ids.</p>
+     * @param out Stream to write to.
+     * @param ids Ids to write.
+     * @throws IOException
+     */
+    static void writeIds(DataOutputStream out, int[] ids) throws IOException {
+        out.writeInt(ids.length);
+        for (int id : ids) {
+            out.writeInt(id);
+        }
+    }
+
+    /**
+     * <p>Reads an array written by writeIds().</p>
+     * @param in Stream to read from.
+     * @return Ids.
+     * @throws IOException
+     */
+    static int[] readIds(DataInputStream in) throws IOException {
+        int[] ids = new int[readCount(in)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = in.readInt();
+        }
+        return ids;
+    }
+
+    /**
+     * <p>Writes a string as its UTF-8 length and bytes.</p>
+     * @param out Stream to write to.
+     * @param text String to write.
+     * @throws IOException
+     */
+    static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * <p>Reads a string written by writeString().</p>
+     * @param in Stream to read from.
+     * @return String.
+     * @throws IOException If the stream fails or the length is out of range.
+     */
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * <p>Reads the element count of an array.</p>
+     * @param in Stream to read from.
+     * @return Count.
+     * @throws IOException If the stream fails or the count is out of range.
+     */
+    static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("Bad count " + count);
+        }
+        return count;
+    }
+
+    /**
+     * <p>Reads a length-prefixed block of bytes, such as an encoded log entry.</p>
+     * @param in Stream to read from.
+     * @return Bytes.
+     * @throws IOException If the stream fails or the length is out of range.
+     */
+    static byte[] readPayload(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD_BYTES) {
+            throw new IOException("Bad payload length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,140 @@
+package com.kyancey.inventory.controllers;
+
+import com.kyancey.inventory.entities.InventoryRegistry;
+import com.kyancey.inventory.entities.InventoryStore;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+import com.kyancey.inventory.util.FuzzyIndex;
+import javafx.collections.ListChangeListener;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Typo tolerant name search for the search fields, as an alternative to the
+ * substring search in SearchPredicates. The indexes follow the inventory lists,
+ * so they are always current and a search never scans the inventory. Each
+ * store has its own, built the first time the store is searched; the methods
+ * without a store search the default one.</p>
+ */
+public final class FuzzySearch {
+    /** Most results shown for one fuzzy search. */
+    public static final int RESULT_LIMIT = 500;
+
+    /**
+     * <p>The name indexes of one store.</p>
+     */
+    private static final class Index {
+        private final FuzzyIndex<Part> partIndex = new FuzzyIndex<>();
+        private final FuzzyIndex<Product> productIndex = new FuzzyIndex<>();
+
+        Index(InventoryStore store) {
+            for (Part p : store.getAllPartsView()) {
+                partIndex.put(p, p.getName());
+            }
+            for (Product p : store.getAllProductsView()) {
+                productIndex.put(p, p.getName());
+            }
+            store.getAllPartsView().addListener((ListChangeListener<Part>) c -> {
+                while (c.next()) {
+                    if (c.wasUpdated()) {
+                        for (int i = c.getFrom(); i < c.getTo(); i++) {
+                            partIndex.put(c.getList().get(i), c.getList().get(i).getName());
+                        }
+                    } else {
+                        c.getRemoved().forEach(partIndex::remove);
+                        c.getAddedSubList().forEach(p -> partIndex.put(p, p.getName()));
+                    }
+                }
+            });
+            store.getAllProductsView().addListener((ListChangeListener<Product>) c -> {
+                while (c.next()) {
+                    if (c.wasUpdated()) {
+                        for (int i = c.getFrom(); i < c.getTo(); i++) {
+                            productIndex.put(c.getList().get(i), c.getList().get(i).getName());
+                        }
+                    } else {
+                        c.getRemoved().forEach(productIndex::remove);
+                        c.getAddedSubList().forEach(p -> productIndex.put(p, p.getName()));
+                    }
+                }
+            });
+        }
+    }
+
+    private FuzzySearch() {
+    }
+
+    private static Index index(InventoryStore store) {
+        return store.getIndex(Index.class, Index::new);
+    }
+
+    /**
+     * <p>Finds the parts in the default store whose names are closest to the
+     * search text.</p>
+     * @param text Search text
+     * @return Matching parts, best first.
+     */
+    public static List<Part> findParts(String text) {
+        return findParts(InventoryRegistry.getDefault(), text);
+    }
+
+    /**
+     * <p>Finds the parts whose names are closest to the search text.</p>
+     * @param store Store to search.
+     * @param text Search text
+     * @return Matching parts, best first.
+     */
+    public static List<Part> findParts(InventoryStore store, String text) {
+        return index(store).partIndex.search(text, RESULT_LIMIT);
+    }
+
+    /**
+     * <p>Finds the products in the default store whose names are closest to
+     * the search text.</p>
+     * @param text Search text
+     * @return Matching products, best first.
+     */
+    public static List<Product> findProducts(String text) {
+        return findProducts(InventoryRegistry.getDefault(), text);
+    }
+
+    /**
+     * <p>Finds the products whose names are closest to the search text.</p>
+     * @param store Store to search.
+     * @param text Search text
+     * @return Matching products, best first.
+     */
+    public static List<Product> findProducts(InventoryStore store, String text) {
+        return index(store).productIndex.search(text, RESULT_LIMIT);
+    }
+
+    /**
+     * <p>Shows ranked search results in a table. With no search text the table
+     * goes back to showing everything in the table's own order.</p>
+     * @param results Ranked results.
+     * @param text Search text
+     * @param filtered Filtered list under the table.
+     * @param sorted Sorted list over the filtered list, shown by the table.
+     * @param order Comparator of the table's own order, null for list order.
+     * @param <T> Part or Product.
+     */
+    public static <T> void show(List<T> results, String text, FilteredList<T> filtered, SortedList<T> sorted,
+                                Comparator<? super T> order) {
+        if (text == null || text.isEmpty()) {
+            filtered.setPredicate(null);
+            sorted.setComparator(order);
+            return;
+        }
+        Map<T, Integer> rank = new IdentityHashMap<>();
+        for (T item : results) {
+            rank.put(item, rank.size());
+        }
+        filtered.setPredicate(rank::containsKey);
+        sorted.setComparator((a, b) -> Integer.compare(rank.get(a), rank.get(b)));
+    }
+}
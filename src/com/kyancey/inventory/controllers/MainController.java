@@ -2,18 +2,30 @@ package com.kyancey.inventory.controllers;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.ResourceBundle;
-import java.util.function.Predicate;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.kyancey.inventory.entities.FormMode;
-import com.kyancey.inventory.entities.Inventory;
 import com.kyancey.inventory.entities.Part;
 import com.kyancey.inventory.entities.Product;
 import com.kyancey.inventory.entities.*;
-import javafx.beans.property.ReadOnlyObjectWrapper;
+import com.kyancey.inventory.metrics.HotPath;
+import com.kyancey.inventory.query.InventoryQuery;
+import com.kyancey.inventory.util.Money;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXMLLoader;
@@ -29,6 +41,10 @@ import javafx.stage.Stage;
  * FUTURE ENHANCEMENT: When a part is selected, highlight all of the products that contain
  * that part in the products table. Inversely, when a product is selected, highlight all the
  * parts associated with that product in the parts table.
+ * <p>The form shows the default inventory unless setInventory() binds it to
+ * another store. Searches, suggestions, sorting and the summary use the
+ * bound store's own indexes. Location stock follows the default store only,
+ * so the location choice is turned off for any other.</p>
  */
 public class MainController {
     @FXML
@@ -37,8 +53,35 @@ public class MainController {
     private URL location;
 
     private Stage primaryStage;
+    private InventoryStore store = InventoryRegistry.getDefault();
     private ObservableList<Part> parts;
     private ObservableList<Product> products;
+    private FilteredList<Part> filteredParts;
+    private FilteredList<Product> filteredProducts;
+    private SortedList<Part> sortedParts;
+    private SortedList<Product> sortedProducts;
+    private final Map<ObservableList<Part>, OrderView<Part>> partViews = new IdentityHashMap<>();
+    private final Map<ObservableList<Product>, OrderView<Product>> productViews = new IdentityHashMap<>();
+    private Comparator<Part> partOrder;
+    private Comparator<Product> productOrder;
+    private QueryView<Part> partQuery;
+    private QueryView<Product> productQuery;
+    private boolean showingOrder;
+
+    /**
+     * <p>The filtered and sorted lists over one maintained order. Kept per
+     * order, so going back to a sort column shown before reuses them instead
+     * of building new ones over the whole inventory.</p>
+     */
+    private static final class OrderView<T> {
+        final FilteredList<T> filtered;
+        final SortedList<T> sorted;
+
+        OrderView(ObservableList<T> base) {
+            filtered = new FilteredList<>(base);
+            sorted = new SortedList<>(filtered);
+        }
+    }
 
     // Buttons
     @FXML
@@ -77,12 +120,44 @@ public class MainController {
     private TableColumn<Product, Integer> productInventoryLevel;
     @FXML
     private TableColumn<Product, String> productPrice;
+    @FXML
+    public TableView<GroupTotals> summaryTable;
+    @FXML
+    private TableColumn<GroupTotals, String> summaryGroup;
+    @FXML
+    private TableColumn<GroupTotals, Integer> summaryPartCount;
+    @FXML
+    private TableColumn<GroupTotals, Long> summaryUnits;
+    @FXML
+    private TableColumn<GroupTotals, String> summaryValue;
+    @FXML
+    private TableColumn<GroupTotals, Integer> summaryBelowMin;
 
     // Fields
     @FXML
     public TextField productSearchField;
     @FXML
     public TextField partSearchField;
+    @FXML
+    public ComboBox<Location> locationChoice;
+    @FXML
+    public CheckBox partFuzzyCheck;
+    @FXML
+    public CheckBox productFuzzyCheck;
+
+    // Shown when a store's budget refuses an edit.
+    static final String BUDGET_WARNING = "This inventory is at its limit. Try again later.";
+
+    // Choice that shows the total over every location.
+    private static final Location ALL_LOCATIONS = new Location(-1, "All Locations");
+
+    // Transfers the stock columns have caught up with, moved on the FX thread.
+    private final LongProperty transfers = new SimpleLongProperty();
+    private final AtomicBoolean transferPending = new AtomicBoolean();
+
+    // Listeners on location stock, which outlives the form; removed in detach().
+    private ListChangeListener<Location> locationListener;
+    private Runnable transferListener;
 
     /**
      * Sets up our windows on startup.
@@ -90,78 +165,304 @@ public class MainController {
     @FXML
     void initialize() {
         // Set columns up for part table
-        partID.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getId()));
-        partName.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getName()));
-        partInventoryLevel.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getStock()));
-        partPrice.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(String.format("%.2f", cellData.getValue().getPrice())));
+        partID.setCellValueFactory(cellData -> cellData.getValue().idProperty().asObject());
+        partName.setCellValueFactory(cellData -> cellData.getValue().nameProperty());
+        partInventoryLevel.setCellValueFactory(cellData -> Bindings.createObjectBinding(
+                () -> stockAt(cellData.getValue()), cellData.getValue().stockProperty(), locationChoice.valueProperty(),
+                transfers));
+        partPrice.setCellValueFactory(cellData -> Bindings.createStringBinding(
+                () -> Money.format(cellData.getValue().getPriceCents()), cellData.getValue().priceCentsProperty()));
 
         // Set columns up for product table
-        productID.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getId()));
-        productName.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getName()));
-        productInventoryLevel.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getStock()));
-        productPrice.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(String.format("%.2f", cellData.getValue().getPrice())));
+        productID.setCellValueFactory(cellData -> cellData.getValue().idProperty().asObject());
+        productName.setCellValueFactory(cellData -> cellData.getValue().nameProperty());
+        productInventoryLevel.setCellValueFactory(cellData -> Bindings.createObjectBinding(
+                () -> stockAt(cellData.getValue()), cellData.getValue().stockProperty(), locationChoice.valueProperty(),
+                transfers));
+        productPrice.setCellValueFactory(cellData -> Bindings.createStringBinding(
+                () -> Money.format(cellData.getValue().getPriceCents()), cellData.getValue().priceCentsProperty()));
+
+        // Set columns up for the summary table
+        summaryGroup.setCellValueFactory(cellData -> new ReadOnlyStringWrapper(cellData.getValue().getGroup()));
+        summaryPartCount.setCellValueFactory(cellData -> cellData.getValue().partCountProperty().asObject());
+        summaryUnits.setCellValueFactory(cellData -> cellData.getValue().unitsProperty().asObject());
+        summaryValue.setCellValueFactory(cellData -> Bindings.createStringBinding(
+                () -> Money.format(cellData.getValue().getValueCents()),
+                cellData.getValue().valueCentsProperty()));
+        summaryBelowMin.setCellValueFactory(cellData -> cellData.getValue().belowMinCountProperty().asObject());
+
+        // Set up location choice
+        ObservableList<Location> choices = FXCollections.observableArrayList(ALL_LOCATIONS);
+        choices.addAll(LocationStock.getLocations());
+        locationListener = c -> {
+            choices.setAll(ALL_LOCATIONS);
+            choices.addAll(LocationStock.getLocations());
+        };
+        LocationStock.getLocations().addListener(locationListener);
+        locationChoice.setItems(choices);
+        locationChoice.setValue(ALL_LOCATIONS);
+        transferListener = () -> {
+            if (transferPending.compareAndSet(false, true)) {
+                Platform.runLater(() -> {
+                    transferPending.set(false);
+                    transfers.set(LocationStock.getTransferCount());
+                });
+            }
+        };
+        LocationStock.addTransferListener(transferListener);
 
         // Set up filtered lists
-        parts = Inventory.getAllParts();
-        products = Inventory.getAllProducts();
-        FilteredList<Part> filteredParts = new FilteredList<>(parts);
-        FilteredList<Product> filteredProducts = new FilteredList<>(products);
-
-        // Set items and event listener callback to change predicate
-        partTable.setItems(filteredParts);
-        productTable.setItems(filteredProducts);
-        partSearchField.textProperty().addListener((observable, oldValue, newValue) -> filteredParts.setPredicate(createPartPredicate(newValue)));
-        productSearchField.textProperty().addListener((observable, oldValue, newValue) -> filteredProducts.setPredicate(createProductPredicate(newValue)));
+        showStore();
+
+        // Set event listener callback to change predicate
+        partSearchField.textProperty().addListener((observable, oldValue, newValue) -> searchParts(newValue));
+        productSearchField.textProperty().addListener((observable, oldValue, newValue) -> searchProducts(newValue));
+        SearchSuggestions.attach(partSearchField, text -> SearchSuggestions.suggestPartNames(store, text));
+        SearchSuggestions.attach(productSearchField, text -> SearchSuggestions.suggestProductNames(store, text));
+        partFuzzyCheck.selectedProperty().addListener((observable, oldValue, newValue) ->
+                searchParts(partSearchField.getText()));
+        productFuzzyCheck.selectedProperty().addListener((observable, oldValue, newValue) ->
+                searchProducts(productSearchField.getText()));
+
+        // Serve column sorts from the maintained inventory orders
+        partTable.setSortPolicy(table -> {
+            showPartOrder();
+            return true;
+        });
+        productTable.setSortPolicy(table -> {
+            showProductOrder();
+            return true;
+        });
+        locationChoice.valueProperty().addListener((observable, oldValue, newValue) -> {
+            partTable.sort();
+            productTable.sort();
+        });
     }
 
     /**
-     * <p>Creates a product predicate for the given search text.</p>
-     * @param text Search text
-     * @return Product predicate
+     * <p>Points the tables and summary at the bound store, and turns off the
+     * location choice, which only follows the default store.</p>
      */
-    private Predicate<Product> createProductPredicate(String text) {
-        return product -> {
-            if (text == null || text.isEmpty()) { return true; }
-            return searchFindsProduct(product, text);
-        };
+    private void showStore() {
+        parts = store.getAllPartsView();
+        products = store.getAllProductsView();
+        partViews.clear();
+        productViews.clear();
+        partOrder = null;
+        productOrder = null;
+        OrderView<Part> partView = partViews.computeIfAbsent(parts, OrderView::new);
+        OrderView<Product> productView = productViews.computeIfAbsent(products, OrderView::new);
+        filteredParts = partView.filtered;
+        filteredProducts = productView.filtered;
+        sortedParts = partView.sorted;
+        sortedProducts = productView.sorted;
+        if (partQuery != null) {
+            partQuery.stop();
+            productQuery.stop();
+        }
+        partQuery = new QueryView<>(parts, text -> InventoryQuery.planParts(store, text));
+        productQuery = new QueryView<>(products, text -> InventoryQuery.planProducts(store, text));
+        partTable.setItems(sortedParts);
+        productTable.setItems(sortedProducts);
+
+        summaryTable.setItems(InventoryAggregates.getGroups(store));
+        boolean isDefault = store == InventoryRegistry.getDefault();
+        if (!isDefault) {
+            locationChoice.setValue(ALL_LOCATIONS);
+        }
+        locationChoice.setDisable(!isDefault);
     }
 
     /**
-     * <p>Creates a part predicate for the given search text.</p>
+     * <p>Filters the part table by the search text, ranked by closeness when
+     * fuzzy search is checked. A query an index can answer is shown straight
+     * from the index; a malformed one empties the table and shows what is wrong
+     * with it in the table's place.</p>
      * @param text Search text
-     * @return Part predicate
      */
-    private Predicate<Part> createPartPredicate(String text) {
-        return part -> {
-            if (text == null || text.isEmpty()) {
-                return true;
+    private void searchParts(String text) {
+        long start = System.nanoTime();
+        partTable.setPlaceholder(null);
+        if (partQuery.isShowing()) {
+            partQuery.stop();
+            partTable.setItems(sortedParts);
+            showPartOrder();
+        }
+        try {
+            if (partFuzzyCheck.isSelected()) {
+                FuzzySearch.show(FuzzySearch.findParts(store, text), text, filteredParts, sortedParts, partOrder);
+            } else if (partQuery.show(text, partTable.getComparator())) {
+                partTable.setItems(partQuery.getSorted());
+            } else {
+                sortedParts.setComparator(partOrder);
+                filteredParts.setPredicate(SearchPredicates.createPartPredicate(store, text));
             }
-            return searchFindsPart(part, text);
-        };
+        } catch (IllegalArgumentException e) {
+            filteredParts.setPredicate(part -> false);
+            partTable.setPlaceholder(new Label(e.getMessage()));
+        }
+        HotPath.SEARCH_PARTS.recordSince(start);
     }
 
     /**
-     * <p>Compares the given product to the search text to identify a match.</p>
-     * @param part Part to be compared
+     * <p>Filters the product table by the search text, ranked by closeness when
+     * fuzzy search is checked. A query an index can answer is shown straight
+     * from the index; a malformed one empties the table and shows what is wrong
+     * with it in the table's place.</p>
      * @param text Search text
-     * @return True if text matches part id or name. False otherwise.
      */
-    private boolean searchFindsPart(Part part, String text) {
-        boolean foundName = part.getName().toLowerCase().contains(text.toLowerCase());
-        boolean foundPartID = Integer.toString(part.getId()).equals(text.toLowerCase());
-        return  foundName || foundPartID;
+    private void searchProducts(String text) {
+        long start = System.nanoTime();
+        productTable.setPlaceholder(null);
+        if (productQuery.isShowing()) {
+            productQuery.stop();
+            productTable.setItems(sortedProducts);
+            showProductOrder();
+        }
+        try {
+            if (productFuzzyCheck.isSelected()) {
+                FuzzySearch.show(FuzzySearch.findProducts(store, text), text, filteredProducts, sortedProducts,
+                        productOrder);
+            } else if (productQuery.show(text, productTable.getComparator())) {
+                productTable.setItems(productQuery.getSorted());
+            } else {
+                sortedProducts.setComparator(productOrder);
+                filteredProducts.setPredicate(SearchPredicates.createProductPredicate(store, text));
+            }
+        } catch (IllegalArgumentException e) {
+            filteredProducts.setPredicate(product -> false);
+            productTable.setPlaceholder(new Label(e.getMessage()));
+        }
+        HotPath.SEARCH_PRODUCTS.recordSince(start);
     }
 
     /**
-     * <p>compares the given product to the search text to identify a match.</p>
-     * @param product Product to be compared
-     * @param text Search text
-     * @return True if text matches product id or name. False otherwise.
+     * <p>Shows the parts in the order of the table's sort columns. A single sort
+     * column with a maintained order is shown straight from that order, so
+     * nothing is sorted. Anything else (several columns, or stock at one
+     * location) falls back to sorting with the table's comparator.</p>
      */
-    private boolean searchFindsProduct(Product product, String text) {
-        boolean foundName = product.getName().toLowerCase().contains(text.toLowerCase());
-        boolean foundProductID = Integer.toString(product.getId()).equals(text.toLowerCase());
-        return foundName || foundProductID;
+    private void showPartOrder() {
+        if (showingOrder) {
+            return;
+        }
+        if (partQuery.isShowing()) {
+            partQuery.setOrder(partTable.getComparator());
+            return;
+        }
+        ObservableList<Part> base = parts;
+        Comparator<Part> comparator = null;
+        if (partTable.getSortOrder().size() == 1) {
+            TableColumn<Part, ?> column = partTable.getSortOrder().get(0);
+            SortKey key = column == partID ? SortKey.ID
+                    : column == partName ? SortKey.NAME
+                    : column == partPrice ? SortKey.PRICE
+                    : column == partInventoryLevel && isAllLocations() ? SortKey.STOCK
+                    : null;
+            if (key != null) {
+                SortedOrder<Part> order = InventoryOrders.parts(store, key);
+                base = column.getSortType() == TableColumn.SortType.ASCENDING ? order : order.descending();
+            } else {
+                comparator = partTable.getComparator();
+            }
+        } else if (!partTable.getSortOrder().isEmpty()) {
+            comparator = partTable.getComparator();
+        }
+        partOrder = comparator;
+        if (base == filteredParts.getSource() && comparator == sortedParts.getComparator()) {
+            return;
+        }
+        showingOrder = true;
+        try {
+            OrderView<Part> view = partViews.computeIfAbsent(base, OrderView::new);
+            view.filtered.setPredicate(filteredParts.getPredicate());
+            view.sorted.setComparator(comparator);
+            filteredParts = view.filtered;
+            sortedParts = view.sorted;
+            partTable.setItems(sortedParts);
+        } finally {
+            showingOrder = false;
+        }
+    }
+
+    /**
+     * <p>Shows the products in the order of the table's sort columns, the same
+     * way as showPartOrder().</p>
+     */
+    private void showProductOrder() {
+        if (showingOrder) {
+            return;
+        }
+        if (productQuery.isShowing()) {
+            productQuery.setOrder(productTable.getComparator());
+            return;
+        }
+        ObservableList<Product> base = products;
+        Comparator<Product> comparator = null;
+        if (productTable.getSortOrder().size() == 1) {
+            TableColumn<Product, ?> column = productTable.getSortOrder().get(0);
+            SortKey key = column == productID ? SortKey.ID
+                    : column == productName ? SortKey.NAME
+                    : column == productPrice ? SortKey.PRICE
+                    : column == productInventoryLevel && isAllLocations() ? SortKey.STOCK
+                    : null;
+            if (key != null) {
+                SortedOrder<Product> order = InventoryOrders.products(store, key);
+                base = column.getSortType() == TableColumn.SortType.ASCENDING ? order : order.descending();
+            } else {
+                comparator = productTable.getComparator();
+            }
+        } else if (!productTable.getSortOrder().isEmpty()) {
+            comparator = productTable.getComparator();
+        }
+        productOrder = comparator;
+        if (base == filteredProducts.getSource() && comparator == sortedProducts.getComparator()) {
+            return;
+        }
+        showingOrder = true;
+        try {
+            OrderView<Product> view = productViews.computeIfAbsent(base, OrderView::new);
+            view.filtered.setPredicate(filteredProducts.getPredicate());
+            view.sorted.setComparator(comparator);
+            filteredProducts = view.filtered;
+            sortedProducts = view.sorted;
+            productTable.setItems(sortedProducts);
+        } finally {
+            showingOrder = false;
+        }
+    }
+
+    /**
+     * <p>Checks if the inventory level columns show the total for all locations.</p>
+     * @return True if no single location is chosen.
+     */
+    private boolean isAllLocations() {
+        Location chosen = locationChoice.getValue();
+        return chosen == null || chosen == ALL_LOCATIONS;
+    }
+
+    /**
+     * <p>Gets the stock of a part at the chosen location.</p>
+     * @param part Part in the row.
+     * @return Stock at the location, or the total for all locations.
+     */
+    private int stockAt(Part part) {
+        if (isAllLocations()) {
+            return part.getStock();
+        }
+        return LocationStock.getStock(part, locationChoice.getValue());
+    }
+
+    /**
+     * <p>Gets the stock of a product at the chosen location.</p>
+     * @param product Product in the row.
+     * @return Stock at the location, or the total for all locations.
+     */
+    private int stockAt(Product product) {
+        if (isAllLocations()) {
+            return product.getStock();
+        }
+        return LocationStock.getStock(product, locationChoice.getValue());
     }
 
     /**
@@ -172,6 +473,23 @@ public class MainController {
         this.primaryStage = primaryStage;
     }
 
+    /**
+     * <p>Binds the form to an inventory store. Forms opened from here edit
+     * the same store.</p>
+     * @param store Store to show.
+     */
+    public void setInventory(InventoryStore store) {
+        if (store == this.store) {
+            return;
+        }
+        this.store = store;
+        partSearchField.setText("");
+        productSearchField.setText("");
+        partTable.getSortOrder().clear();
+        productTable.getSortOrder().clear();
+        showStore();
+    }
+
     /**
      * <p>Closes app when button is clicked.</p>
      * @param action Provided by event system
@@ -181,6 +499,18 @@ public class MainController {
         primaryStage.close();
     }
 
+    /**
+     * <p>Lets go of what outlives the form: the location stock listeners and
+     * any query the tables follow. Called before another form replaces the
+     * scene; returning makes a new Main form, so this one can be collected.</p>
+     */
+    private void detach() {
+        LocationStock.getLocations().removeListener(locationListener);
+        LocationStock.removeTransferListener(transferListener);
+        partQuery.stop();
+        productQuery.stop();
+    }
+
     /**
      * <p>Transitions to Part form in add mode.</p>
      * @param action Provided by event system.
@@ -191,16 +521,20 @@ public class MainController {
         // Load the fxml file
         FXMLLoader loader = new FXMLLoader();
         loader.setLocation(getClass().getResource("../fxml/part.fxml"));
+        long start = System.nanoTime();
         Parent root = loader.load();
+        HotPath.FXML_LOAD.recordSince(start);
 
         // Set the scene and pass inventory to the controller
         Scene scene = new Scene(root);
         PartController controller = loader.getController();
         controller.setStage(primaryStage);
+        controller.setInventory(store);
         controller.setMode(FormMode.ADD);
 
         // Set the window up
         primaryStage.setTitle("Inventory Management System");
+        detach();
         primaryStage.setScene(scene);
         primaryStage.show();
     }
@@ -217,17 +551,21 @@ public class MainController {
         // Load the fxml file
         FXMLLoader loader = new FXMLLoader();
         loader.setLocation(getClass().getResource("../fxml/part.fxml"));
+        long start = System.nanoTime();
         Parent root = loader.load();
+        HotPath.FXML_LOAD.recordSince(start);
 
         // Set the scene and pass inventory to the controller
         Scene scene = new Scene(root);
         PartController controller = loader.getController();
         controller.setStage(primaryStage);
+        controller.setInventory(store);
         controller.setPart(partTable.getSelectionModel().getSelectedItem());
         controller.setMode(FormMode.MODIFY);
 
         // Set the window up
         primaryStage.setTitle("Inventory Management System");
+        detach();
         primaryStage.setScene(scene);
         primaryStage.show();
     }
@@ -242,16 +580,20 @@ public class MainController {
         // Load the fxml file
         FXMLLoader loader = new FXMLLoader();
         loader.setLocation(getClass().getResource("../fxml/product.fxml"));
+        long start = System.nanoTime();
         Parent root = loader.load();
+        HotPath.FXML_LOAD.recordSince(start);
 
         // Set the scene and pass inventory to the controller
         Scene scene = new Scene(root);
         ProductController controller = loader.getController();
         controller.setStage(primaryStage);
+        controller.setInventory(store);
         controller.setMode(FormMode.ADD);
 
         // Set the window up
         primaryStage.setTitle("Inventory Management System");
+        detach();
         primaryStage.setScene(scene);
         primaryStage.show();
     }
@@ -268,17 +610,21 @@ public class MainController {
         // Load the fxml file
         FXMLLoader loader = new FXMLLoader();
         loader.setLocation(getClass().getResource("../fxml/product.fxml"));
+        long start = System.nanoTime();
         Parent root = loader.load();
+        HotPath.FXML_LOAD.recordSince(start);
 
         // Set the scene and pass inventory to the controller
         Scene scene = new Scene(root);
         ProductController controller = loader.getController();
         controller.setStage(primaryStage);
+        controller.setInventory(store);
         controller.setProduct(productTable.getSelectionModel().getSelectedItem());
         controller.setMode(FormMode.MODIFY);
 
         // Set the window up
         primaryStage.setTitle("Inventory Management System");
+        detach();
         primaryStage.setScene(scene);
         primaryStage.show();
     }
@@ -295,13 +641,19 @@ public class MainController {
 
         if (selectedProduct == null) return;
 
-        if (selectedProduct.getAllAssociatedParts().size() == 0) {
+        if (BomExplosion.isUsedAsSubAssembly(store, selectedProduct.getId())) {
+            Alert alert = new Alert(Alert.AlertType.WARNING, "Can't delete product because other products" +
+                    " use it as a sub-assembly.");
+            alert.showAndWait();
+        }
+        else if (selectedProduct.getAssociatedPartCount() == 0) {
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "Are you sure you want to delete the product?");
             Optional<ButtonType> buttonType = alert.showAndWait();
 
             if (buttonType.isPresent() && buttonType.get() == ButtonType.OK) {
-                Inventory.deleteProduct(productTable.getSelectionModel().getSelectedItem());
-                products.remove(productTable.getSelectionModel().getSelectedItem());
+                long rejected = store.getRejectedCount();
+                store.deleteProduct(productTable.getSelectionModel().getSelectedItem());
+                warnIfRefused(rejected);
             }
         }
         else {
@@ -321,12 +673,31 @@ public class MainController {
 
         if (selectedPart == null) return;
 
+        if (BomExplosion.isPartUsed(store, selectedPart.getId())) {
+            Alert alert = new Alert(Alert.AlertType.WARNING, "Can't delete part because products still" +
+                    " use it.");
+            alert.showAndWait();
+            return;
+        }
+
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "Are you sure you want to delete the part?");
         Optional<ButtonType> buttonType = alert.showAndWait();
 
         if (buttonType.isPresent() && buttonType.get() == ButtonType.OK) {
-            Inventory.deletePart(partTable.getSelectionModel().getSelectedItem());
-            parts.remove(partTable.getSelectionModel().getSelectedItem());
+            long rejected = store.getRejectedCount();
+            store.deletePart(partTable.getSelectionModel().getSelectedItem());
+            warnIfRefused(rejected);
+        }
+    }
+
+    /**
+     * <p>Tells the user if the store's budget refused an edit.</p>
+     * @param rejected Store's refused count from before the edit.
+     */
+    private void warnIfRefused(long rejected) {
+        if (store.getRejectedCount() != rejected) {
+            Alert alert = new Alert(Alert.AlertType.WARNING, BUDGET_WARNING);
+            alert.showAndWait();
         }
     }
 
@@ -5,7 +5,8 @@ import java.net.URL;
 import java.util.ResourceBundle;
 
 import com.kyancey.inventory.entities.*;
-import com.kyancey.inventory.entities.*;
+import com.kyancey.inventory.metrics.HotPath;
+import com.kyancey.inventory.util.Money;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -26,7 +27,9 @@ public class PartController {
     private URL location;
 
     private Stage primaryStage;
+    private InventoryStore store = InventoryRegistry.getDefault();
     private Part part;
+    private long loadedVersion;
     private FormMode mode;
 
     // Labels
@@ -81,6 +84,15 @@ public class PartController {
         this.primaryStage = primaryStage;
     }
 
+    /**
+     * <p>Binds the form to the inventory store the part belongs to. The
+     * default store is used if this is not called.</p>
+     * @param store Store to edit.
+     */
+    public void setInventory(InventoryStore store) {
+        this.store = store;
+    }
+
     /**
      * <p>Stores the part to be modified in a class member. If in add mode, this will be discarded.
      * If in modify mode, this must be set or a null pointer exception will result.</p>
@@ -106,10 +118,11 @@ public class PartController {
             partSpecialLabel.setText("Machine ID");
             partInHouseRadio.setSelected(true);
         } else if (mode == FormMode.MODIFY) {
+            loadedVersion = part.getVersion();
             partIDField.setText(Integer.toString(part.getId()));
             partNameField.setText(part.getName());
             partInventoryField.setText(String.format("%d", part.getStock()));
-            partPriceField.setText(String.format("%.2f", part.getPrice()));
+            partPriceField.setText(Money.format(part.getPriceCents()));
             partMinField.setText(String.format("%d", part.getMin()));
             partMaxField.setText(String.format("%d", part.getMax()));
 
@@ -128,21 +141,6 @@ public class PartController {
         }
     }
 
-    /**
-     * <p>Generates an ID by scanning through the current inventory of parts to find
-     * the first available number in sequential order.</p>
-     * @return Numeric ID
-     */
-    private int generateID() {
-        int i = 0;
-        for (; i < Integer.MAX_VALUE; i++) {
-            if (Inventory.lookupPart(i) == null) {
-                break;
-            }
-        }
-        return i;
-    }
-
     // Event Handlers
 
     /**
@@ -150,16 +148,19 @@ public class PartController {
      * is then saved back to the inventory.</p>
      * RUNTIME ERROR: Since data is being validated through our event handlers,
      * it is not being validated a second time here. It is assumed to be correct now.
+     * <p>Only saves that pass validation are timed, so the time a warning
+     * dialog sits open does not count.</p>
      * @param action Provided by event system.
      * @throws IOException
      */
     @FXML
     private void onSaveButton(ActionEvent action) throws IOException {
-        double price = 0;
+        long start = System.nanoTime();
+        long priceCents = 0;
         int stock = 0, min = 0, max = 0;
         String name = partNameField.getText();
         try {
-            price = Double.parseDouble(partPriceField.getText());
+            priceCents = Money.parse(partPriceField.getText());
             stock = Integer.parseInt(partInventoryField.getText());
             min = Integer.parseInt(partMinField.getText());
             max = Integer.parseInt(partMaxField.getText());
@@ -190,11 +191,11 @@ public class PartController {
         if (mode == FormMode.ADD) {
             // Get all the values ready
             Part partToAdd = null;
-            int id = generateID();
+            int id = store.generatePartID();
 
             if (partOutsourcedRadio.isSelected()) {
                 String companyName = partSpecialField.getText();
-                partToAdd = new Outsourced(id, name, price, stock, min, max, companyName);
+                partToAdd = Outsourced.ofCents(id, name, priceCents, stock, min, max, companyName);
             } else if (partInHouseRadio.isSelected()) {
                 // Get the machine id and make sure it's valid
                 int machineID = 0;
@@ -206,16 +207,20 @@ public class PartController {
                     alert.showAndWait();
                     return;
                 }
-                partToAdd = new InHouse(id, name, price, stock, min, max, machineID);
+                partToAdd = InHouse.ofCents(id, name, priceCents, stock, min, max, machineID);
+            }
+            if (!store.addPart(partToAdd)) {
+                Alert alert = new Alert(Alert.AlertType.WARNING, MainController.BUDGET_WARNING);
+                alert.showAndWait();
+                return;
             }
-            Inventory.addPart(partToAdd);
         } else if (mode == FormMode.MODIFY) {
             Part part = null;
 
             if (partOutsourcedRadio.isSelected()) {
-                part = new Outsourced(this.part.getId(),
+                part = Outsourced.ofCents(this.part.getId(),
                                       name,
-                                      price,
+                                      priceCents,
                                       stock,
                                       min,
                                       max,
@@ -233,9 +238,9 @@ public class PartController {
                     return;
                 }
 
-                part = new InHouse(this.part.getId(),
+                part = InHouse.ofCents(this.part.getId(),
                         name,
-                        price,
+                        priceCents,
                         stock,
                         min,
                         max,
@@ -243,9 +248,18 @@ public class PartController {
                 );
             }
 
-            Inventory.deletePart(this.part);
-            Inventory.addPart(part);
+            long rejected = store.getRejectedCount();
+            if (!store.compareAndUpdatePart(part, loadedVersion)) {
+                Alert alert = new Alert(Alert.AlertType.WARNING, store.getRejectedCount() != rejected
+                        ? MainController.BUDGET_WARNING
+                        : store.lookupPart(part.getId()) == null
+                        ? "This part was deleted while you were editing it."
+                        : "This part was changed while you were editing it. Cancel and open it again to see the changes.");
+                alert.showAndWait();
+                return;
+            }
         }
+        HotPath.PART_SAVE.recordSince(start);
         navigateToMainForm();
     }
 
@@ -267,12 +281,15 @@ public class PartController {
         // Load the fxml file
         FXMLLoader loader = new FXMLLoader();
         loader.setLocation(getClass().getResource("../fxml/main.fxml"));
+        long start = System.nanoTime();
         Parent root = loader.load();
+        HotPath.FXML_LOAD.recordSince(start);
 
         // Set the scene and pass inventory to the controller
         Scene scene = new Scene(root);
         MainController controller = loader.getController();
         controller.setStage(primaryStage);
+        controller.setInventory(store);
 
         // Set the window up
         primaryStage.setTitle("Inventory Management System");
@@ -4,15 +4,20 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.Optional;
 import java.util.ResourceBundle;
-import java.util.function.Predicate;
 
 import com.kyancey.inventory.entities.FormMode;
-import com.kyancey.inventory.entities.Inventory;
+import com.kyancey.inventory.entities.InventoryRegistry;
+import com.kyancey.inventory.entities.InventoryStore;
 import com.kyancey.inventory.entities.Part;
 import com.kyancey.inventory.entities.Product;
+import com.kyancey.inventory.metrics.HotPath;
+import com.kyancey.inventory.util.IntIntMap;
+import com.kyancey.inventory.util.Money;
+import javafx.beans.binding.Bindings;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -36,14 +41,19 @@ public class ProductController {
     private URL location;
 
     private Stage primaryStage;
+    private InventoryStore store = InventoryRegistry.getDefault();
     private Product product;
+    private long loadedVersion;
     private FormMode mode;
     private ObservableList<Part> associatedParts;
+    private final IntIntMap quantities = new IntIntMap();
 
     // Fields
     @FXML
     private TextField partSearchField;
     @FXML
+    private CheckBox partFuzzyCheck;
+    @FXML
     private TextField productIDField;
     @FXML
     private TextField productNameField;
@@ -74,6 +84,8 @@ public class ProductController {
     @FXML
     public TableColumn<Part, String> associatedPartName;
     @FXML
+    public TableColumn<Part, Integer> associatedPartQuantity;
+    @FXML
     public TableColumn<Part, Integer> associatedPartInventoryLevel;
     @FXML
     public TableColumn<Part, String> associatedPartPrice;
@@ -105,6 +117,15 @@ public class ProductController {
         this.primaryStage = primaryStage;
     }
 
+    /**
+     * <p>Binds the form to the inventory store the product belongs to. Must be
+     * called before setMode(); the default store is used if it is not.</p>
+     * @param store Store to edit.
+     */
+    public void setInventory(InventoryStore store) {
+        this.store = store;
+    }
+
     /**
      * <p>Initializes the form in either add or modify mode.</p>
      * RUNTIME ERROR: No longer need to check for malicious form
@@ -115,27 +136,40 @@ public class ProductController {
         this.mode = mode;
 
         // Set columns up for part table
-        partID.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getId()));
-        partName.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getName()));
-        partInventoryLevel.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getStock()));
-        partPrice.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(String.format("%.2f", cellData.getValue().getPrice())));
+        partID.setCellValueFactory(cellData -> cellData.getValue().idProperty().asObject());
+        partName.setCellValueFactory(cellData -> cellData.getValue().nameProperty());
+        partInventoryLevel.setCellValueFactory(cellData -> cellData.getValue().stockProperty().asObject());
+        partPrice.setCellValueFactory(cellData -> Bindings.createStringBinding(
+                () -> Money.format(cellData.getValue().getPriceCents()), cellData.getValue().priceCentsProperty()));
 
         // Set up columns for the associated part table
-        associatedPartID.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getId()));
-        associatedPartName.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getName()));
-        associatedPartInventoryLevel.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getStock()));
-        associatedPartPrice.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(String.format("%.2f", cellData.getValue().getPrice())));
+        associatedPartID.setCellValueFactory(cellData -> cellData.getValue().idProperty().asObject());
+        associatedPartName.setCellValueFactory(cellData -> cellData.getValue().nameProperty());
+        associatedPartQuantity.setCellValueFactory(cellData ->
+                new ReadOnlyObjectWrapper<>(quantities.get(cellData.getValue().getId(), 0)));
+        associatedPartInventoryLevel.setCellValueFactory(cellData -> cellData.getValue().stockProperty().asObject());
+        associatedPartPrice.setCellValueFactory(cellData -> Bindings.createStringBinding(
+                () -> Money.format(cellData.getValue().getPriceCents()), cellData.getValue().priceCentsProperty()));
 
         // Set up filtered lists
-        FilteredList<Part> filteredParts = new FilteredList<>(Inventory.getAllParts());
-        partSearchField.textProperty().addListener((observable, oldValue, newValue) -> filteredParts.setPredicate(createPartPredicate(newValue)));
-
-        // Set part inventory table.
-        partTable.setItems(filteredParts);
+        FilteredList<Part> filteredParts = new FilteredList<>(store.getAllParts());
+        SortedList<Part> sortedParts = new SortedList<>(filteredParts);
+        partSearchField.textProperty().addListener((observable, oldValue, newValue) ->
+                searchParts(newValue, filteredParts, sortedParts));
+        SearchSuggestions.attach(partSearchField, text -> SearchSuggestions.suggestPartNames(store, text));
+        partFuzzyCheck.selectedProperty().addListener((observable, oldValue, newValue) ->
+                searchParts(partSearchField.getText(), filteredParts, sortedParts));
+
+        // Set part inventory table. A column sort replaces any fuzzy ranking.
+        partTable.setItems(sortedParts);
+        partTable.setSortPolicy(table -> {
+            sortedParts.setComparator(table.getComparator());
+            return true;
+        });
 
         if (mode == FormMode.ADD) {
             // This will all be overwritten, but we need a dummy object in place.
-            this.product = new Product(generateID(), "", 0.00,3,1,100);
+            this.product = new Product(store.generateProductID(), "", 0.00,3,1,100);
 
             productNameField.setText("");
             productInventoryField.setText("");
@@ -145,21 +179,22 @@ public class ProductController {
 
             // Set up filtered list of associated parts
             // This will be blank initially
-            associatedParts = product.getAllAssociatedParts();
+            loadAssociatedParts();
             FilteredList<Part> filteredAssociatedParts = new FilteredList<>(associatedParts);
 
             // Set associated part inventory table.
             associatedPartTable.setItems(filteredAssociatedParts);
         } else if (mode == FormMode.MODIFY) {
+            loadedVersion = product.getVersion();
             productIDField.setText(Integer.toString(product.getId()));
             productNameField.setText(product.getName());
             productInventoryField.setText(Integer.toString(product.getStock()));
-            productPriceField.setText(Double.toString(product.getPrice()));
+            productPriceField.setText(Money.format(product.getPriceCents()));
             productMaxField.setText(Integer.toString(product.getMax()));
             productMinField.setText(Integer.toString(product.getMin()));
 
             // Set up filtered list of associated parts
-            associatedParts = product.getAllAssociatedParts();
+            loadAssociatedParts();
             FilteredList<Part> filteredAssociatedParts = new FilteredList<>(associatedParts);
 
             // Set associated part inventory table.
@@ -168,44 +203,40 @@ public class ProductController {
     }
 
     /**
-     * <p>Creates a part predicate for a particular search text.</p>
-     * @param text Search text
-     * @return Part predicate
-     */
-    private Predicate<Part> createPartPredicate(String text) {
-        return part -> {
-            if (text == null || text.isEmpty()) {
-                return true;
-            }
-            return searchFindsPart(part, text);
-        };
-    }
-
-    /**
-     * <p>Compares the given part to the search text to identify a match.</p>
-     * @param part Part to be compared.
-     * @param text Search text.
-     * @return True if text matches part id or name. False otherwise.
+     * <p>Copies the product's associated parts and quantities into the form, so
+     * edits only reach the product when it is saved.</p>
      */
-    private boolean searchFindsPart(Part part, String text) {
-        boolean foundName = part.getName().toLowerCase().contains(text.toLowerCase());
-        boolean foundPartID = Integer.toString(part.getId()).equals(text.toLowerCase());
-        return  foundName || foundPartID;
+    private void loadAssociatedParts() {
+        associatedParts = product.getAllAssociatedParts(store);
+        quantities.clear();
+        for (Part part : associatedParts) {
+            quantities.put(part.getId(), product.getAssociatedPartQuantity(part.getId()));
+        }
     }
 
     /**
-     *<p>Generates an ID by scanning through the current inventory of products to find
-     * the first available number in sequential order.</p>
-     * @return Numeric ID
+     * <p>Filters the part table by the search text, ranked by closeness when
+     * fuzzy search is checked. A malformed query empties the table and shows
+     * what is wrong with it in the table's place.</p>
+     * @param text Search text
+     * @param filtered Filtered parts
+     * @param sorted Sorted parts shown in the table
      */
-    private int generateID() {
-        int i = 0;
-        for (; i < Integer.MAX_VALUE; i++) {
-            if (Inventory.lookupProduct(i) == null) {
-                break;
+    private void searchParts(String text, FilteredList<Part> filtered, SortedList<Part> sorted) {
+        long start = System.nanoTime();
+        partTable.setPlaceholder(null);
+        try {
+            if (partFuzzyCheck.isSelected()) {
+                FuzzySearch.show(FuzzySearch.findParts(store, text), text, filtered, sorted, partTable.getComparator());
+            } else {
+                sorted.setComparator(partTable.getComparator());
+                filtered.setPredicate(SearchPredicates.createPartPredicate(store, text));
             }
+        } catch (IllegalArgumentException e) {
+            filtered.setPredicate(part -> false);
+            partTable.setPlaceholder(new Label(e.getMessage()));
         }
-        return i;
+        HotPath.SEARCH_PARTS.recordSince(start);
     }
 
     /**
@@ -233,6 +264,7 @@ public class ProductController {
 
         if (buttonType.isPresent() && buttonType.get() == ButtonType.OK) {
             associatedParts.remove(selectedPart);
+            quantities.remove(selectedPart.getId());
         }
     }
 
@@ -240,16 +272,19 @@ public class ProductController {
      * <p>Stores form information in a Product instance. If in add mode, adds
      * the instance to inventory. If in modify mode, alters the information in
      * place.</p>
+     * <p>Only saves that pass validation are timed, so the time a warning
+     * dialog sits open does not count.</p>
      * @param actionEvent Provided by event system.
      * @throws IOException
      */
     @FXML
     public void onSaveButton(ActionEvent actionEvent) throws IOException {
+        long start = System.nanoTime();
         int stock = 0, min = 0, max = 0;
-        double price = 0;
+        long priceCents = 0;
         try {
             stock = Integer.parseInt(productInventoryField.getText());
-            price = Double.parseDouble(productPriceField.getText());
+            priceCents = Money.parse(productPriceField.getText());
             max = Integer.parseInt(productMaxField.getText());
             min = Integer.parseInt(productMinField.getText());
         }
@@ -276,22 +311,40 @@ public class ProductController {
             return;
         }
 
-        product.setName(productNameField.getText());
-        product.setStock(stock);
-        product.setPrice(price);
-        product.setMax(max);
-        product.setMin(min);
+        // A modified product is saved from a copy, so the stored product is
+        // only touched if nobody changed it while the form was open.
+        Product target = product;
+        if (mode == FormMode.MODIFY) {
+            target = new Product(product.getId(), "", 0, 0, 0, 0);
+            target.setSubAssemblies(product.getSubAssemblyIds(), product.getSubAssemblyQuantities());
+        }
+        target.setName(productNameField.getText());
+        target.setStock(stock);
+        target.setPriceCents(priceCents);
+        target.setMax(max);
+        target.setMin(min);
 
         // Copy list from GUI to data model
-        product.clearAssociatedParts();
-        for (Part p : associatedPartTable.getItems()) {
-            product.addAssociatedPart(p);
+        int[] partIds = new int[associatedParts.size()];
+        int[] partQuantities = new int[partIds.length];
+        for (int i = 0; i < partIds.length; i++) {
+            partIds[i] = associatedParts.get(i).getId();
+            partQuantities[i] = quantities.get(partIds[i], 1);
         }
-
-        if (mode == FormMode.ADD) {
-            Inventory.addProduct(product);
-        } else if (mode == FormMode.MODIFY) {
+        target.setAssociatedParts(partIds, partQuantities);
+
+        long rejected = store.getRejectedCount();
+        if (mode == FormMode.ADD ? !store.addProduct(target)
+                : mode == FormMode.MODIFY && !store.compareAndUpdateProduct(target, loadedVersion)) {
+            Alert alert = new Alert(Alert.AlertType.WARNING, store.getRejectedCount() != rejected
+                    ? MainController.BUDGET_WARNING
+                    : store.lookupProduct(target.getId()) == null
+                    ? "This product was deleted while you were editing it."
+                    : "This product was changed while you were editing it. Cancel and open it again to see the changes.");
+            alert.showAndWait();
+            return;
         }
+        HotPath.PRODUCT_SAVE.recordSince(start);
 
         navigateToMainForm();
     }
@@ -314,12 +367,15 @@ public class ProductController {
         // Load the fxml file
         FXMLLoader loader = new FXMLLoader();
         loader.setLocation(getClass().getResource("../fxml/main.fxml"));
+        long start = System.nanoTime();
         Parent root = loader.load();
+        HotPath.FXML_LOAD.recordSince(start);
 
         // Set the scene and pass inventory to the controller
         Scene scene = new Scene(root);
         MainController controller = loader.getController();
         controller.setStage(primaryStage);
+        controller.setInventory(store);
 
         // Set the window up
         primaryStage.setTitle("Inventory Management System");
@@ -329,14 +385,22 @@ public class ProductController {
 
     /**
      * <p>Adds an association between the selected part and the
-     * product when the add button is pressed.</p>
+     * product when the add button is pressed. Adding a part that is already
+     * associated raises its quantity by one.</p>
      * @param actionEvent Provided by event system.
      */
     @FXML
     public void onAddButton(ActionEvent actionEvent) {
-        if (partTable.getSelectionModel().getSelectedItem() == null) return;
+        Part selectedPart = partTable.getSelectionModel().getSelectedItem();
+        if (selectedPart == null) return;
 
-        associatedParts.add(partTable.getSelectionModel().getSelectedItem());
+        int quantity = quantities.get(selectedPart.getId(), 0);
+        quantities.put(selectedPart.getId(), quantity + 1);
+        if (quantity == 0) {
+            associatedParts.add(selectedPart);
+        } else {
+            associatedPartTable.refresh();
+        }
     }
 
     /**
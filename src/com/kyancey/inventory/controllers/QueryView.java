@@ -0,0 +1,105 @@
+package com.kyancey.inventory.controllers;
+
+import com.kyancey.inventory.query.InventoryQuery;
+import com.kyancey.inventory.query.QueryPlan;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.SortedList;
+
+import java.util.Comparator;
+import java.util.function.Function;
+
+/**
+ * <p>Shows the answer to a query straight from the index its plan reads, for
+ * the search fields. A filter over the whole list would test every item on
+ * every keystroke; this reads only the candidates the index supplies.</p>
+ * <p>While a query is shown, every change to the list plans and runs it again,
+ * so the results keep up with edits at the cost of the candidates, not the
+ * list. Queries whose plan scans anyway are left to a SearchPredicates filter.</p>
+ * @param <T> Part or Product.
+ */
+final class QueryView<T> {
+    private final ObservableList<T> source;
+    private final Function<String, QueryPlan<T>> planner;
+    private final ObservableList<T> results = FXCollections.observableArrayList();
+    private final SortedList<T> sorted = new SortedList<>(results);
+    private final ListChangeListener<T> rerun = c -> run();
+    private String text;
+
+    /**
+     * <p>Constructor</p>
+     * @param source List the queries answer from, such as a store's parts.
+     * @param planner Plans query text against the indexes of that list.
+     */
+    QueryView(ObservableList<T> source, Function<String, QueryPlan<T>> planner) {
+        this.source = source;
+        this.planner = planner;
+    }
+
+    /**
+     * <p>Shows a query's results, if an index can supply them.</p>
+     * @param text Search text.
+     * @param order Comparator of the table's order, null for index order.
+     * @return True if the results are shown here. False if the text is plain
+     * search text or its plan is a full scan; nothing is shown then.
+     * @throws IllegalArgumentException If the text is a malformed query, or one
+     * that does not apply to the list. The message says what is wrong.
+     */
+    boolean show(String text, Comparator<? super T> order) {
+        stop();
+        if (!InventoryQuery.isQuery(text)) {
+            return false;
+        }
+        QueryPlan<T> plan = planner.apply(text);
+        if (plan.isFullScan()) {
+            return false;
+        }
+        this.text = text;
+        results.setAll(plan.execute());
+        sorted.setComparator(order);
+        // Added after planning, so the indexes the plan reads are brought up
+        // to date before it runs again.
+        source.addListener(rerun);
+        return true;
+    }
+
+    /**
+     * <p>Stops following the list and lets go of the results.</p>
+     */
+    void stop() {
+        if (text != null) {
+            source.removeListener(rerun);
+            text = null;
+            results.clear();
+        }
+    }
+
+    /**
+     * <p>Whether a query is shown.</p>
+     * @return True between a successful show() and stop().
+     */
+    boolean isShowing() {
+        return text != null;
+    }
+
+    /**
+     * <p>Gets the results for a table, in the order given to show() or setOrder().</p>
+     * @return Sorted results.
+     */
+    SortedList<T> getSorted() {
+        return sorted;
+    }
+
+    /**
+     * <p>Reorders the results, as when a table's sort columns change.</p>
+     * @param order Comparator, null for index order.
+     */
+    void setOrder(Comparator<? super T> order) {
+        sorted.setComparator(order);
+    }
+
+    private void run() {
+        results.setAll(planner.apply(text).execute());
+    }
+}
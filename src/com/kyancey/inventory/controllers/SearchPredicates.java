@@ -0,0 +1,108 @@
+package com.kyancey.inventory.controllers;
+
+import com.kyancey.inventory.entities.InventoryRegistry;
+import com.kyancey.inventory.entities.InventoryStore;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+import com.kyancey.inventory.query.InventoryQuery;
+
+import java.util.function.Predicate;
+
+/**
+ * <p>Search logic shared by the search fields on the Main and Product forms.
+ * Kept out of the controllers so it can be benchmarked without loading a form.</p>
+ */
+public final class SearchPredicates {
+    private SearchPredicates() {
+    }
+
+    /**
+     * <p>Creates a part predicate for the given search text. Text written in the
+     * query language, such as <code>price&lt;10 company:"Acme"</code>, is
+     * planned by InventoryQuery; anything else is plain search text.</p>
+     * @param text Search text
+     * @return Part predicate
+     * @throws IllegalArgumentException If the text is a query that is malformed
+     * or does not apply to parts. The message says what is wrong.
+     */
+    public static Predicate<Part> createPartPredicate(String text) {
+        return createPartPredicate(InventoryRegistry.getDefault(), text);
+    }
+
+    /**
+     * <p>Creates a part predicate for the given search text, planning queries
+     * against a store's indexes.</p>
+     * @param store Store the parts are in.
+     * @param text Search text
+     * @return Part predicate
+     * @throws IllegalArgumentException If the text is a query that is malformed
+     * or does not apply to parts. The message says what is wrong.
+     */
+    public static Predicate<Part> createPartPredicate(InventoryStore store, String text) {
+        if (InventoryQuery.isQuery(text)) {
+            return InventoryQuery.planParts(store, text)::test;
+        }
+        return part -> {
+            if (text == null || text.isEmpty()) {
+                return true;
+            }
+            return searchFindsPart(part, text);
+        };
+    }
+
+    /**
+     * <p>Creates a product predicate for the given search text. Text written in
+     * the query language is planned by InventoryQuery; anything else is plain
+     * search text.</p>
+     * @param text Search text
+     * @return Product predicate
+     * @throws IllegalArgumentException If the text is a query that is malformed
+     * or does not apply to products. The message says what is wrong.
+     */
+    public static Predicate<Product> createProductPredicate(String text) {
+        return createProductPredicate(InventoryRegistry.getDefault(), text);
+    }
+
+    /**
+     * <p>Creates a product predicate for the given search text, planning
+     * queries against a store's indexes.</p>
+     * @param store Store the products are in.
+     * @param text Search text
+     * @return Product predicate
+     * @throws IllegalArgumentException If the text is a query that is malformed
+     * or does not apply to products. The message says what is wrong.
+     */
+    public static Predicate<Product> createProductPredicate(InventoryStore store, String text) {
+        if (InventoryQuery.isQuery(text)) {
+            return InventoryQuery.planProducts(store, text)::test;
+        }
+        return product -> {
+            if (text == null || text.isEmpty()) { return true; }
+            return searchFindsProduct(product, text);
+        };
+    }
+
+    /**
+     * <p>Compares the given part to the search text to identify a match.</p>
+     * @param part Part to be compared
+     * @param text Search text
+     * @return True if text matches part id or name. False otherwise.
+     */
+    public static boolean searchFindsPart(Part part, String text) {
+        boolean foundName = part.getName().toLowerCase().contains(text.toLowerCase());
+        boolean foundPartID = Integer.toString(part.getId()).equals(text.toLowerCase());
+        return  foundName || foundPartID;
+    }
+
+    /**
+     * <p>Compares the given product to the search text to identify a match.</p>
+     * @param product Product to be compared
+     * @param text Search text
+     * @return True if text matches product id or name. False otherwise.
+     */
+    public static boolean searchFindsProduct(Product product, String text) {
+        boolean foundName = product.getName().toLowerCase().contains(text.toLowerCase());
+        boolean foundProductID = Integer.toString(product.getId()).equals(text.toLowerCase());
+        return foundName || foundProductID;
+    }
+}
@@ -0,0 +1,160 @@
+package com.kyancey.inventory.controllers;
+
+import com.kyancey.inventory.entities.InventoryRegistry;
+import com.kyancey.inventory.entities.InventoryStore;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+import com.kyancey.inventory.util.RadixTrie;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Side;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.TextField;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * <p>Type-ahead suggestions for the search fields: the names of the parts or
+ * products with the most stock whose names start with what has been typed.
+ * Ties go to whatever was added or changed most recently.</p>
+ * <p>The tries follow the inventory list events, so adds, renames, stock
+ * changes, and deletes are reflected right away and a keystroke never scans
+ * the inventory. Each store has its own tries, built the first time the store
+ * is asked for suggestions; the methods without a store use the default one.</p>
+ */
+public final class SearchSuggestions {
+    /** Most suggestions shown under a field. */
+    public static final int SUGGESTION_LIMIT = 10;
+
+    /**
+     * <p>The name tries of one store.</p>
+     */
+    private static final class Index {
+        private final RadixTrie<Part> partTrie = new RadixTrie<>(SUGGESTION_LIMIT);
+        private final RadixTrie<Product> productTrie = new RadixTrie<>(SUGGESTION_LIMIT);
+
+        Index(InventoryStore store) {
+            for (Part p : store.getAllPartsView()) {
+                partTrie.put(p, p.getName(), p.getStock());
+            }
+            for (Product p : store.getAllProductsView()) {
+                productTrie.put(p, p.getName(), p.getStock());
+            }
+            store.getAllPartsView().addListener((ListChangeListener<Part>) c -> {
+                while (c.next()) {
+                    if (c.wasUpdated()) {
+                        for (int i = c.getFrom(); i < c.getTo(); i++) {
+                            Part p = c.getList().get(i);
+                            partTrie.put(p, p.getName(), p.getStock());
+                        }
+                    } else {
+                        c.getRemoved().forEach(partTrie::remove);
+                        c.getAddedSubList().forEach(p -> partTrie.put(p, p.getName(), p.getStock()));
+                    }
+                }
+            });
+            store.getAllProductsView().addListener((ListChangeListener<Product>) c -> {
+                while (c.next()) {
+                    if (c.wasUpdated()) {
+                        for (int i = c.getFrom(); i < c.getTo(); i++) {
+                            Product p = c.getList().get(i);
+                            productTrie.put(p, p.getName(), p.getStock());
+                        }
+                    } else {
+                        c.getRemoved().forEach(productTrie::remove);
+                        c.getAddedSubList().forEach(p -> productTrie.put(p, p.getName(), p.getStock()));
+                    }
+                }
+            });
+        }
+    }
+
+    private SearchSuggestions() {
+    }
+
+    private static Index index(InventoryStore store) {
+        return store.getIndex(Index.class, Index::new);
+    }
+
+    /**
+     * <p>Gets suggested part names from the default store for a prefix.</p>
+     * @param prefix Typed text
+     * @return Distinct names, best first.
+     */
+    public static List<String> suggestPartNames(String prefix) {
+        return suggestPartNames(InventoryRegistry.getDefault(), prefix);
+    }
+
+    /**
+     * <p>Gets suggested part names for a prefix.</p>
+     * @param store Store whose parts are suggested.
+     * @param prefix Typed text
+     * @return Distinct names, best first.
+     */
+    public static List<String> suggestPartNames(InventoryStore store, String prefix) {
+        Set<String> names = new LinkedHashSet<>();
+        index(store).partTrie.top(prefix).forEach(p -> names.add(p.getName()));
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * <p>Gets suggested product names from the default store for a prefix.</p>
+     * @param prefix Typed text
+     * @return Distinct names, best first.
+     */
+    public static List<String> suggestProductNames(String prefix) {
+        return suggestProductNames(InventoryRegistry.getDefault(), prefix);
+    }
+
+    /**
+     * <p>Gets suggested product names for a prefix.</p>
+     * @param store Store whose products are suggested.
+     * @param prefix Typed text
+     * @return Distinct names, best first.
+     */
+    public static List<String> suggestProductNames(InventoryStore store, String prefix) {
+        Set<String> names = new LinkedHashSet<>();
+        index(store).productTrie.top(prefix).forEach(p -> names.add(p.getName()));
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * <p>Shows suggestions in a drop down under a search field as the user types.
+     * Picking one fills in the field.</p>
+     * @param field Search field
+     * @param suggest Gets the suggestions for the typed text.
+     */
+    public static void attach(TextField field, Function<String, List<String>> suggest) {
+        ContextMenu menu = new ContextMenu();
+        field.textProperty().addListener((observable, oldValue, newValue) -> {
+            List<String> suggestions = newValue == null || newValue.isEmpty() || !field.isFocused()
+                    ? new ArrayList<>() : suggest.apply(newValue);
+            if (suggestions.isEmpty() || (suggestions.size() == 1 && suggestions.get(0).equals(newValue))) {
+                menu.hide();
+                return;
+            }
+            List<MenuItem> items = new ArrayList<>();
+            for (String suggestion : suggestions) {
+                MenuItem item = new MenuItem(suggestion);
+                item.setOnAction(event -> {
+                    field.setText(suggestion);
+                    field.positionCaret(suggestion.length());
+                });
+                items.add(item);
+            }
+            menu.getItems().setAll(items);
+            if (!menu.isShowing()) {
+                menu.show(field, Side.BOTTOM, 0, 0);
+            }
+        });
+        field.focusedProperty().addListener((observable, oldValue, newValue) -> {
+            if (!newValue) {
+                menu.hide();
+            }
+        });
+    }
+}
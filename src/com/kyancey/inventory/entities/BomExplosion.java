@@ -0,0 +1,594 @@
+package com.kyancey.inventory.entities;
+
+import com.kyancey.inventory.util.Money;
+import javafx.collections.ListChangeListener;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * <p>Flattens products built from parts and sub-assemblies into what they
+ * need: total part requirements, material cost, and how many could be built
+ * from the parts on hand.</p>
+ * <p>Each product's explosion and cost is computed once from its direct parts
+ * and the memoized results of its direct sub-assemblies, so a sub-assembly
+ * shared by many products is exploded once. Exploding a whole catalog is close
+ * to linear in the size of the results. The memo follows inventory changes:</p>
+ * <ul>
+ *     <li>A change to a product's parts or sub-assemblies drops the results of
+ *     that product and of every product above it, and nothing else.</li>
+ *     <li>A change to a part's price drops only the costs along the paths
+ *     above the products that use it.</li>
+ *     <li>Stock changes drop nothing; buildable counts are read from the
+ *     memoized requirements and the current stock.</li>
+ * </ul>
+ * <p>Each store has its own index and memo, built the first time the store
+ * is asked about; the methods without a store use the default one.
+ * Sub-assembly ids that are not in the store count as needing nothing, the
+ * same as a missing part counts as costing nothing. Call from the thread that
+ * edits the store.</p>
+ */
+public class BomExplosion {
+    /**
+     * <p>The lines of a product as last indexed.</p>
+     */
+    private static final class Lines {
+        final int[] partIds;
+        final int[] partQuantities;
+        final int[] subIds;
+        final int[] subQuantities;
+
+        Lines(Product product) {
+            partIds = product.getAssociatedPartIds();
+            partQuantities = product.getAssociatedPartQuantities();
+            subIds = product.getSubAssemblyIds();
+            subQuantities = product.getSubAssemblyQuantities();
+        }
+
+        boolean sameAs(Lines other) {
+            return Arrays.equals(partIds, other.partIds) && Arrays.equals(partQuantities, other.partQuantities)
+                    && Arrays.equals(subIds, other.subIds) && Arrays.equals(subQuantities, other.subQuantities);
+        }
+    }
+
+    /**
+     * <p>The products that use a part directly, and its price when last seen.</p>
+     */
+    private static final class PartUse {
+        final Set<Integer> products = new HashSet<>();
+        long priceCents;
+    }
+
+    /**
+     * <p>A sorted run of part requirements being merged, scaled by a quantity.</p>
+     */
+    private static final class Run {
+        final int[] ids;
+        final long[] quantities;
+        final long multiplier;
+        int position;
+
+        Run(int[] ids, long[] quantities, long multiplier) {
+            this.ids = ids;
+            this.quantities = quantities;
+            this.multiplier = multiplier;
+        }
+    }
+
+    // Price seen for a part that is not in inventory.
+    private static final long NO_PRICE = Long.MIN_VALUE;
+
+    /**
+     * <p>The index and memo for one store.</p>
+     */
+    private static final class Index {
+        private final InventoryStore store;
+        private final Map<Integer, Lines> lines = new HashMap<>();
+        private final Map<Integer, Set<Integer>> parents = new HashMap<>();
+        private final Map<Integer, PartUse> partUses = new HashMap<>();
+        private final Map<Integer, Explosion> explosions = new HashMap<>();
+        private final Map<Integer, Long> costs = new HashMap<>();
+
+        Index(InventoryStore store) {
+            this.store = store;
+            store.getAllProductsView().forEach(this::index);
+            store.getAllProductsView().addListener((ListChangeListener<Product>) c -> {
+                while (c.next()) {
+                    if (c.wasUpdated()) {
+                        for (int i = c.getFrom(); i < c.getTo(); i++) {
+                            Product product = c.getList().get(i);
+                            Lines old = lines.get(product.getId());
+                            if (old == null || !old.sameAs(new Lines(product))) {
+                                unindex(product.getId());
+                                index(product);
+                                invalidate(product.getId(), true);
+                            }
+                        }
+                    } else {
+                        for (Product product : c.getRemoved()) {
+                            unindex(product.getId());
+                            invalidate(product.getId(), true);
+                        }
+                        for (Product product : c.getAddedSubList()) {
+                            unindex(product.getId());
+                            index(product);
+                            invalidate(product.getId(), true);
+                        }
+                    }
+                }
+            });
+            store.getAllPartsView().addListener((ListChangeListener<Part>) c -> {
+                while (c.next()) {
+                    if (c.wasUpdated()) {
+                        for (int i = c.getFrom(); i < c.getTo(); i++) {
+                            Part part = c.getList().get(i);
+                            priceSeen(part.getId(), part.getPriceCents());
+                        }
+                    } else {
+                        c.getRemoved().forEach(part -> priceSeen(part.getId(), NO_PRICE));
+                        c.getAddedSubList().forEach(part -> priceSeen(part.getId(), part.getPriceCents()));
+                    }
+                }
+            });
+        }
+
+        Explosion explode(Product product) {
+            Explosion memoized = memoized(explosions, product);
+            if (memoized != null) {
+                return memoized;
+            }
+            Deque<Product> order = bottomUp(product, explosions);
+            Explosion result = null;
+            for (Product p : order) {
+                result = merge(p);
+                if (isInInventory(p)) {
+                    explosions.put(p.getId(), result);
+                }
+            }
+            return result;
+        }
+
+        double getMaterialCost(Product product) {
+            return Money.toDouble(getMaterialCostCents(product));
+        }
+
+        long getMaterialCostCents(Product product) {
+            Long memoized = memoized(costs, product);
+            if (memoized != null) {
+                return memoized;
+            }
+            Deque<Product> order = bottomUp(product, costs);
+            long result = 0;
+            for (Product p : order) {
+                result = cost(p);
+                if (isInInventory(p)) {
+                    costs.put(p.getId(), result);
+                }
+            }
+            return result;
+        }
+
+        long getBuildableCount(Product product) {
+            Explosion explosion = explode(product);
+            long buildable = Long.MAX_VALUE;
+            for (int i = 0; i < explosion.getPartCount(); i++) {
+                long needed = explosion.getQuantity(i);
+                if (needed <= 0) {
+                    continue;
+                }
+                Part part = store.lookupPart(explosion.getPartId(i));
+                if (part == null) {
+                    return 0;
+                }
+                buildable = Math.min(buildable, Math.max(0, part.getStock()) / needed);
+            }
+            return buildable;
+        }
+
+        boolean wouldCreateCycle(int productId, int subAssemblyId) {
+            Deque<Integer> pending = new ArrayDeque<>();
+            Set<Integer> seen = new HashSet<>();
+            pending.push(subAssemblyId);
+            while (!pending.isEmpty()) {
+                int id = pending.pop();
+                if (id == productId) {
+                    return true;
+                }
+                if (!seen.add(id)) {
+                    continue;
+                }
+                Product product = store.lookupProduct(id);
+                if (product != null) {
+                    for (int sub : product.getSubAssemblyIds()) {
+                        pending.push(sub);
+                    }
+                }
+            }
+            return false;
+        }
+
+        boolean isPartUsed(int partId) {
+            return partUses.containsKey(partId);
+        }
+
+        boolean isUsedAsSubAssembly(int productId) {
+            Set<Integer> users = parents.get(productId);
+            return users != null && !users.isEmpty();
+        }
+
+        private <R> R memoized(Map<Integer, R> memo, Product product) {
+            return isInInventory(product) ? memo.get(product.getId()) : null;
+        }
+
+        private boolean isInInventory(Product product) {
+            return store.lookupProduct(product.getId()) == product;
+        }
+
+        /**
+         * <p>Lists the products under root that have no memoized result yet, each
+         * after all of its sub-assemblies, ending with root. Walks with an explicit
+         * stack so deep trees cannot overflow the call stack.</p>
+         */
+        private Deque<Product> bottomUp(Product root, Map<Integer, ?> memo) {
+            Deque<Product> order = new ArrayDeque<>();
+            Deque<Product> path = new ArrayDeque<>();
+            Deque<int[]> pathSubs = new ArrayDeque<>();
+            Deque<int[]> pathNext = new ArrayDeque<>();
+            Set<Integer> onPath = new HashSet<>();
+            Set<Integer> listed = new HashSet<>();
+            path.push(root);
+            pathSubs.push(root.getSubAssemblyIds());
+            pathNext.push(new int[1]);
+            onPath.add(root.getId());
+            while (!path.isEmpty()) {
+                int[] subs = pathSubs.peek();
+                int[] next = pathNext.peek();
+                if (next[0] < subs.length) {
+                    int id = subs[next[0]++];
+                    if (onPath.contains(id)) {
+                        throw new IllegalStateException("Sub-assembly cycle through product " + id);
+                    }
+                    if (memo.containsKey(id) || listed.contains(id)) {
+                        continue;
+                    }
+                    Product child = store.lookupProduct(id);
+                    if (child != null) {
+                        path.push(child);
+                        pathSubs.push(child.getSubAssemblyIds());
+                        pathNext.push(new int[1]);
+                        onPath.add(id);
+                    }
+                } else {
+                    Product done = path.pop();
+                    pathSubs.pop();
+                    pathNext.pop();
+                    onPath.remove(done.getId());
+                    listed.add(done.getId());
+                    order.addLast(done);
+                }
+            }
+            return order;
+        }
+
+        /**
+         * <p>Builds a product's explosion from its direct parts and the memoized
+         * explosions of its direct sub-assemblies, merging the sorted runs.</p>
+         */
+        private Explosion merge(Product product) {
+            PriorityQueue<Run> runs = new PriorityQueue<>((a, b) -> Integer.compare(a.ids[a.position], b.ids[b.position]));
+            int total = 0;
+
+            int[] partIds = product.getAssociatedPartIds();
+            int[] partQuantities = product.getAssociatedPartQuantities();
+            if (partIds.length > 0) {
+                long[] packed = new long[partIds.length];
+                for (int i = 0; i < partIds.length; i++) {
+                    packed[i] = ((long) partIds[i] << 32) | i;
+                }
+                Arrays.sort(packed);
+                int[] ids = new int[partIds.length];
+                long[] quantities = new long[partIds.length];
+                for (int i = 0; i < packed.length; i++) {
+                    ids[i] = (int) (packed[i] >> 32);
+                    quantities[i] = partQuantities[(int) packed[i]];
+                }
+                runs.add(new Run(ids, quantities, 1));
+                total += ids.length;
+            }
+
+            int[] subIds = product.getSubAssemblyIds();
+            int[] subQuantities = product.getSubAssemblyQuantities();
+            for (int i = 0; i < subIds.length; i++) {
+                Explosion sub = explosions.get(subIds[i]);
+                if (sub != null && sub.getPartCount() > 0) {
+                    runs.add(new Run(sub.partIds(), sub.quantities(), subQuantities[i]));
+                    total += sub.getPartCount();
+                }
+            }
+
+            if (runs.isEmpty()) {
+                return Explosion.EMPTY;
+            }
+            if (runs.size() == 1 && runs.peek().multiplier == 1) {
+                // A single unscaled run is already the answer, so share its arrays.
+                return new Explosion(runs.peek().ids, runs.peek().quantities);
+            }
+
+            int[] ids = new int[total];
+            long[] quantities = new long[total];
+            int size = 0;
+            while (!runs.isEmpty()) {
+                Run run = runs.poll();
+                int id = run.ids[run.position];
+                long quantity = run.quantities[run.position] * run.multiplier;
+                if (size > 0 && ids[size - 1] == id) {
+                    quantities[size - 1] += quantity;
+                } else {
+                    ids[size] = id;
+                    quantities[size] = quantity;
+                    size++;
+                }
+                if (++run.position < run.ids.length) {
+                    runs.add(run);
+                }
+            }
+            return new Explosion(Arrays.copyOf(ids, size), Arrays.copyOf(quantities, size));
+        }
+
+        /**
+         * <p>Costs a product from its direct parts and the memoized costs of its
+         * direct sub-assemblies.</p>
+         */
+        private long cost(Product product) {
+            long cost = 0;
+            int[] partIds = product.getAssociatedPartIds();
+            int[] partQuantities = product.getAssociatedPartQuantities();
+            for (int i = 0; i < partIds.length; i++) {
+                Part part = store.lookupPart(partIds[i]);
+                if (part != null) {
+                    cost += part.getPriceCents() * partQuantities[i];
+                }
+            }
+            int[] subIds = product.getSubAssemblyIds();
+            int[] subQuantities = product.getSubAssemblyQuantities();
+            for (int i = 0; i < subIds.length; i++) {
+                Long sub = costs.get(subIds[i]);
+                if (sub != null) {
+                    cost += sub * subQuantities[i];
+                }
+            }
+            return cost;
+        }
+
+        private void index(Product product) {
+            Lines current = new Lines(product);
+            lines.put(product.getId(), current);
+            for (int sub : current.subIds) {
+                parents.computeIfAbsent(sub, k -> new HashSet<>()).add(product.getId());
+            }
+            for (int partId : current.partIds) {
+                PartUse use = partUses.computeIfAbsent(partId, k -> {
+                    PartUse created = new PartUse();
+                    Part part = store.lookupPart(k);
+                    created.priceCents = part == null ? NO_PRICE : part.getPriceCents();
+                    return created;
+                });
+                use.products.add(product.getId());
+            }
+        }
+
+        private void unindex(int productId) {
+            Lines old = lines.remove(productId);
+            if (old == null) {
+                return;
+            }
+            for (int sub : old.subIds) {
+                Set<Integer> users = parents.get(sub);
+                if (users != null && users.remove(productId) && users.isEmpty()) {
+                    parents.remove(sub);
+                }
+            }
+            for (int partId : old.partIds) {
+                PartUse use = partUses.get(partId);
+                if (use != null && use.products.remove(productId) && use.products.isEmpty()) {
+                    partUses.remove(partId);
+                }
+            }
+        }
+
+        /**
+         * <p>Drops the costs above a part if its price is not the one last seen.
+         * Stock and other edits leave the price alone and so cost nothing here.</p>
+         */
+        private void priceSeen(int partId, long priceCents) {
+            PartUse use = partUses.get(partId);
+            if (use == null || use.priceCents == priceCents) {
+                return;
+            }
+            use.priceCents = priceCents;
+            for (int productId : use.products) {
+                invalidate(productId, false);
+            }
+        }
+
+        /**
+         * <p>Drops the memoized results of a product and of every product above it.
+         * Climbing stops at a product that had nothing memoized, since nothing
+         * above it can have been computed since it was last dropped.</p>
+         * @param requirements True to drop explosions as well as costs.
+         */
+        private void invalidate(int productId, boolean requirements) {
+            Deque<Integer> pending = new ArrayDeque<>();
+            pending.push(productId);
+            boolean start = true;
+            while (!pending.isEmpty()) {
+                int id = pending.pop();
+                boolean dropped = costs.remove(id) != null;
+                if (requirements) {
+                    dropped |= explosions.remove(id) != null;
+                }
+                // The changed product itself may never have been memoized, for
+                // example when it was missing while its parents were exploded.
+                if (dropped || start) {
+                    Set<Integer> users = parents.get(id);
+                    if (users != null) {
+                        users.forEach(pending::push);
+                    }
+                }
+                start = false;
+            }
+        }
+    }
+
+    private static Index index(InventoryStore store) {
+        return store.getIndex(Index.class, Index::new);
+    }
+
+    /**
+     * <p>Gets the flattened part requirements of one unit of a product, with
+     * its sub-assemblies looked up in the default store.</p>
+     * @param product Product to explode.
+     * @return Requirements in part id order.
+     * @throws IllegalStateException If the sub-assemblies contain a cycle.
+     */
+    public static Explosion explode(Product product) {
+        return explode(InventoryRegistry.getDefault(), product);
+    }
+
+    /**
+     * <p>Gets the flattened part requirements of one unit of a product.</p>
+     * @param store Store to look sub-assemblies up in.
+     * @param product Product to explode. Need not be in the store.
+     * @return Requirements in part id order.
+     * @throws IllegalStateException If the sub-assemblies contain a cycle.
+     */
+    public static Explosion explode(InventoryStore store, Product product) {
+        return index(store).explode(product);
+    }
+
+    /**
+     * <p>Gets the material cost of one unit of a product from the default
+     * store: the price of every part it needs, through every sub-assembly,
+     * times the quantity needed.</p>
+     * @param product Product to cost.
+     * @return Rolled-up part cost, in dollars.
+     * @throws IllegalStateException If the sub-assemblies contain a cycle.
+     */
+    public static double getMaterialCost(Product product) {
+        return Money.toDouble(getMaterialCostCents(product));
+    }
+
+    /**
+     * <p>Gets the material cost of one unit of a product in cents, with parts
+     * and sub-assemblies from the default store.</p>
+     * @param product Product to cost.
+     * @return Rolled-up part cost in cents.
+     * @throws IllegalStateException If the sub-assemblies contain a cycle.
+     */
+    public static long getMaterialCostCents(Product product) {
+        return getMaterialCostCents(InventoryRegistry.getDefault(), product);
+    }
+
+    /**
+     * <p>Gets the material cost of one unit of a product in cents. Summed in
+     * whole cents, so the cost is exact however deep the tree goes.</p>
+     * @param store Store to look parts and sub-assemblies up in.
+     * @param product Product to cost.
+     * @return Rolled-up part cost in cents.
+     * @throws IllegalStateException If the sub-assemblies contain a cycle.
+     */
+    public static long getMaterialCostCents(InventoryStore store, Product product) {
+        return index(store).getMaterialCostCents(product);
+    }
+
+    /**
+     * <p>Gets how many units of a product the parts in stock in the default
+     * store would build.</p>
+     * @param product Product to build.
+     * @return Buildable units, as for getBuildableCount(InventoryStore, Product).
+     * @throws IllegalStateException If the sub-assemblies contain a cycle.
+     */
+    public static long getBuildableCount(Product product) {
+        return getBuildableCount(InventoryRegistry.getDefault(), product);
+    }
+
+    /**
+     * <p>Gets how many units of a product the parts in stock would build, with
+     * every sub-assembly built from parts as well.</p>
+     * @param store Store to take parts and sub-assemblies from.
+     * @param product Product to build.
+     * @return Buildable units. 0 if a required part is not in the store, and
+     * Long.MAX_VALUE if the product needs no parts at all.
+     * @throws IllegalStateException If the sub-assemblies contain a cycle.
+     */
+    public static long getBuildableCount(InventoryStore store, Product product) {
+        return index(store).getBuildableCount(product);
+    }
+
+    /**
+     * <p>Checks for a sub-assembly cycle among the products of the default store.</p>
+     * @param productId Product that would contain the sub-assembly.
+     * @param subAssemblyId Product that would become the sub-assembly.
+     * @return True if the pair would make a cycle.
+     */
+    public static boolean wouldCreateCycle(int productId, int subAssemblyId) {
+        return wouldCreateCycle(InventoryRegistry.getDefault(), productId, subAssemblyId);
+    }
+
+    /**
+     * <p>Checks whether making one product a sub-assembly of another would make
+     * a cycle: the same product, or one that already contains the other.</p>
+     * @param store Store the products are in.
+     * @param productId Product that would contain the sub-assembly.
+     * @param subAssemblyId Product that would become the sub-assembly.
+     * @return True if the pair would make a cycle.
+     */
+    public static boolean wouldCreateCycle(InventoryStore store, int productId, int subAssemblyId) {
+        return index(store).wouldCreateCycle(productId, subAssemblyId);
+    }
+
+    /**
+     * <p>Checks whether any product in the default store uses a product as a
+     * sub-assembly.</p>
+     * @param productId Product id.
+     * @return True if another product contains it.
+     */
+    public static boolean isUsedAsSubAssembly(int productId) {
+        return isUsedAsSubAssembly(InventoryRegistry.getDefault(), productId);
+    }
+
+    /**
+     * <p>Checks whether any product in a store uses a product as a sub-assembly.</p>
+     * @param store Store to check.
+     * @param productId Product id.
+     * @return True if another product contains it.
+     */
+    public static boolean isUsedAsSubAssembly(InventoryStore store, int productId) {
+        return index(store).isUsedAsSubAssembly(productId);
+    }
+
+    /**
+     * <p>Checks whether any product in the default store lists a part.</p>
+     * @param partId Part id.
+     * @return True if a product uses it directly.
+     */
+    public static boolean isPartUsed(int partId) {
+        return isPartUsed(InventoryRegistry.getDefault(), partId);
+    }
+
+    /**
+     * <p>Checks whether any product in a store lists a part.</p>
+     * @param store Store to check.
+     * @param partId Part id.
+     * @return True if a product uses it directly.
+     */
+    public static boolean isPartUsed(InventoryStore store, int partId) {
+        return index(store).isPartUsed(partId);
+    }
+}
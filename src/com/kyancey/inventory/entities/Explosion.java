@@ -0,0 +1,82 @@
+package com.kyancey.inventory.entities;
+
+import java.util.Arrays;
+
+/**
+ * <p>The flattened part requirements of one unit of a product: every part it
+ * needs, directly or through any depth of sub-assemblies, with the total
+ * quantity. Parts are held in id order in primitive arrays.</p>
+ * <p>Immutable. A product's explosion is shared by everything that contains
+ * it, and replaced rather than changed when its bill of materials changes.</p>
+ */
+public final class Explosion {
+    static final Explosion EMPTY = new Explosion(new int[0], new long[0]);
+
+    private final int[] partIds;
+    private final long[] quantities;
+
+    Explosion(int[] partIds, long[] quantities) {
+        this.partIds = partIds;
+        this.quantities = quantities;
+    }
+
+    /**
+     * <p>Gets the number of distinct parts required.</p>
+     * @return Part count.
+     */
+    public int getPartCount() {
+        return partIds.length;
+    }
+
+    /**
+     * <p>Gets the part id at a position.</p>
+     * @param index Position from 0 to getPartCount() - 1, in id order.
+     * @return Part id.
+     */
+    public int getPartId(int index) {
+        return partIds[index];
+    }
+
+    /**
+     * <p>Gets the quantity at a position.</p>
+     * @param index Position from 0 to getPartCount() - 1, in id order.
+     * @return Quantity of that part per unit of the product.
+     */
+    public long getQuantity(int index) {
+        return quantities[index];
+    }
+
+    /**
+     * <p>Gets the quantity of one part.</p>
+     * @param partId Part id.
+     * @return Quantity per unit of the product, 0 if the part is not required.
+     */
+    public long getQuantityOf(int partId) {
+        int index = Arrays.binarySearch(partIds, partId);
+        return index >= 0 ? quantities[index] : 0;
+    }
+
+    /**
+     * <p>Gets the required part ids.</p>
+     * @return Copy of the ids, in ascending order.
+     */
+    public int[] getPartIds() {
+        return partIds.clone();
+    }
+
+    /**
+     * <p>Gets the required quantities.</p>
+     * @return Copy of the quantities, matching getPartIds().
+     */
+    public long[] getQuantities() {
+        return quantities.clone();
+    }
+
+    int[] partIds() {
+        return partIds;
+    }
+
+    long[] quantities() {
+        return quantities;
+    }
+}
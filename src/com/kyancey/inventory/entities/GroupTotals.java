@@ -0,0 +1,117 @@
+package com.kyancey.inventory.entities;
+
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleLongProperty;
+
+/**
+ * <p>Running totals for one group of parts: the parts from one supplier or made
+ * on one machine. Kept as properties so a summary table updates as they change.
+ * Value is kept in cents so adding and taking away parts never drifts.</p>
+ */
+public class GroupTotals {
+    private final String group;
+    private final IntegerProperty partCount = new SimpleIntegerProperty(this, "partCount");
+    private final LongProperty units = new SimpleLongProperty(this, "units");
+    private final LongProperty valueCents = new SimpleLongProperty(this, "valueCents");
+    private final IntegerProperty belowMinCount = new SimpleIntegerProperty(this, "belowMinCount");
+
+    /**
+     * <p>Constructor</p>
+     * @param group Group label, such as "Machine 12" or "Supplier: Acme".
+     */
+    public GroupTotals(String group) {
+        this.group = group;
+    }
+
+    /**
+     * <p>Gets the group label.</p>
+     * @return Group label.
+     */
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * <p>Gets the number of parts in the group.</p>
+     * @return Part count.
+     */
+    public int getPartCount() {
+        return partCount.get();
+    }
+
+    /**
+     * <p>Gets the part count property.</p>
+     * @return Part count property.
+     */
+    public ReadOnlyIntegerProperty partCountProperty() {
+        return partCount;
+    }
+
+    /**
+     * <p>Gets the units in stock over all parts in the group.</p>
+     * @return Unit count.
+     */
+    public long getUnits() {
+        return units.get();
+    }
+
+    /**
+     * <p>Gets the units property.</p>
+     * @return Units property.
+     */
+    public ReadOnlyLongProperty unitsProperty() {
+        return units;
+    }
+
+    /**
+     * <p>Gets the inventory value, price times stock summed over the group.</p>
+     * @return Value in cents.
+     */
+    public long getValueCents() {
+        return valueCents.get();
+    }
+
+    /**
+     * <p>Gets the value property.</p>
+     * @return Value in cents property.
+     */
+    public ReadOnlyLongProperty valueCentsProperty() {
+        return valueCents;
+    }
+
+    /**
+     * <p>Gets the number of parts in the group with stock below their minimum.</p>
+     * @return Below minimum count.
+     */
+    public int getBelowMinCount() {
+        return belowMinCount.get();
+    }
+
+    /**
+     * <p>Gets the below minimum count property.</p>
+     * @return Below minimum count property.
+     */
+    public ReadOnlyIntegerProperty belowMinCountProperty() {
+        return belowMinCount;
+    }
+
+    /**
+     * <p>Adds one part's contribution, or takes it away.</p>
+     * @param sign 1 to add, -1 to take away.
+     * @param stock Part stock.
+     * @param valueCents Part price times stock, in cents.
+     * @param belowMin True if the part's stock is below its minimum.
+     */
+    void apply(int sign, int stock, long valueCents, boolean belowMin) {
+        partCount.set(partCount.get() + sign);
+        units.set(units.get() + sign * (long) stock);
+        this.valueCents.set(this.valueCents.get() + sign * valueCents);
+        if (belowMin) {
+            belowMinCount.set(belowMinCount.get() + sign);
+        }
+    }
+}
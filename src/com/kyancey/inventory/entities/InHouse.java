@@ -1,10 +1,14 @@
 package com.kyancey.inventory.entities;
 
+import com.kyancey.inventory.util.Money;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+
 /**
  * <p>This class stores parts that are manufactured in house.</p>
  */
 public class InHouse extends Part {
-    private int machineId;
+    private final IntegerProperty machineId;
 
     /**
      * <p>Constructor</p>
@@ -17,8 +21,28 @@ public class InHouse extends Part {
      * @param machineId Id of the machine that made the part.
      */
     public InHouse(int id, String name, double price, int stock, int min, int max, int machineId) {
-        super(id, name, price, stock, min, max);
-        this.machineId = machineId;
+        this(id, name, Money.fromDouble(price), stock, min, max, machineId);
+    }
+
+    private InHouse(int id, String name, long priceCents, int stock, int min, int max, int machineId) {
+        super(id, name, priceCents, stock, min, max);
+        this.machineId = new SimpleIntegerProperty(this, "machineId", machineId);
+        watch(this.machineId);
+    }
+
+    /**
+     * <p>Creates an In-House part with its price given in cents.</p>
+     * @param id Part Id.
+     * @param name Part name.
+     * @param priceCents Part price in cents.
+     * @param stock How many of the part in stock.
+     * @param min Minimum number of the part in stock.
+     * @param max Maximum number of the part in stock.
+     * @param machineId Id of the machine that made the part.
+     * @return New part.
+     */
+    public static InHouse ofCents(int id, String name, long priceCents, int stock, int min, int max, int machineId) {
+        return new InHouse(id, name, priceCents, stock, min, max, machineId);
     }
 
     /**
@@ -26,7 +50,7 @@ public class InHouse extends Part {
      * @return Machine id.
      */
     public int getMachineId() {
-        return machineId;
+        return machineId.get();
     }
 
     /**
@@ -34,6 +58,14 @@ public class InHouse extends Part {
      * @param machineId Machine id.
      */
     public void setMachineId(int machineId) {
-        this.machineId = machineId;
+        this.machineId.set(machineId);
+    }
+
+    /**
+     * <p>Gets the machine id property.</p>
+     * @return Machine id property.
+     */
+    public IntegerProperty machineIdProperty() {
+        return machineId;
     }
 }
@@ -1,27 +1,24 @@
 package com.kyancey.inventory.entities;
 
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import java.util.ArrayList;
 
 /**
  * <p>The inventory class stores the inventory of parts and products.</p>
- * FUTURE ENHANCEMENT: Might want to consider doing something about referential
- * integrity in the future. While it makes sense that products may still exist
- * that were created from parts that no longer exist, it would make more sense
- * to prevent the parts from being deleted until all of the derivative products
- * are gone. The parts min, max, and inventory could simply be set to 0.
+ * <p>It is the store named "default" in InventoryRegistry; every method here
+ * calls that store. Code that works with one of several inventories takes an
+ * InventoryStore instead.</p>
+ * <p>A part is not deleted while a product still uses it, nor a product while
+ * another product uses it as a sub-assembly.</p>
  */
 public class Inventory {
-    private static ObservableList<Part> allParts = FXCollections.observableArrayList(new ArrayList<>());
-    private static ObservableList<Product> allProducts = FXCollections.observableArrayList(new ArrayList<>());
+    private static final InventoryStore store = InventoryRegistry.getDefault();
 
     /**
      * <p>Adds a part to the inventory.</p>
      * @param newPart Part to be added to the inventory.
      */
     public static void addPart(Part newPart) {
-        allParts.add(newPart);
+        store.addPart(newPart);
     }
 
     /**
@@ -29,7 +26,7 @@ public class Inventory {
      * @param newProduct Product to be added to the inventory.
      */
     public static void addProduct(Product newProduct) {
-        allProducts.add(newProduct);
+        store.addProduct(newProduct);
     }
 
     /**
@@ -39,13 +36,7 @@ public class Inventory {
      * @return Part with matching id or null if no part matches.
      */
     public static Part lookupPart(int partId) {
-        Part result = null;
-        for (Part p : allParts) {
-            if (p.getId() == partId) {
-                result = p;
-            }
-        }
-        return result;
+        return store.lookupPart(partId);
     }
 
     /**
@@ -55,13 +46,25 @@ public class Inventory {
      * @return Product with matching id or null if no product matches.
      */
     public static Product lookupProduct(int productId) {
-        Product result = null;
-        for (Product p: allProducts) {
-            if (p.getId() == productId) {
-                result = p;
-            }
-        }
-        return result;
+        return store.lookupProduct(productId);
+    }
+
+    /**
+     * <p>Generates a part ID one past the highest id inventory has held. Ids
+     * of deleted parts are not reused.</p>
+     * @return Numeric ID
+     */
+    public static int generatePartID() {
+        return store.generatePartID();
+    }
+
+    /**
+     * <p>Generates a product ID one past the highest id inventory has held.
+     * Ids of deleted products are not reused.</p>
+     * @return Numeric ID
+     */
+    public static int generateProductID() {
+        return store.generateProductID();
     }
 
     /**
@@ -71,13 +74,7 @@ public class Inventory {
      * @return ObservableList of matching parts.
      */
     public static ObservableList<Part> lookupPart(String partName) {
-        ObservableList<Part> result = FXCollections.observableArrayList(new ArrayList<>());
-        for (Part p: allParts) {
-            if (p.getName().equals(partName)) {
-                result.add(p);
-            }
-        }
-        return result;
+        return store.lookupPart(partName);
     }
 
     /**
@@ -87,13 +84,7 @@ public class Inventory {
      * @return ObservableList of matching products.
      */
     public static ObservableList<Product> lookupProduct(String productName) {
-        ObservableList<Product> result = FXCollections.observableArrayList(new ArrayList<>());
-        for (Product p: allProducts) {
-            if (p.getName().equals(productName)) {
-                result.add(p);
-            }
-        }
-        return result;
+        return store.lookupProduct(productName);
     }
 
     /**
@@ -102,15 +93,12 @@ public class Inventory {
      * ObservableList in the GUI so that indices match the same referenced part.</p>
      * @param index Index of part
      * @param selectedPart Part object with updated data.
+     * @deprecated Indexes shift when other parts are added or deleted. Use
+     * updatePart(Part) or compareAndUpdatePart(Part, long), which go by id.
      */
+    @Deprecated
     public static void updatePart(int index, Part selectedPart) {
-        Part p = allParts.get(index);
-        p.setId(selectedPart.getId());
-        p.setName(selectedPart.getName());
-        p.setStock(selectedPart.getStock());
-        p.setPrice(selectedPart.getPrice());
-        p.setMin(selectedPart.getMin());
-        p.setMax(selectedPart.getMax());
+        store.updatePart(index, selectedPart);
     }
 
     /**
@@ -119,45 +107,128 @@ public class Inventory {
      * ObservableList in the GUI so that indices match the same referenced product.</p>
      * @param index Index of product
      * @param newProduct Product object with updated data
+     * @deprecated Indexes shift when other products are added or deleted. Use
+     * updateProduct(Product) or compareAndUpdateProduct(Product, long), which
+     * go by id.
      */
+    @Deprecated
     public static void updateProduct(int index, Product newProduct) {
-        Product p = allProducts.get(index);
-        p.setId(newProduct.getId());
-        p.setName(newProduct.getName());
-        p.setStock(newProduct.getStock());
-        p.setPrice(newProduct.getPrice());
-        p.setMin(newProduct.getMin());
-        p.setMax(newProduct.getMax());
+        store.updateProduct(index, newProduct);
     }
 
     /**
-     * <p>Deletes part from inventory.</p>
+     * <p>Updates a part in place, keyed by the id of the part passed in.</p>
+     * <p>If the stored part is the same type as the updated part, its fields are
+     * copied over in one edit so that every reference to it stays valid, and
+     * the list fires a single update event, or none if nothing changed. If the
+     * type changed (In-House to Outsourced or back), the updated part takes the
+     * old part's position in the list, which is a single replace at that
+     * position. Products refer to parts by id, so they see the new part without
+     * being touched. Either way bound tables only redraw the affected row.</p>
+     * @param updatedPart Part object with updated data.
+     * @return True if a part with that id existed. False if it was not found.
+     */
+    public static boolean updatePart(Part updatedPart) {
+        return store.updatePart(updatedPart);
+    }
+
+    /**
+     * <p>Updates a part only if nobody has changed it since it was read, keyed
+     * by the id of the part passed in.</p>
+     * <p>Pass the version the part had when the edit started. If the stored
+     * part still has that version this is the same as updatePart(Part). If
+     * not, another change landed in between and nothing is written, so the
+     * caller can reload and decide rather than silently overwrite it. Nothing
+     * is locked while the edit is in progress.</p>
+     * @param updatedPart Part object with updated data.
+     * @param expectedVersion Version of the part when it was read.
+     * @return True if the part was updated. False if it was not found or has
+     * changed since; lookupPart() tells which.
+     */
+    public static boolean compareAndUpdatePart(Part updatedPart, long expectedVersion) {
+        return store.compareAndUpdatePart(updatedPart, expectedVersion);
+    }
+
+    /**
+     * <p>Updates a product in place, keyed by the id of the product passed in.
+     * Its fields, associated parts and sub-assemblies are copied over, so
+     * every reference to the stored product stays valid.</p>
+     * @param updatedProduct Product object with updated data.
+     * @return True if a product with that id existed. False if it was not found.
+     */
+    public static boolean updateProduct(Product updatedProduct) {
+        return store.updateProduct(updatedProduct);
+    }
+
+    /**
+     * <p>Updates a product only if nobody has changed it since it was read,
+     * keyed by the id of the product passed in. See
+     * compareAndUpdatePart(Part, long).</p>
+     * @param updatedProduct Product object with updated data.
+     * @param expectedVersion Version of the product when it was read.
+     * @return True if the product was updated. False if it was not found or
+     * has changed since; lookupProduct() tells which.
+     */
+    public static boolean compareAndUpdateProduct(Product updatedProduct, long expectedVersion) {
+        return store.compareAndUpdateProduct(updatedProduct, expectedVersion);
+    }
+
+    /**
+     * <p>Deletes part from inventory, unless a product still uses it.</p>
      * @param selectedPart Part to be deleted.
-     * @return True if part existed. False if part was not found.
+     * @return True if part existed. False if part was not found or a
+     * product still uses it.
      */
     public static boolean deletePart(Part selectedPart) {
-        for (int i = 0; i < allParts.size(); i++) {
-            if(allParts.get(i).getId() == selectedPart.getId()) {
-                allParts.remove(i);
-                return true;
-            }
-        }
-        return false;
+        return store.deletePart(selectedPart);
     }
 
     /**
-     * <p>Deletes product from inventory.</p>
+     * <p>Deletes product from inventory, unless another product still uses it
+     * as a sub-assembly.</p>
      * @param selectedProduct Product to be deleted.
-     * @return True if product existed. False if product was not found.
+     * @return True if product existed. False if product was not found or
+     * another product still uses it.
      */
     public static boolean deleteProduct(Product selectedProduct) {
-        for (int i = 0; i < allProducts.size(); i++) {
-            if(allProducts.get(i).getId() == selectedProduct.getId()) {
-                allProducts.remove(i);
-                return true;
-            }
-        }
-        return false;
+        return store.deleteProduct(selectedProduct);
+    }
+
+    /**
+     * <p>Deletes part from inventory even if a product still uses it. Only for
+     * applying deletes copied from another inventory, as a replica does.</p>
+     * @param selectedPart Part to be deleted.
+     * @return True if part existed. False if part was not found.
+     */
+    public static boolean forceDeletePart(Part selectedPart) {
+        return store.forceDeletePart(selectedPart);
+    }
+
+    /**
+     * <p>Deletes product from inventory without the checks deleteProduct()
+     * makes. Only for applying deletes copied from another inventory.</p>
+     * @param selectedProduct Product to be deleted.
+     * @return True if product existed. False if product was not found.
+     */
+    public static boolean forceDeleteProduct(Product selectedProduct) {
+        return store.forceDeleteProduct(selectedProduct);
+    }
+
+    /**
+     * <p>Gets a consistent read-only version of the whole inventory. This is O(1)
+     * and never blocks editing; the snapshot simply stops seeing edits made
+     * after it was taken. Safe to call from any thread.</p>
+     * @return Current inventory snapshot.
+     */
+    public static InventorySnapshot snapshot() {
+        return store.snapshot();
+    }
+
+    /**
+     * <p>Removes every part and product from inventory.</p>
+     */
+    public static void clear() {
+        store.clear();
     }
 
     /**
@@ -165,13 +236,33 @@ public class Inventory {
      * @return ObservableList of all parts in inventory.
      */
     public static ObservableList<Part> getAllParts() {
-        return FXCollections.observableArrayList(allParts);
+        return store.getAllParts();
     }
 
     /** <p>Get a list of all the products in inventory.</p>
      * @return ObservableList of all products in inventory.
      */
     public static ObservableList<Product> getAllProducts() {
-        return FXCollections.observableArrayList(allProducts);
+        return store.getAllProducts();
+    }
+
+    /**
+     * <p>Get a read-only live view of the parts in inventory. Unlike
+     * getAllParts(), no copy is made and changes to the inventory show up
+     * in the view as they happen.</p>
+     * @return Unmodifiable ObservableList backed by the inventory.
+     */
+    public static ObservableList<Part> getAllPartsView() {
+        return store.getAllPartsView();
+    }
+
+    /**
+     * <p>Get a read-only live view of the products in inventory. Unlike
+     * getAllProducts(), no copy is made and changes to the inventory show up
+     * in the view as they happen.</p>
+     * @return Unmodifiable ObservableList backed by the inventory.
+     */
+    public static ObservableList<Product> getAllProductsView() {
+        return store.getAllProductsView();
     }
 }
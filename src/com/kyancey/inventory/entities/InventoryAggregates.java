@@ -0,0 +1,241 @@
+package com.kyancey.inventory.entities;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Live inventory totals grouped by supplier (Outsourced company name) and by
+ * machine (In-House machine id).</p>
+ * <p>Each part's last contribution is remembered, so an edit takes the old
+ * contribution out of its old group and puts the new one in, whatever field
+ * changed. Every edit is O(1) and reading a group's totals is O(1). Groups
+ * appear with their first part and disappear with their last. The parts in each
+ * group are kept too, so queries can use a group as an index.</p>
+ * <p>Each store has its own groups, built the first time the store is asked
+ * about; the methods without a store use the default one. Call from the
+ * thread that edits the store.</p>
+ */
+public class InventoryAggregates {
+    /**
+     * <p>What one part currently adds to its group.</p>
+     */
+    private static final class Contribution {
+        final GroupTotals group;
+        final Object key;
+        final int stock;
+        final long valueCents;
+        final boolean belowMin;
+
+        Contribution(GroupTotals group, Object key, int stock, long valueCents, boolean belowMin) {
+            this.group = group;
+            this.key = key;
+            this.stock = stock;
+            this.valueCents = valueCents;
+            this.belowMin = belowMin;
+        }
+    }
+
+    /**
+     * <p>The groups of one store.</p>
+     */
+    private static final class Index {
+        private final Map<String, GroupTotals> bySupplier = new HashMap<>();
+        private final Map<Integer, GroupTotals> byMachine = new HashMap<>();
+        private final Map<Part, Contribution> contributions = new IdentityHashMap<>();
+        private final Map<GroupTotals, Set<Part>> members = new IdentityHashMap<>();
+        private final ObservableList<GroupTotals> groups = FXCollections.observableArrayList();
+        private final ObservableList<GroupTotals> groupsView = FXCollections.unmodifiableObservableList(groups);
+
+        Index(InventoryStore store) {
+            store.getAllPartsView().forEach(this::add);
+            store.getAllPartsView().addListener((ListChangeListener<Part>) c -> {
+                while (c.next()) {
+                    if (c.wasUpdated()) {
+                        for (int i = c.getFrom(); i < c.getTo(); i++) {
+                            remove(c.getList().get(i));
+                            add(c.getList().get(i));
+                        }
+                    } else {
+                        c.getRemoved().forEach(this::remove);
+                        c.getAddedSubList().forEach(this::add);
+                    }
+                }
+            });
+        }
+
+        ObservableList<GroupTotals> getGroups() {
+            return groupsView;
+        }
+
+        GroupTotals getSupplierTotals(String companyName) {
+            return bySupplier.get(companyName);
+        }
+
+        GroupTotals getMachineTotals(int machineId) {
+            return byMachine.get(machineId);
+        }
+
+        Set<Part> getSupplierParts(String companyName) {
+            GroupTotals group = bySupplier.get(companyName);
+            return group == null ? Collections.emptySet() : Collections.unmodifiableSet(members.get(group));
+        }
+
+        Set<Part> getMachineParts(int machineId) {
+            GroupTotals group = byMachine.get(machineId);
+            return group == null ? Collections.emptySet() : Collections.unmodifiableSet(members.get(group));
+        }
+
+        private void add(Part part) {
+            GroupTotals group;
+            Object key;
+            if (part instanceof Outsourced) {
+                String company = ((Outsourced) part).getCompanyName();
+                key = company;
+                group = bySupplier.get(company);
+                if (group == null) {
+                    group = new GroupTotals("Supplier: " + company);
+                    bySupplier.put(company, group);
+                    groups.add(group);
+                }
+            } else if (part instanceof InHouse) {
+                int machine = ((InHouse) part).getMachineId();
+                key = machine;
+                group = byMachine.get(machine);
+                if (group == null) {
+                    group = new GroupTotals("Machine " + machine);
+                    byMachine.put(machine, group);
+                    groups.add(group);
+                }
+            } else {
+                return;
+            }
+            long valueCents = part.getPriceCents() * part.getStock();
+            boolean belowMin = part.getStock() < part.getMin();
+            group.apply(1, part.getStock(), valueCents, belowMin);
+            contributions.put(part, new Contribution(group, key, part.getStock(), valueCents, belowMin));
+            members.computeIfAbsent(group, g -> Collections.newSetFromMap(new IdentityHashMap<>())).add(part);
+        }
+
+        private void remove(Part part) {
+            Contribution old = contributions.remove(part);
+            if (old == null) {
+                return;
+            }
+            old.group.apply(-1, old.stock, old.valueCents, old.belowMin);
+            members.get(old.group).remove(part);
+            if (old.group.getPartCount() == 0) {
+                members.remove(old.group);
+                if (old.key instanceof String) {
+                    bySupplier.remove(old.key);
+                } else {
+                    byMachine.remove(old.key);
+                }
+                groups.remove(old.group);
+            }
+        }
+    }
+
+    private static Index index(InventoryStore store) {
+        return store.getIndex(Index.class, Index::new);
+    }
+
+    /**
+     * <p>Get a read-only live list of every group in the default store.</p>
+     * @return Unmodifiable ObservableList of group totals.
+     */
+    public static ObservableList<GroupTotals> getGroups() {
+        return getGroups(InventoryRegistry.getDefault());
+    }
+
+    /**
+     * <p>Get a read-only live list of every group, suppliers and machines together.</p>
+     * @param store Store whose parts are grouped.
+     * @return Unmodifiable ObservableList of group totals.
+     */
+    public static ObservableList<GroupTotals> getGroups(InventoryStore store) {
+        return index(store).getGroups();
+    }
+
+    /**
+     * <p>Gets the totals for one supplier in the default store.</p>
+     * @param companyName Outsourced company name.
+     * @return Totals, or null if no part comes from that supplier.
+     */
+    public static GroupTotals getSupplierTotals(String companyName) {
+        return getSupplierTotals(InventoryRegistry.getDefault(), companyName);
+    }
+
+    /**
+     * <p>Gets the totals for one supplier.</p>
+     * @param store Store whose parts are grouped.
+     * @param companyName Outsourced company name.
+     * @return Totals, or null if no part comes from that supplier.
+     */
+    public static GroupTotals getSupplierTotals(InventoryStore store, String companyName) {
+        return index(store).getSupplierTotals(companyName);
+    }
+
+    /**
+     * <p>Gets the totals for one machine in the default store.</p>
+     * @param machineId In-House machine id.
+     * @return Totals, or null if no part is made on that machine.
+     */
+    public static GroupTotals getMachineTotals(int machineId) {
+        return getMachineTotals(InventoryRegistry.getDefault(), machineId);
+    }
+
+    /**
+     * <p>Gets the totals for one machine.</p>
+     * @param store Store whose parts are grouped.
+     * @param machineId In-House machine id.
+     * @return Totals, or null if no part is made on that machine.
+     */
+    public static GroupTotals getMachineTotals(InventoryStore store, int machineId) {
+        return index(store).getMachineTotals(machineId);
+    }
+
+    /**
+     * <p>Gets the parts in the default store that come from one supplier.</p>
+     * @param companyName Outsourced company name.
+     * @return Read-only set of parts, empty if there are none.
+     */
+    public static Set<Part> getSupplierParts(String companyName) {
+        return getSupplierParts(InventoryRegistry.getDefault(), companyName);
+    }
+
+    /**
+     * <p>Gets the parts that come from one supplier.</p>
+     * @param store Store whose parts are grouped.
+     * @param companyName Outsourced company name.
+     * @return Read-only set of parts, empty if there are none.
+     */
+    public static Set<Part> getSupplierParts(InventoryStore store, String companyName) {
+        return index(store).getSupplierParts(companyName);
+    }
+
+    /**
+     * <p>Gets the parts in the default store made on one machine.</p>
+     * @param machineId In-House machine id.
+     * @return Read-only set of parts, empty if there are none.
+     */
+    public static Set<Part> getMachineParts(int machineId) {
+        return getMachineParts(InventoryRegistry.getDefault(), machineId);
+    }
+
+    /**
+     * <p>Gets the parts made on one machine.</p>
+     * @param store Store whose parts are grouped.
+     * @param machineId In-House machine id.
+     * @return Read-only set of parts, empty if there are none.
+     */
+    public static Set<Part> getMachineParts(InventoryStore store, int machineId) {
+        return index(store).getMachineParts(machineId);
+    }
+}
@@ -0,0 +1,99 @@
+package com.kyancey.inventory.entities;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * <p>Sorted orders of the inventory lists, one per SortKey, for tables to show
+ * instead of sorting on every column click. An order is built the first time
+ * it is asked for and kept up to date from then on, so only the orders
+ * actually used cost anything on each edit.</p>
+ * <p>Each store has its own orders; the methods without a store use the
+ * default one. Call from the thread that edits the store.</p>
+ */
+public class InventoryOrders {
+    /**
+     * <p>The orders built so far for one store.</p>
+     */
+    private static final class Index {
+        private final InventoryStore store;
+        private final Map<SortKey, SortedOrder<Part>> partOrders = new EnumMap<>(SortKey.class);
+        private final Map<SortKey, SortedOrder<Product>> productOrders = new EnumMap<>(SortKey.class);
+
+        Index(InventoryStore store) {
+            this.store = store;
+        }
+
+        SortedOrder<Part> parts(SortKey key) {
+            return partOrders.computeIfAbsent(key, k -> {
+                switch (k) {
+                    case NAME:
+                        return new SortedOrder<>(store.getAllPartsView(), Part::getName, Part::getId);
+                    case STOCK:
+                        return new SortedOrder<>(store.getAllPartsView(), Part::getStock, Part::getId);
+                    case PRICE:
+                        return new SortedOrder<>(store.getAllPartsView(), Part::getPriceCents, Part::getId);
+                    default:
+                        return new SortedOrder<>(store.getAllPartsView(), Part::getId, Part::getId);
+                }
+            });
+        }
+
+        SortedOrder<Product> products(SortKey key) {
+            return productOrders.computeIfAbsent(key, k -> {
+                switch (k) {
+                    case NAME:
+                        return new SortedOrder<>(store.getAllProductsView(), Product::getName, Product::getId);
+                    case STOCK:
+                        return new SortedOrder<>(store.getAllProductsView(), Product::getStock, Product::getId);
+                    case PRICE:
+                        return new SortedOrder<>(store.getAllProductsView(), Product::getPriceCents, Product::getId);
+                    default:
+                        return new SortedOrder<>(store.getAllProductsView(), Product::getId, Product::getId);
+                }
+            });
+        }
+    }
+
+    private static Index index(InventoryStore store) {
+        return store.getIndex(Index.class, Index::new);
+    }
+
+    /**
+     * <p>Gets the parts of the default store sorted by a field, lowest first.</p>
+     * @param key Field to sort by.
+     * @return Live read-only sorted list.
+     */
+    public static SortedOrder<Part> parts(SortKey key) {
+        return parts(InventoryRegistry.getDefault(), key);
+    }
+
+    /**
+     * <p>Gets the parts sorted by a field, lowest first.</p>
+     * @param store Store whose parts are sorted.
+     * @param key Field to sort by.
+     * @return Live read-only sorted list.
+     */
+    public static SortedOrder<Part> parts(InventoryStore store, SortKey key) {
+        return index(store).parts(key);
+    }
+
+    /**
+     * <p>Gets the products of the default store sorted by a field, lowest first.</p>
+     * @param key Field to sort by.
+     * @return Live read-only sorted list.
+     */
+    public static SortedOrder<Product> products(SortKey key) {
+        return products(InventoryRegistry.getDefault(), key);
+    }
+
+    /**
+     * <p>Gets the products sorted by a field, lowest first.</p>
+     * @param store Store whose products are sorted.
+     * @param key Field to sort by.
+     * @return Live read-only sorted list.
+     */
+    public static SortedOrder<Product> products(InventoryStore store, SortKey key) {
+        return index(store).products(key);
+    }
+}
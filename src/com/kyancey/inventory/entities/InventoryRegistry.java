@@ -0,0 +1,91 @@
+package com.kyancey.inventory.entities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>The named inventories of this process, one per tenant or warehouse, so a
+ * single JVM can serve many of them instead of one JVM each.</p>
+ * <p>The store named "default" always exists and is the one the static
+ * Inventory class and everything built on it use. Other stores are created
+ * with a budget and bound to controllers as needed. Creating, finding and
+ * removing stores is safe from any thread; each store is then edited from one
+ * thread.</p>
+ */
+public final class InventoryRegistry {
+    /** Name of the store behind the static Inventory class. */
+    public static final String DEFAULT_NAME = "default";
+
+    private static final Map<String, InventoryStore> stores = new ConcurrentHashMap<>();
+    private static final InventoryStore defaultStore = new InventoryStore(DEFAULT_NAME, InventoryStore.Budget.UNLIMITED);
+
+    static {
+        stores.put(DEFAULT_NAME, defaultStore);
+    }
+
+    private InventoryRegistry() {
+    }
+
+    /**
+     * <p>Gets the default store, the one behind the static Inventory class.</p>
+     * @return Default store.
+     */
+    public static InventoryStore getDefault() {
+        return defaultStore;
+    }
+
+    /**
+     * <p>Creates an empty store under a new name.</p>
+     * @param name Store name.
+     * @param budget Limits for the store.
+     * @return New store, or null if the name is already taken.
+     */
+    public static InventoryStore create(String name, InventoryStore.Budget budget) {
+        InventoryStore store = new InventoryStore(name, budget);
+        return stores.putIfAbsent(name, store) == null ? store : null;
+    }
+
+    /**
+     * <p>Gets a store by name, creating it with a budget if there is none.</p>
+     * @param name Store name.
+     * @param budget Limits for the store if it is created. An existing store
+     * keeps its own.
+     * @return Store with that name.
+     */
+    public static InventoryStore getOrCreate(String name, InventoryStore.Budget budget) {
+        return stores.computeIfAbsent(name, n -> new InventoryStore(n, budget));
+    }
+
+    /**
+     * <p>Looks up a store by name.</p>
+     * @param name Store name.
+     * @return Store, or null if there is none with that name.
+     */
+    public static InventoryStore lookup(String name) {
+        return stores.get(name);
+    }
+
+    /**
+     * <p>Removes a store from the registry. Its parts and products go with it
+     * once nothing else refers to them.</p>
+     * @param name Store name.
+     * @return True if the store existed. False if there was none, or for the
+     * default store, which cannot be removed.
+     */
+    public static boolean remove(String name) {
+        return !DEFAULT_NAME.equals(name) && stores.remove(name) != null;
+    }
+
+    /**
+     * <p>Gets the names of every store, the default included.</p>
+     * @return Sorted read-only list of names.
+     */
+    public static List<String> getNames() {
+        List<String> names = new ArrayList<>(stores.keySet());
+        Collections.sort(names);
+        return Collections.unmodifiableList(names);
+    }
+}
@@ -0,0 +1,345 @@
+package com.kyancey.inventory.entities;
+
+import com.kyancey.inventory.util.Money;
+import com.kyancey.inventory.util.PersistentIntMap;
+
+import java.util.List;
+
+/**
+ * <p>A consistent, read-only version of the inventory. Reports and other long
+ * running readers take one with Inventory.snapshot() and can iterate it for as
+ * long as they like while the inventory keeps changing underneath.</p>
+ * <p>Snapshots share structure with each other, so taking one is O(1) and each
+ * edit only copies the handful of trie nodes on the path to the edited entry.
+ * Older versions are garbage collected once no reader refers to them.</p>
+ */
+public final class InventorySnapshot {
+    static final InventorySnapshot EMPTY = new InventorySnapshot(0, PersistentIntMap.empty(), PersistentIntMap.empty());
+
+    private final long version;
+    private final PersistentIntMap<PartRow> parts;
+    private final PersistentIntMap<ProductRow> products;
+
+    InventorySnapshot(long version, PersistentIntMap<PartRow> parts, PersistentIntMap<ProductRow> products) {
+        this.version = version;
+        this.parts = parts;
+        this.products = products;
+    }
+
+    /**
+     * <p>Gets the version number. Every add, update, delete or clear produces
+     * one new version with a higher number, holding all of that operation and
+     * nothing of the next. A part or product changed directly through its
+     * setters outside edit() produces one per field.</p>
+     * @return Version number.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * <p>Looks up a part by id as it was in this version.</p>
+     * @param partId Part id.
+     * @return Part row or null if no part had that id.
+     */
+    public PartRow lookupPart(int partId) {
+        return parts.get(partId);
+    }
+
+    /**
+     * <p>Looks up a product by id as it was in this version.</p>
+     * @param productId Product id.
+     * @return Product row or null if no product had that id.
+     */
+    public ProductRow lookupProduct(int productId) {
+        return products.get(productId);
+    }
+
+    /**
+     * <p>Gets all parts in this version, ordered by id.</p>
+     * @return List of part rows.
+     */
+    public List<PartRow> getAllParts() {
+        return parts.values();
+    }
+
+    /**
+     * <p>Gets all products in this version, ordered by id.</p>
+     * @return List of product rows.
+     */
+    public List<ProductRow> getAllProducts() {
+        return products.values();
+    }
+
+    /**
+     * <p>Gets the number of parts in this version.</p>
+     * @return Number of parts.
+     */
+    public int getPartCount() {
+        return parts.size();
+    }
+
+    /**
+     * <p>Gets the number of products in this version.</p>
+     * @return Number of products.
+     */
+    public int getProductCount() {
+        return products.size();
+    }
+
+    InventorySnapshot withPart(long version, Part part) {
+        return new InventorySnapshot(version, parts.put(part.getId(), new PartRow(part)), products);
+    }
+
+    InventorySnapshot withoutPart(long version, int partId) {
+        return new InventorySnapshot(version, parts.remove(partId), products);
+    }
+
+    InventorySnapshot withProduct(long version, Product product) {
+        return new InventorySnapshot(version, parts, products.put(product.getId(), new ProductRow(product)));
+    }
+
+    InventorySnapshot withoutProduct(long version, int productId) {
+        return new InventorySnapshot(version, parts, products.remove(productId));
+    }
+
+    /**
+     * <p>Immutable copy of a part's fields.</p>
+     */
+    public static final class PartRow {
+        private final int id;
+        private final String name;
+        private final long priceCents;
+        private final int stock;
+        private final int min;
+        private final int max;
+        private final Integer machineId;
+        private final String companyName;
+        private final long version;
+
+        PartRow(Part part) {
+            this.id = part.getId();
+            this.name = part.getName();
+            this.priceCents = part.getPriceCents();
+            this.stock = part.getStock();
+            this.min = part.getMin();
+            this.max = part.getMax();
+            this.machineId = part instanceof InHouse ? ((InHouse) part).getMachineId() : null;
+            this.companyName = part instanceof Outsourced ? ((Outsourced) part).getCompanyName() : null;
+            this.version = part.getVersion();
+        }
+
+        /**
+         * @return the id
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the price, in dollars
+         */
+        public double getPrice() {
+            return Money.toDouble(priceCents);
+        }
+
+        /**
+         * @return the price in cents
+         */
+        public long getPriceCents() {
+            return priceCents;
+        }
+
+        /**
+         * @return the stock
+         */
+        public int getStock() {
+            return stock;
+        }
+
+        /**
+         * @return the min
+         */
+        public int getMin() {
+            return min;
+        }
+
+        /**
+         * @return the max
+         */
+        public int getMax() {
+            return max;
+        }
+
+        /**
+         * @return Machine id for In-House parts, null for Outsourced parts.
+         */
+        public Integer getMachineId() {
+            return machineId;
+        }
+
+        /**
+         * @return Company name for Outsourced parts, null for In-House parts.
+         */
+        public String getCompanyName() {
+            return companyName;
+        }
+
+        /**
+         * @return Version stamp of the part when this row was taken, for
+         * Inventory.compareAndUpdatePart().
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * <p>Creates a new, independent part with these values.</p>
+         * @return New In-House or Outsourced part.
+         */
+        public Part toPart() {
+            Part part = companyName != null
+                    ? Outsourced.ofCents(id, name, priceCents, stock, min, max, companyName)
+                    : InHouse.ofCents(id, name, priceCents, stock, min, max, machineId);
+            part.setVersion(version);
+            return part;
+        }
+    }
+
+    /**
+     * <p>Immutable copy of a product's fields. Associated parts and
+     * sub-assemblies are recorded by id with their quantities.</p>
+     */
+    public static final class ProductRow {
+        private final int id;
+        private final String name;
+        private final long priceCents;
+        private final int stock;
+        private final int min;
+        private final int max;
+        private final int[] associatedPartIds;
+        private final int[] associatedPartQuantities;
+        private final int[] subAssemblyIds;
+        private final int[] subAssemblyQuantities;
+        private final long version;
+
+        ProductRow(Product product) {
+            this.id = product.getId();
+            this.name = product.getName();
+            this.priceCents = product.getPriceCents();
+            this.stock = product.getStock();
+            this.min = product.getMin();
+            this.max = product.getMax();
+            this.associatedPartIds = product.getAssociatedPartIds();
+            this.associatedPartQuantities = product.getAssociatedPartQuantities();
+            this.subAssemblyIds = product.getSubAssemblyIds();
+            this.subAssemblyQuantities = product.getSubAssemblyQuantities();
+            this.version = product.getVersion();
+        }
+
+        /**
+         * @return the id
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the price, in dollars
+         */
+        public double getPrice() {
+            return Money.toDouble(priceCents);
+        }
+
+        /**
+         * @return the price in cents
+         */
+        public long getPriceCents() {
+            return priceCents;
+        }
+
+        /**
+         * @return the stock
+         */
+        public int getStock() {
+            return stock;
+        }
+
+        /**
+         * @return the min
+         */
+        public int getMin() {
+            return min;
+        }
+
+        /**
+         * @return the max
+         */
+        public int getMax() {
+            return max;
+        }
+
+        /**
+         * @return Copy of the ids of the associated parts.
+         */
+        public int[] getAssociatedPartIds() {
+            return associatedPartIds.clone();
+        }
+
+        /**
+         * @return Copy of the quantities, matching getAssociatedPartIds().
+         */
+        public int[] getAssociatedPartQuantities() {
+            return associatedPartQuantities.clone();
+        }
+
+        /**
+         * @return Copy of the ids of the sub-assemblies.
+         */
+        public int[] getSubAssemblyIds() {
+            return subAssemblyIds.clone();
+        }
+
+        /**
+         * @return Copy of the sub-assembly quantities, matching getSubAssemblyIds().
+         */
+        public int[] getSubAssemblyQuantities() {
+            return subAssemblyQuantities.clone();
+        }
+
+        /**
+         * @return Version stamp of the product when this row was taken, for
+         * Inventory.compareAndUpdateProduct().
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * <p>Creates a new, independent product with these values, including its
+         * associated part and sub-assembly ids and quantities.</p>
+         * @return New product.
+         */
+        public Product toProduct() {
+            Product product = Product.ofCents(id, name, priceCents, stock, min, max);
+            product.setAssociatedParts(associatedPartIds, associatedPartQuantities);
+            product.setSubAssemblies(subAssemblyIds, subAssemblyQuantities);
+            product.setVersion(version);
+            return product;
+        }
+    }
+}
@@ -0,0 +1,786 @@
+package com.kyancey.inventory.entities;
+
+import com.kyancey.inventory.metrics.HotPath;
+import com.kyancey.inventory.util.PersistentIntMap;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * <p>One inventory of parts and products. A process can hold many, each
+ * registered under a name in InventoryRegistry; the static Inventory class is
+ * the one named "default".</p>
+ * <p>A store is small when it is empty: its lists, id maps and lookup filters
+ * all grow with what is added, so hundreds of small stores cost little more
+ * than the parts and products in them. Each has its own snapshots and version
+ * stamps.</p>
+ * <p>Each store has a Budget of entity-count limits. Adding past the part or
+ * product limit, or adding, updating or deleting faster than the operation
+ * limit, is refused and counted, so one busy tenant cannot crowd out the
+ * others. The counts stand in for memory; bytes are not measured. Edits made
+ * through a part's or product's own setters are not counted; they go straight
+ * to the object.</p>
+ * <p>The rollups and indexes kept up to date as inventory changes
+ * (InventoryOrders, InventoryAggregates, BomExplosion, StockHistory,
+ * FuzzySearch, SearchSuggestions and the query catalogs) are kept per store,
+ * built the first time they are used on it and held by it through
+ * getIndex(). Their static methods without a store use the default one.
+ * LocationStock, the change feed and replication follow the default store
+ * only. Call a store's methods from the one thread that edits it.</p>
+ */
+public final class InventoryStore {
+    /**
+     * <p>Entity-count limits for one store: how many parts and products it may
+     * hold and how many operations it may take a second. 0 means no limit.</p>
+     */
+    public static final class Budget {
+        /**
+         * <p>No limits, as for the default store.</p>
+         */
+        public static final Budget UNLIMITED = new Budget(0, 0, 0);
+
+        private final int maxParts;
+        private final int maxProducts;
+        private final int maxOperationsPerSecond;
+
+        /**
+         * <p>Constructor</p>
+         * @param maxParts Most parts the store may hold, or 0 for no limit.
+         * @param maxProducts Most products the store may hold, or 0 for no limit.
+         * @param maxOperationsPerSecond Most adds, updates and deletes the store
+         * accepts in one second, or 0 for no limit.
+         */
+        public Budget(int maxParts, int maxProducts, int maxOperationsPerSecond) {
+            if (maxParts < 0 || maxProducts < 0 || maxOperationsPerSecond < 0) {
+                throw new IllegalArgumentException("Budget limits cannot be negative");
+            }
+            this.maxParts = maxParts;
+            this.maxProducts = maxProducts;
+            this.maxOperationsPerSecond = maxOperationsPerSecond;
+        }
+
+        /**
+         * @return Most parts, 0 for no limit.
+         */
+        public int getMaxParts() {
+            return maxParts;
+        }
+
+        /**
+         * @return Most products, 0 for no limit.
+         */
+        public int getMaxProducts() {
+            return maxProducts;
+        }
+
+        /**
+         * @return Most adds, updates and deletes per second, 0 for no limit.
+         */
+        public int getMaxOperationsPerSecond() {
+            return maxOperationsPerSecond;
+        }
+    }
+
+    private static final long SECOND_NANOS = 1_000_000_000L;
+
+    private final String name;
+    private volatile Budget budget;
+
+    // The extractors turn a change to any field of a part or product into an
+    // update event for just that element.
+    private final ObservableList<Part> allParts = FXCollections.observableList(new ArrayList<>(), Part::getFieldProperties);
+    private final ObservableList<Product> allProducts = FXCollections.observableList(new ArrayList<>(), Product::getFieldProperties);
+    private final ObservableList<Part> allPartsView;
+    private final ObservableList<Product> allProductsView;
+
+    // Id indexes so lookups by id don't have to scan the lists.
+    private final Map<Integer, Part> partsById = new HashMap<>();
+    private final Map<Integer, Product> productsById = new HashMap<>();
+
+    // Membership filters so lookups for ids and names that aren't there return
+    // without touching the indexes or scanning the lists.
+    private final LookupFilter<Part> partFilter = new LookupFilter<>(Part::getId, Part::getName);
+    private final LookupFilter<Product> productFilter = new LookupFilter<>(Product::getId, Product::getName);
+
+    // Latest published version for snapshot readers. Only the thread that edits
+    // the inventory writes this; readers just grab the reference.
+    private volatile InventorySnapshot snapshot = InventorySnapshot.EMPTY;
+
+    // Set while clear() empties the lists, whose snapshot version it has
+    // already published, so the removals do not publish another.
+    private boolean clearing;
+
+    // Next ids to hand out. They only move up, past every id ever stored, so
+    // the id of a deleted part or product is not handed out again.
+    private int nextPartId;
+    private int nextProductId;
+
+    // Operations in the current one-second window, for the operation budget.
+    private long windowStart = System.nanoTime();
+    private int windowOperations;
+    private volatile long operations;
+    private volatile long rejected;
+
+    // Indexes kept on this store's lists by other classes, by class. Built on
+    // the editing thread; concurrent so other threads can find them.
+    private final Map<Class<?>, Object> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * <p>Constructor. Stores are created through InventoryRegistry.</p>
+     * @param name Name the store is registered under.
+     * @param budget Limits for the store.
+     */
+    InventoryStore(String name, Budget budget) {
+        this.name = name;
+        this.budget = budget;
+        // Listeners run in the order they were added, and a view listens to
+        // its list from the moment it is created. Publishing first means that
+        // by the time anyone watching a view hears of a change, the snapshot
+        // and version stamps already include it.
+        allParts.addListener(this::publishPartChanges);
+        allProducts.addListener(this::publishProductChanges);
+        allPartsView = FXCollections.unmodifiableObservableList(allParts);
+        allProductsView = FXCollections.unmodifiableObservableList(allProducts);
+    }
+
+    /**
+     * <p>Gets the name the store is registered under.</p>
+     * @return Store name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * <p>Gets the store's limits.</p>
+     * @return Budget.
+     */
+    public Budget getBudget() {
+        return budget;
+    }
+
+    /**
+     * <p>Changes the store's limits. A store already over a new part or
+     * product limit keeps what it has but accepts no more adds.</p>
+     * @param budget New limits.
+     */
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * <p>Gets how many adds, updates and deletes the store has accepted.</p>
+     * @return Operation count.
+     */
+    public long getOperationCount() {
+        return operations;
+    }
+
+    /**
+     * <p>Gets how many adds, updates and deletes the budget has refused.</p>
+     * @return Refused operation count.
+     */
+    public long getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * <p>Gets an index kept on this store's lists, building it the first time
+     * it is asked for. The index lives as long as the store. Call from the
+     * thread that edits the store, since building one listens to its lists.</p>
+     * @param type Class of the index, which it is kept under.
+     * @param build Builds the index for this store.
+     * @param <T> Index type.
+     * @return The store's index of that type.
+     */
+    public <T> T getIndex(Class<T> type, Function<InventoryStore, T> build) {
+        Object index = indexes.get(type);
+        if (index == null) {
+            // Not computeIfAbsent: building one index may ask for another.
+            index = build.apply(this);
+            indexes.put(type, index);
+        }
+        return type.cast(index);
+    }
+
+    /**
+     * <p>Gets an index only if it has already been built. Safe to call from
+     * any thread.</p>
+     * @param type Class of the index.
+     * @param <T> Index type.
+     * @return The store's index of that type, or null if it has none yet.
+     */
+    public <T> T findIndex(Class<T> type) {
+        return type.cast(indexes.get(type));
+    }
+
+    /**
+     * <p>Adds a part to the inventory.</p>
+     * @param newPart Part to be added to the inventory.
+     * @return True if the part was added. False if the store is at its part
+     * limit or out of operations for this second.
+     */
+    public boolean addPart(Part newPart) {
+        long start = System.nanoTime();
+        int max = budget.getMaxParts();
+        if ((max > 0 && allParts.size() >= max) || !allow(start)) {
+            rejected++;
+            return false;
+        }
+        allParts.add(newPart);
+        partsById.put(newPart.getId(), newPart);
+        nextPartId = after(nextPartId, newPart.getId());
+        HotPath.INVENTORY_ADD_PART.recordSince(start);
+        return true;
+    }
+
+    /**
+     * <p>Adds a product to the inventory.</p>
+     * @param newProduct Product to be added to the inventory.
+     * @return True if the product was added. False if the store is at its
+     * product limit or out of operations for this second.
+     */
+    public boolean addProduct(Product newProduct) {
+        long start = System.nanoTime();
+        int max = budget.getMaxProducts();
+        if ((max > 0 && allProducts.size() >= max) || !allow(start)) {
+            rejected++;
+            return false;
+        }
+        allProducts.add(newProduct);
+        productsById.put(newProduct.getId(), newProduct);
+        nextProductId = after(nextProductId, newProduct.getId());
+        HotPath.INVENTORY_ADD_PRODUCT.recordSince(start);
+        return true;
+    }
+
+    /**
+     * <p>Looks up a single part with a unique part id.</p>
+     * <p><em>Assumption</em>: No two parts will ever have the same id.</p>
+     * @param partId The id of the part to be found.
+     * @return Part with matching id or null if no part matches.
+     */
+    public Part lookupPart(int partId) {
+        long start = System.nanoTime();
+        Part result = partFilter.mightContainId(partId) ? partsById.get(partId) : null;
+        HotPath.INVENTORY_LOOKUP_PART_BY_ID.recordSince(start);
+        return result;
+    }
+
+    /**
+     * <p>Looks up a single product with a unique product id.</p>
+     * <p><em>Assumption</em>: No two products will ever have the same id.</p>
+     * @param productId The id of the product to be found.
+     * @return Product with matching id or null if no product matches.
+     */
+    public Product lookupProduct(int productId) {
+        long start = System.nanoTime();
+        Product result = productFilter.mightContainId(productId) ? productsById.get(productId) : null;
+        HotPath.INVENTORY_LOOKUP_PRODUCT_BY_ID.recordSince(start);
+        return result;
+    }
+
+    /**
+     * <p>Generates a part ID one past the highest id the store has held. Ids
+     * of deleted parts are not reused, so nothing that still refers to an old
+     * part by id can end up pointing at a new one.</p>
+     * @return Numeric ID
+     */
+    public int generatePartID() {
+        long start = System.nanoTime();
+        int id = nextPartId;
+        HotPath.INVENTORY_GENERATE_ID.recordSince(start);
+        return id;
+    }
+
+    /**
+     * <p>Generates a product ID one past the highest id the store has held.
+     * Ids of deleted products are not reused.</p>
+     * @return Numeric ID
+     */
+    public int generateProductID() {
+        long start = System.nanoTime();
+        int id = nextProductId;
+        HotPath.INVENTORY_GENERATE_ID.recordSince(start);
+        return id;
+    }
+
+    /**
+     * <p>Moves an id counter past an id that has been stored. Stops at
+     * Integer.MAX_VALUE rather than wrapping.</p>
+     */
+    private static int after(int next, int id) {
+        return id < next ? next : id == Integer.MAX_VALUE ? id : id + 1;
+    }
+
+    /**
+     * <p>Looks up all parts with the name provided.</p>
+     * <p><em>Assumption:</em> Names are case sensitive.</p>
+     * @param partName Name of part as String.
+     * @return ObservableList of matching parts.
+     */
+    public ObservableList<Part> lookupPart(String partName) {
+        long start = System.nanoTime();
+        ObservableList<Part> result = FXCollections.observableArrayList(new ArrayList<>());
+        if (!partFilter.mightContainName(partName)) {
+            HotPath.INVENTORY_LOOKUP_PART_BY_NAME.recordSince(start);
+            return result;
+        }
+        for (Part p: allParts) {
+            if (p.getName().equals(partName)) {
+                result.add(p);
+            }
+        }
+        HotPath.INVENTORY_LOOKUP_PART_BY_NAME.recordSince(start);
+        return result;
+    }
+
+    /**
+     * <p>Looks up all products with the name provided.</p>
+     * <p><em>Assumption:</em> Names are case sensitive.</p>
+     * @param productName Name of product as String.
+     * @return ObservableList of matching products.
+     */
+    public ObservableList<Product> lookupProduct(String productName) {
+        long start = System.nanoTime();
+        ObservableList<Product> result = FXCollections.observableArrayList(new ArrayList<>());
+        if (!productFilter.mightContainName(productName)) {
+            HotPath.INVENTORY_LOOKUP_PRODUCT_BY_NAME.recordSince(start);
+            return result;
+        }
+        for (Product p: allProducts) {
+            if (p.getName().equals(productName)) {
+                result.add(p);
+            }
+        }
+        HotPath.INVENTORY_LOOKUP_PRODUCT_BY_NAME.recordSince(start);
+        return result;
+    }
+
+    /**
+     * <p>Updates the part at a list position. Backs the deprecated
+     * Inventory.updatePart(int, Part); not budgeted.</p>
+     * @param index Index of part
+     * @param selectedPart Part object with updated data.
+     */
+    void updatePart(int index, Part selectedPart) {
+        long start = System.nanoTime();
+        Part p = allParts.get(index);
+        // A new id is one update; listeners find the old one in getPreviousId(),
+        // and publishPartChanges() moves the part to its new id.
+        p.edit(() -> {
+            p.setId(selectedPart.getId());
+            p.setName(selectedPart.getName());
+            p.setStock(selectedPart.getStock());
+            p.setPriceCents(selectedPart.getPriceCents());
+            p.setMin(selectedPart.getMin());
+            p.setMax(selectedPart.getMax());
+        });
+        HotPath.INVENTORY_UPDATE_PART.recordSince(start);
+    }
+
+    /**
+     * <p>Updates the product at a list position. Backs the deprecated
+     * Inventory.updateProduct(int, Product); not budgeted.</p>
+     * @param index Index of product
+     * @param newProduct Product object with updated data
+     */
+    void updateProduct(int index, Product newProduct) {
+        long start = System.nanoTime();
+        Product p = allProducts.get(index);
+        p.edit(() -> {
+            p.setId(newProduct.getId());
+            p.setName(newProduct.getName());
+            p.setStock(newProduct.getStock());
+            p.setPriceCents(newProduct.getPriceCents());
+            p.setMin(newProduct.getMin());
+            p.setMax(newProduct.getMax());
+        });
+        HotPath.INVENTORY_UPDATE_PRODUCT.recordSince(start);
+    }
+
+    /**
+     * <p>Updates a part in place, keyed by the id of the part passed in.</p>
+     * <p>If the stored part is the same type as the updated part, its fields are
+     * copied over in one edit so that every reference to it stays valid, and
+     * the list fires a single update event, or none if nothing changed. If the
+     * type changed (In-House to Outsourced or back), the updated part takes the
+     * old part's position in the list, which is a single replace at that
+     * position. Products refer to parts by id, so they see the new part without
+     * being touched. Either way bound tables only redraw the affected row.</p>
+     * @param updatedPart Part object with updated data.
+     * @return True if a part with that id existed. False if it was not found
+     * or the store is out of operations for this second.
+     */
+    public boolean updatePart(Part updatedPart) {
+        long start = System.nanoTime();
+        if (!allow(start)) {
+            rejected++;
+            return false;
+        }
+        Part existing = partsById.get(updatedPart.getId());
+        if (existing == null) {
+            HotPath.INVENTORY_UPDATE_PART.recordSince(start);
+            return false;
+        }
+        if (existing.getClass() == updatedPart.getClass()) {
+            existing.edit(() -> {
+                existing.setName(updatedPart.getName());
+                existing.setStock(updatedPart.getStock());
+                existing.setPriceCents(updatedPart.getPriceCents());
+                existing.setMin(updatedPart.getMin());
+                existing.setMax(updatedPart.getMax());
+                if (existing instanceof InHouse) {
+                    ((InHouse) existing).setMachineId(((InHouse) updatedPart).getMachineId());
+                } else if (existing instanceof Outsourced) {
+                    ((Outsourced) existing).setCompanyName(((Outsourced) updatedPart).getCompanyName());
+                }
+            });
+        } else {
+            allParts.set(indexOf(allParts, existing), updatedPart);
+            partsById.put(updatedPart.getId(), updatedPart);
+        }
+        HotPath.INVENTORY_UPDATE_PART.recordSince(start);
+        return true;
+    }
+
+    /**
+     * <p>Updates a part only if nobody has changed it since it was read, keyed
+     * by the id of the part passed in.</p>
+     * <p>Pass the version the part had when the edit started. If the stored
+     * part still has that version this is the same as updatePart(Part). If
+     * not, another change landed in between and nothing is written, so the
+     * caller can reload and decide rather than silently overwrite it. Nothing
+     * is locked while the edit is in progress.</p>
+     * <p>The version check and the write are two steps, not one atomic action.
+     * Like every other method here, call it from the one thread that edits the
+     * store; the version catches edits made while the form was open, not a
+     * second thread writing at the same moment.</p>
+     * @param updatedPart Part object with updated data.
+     * @param expectedVersion Version of the part when it was read.
+     * @return True if the part was updated. False if it was not found, has
+     * changed since, or the budget refused it; lookupPart() and
+     * getRejectedCount() tell which.
+     */
+    public boolean compareAndUpdatePart(Part updatedPart, long expectedVersion) {
+        Part existing = partsById.get(updatedPart.getId());
+        if (existing == null || existing.getVersion() != expectedVersion) {
+            return false;
+        }
+        return updatePart(updatedPart);
+    }
+
+    /**
+     * <p>Updates a product in place, keyed by the id of the product passed in.
+     * Its fields, associated parts and sub-assemblies are copied over in one
+     * edit, so every reference to the stored product stays valid and the list
+     * fires a single update event.</p>
+     * @param updatedProduct Product object with updated data.
+     * @return True if a product with that id existed. False if it was not
+     * found or the store is out of operations for this second.
+     */
+    public boolean updateProduct(Product updatedProduct) {
+        long start = System.nanoTime();
+        if (!allow(start)) {
+            rejected++;
+            return false;
+        }
+        Product existing = productsById.get(updatedProduct.getId());
+        if (existing != null) {
+            existing.edit(() -> {
+                existing.setName(updatedProduct.getName());
+                existing.setPriceCents(updatedProduct.getPriceCents());
+                existing.setStock(updatedProduct.getStock());
+                existing.setMin(updatedProduct.getMin());
+                existing.setMax(updatedProduct.getMax());
+                existing.setAssociatedParts(updatedProduct.getAssociatedPartIds(), updatedProduct.getAssociatedPartQuantities());
+                existing.setSubAssemblies(updatedProduct.getSubAssemblyIds(), updatedProduct.getSubAssemblyQuantities());
+            });
+        }
+        HotPath.INVENTORY_UPDATE_PRODUCT.recordSince(start);
+        return existing != null;
+    }
+
+    /**
+     * <p>Updates a product only if nobody has changed it since it was read,
+     * keyed by the id of the product passed in. See
+     * compareAndUpdatePart(Part, long), including its note on threads.</p>
+     * @param updatedProduct Product object with updated data.
+     * @param expectedVersion Version of the product when it was read.
+     * @return True if the product was updated. False if it was not found, has
+     * changed since, or the budget refused it; lookupProduct() and
+     * getRejectedCount() tell which.
+     */
+    public boolean compareAndUpdateProduct(Product updatedProduct, long expectedVersion) {
+        Product existing = productsById.get(updatedProduct.getId());
+        if (existing == null || existing.getVersion() != expectedVersion) {
+            return false;
+        }
+        return updateProduct(updatedProduct);
+    }
+
+    /**
+     * <p>Deletes part from inventory. A part that a product still lists is
+     * kept, the same as the form keeps a product with parts, so no product is
+     * left with a line for a part that is gone.</p>
+     * @param selectedPart Part to be deleted.
+     * @return True if part existed. False if part was not found, a product
+     * still uses it, or the store is out of operations for this second.
+     */
+    public boolean deletePart(Part selectedPart) {
+        // With no products nothing can use the part, so skip building the index.
+        if (!allProducts.isEmpty() && BomExplosion.isPartUsed(this, selectedPart.getId())) {
+            return false;
+        }
+        return forceDeletePart(selectedPart);
+    }
+
+    /**
+     * <p>Deletes part from inventory even if a product still uses it. For a
+     * store that copies another, such as a replica: the source has already
+     * decided on the delete, and refusing it would leave the copy different
+     * for good. Anything else should call deletePart().</p>
+     * @param selectedPart Part to be deleted.
+     * @return True if part existed. False if part was not found or the store
+     * is out of operations for this second.
+     */
+    public boolean forceDeletePart(Part selectedPart) {
+        long start = System.nanoTime();
+        if (!allow(start)) {
+            rejected++;
+            return false;
+        }
+        Part existing = partsById.remove(selectedPart.getId());
+        if (existing != null) {
+            allParts.remove(indexOf(allParts, existing));
+        }
+        HotPath.INVENTORY_DELETE_PART.recordSince(start);
+        return existing != null;
+    }
+
+    /**
+     * <p>Deletes product from inventory. A product that another product still
+     * uses as a sub-assembly is kept, so no bill of materials is left with a
+     * line for a product that is gone.</p>
+     * @param selectedProduct Product to be deleted.
+     * @return True if product existed. False if product was not found, another
+     * product still uses it, or the store is out of operations for this second.
+     */
+    public boolean deleteProduct(Product selectedProduct) {
+        if (BomExplosion.isUsedAsSubAssembly(this, selectedProduct.getId())) {
+            return false;
+        }
+        return forceDeleteProduct(selectedProduct);
+    }
+
+    /**
+     * <p>Deletes product from inventory without the checks deleteProduct()
+     * makes. For a store that copies another; see forceDeletePart(Part).</p>
+     * @param selectedProduct Product to be deleted.
+     * @return True if product existed. False if product was not found or the
+     * store is out of operations for this second.
+     */
+    public boolean forceDeleteProduct(Product selectedProduct) {
+        long start = System.nanoTime();
+        if (!allow(start)) {
+            rejected++;
+            return false;
+        }
+        Product existing = productsById.remove(selectedProduct.getId());
+        if (existing != null) {
+            allProducts.remove(indexOf(allProducts, existing));
+        }
+        HotPath.INVENTORY_DELETE_PRODUCT.recordSince(start);
+        return existing != null;
+    }
+
+    /**
+     * <p>Gets a consistent read-only version of the whole inventory. This is O(1)
+     * and never blocks editing; the snapshot simply stops seeing edits made
+     * after it was taken. Safe to call from any thread.</p>
+     * @return Current inventory snapshot.
+     */
+    public InventorySnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * <p>Publishes a new snapshot version with the parts touched by a list change,
+     * stamps added and changed parts with that version, and keeps the part
+     * lookup filter up to date. Every operation makes one list change, so
+     * readers never see a version with half an operation in it.</p>
+     * <p>A part whose id was changed in place, through Part.setId() or the
+     * deprecated updatePart(int, Part), is moved to its new id here.</p>
+     * @param c Change from the parts list.
+     */
+    private void publishPartChanges(ListChangeListener.Change<? extends Part> c) {
+        InventorySnapshot next = snapshot;
+        long version = next.getVersion() + 1;
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    Part part = allParts.get(i);
+                    if (part.getPreviousId() != part.getId()) {
+                        next = next.withoutPart(version, part.getPreviousId());
+                        partsById.remove(part.getPreviousId(), part);
+                        partsById.put(part.getId(), part);
+                        nextPartId = after(nextPartId, part.getId());
+                    }
+                    part.setVersion(version);
+                    next = next.withPart(version, part);
+                    partFilter.updated(part);
+                }
+            } else {
+                for (Part p : c.getRemoved()) {
+                    if (!clearing) {
+                        next = next.withoutPart(version, p.getId());
+                    }
+                    partFilter.removed();
+                }
+                for (Part p : c.getAddedSubList()) {
+                    p.setVersion(version);
+                    next = next.withPart(version, p);
+                    partFilter.added(p);
+                }
+            }
+        }
+        snapshot = next;
+        partFilter.rebuildIfNeeded(allParts);
+    }
+
+    /**
+     * <p>Publishes a new snapshot version with the products touched by a list
+     * change, stamps added and changed products with that version, and keeps
+     * the product lookup filter up to date. A product whose id was changed in
+     * place is moved to its new id.</p>
+     * @param c Change from the products list.
+     */
+    private void publishProductChanges(ListChangeListener.Change<? extends Product> c) {
+        InventorySnapshot next = snapshot;
+        long version = next.getVersion() + 1;
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    Product product = allProducts.get(i);
+                    if (product.getPreviousId() != product.getId()) {
+                        next = next.withoutProduct(version, product.getPreviousId());
+                        productsById.remove(product.getPreviousId(), product);
+                        productsById.put(product.getId(), product);
+                        nextProductId = after(nextProductId, product.getId());
+                    }
+                    product.setVersion(version);
+                    next = next.withProduct(version, product);
+                    productFilter.updated(product);
+                }
+            } else {
+                for (Product p : c.getRemoved()) {
+                    if (!clearing) {
+                        next = next.withoutProduct(version, p.getId());
+                    }
+                    productFilter.removed();
+                }
+                for (Product p : c.getAddedSubList()) {
+                    p.setVersion(version);
+                    next = next.withProduct(version, p);
+                    productFilter.added(p);
+                }
+            }
+        }
+        snapshot = next;
+        productFilter.rebuildIfNeeded(allProducts);
+    }
+
+    /**
+     * <p>Counts an add, update or delete against the operation budget.</p>
+     * @param now System.nanoTime() at the start of the operation.
+     * @return True if the operation may go ahead.
+     */
+    private boolean allow(long now) {
+        int max = budget.getMaxOperationsPerSecond();
+        if (max > 0) {
+            if (now - windowStart >= SECOND_NANOS) {
+                windowStart = now;
+                windowOperations = 0;
+            }
+            if (windowOperations >= max) {
+                return false;
+            }
+            windowOperations++;
+        }
+        operations++;
+        return true;
+    }
+
+    /**
+     * <p>Finds the position of an object in a list by identity.</p>
+     * @param list List to search.
+     * @param item Object to find.
+     * @return Index of the object or -1 if it is not in the list.
+     */
+    private static <T> int indexOf(ObservableList<T> list, T item) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == item) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * <p>Removes every part and product from inventory. Snapshot readers see
+     * one new, empty version; it is published before either list is emptied,
+     * so it is already there when their listeners hear of the change.</p>
+     */
+    public void clear() {
+        snapshot = new InventorySnapshot(snapshot.getVersion() + 1, PersistentIntMap.empty(), PersistentIntMap.empty());
+        clearing = true;
+        try {
+            allProducts.clear();
+            productsById.clear();
+            allParts.clear();
+            partsById.clear();
+        } finally {
+            clearing = false;
+        }
+    }
+
+    /**
+     * <p>Get a list of all the parts in inventory.</p>
+     * @return ObservableList of all parts in inventory.
+     */
+    public ObservableList<Part> getAllParts() {
+        return FXCollections.observableArrayList(allParts);
+    }
+
+    /** <p>Get a list of all the products in inventory.</p>
+     * @return ObservableList of all products in inventory.
+     */
+    public ObservableList<Product> getAllProducts() {
+        return FXCollections.observableArrayList(allProducts);
+    }
+
+    /**
+     * <p>Get a read-only live view of the parts in inventory. Unlike
+     * getAllParts(), no copy is made and changes to the inventory show up
+     * in the view as they happen.</p>
+     * @return Unmodifiable ObservableList backed by the inventory.
+     */
+    public ObservableList<Part> getAllPartsView() {
+        return allPartsView;
+    }
+
+    /**
+     * <p>Get a read-only live view of the products in inventory. Unlike
+     * getAllProducts(), no copy is made and changes to the inventory show up
+     * in the view as they happen.</p>
+     * @return Unmodifiable ObservableList backed by the inventory.
+     */
+    public ObservableList<Product> getAllProductsView() {
+        return allProductsView;
+    }
+}
@@ -0,0 +1,45 @@
+package com.kyancey.inventory.entities;
+
+/**
+ * <p>A place stock is kept, such as a warehouse. Location ids are assigned in
+ * order starting at 0 so they can index per-location arrays directly.</p>
+ */
+public class Location {
+    private final int id;
+    private final String name;
+
+    /**
+     * <p>Constructor</p>
+     * @param id Location id.
+     * @param name Location name.
+     */
+    public Location(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    /**
+     * <p>Gets the location id.</p>
+     * @return Location id.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * <p>Gets the location name.</p>
+     * @return Location name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * <p>Shows the name in choice boxes.</p>
+     * @return Location name.
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,293 @@
+package com.kyancey.inventory.entities;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Splits the stock of every part and product across locations.</p>
+ * <p>The stock field of a part or product stays the total over all locations, so
+ * the forms and everything listening to Inventory keep working. Stock that was
+ * never assigned anywhere sits at the default location, and a change to the
+ * total made through a form is applied there too.</p>
+ * <p>Adjustments change the total and so must be made on the thread that edits
+ * Inventory, like any other edit. Transfers leave the total alone and may be
+ * made from any thread; a transfer only locks the one part or product it moves.
+ * Since a transfer fires no event on the part or product, views that show stock
+ * per location also add a transfer listener.</p>
+ * <p>A location that was never added, a part or product that is not in
+ * Inventory, or an adjustment that would take the total outside the part's or
+ * product's min to max range, is refused with false. Stock is only ever kept
+ * for what Inventory holds, so a refused call never leaves a row behind.</p>
+ */
+public class LocationStock {
+    /** Id of the location that holds stock not assigned anywhere else. */
+    public static final int DEFAULT_LOCATION = 0;
+
+    private static final ObservableList<Location> locations = FXCollections.observableArrayList();
+    private static final ObservableList<Location> locationsView = FXCollections.unmodifiableObservableList(locations);
+    private static final StockMatrix partStock = new StockMatrix();
+    private static final StockMatrix productStock = new StockMatrix();
+    private static final AtomicLong transferCount = new AtomicLong();
+    private static final List<Runnable> transferListeners = new CopyOnWriteArrayList<>();
+    private static volatile int locationCount;
+
+    static {
+        addLocation("Main");
+        for (Part p : Inventory.getAllPartsView()) {
+            partStock.track(p.getId(), DEFAULT_LOCATION, p.getStock());
+        }
+        for (Product p : Inventory.getAllProductsView()) {
+            productStock.track(p.getId(), DEFAULT_LOCATION, p.getStock());
+        }
+        Inventory.getAllPartsView().addListener(LocationStock::onPartsChanged);
+        Inventory.getAllProductsView().addListener(LocationStock::onProductsChanged);
+    }
+
+    /**
+     * <p>Adds a location.</p>
+     * @param name Location name.
+     * @return New location, with the next free id.
+     */
+    public static synchronized Location addLocation(String name) {
+        Location location = new Location(locations.size(), name);
+        partStock.ensureLocation(location.getId());
+        productStock.ensureLocation(location.getId());
+        locations.add(location);
+        locationCount = locations.size();
+        return location;
+    }
+
+    /**
+     * <p>Get a read-only live view of the locations, in id order.</p>
+     * @return Unmodifiable ObservableList of locations.
+     */
+    public static ObservableList<Location> getLocations() {
+        return locationsView;
+    }
+
+    /**
+     * <p>Gets the number of transfers made so far.</p>
+     * @return Transfer count.
+     */
+    public static long getTransferCount() {
+        return transferCount.get();
+    }
+
+    /**
+     * <p>Adds a listener that runs after every transfer that moved stock, on
+     * the thread that made it. A listener that updates a view should hand the
+     * work to the JavaFX application thread.</p>
+     * @param listener Listener.
+     */
+    public static void addTransferListener(Runnable listener) {
+        transferListeners.add(listener);
+    }
+
+    /**
+     * <p>Removes a listener added with addTransferListener().</p>
+     * @param listener Listener.
+     */
+    public static void removeTransferListener(Runnable listener) {
+        transferListeners.remove(listener);
+    }
+
+    /**
+     * <p>Gets the stock of a part at one location.</p>
+     * @param part Part.
+     * @param location Location.
+     * @return Stock at the location.
+     */
+    public static int getStock(Part part, Location location) {
+        return partStock.get(part.getId(), location.getId());
+    }
+
+    /**
+     * <p>Gets the stock of a product at one location.</p>
+     * @param product Product.
+     * @param location Location.
+     * @return Stock at the location.
+     */
+    public static int getStock(Product product, Location location) {
+        return productStock.get(product.getId(), location.getId());
+    }
+
+    /**
+     * <p>Gets the units of all parts held at one location.</p>
+     * @param location Location.
+     * @return Unit count.
+     */
+    public static long getPartUnits(Location location) {
+        return partStock.getLocationTotal(location.getId());
+    }
+
+    /**
+     * <p>Gets the units of all products held at one location.</p>
+     * @param location Location.
+     * @return Unit count.
+     */
+    public static long getProductUnits(Location location) {
+        return productStock.getLocationTotal(location.getId());
+    }
+
+    /**
+     * <p>Receives or issues stock of a part at one location and updates the
+     * part's total to match.</p>
+     * @param part Part in inventory.
+     * @param location Location.
+     * @param delta Units to add, negative to remove.
+     * @return True if adjusted. False if the part is not in inventory, the
+     * location is unknown, the location would go negative, or the total would
+     * leave the part's min to max range.
+     */
+    public static boolean adjustStock(Part part, Location location, int delta) {
+        long newTotal = (long) part.getStock() + delta;
+        if (!isKnown(location) || newTotal < part.getMin() || newTotal > part.getMax()) {
+            return false;
+        }
+        int total = partStock.adjust(part.getId(), location.getId(), delta);
+        if (total < 0) {
+            return false;
+        }
+        part.setStock(total);
+        return true;
+    }
+
+    /**
+     * <p>Receives or issues stock of a product at one location and updates the
+     * product's total to match.</p>
+     * @param product Product in inventory.
+     * @param location Location.
+     * @param delta Units to add, negative to remove.
+     * @return True if adjusted. False if the product is not in inventory, the
+     * location is unknown, the location would go negative, or the total would
+     * leave the product's min to max range.
+     */
+    public static boolean adjustStock(Product product, Location location, int delta) {
+        long newTotal = (long) product.getStock() + delta;
+        if (!isKnown(location) || newTotal < product.getMin() || newTotal > product.getMax()) {
+            return false;
+        }
+        int total = productStock.adjust(product.getId(), location.getId(), delta);
+        if (total < 0) {
+            return false;
+        }
+        product.setStock(total);
+        return true;
+    }
+
+    /**
+     * <p>Moves stock of a part from one location to another. Either all of it
+     * moves or none of it does. Safe to call from any thread.</p>
+     * @param part Part in inventory.
+     * @param from Location to take from.
+     * @param to Location to put in.
+     * @param quantity Units to move.
+     * @return True if moved. False if it is not in inventory, either location
+     * is unknown, or the source location did not have enough.
+     */
+    public static boolean transfer(Part part, Location from, Location to, int quantity) {
+        if (!isKnown(from) || !isKnown(to)) {
+            return false;
+        }
+        return transferred(partStock.transfer(part.getId(), from.getId(), to.getId(), quantity));
+    }
+
+    /**
+     * <p>Moves stock of a product from one location to another. Either all of it
+     * moves or none of it does. Safe to call from any thread.</p>
+     * @param product Product in inventory.
+     * @param from Location to take from.
+     * @param to Location to put in.
+     * @param quantity Units to move.
+     * @return True if moved. False if it is not in inventory, either location
+     * is unknown, or the source location did not have enough.
+     */
+    public static boolean transfer(Product product, Location from, Location to, int quantity) {
+        if (!isKnown(from) || !isKnown(to)) {
+            return false;
+        }
+        return transferred(productStock.transfer(product.getId(), from.getId(), to.getId(), quantity));
+    }
+
+    private static boolean isKnown(Location location) {
+        return location.getId() >= 0 && location.getId() < locationCount;
+    }
+
+    private static boolean transferred(boolean moved) {
+        if (moved) {
+            transferCount.incrementAndGet();
+            transferListeners.forEach(Runnable::run);
+        }
+        return moved;
+    }
+
+    /**
+     * <p>Keeps part rows in step with the inventory. A part replaced under the
+     * same id (a type change) keeps its locations, and so does a part whose id
+     * changes in place.</p>
+     * @param c Change from the parts list.
+     */
+    private static void onPartsChanged(ListChangeListener.Change<? extends Part> c) {
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    Part p = c.getList().get(i);
+                    if (p.getPreviousId() != p.getId()) {
+                        partStock.move(p.getPreviousId(), p.getId());
+                    }
+                    partStock.setTotal(p.getId(), DEFAULT_LOCATION, p.getStock());
+                }
+            } else {
+                Set<Integer> kept = new HashSet<>();
+                for (Part p : c.getAddedSubList()) {
+                    kept.add(p.getId());
+                    partStock.track(p.getId(), DEFAULT_LOCATION, p.getStock());
+                    partStock.setTotal(p.getId(), DEFAULT_LOCATION, p.getStock());
+                }
+                for (Part p : c.getRemoved()) {
+                    if (!kept.contains(p.getId())) {
+                        partStock.remove(p.getId());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Keeps product rows in step with the inventory. A product whose id
+     * changes in place keeps its locations.</p>
+     * @param c Change from the products list.
+     */
+    private static void onProductsChanged(ListChangeListener.Change<? extends Product> c) {
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    Product p = c.getList().get(i);
+                    if (p.getPreviousId() != p.getId()) {
+                        productStock.move(p.getPreviousId(), p.getId());
+                    }
+                    productStock.setTotal(p.getId(), DEFAULT_LOCATION, p.getStock());
+                }
+            } else {
+                Set<Integer> kept = new HashSet<>();
+                for (Product p : c.getAddedSubList()) {
+                    kept.add(p.getId());
+                    productStock.track(p.getId(), DEFAULT_LOCATION, p.getStock());
+                    productStock.setTotal(p.getId(), DEFAULT_LOCATION, p.getStock());
+                }
+                for (Product p : c.getRemoved()) {
+                    if (!kept.contains(p.getId())) {
+                        productStock.remove(p.getId());
+                    }
+                }
+            }
+        }
+    }
+}
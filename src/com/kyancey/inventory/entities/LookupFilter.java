@@ -0,0 +1,109 @@
+package com.kyancey.inventory.entities;
+
+import com.kyancey.inventory.util.BloomFilter;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * <p>Bloom filters over the ids and names in one inventory list, so a lookup for
+ * something that isn't there can usually return without touching the list or
+ * its index.</p>
+ * <p>Bloom filters can't forget, so a deleted item, or the old id or name of an
+ * edited one, stays in the filter as a stale key that only costs a false
+ * positive. Once stale keys pass a quarter of the live count, or the list
+ * outgrows what the filters were sized for, they are rebuilt from the list.</p>
+ * @param <T> Part or Product.
+ */
+final class LookupFilter<T> {
+    private final ToIntFunction<T> idOf;
+    private final Function<T, String> nameOf;
+    private BloomFilter ids = new BloomFilter(0);
+    private BloomFilter names = new BloomFilter(0);
+    private int live;
+    private int stale;
+
+    /**
+     * <p>Constructor</p>
+     * @param idOf Gets an item's id.
+     * @param nameOf Gets an item's name.
+     */
+    LookupFilter(ToIntFunction<T> idOf, Function<T, String> nameOf) {
+        this.idOf = idOf;
+        this.nameOf = nameOf;
+    }
+
+    /**
+     * <p>Adds an item that was put in the list.</p>
+     * @param item New item.
+     */
+    void added(T item) {
+        ids.add(idOf.applyAsInt(item));
+        names.add(nameOf.apply(item));
+        live++;
+    }
+
+    /**
+     * <p>Notes that an item left the list.</p>
+     */
+    void removed() {
+        live--;
+        stale++;
+    }
+
+    /**
+     * <p>Adds the current id and name of an item that was edited in place. Most
+     * edits change neither, and then nothing goes stale.</p>
+     * @param item Edited item.
+     */
+    void updated(T item) {
+        int id = idOf.applyAsInt(item);
+        String name = nameOf.apply(item);
+        if (!ids.mightContain(id) || !names.mightContain(name)) {
+            ids.add(id);
+            names.add(name);
+            stale++;
+        }
+    }
+
+    /**
+     * <p>Checks for an id.</p>
+     * @param id Id to look for.
+     * @return False if no item in the list has that id.
+     */
+    boolean mightContainId(int id) {
+        return ids.mightContain(id);
+    }
+
+    /**
+     * <p>Checks for an exact name.</p>
+     * @param name Name to look for.
+     * @return False if no item in the list has that name.
+     */
+    boolean mightContainName(String name) {
+        return names.mightContain(name);
+    }
+
+    /**
+     * <p>Rebuilds the filters from the list if they have too many stale keys or
+     * too many live ones for their size.</p>
+     * @param items Current list contents.
+     */
+    void rebuildIfNeeded(List<T> items) {
+        if (stale <= live / 4 && live <= ids.getExpectedKeys()) {
+            return;
+        }
+        int capacity = Math.max(16, items.size() * 2);
+        BloomFilter newIds = new BloomFilter(capacity);
+        BloomFilter newNames = new BloomFilter(capacity);
+        for (T item : items) {
+            newIds.add(idOf.applyAsInt(item));
+            newNames.add(nameOf.apply(item));
+        }
+        ids = newIds;
+        names = newNames;
+        live = items.size();
+        stale = 0;
+    }
+}
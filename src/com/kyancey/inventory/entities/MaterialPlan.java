@@ -0,0 +1,115 @@
+package com.kyancey.inventory.entities;
+
+import java.util.Arrays;
+
+/**
+ * <p>The result of a material requirements run: for every part that the
+ * production targets need, or that is already below its minimum, how many are
+ * needed, how many are on hand, and how many to order.</p>
+ * <p>Lines are in part id order and held in primitive arrays. Immutable; the
+ * stock figures are those at the time of the run.</p>
+ */
+public final class MaterialPlan {
+    private final int[] partIds;
+    private final long[] gross;
+    private final int[] onHand;
+    private final long[] orders;
+    private final boolean[] inInventory;
+
+    MaterialPlan(int[] partIds, long[] gross, int[] onHand, long[] orders, boolean[] inInventory) {
+        this.partIds = partIds;
+        this.gross = gross;
+        this.onHand = onHand;
+        this.orders = orders;
+        this.inInventory = inInventory;
+    }
+
+    /**
+     * <p>Gets the number of lines.</p>
+     * @return Line count.
+     */
+    public int getLineCount() {
+        return partIds.length;
+    }
+
+    /**
+     * <p>Finds the line of a part.</p>
+     * @param partId Part id.
+     * @return Line index, or -1 if the plan has no line for the part.
+     */
+    public int indexOf(int partId) {
+        int index = Arrays.binarySearch(partIds, partId);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * <p>Gets the part id of a line.</p>
+     * @param index Line from 0 to getLineCount() - 1, in id order.
+     * @return Part id.
+     */
+    public int getPartId(int index) {
+        return partIds[index];
+    }
+
+    /**
+     * <p>Gets how many of the part the targets use, through every level of
+     * sub-assembly.</p>
+     * @param index Line index.
+     * @return Gross requirement.
+     */
+    public long getGrossRequirement(int index) {
+        return gross[index];
+    }
+
+    /**
+     * <p>Gets the stock of the part when the plan was run.</p>
+     * @param index Line index.
+     * @return Stock on hand, 0 for a part not in inventory.
+     */
+    public int getOnHand(int index) {
+        return onHand[index];
+    }
+
+    /**
+     * <p>Gets how many more of the part the targets need than are on hand.</p>
+     * @param index Line index.
+     * @return Net requirement, never negative.
+     */
+    public long getNetRequirement(int index) {
+        return Math.max(0, gross[index] - onHand[index]);
+    }
+
+    /**
+     * <p>Gets the proposed order quantity.</p>
+     * @param index Line index.
+     * @return Quantity to order, 0 if stock covers the targets and the minimum.
+     */
+    public long getOrderQuantity(int index) {
+        return orders[index];
+    }
+
+    /**
+     * <p>Whether the part was in inventory. A part that products use but that
+     * is not in inventory is ordered at exactly its gross requirement, since
+     * it has no minimum or maximum.</p>
+     * @param index Line index.
+     * @return True if the part was found.
+     */
+    public boolean isInInventory(int index) {
+        return inInventory[index];
+    }
+
+    /**
+     * <p>Gets the number of lines with something to order.</p>
+     * @return Order line count.
+     */
+    public int getOrderLineCount() {
+        int count = 0;
+        for (long order : orders) {
+            if (order > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,252 @@
+package com.kyancey.inventory.entities;
+
+import com.kyancey.inventory.metrics.HotPath;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>Material requirements planning: given how many of each product to build,
+ * works out which parts to order.</p>
+ * <p>A run has three steps:</p>
+ * <ul>
+ *     <li>Explode: each target product is flattened into its part requirements
+ *     through every level of sub-assembly, using the memoized explosions of
+ *     BomExplosion, and scaled by its target.</li>
+ *     <li>Net: the requirements are summed per part and taken from stock. The
+ *     net requirement is what the stock does not cover.</li>
+ *     <li>Propose: a part whose stock after the run would be below its minimum
+ *     is ordered back up to its maximum, the usual min/max reorder rule. The
+ *     stock after the run then never exceeds the maximum. Parts with no demand
+ *     that are already below their minimum are ordered the same way.</li>
+ * </ul>
+ * <p>The parts are cut into ranges of ids and each range is summed and netted
+ * on its own, on the ParallelScan pool. A range reads only the slice of each
+ * explosion that falls inside it, found by binary search, so ranges share
+ * nothing and need no locking. The ranges are joined in id order, so the plan
+ * is the same no matter which thread finished first or how many there are.</p>
+ * <p>Call from the thread that edits Inventory. The run blocks that thread
+ * until it is done, so nothing changes underneath it.</p>
+ */
+public class MaterialPlanning {
+    /** Parts netted per task. */
+    static final int PARTITION_SIZE = 65536;
+
+    /**
+     * <p>The plan lines of one range of part ids.</p>
+     */
+    private static final class Lines {
+        int[] partIds;
+        long[] gross;
+        int[] onHand;
+        long[] orders;
+        boolean[] inInventory;
+        int count;
+
+        Lines(int capacity) {
+            partIds = new int[capacity];
+            gross = new long[capacity];
+            onHand = new int[capacity];
+            orders = new long[capacity];
+            inInventory = new boolean[capacity];
+        }
+
+        void add(int partId, long required, int stock, long order, boolean found) {
+            partIds[count] = partId;
+            gross[count] = required;
+            onHand[count] = stock;
+            orders[count] = order;
+            inInventory[count] = found;
+            count++;
+        }
+    }
+
+    /**
+     * <p>Runs a plan for one batch of production targets.</p>
+     * @param productIds Products to build. An id may appear more than once;
+     * its targets add up.
+     * @param quantities How many of each to build.
+     * @return Plan in part id order.
+     * @throws IllegalArgumentException If the arrays differ in length, a
+     * quantity is negative, or a product is not in inventory.
+     * @throws IllegalStateException If the sub-assemblies contain a cycle.
+     */
+    public static MaterialPlan run(int[] productIds, int[] quantities) {
+        long start = System.nanoTime();
+        if (productIds.length != quantities.length) {
+            throw new IllegalArgumentException(productIds.length + " products but " + quantities.length + " quantities");
+        }
+        Explosion[] demand = new Explosion[productIds.length];
+        long[] multipliers = new long[productIds.length];
+        int demandCount = 0;
+        for (int i = 0; i < productIds.length; i++) {
+            if (quantities[i] < 0) {
+                throw new IllegalArgumentException("Negative quantity for product " + productIds[i]);
+            }
+            Product product = Inventory.lookupProduct(productIds[i]);
+            if (product == null) {
+                throw new IllegalArgumentException("No product with id " + productIds[i]);
+            }
+            if (quantities[i] > 0) {
+                demand[demandCount] = BomExplosion.explode(product);
+                multipliers[demandCount++] = quantities[i];
+            }
+        }
+
+        Part[] parts = InventoryOrders.parts(SortKey.ID).toArray(new Part[0]);
+        int[] ids = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            ids[i] = parts[i].getId();
+        }
+        int partitions = Math.max(1, (parts.length + PARTITION_SIZE - 1) / PARTITION_SIZE);
+        Lines[] results = new Lines[partitions];
+        PlanTask task = new PlanTask(parts, ids, demand, multipliers, demandCount, results, 0, partitions);
+        ForkJoinPool pool = ParallelScan.pool();
+        if (partitions == 1 || pool.getParallelism() == 1) {
+            // Not compute(), which would still fork through invokeAll().
+            for (int partition = 0; partition < partitions; partition++) {
+                results[partition] = task.plan(partition, partition == partitions - 1);
+            }
+        } else {
+            pool.invoke(task);
+        }
+
+        int total = 0;
+        for (Lines lines : results) {
+            total += lines.count;
+        }
+        int[] partIds = new int[total];
+        long[] gross = new long[total];
+        int[] onHand = new int[total];
+        long[] orders = new long[total];
+        boolean[] inInventory = new boolean[total];
+        int at = 0;
+        for (Lines lines : results) {
+            System.arraycopy(lines.partIds, 0, partIds, at, lines.count);
+            System.arraycopy(lines.gross, 0, gross, at, lines.count);
+            System.arraycopy(lines.onHand, 0, onHand, at, lines.count);
+            System.arraycopy(lines.orders, 0, orders, at, lines.count);
+            System.arraycopy(lines.inInventory, 0, inInventory, at, lines.count);
+            at += lines.count;
+        }
+        HotPath.MATERIAL_PLAN.recordSince(start);
+        return new MaterialPlan(partIds, gross, onHand, orders, inInventory);
+    }
+
+    /**
+     * <p>Runs a plan for a single product.</p>
+     * @param product Product to build. Must be in inventory.
+     * @param quantity How many to build.
+     * @return Plan in part id order.
+     */
+    public static MaterialPlan run(Product product, int quantity) {
+        return run(new int[]{product.getId()}, new int[]{quantity});
+    }
+
+    /**
+     * <p>Plans a range of partitions, splitting it in half until one is left.</p>
+     */
+    private static final class PlanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Part[] parts;
+        private final int[] ids;
+        private final Explosion[] demand;
+        private final long[] multipliers;
+        private final int demandCount;
+        private final Lines[] results;
+        private final int fromPartition;
+        private final int toPartition;
+
+        PlanTask(Part[] parts, int[] ids, Explosion[] demand, long[] multipliers, int demandCount,
+                 Lines[] results, int fromPartition, int toPartition) {
+            this.parts = parts;
+            this.ids = ids;
+            this.demand = demand;
+            this.multipliers = multipliers;
+            this.demandCount = demandCount;
+            this.results = results;
+            this.fromPartition = fromPartition;
+            this.toPartition = toPartition;
+        }
+
+        @Override
+        protected void compute() {
+            if (toPartition - fromPartition > 1) {
+                int middle = (fromPartition + toPartition) >>> 1;
+                invokeAll(new PlanTask(parts, ids, demand, multipliers, demandCount, results, fromPartition, middle),
+                        new PlanTask(parts, ids, demand, multipliers, demandCount, results, middle, toPartition));
+                return;
+            }
+            for (int partition = fromPartition; partition < toPartition; partition++) {
+                results[partition] = plan(partition, partition == results.length - 1);
+            }
+        }
+
+        /**
+         * <p>Sums and nets the parts at one range of positions. The first range
+         * also takes ids below every part and the last ids above every part,
+         * so requirements for parts not in inventory land in exactly one.</p>
+         */
+        private Lines plan(int partition, boolean last) {
+            int from = partition * PARTITION_SIZE;
+            int to = Math.min(ids.length, from + PARTITION_SIZE);
+            long low = partition == 0 ? Long.MIN_VALUE : ids[from];
+            long high = last ? Long.MAX_VALUE : ids[to];
+
+            long[] gross = new long[to - from];
+            TreeMap<Integer, Long> missing = new TreeMap<>();
+            for (int d = 0; d < demandCount; d++) {
+                int[] partIds = demand[d].partIds();
+                long[] required = demand[d].quantities();
+                long multiplier = multipliers[d];
+                int j = 0;
+                if (low != Long.MIN_VALUE) {
+                    j = Arrays.binarySearch(partIds, (int) low);
+                    if (j < 0) {
+                        j = -j - 1;
+                    }
+                }
+                // Both arrays are in id order, so each search starts where the last one ended.
+                int search = from;
+                for (; j < partIds.length && partIds[j] < high; j++) {
+                    int at = Arrays.binarySearch(ids, search, to, partIds[j]);
+                    if (at >= 0) {
+                        gross[at - from] += required[j] * multiplier;
+                        search = at + 1;
+                    } else {
+                        missing.merge(partIds[j], required[j] * multiplier, Long::sum);
+                        search = -at - 1;
+                    }
+                }
+            }
+
+            Lines lines = new Lines(to - from + missing.size());
+            Iterator<Map.Entry<Integer, Long>> extra = missing.entrySet().iterator();
+            Map.Entry<Integer, Long> next = extra.hasNext() ? extra.next() : null;
+            for (int i = from; i < to; i++) {
+                while (next != null && next.getKey() < ids[i]) {
+                    lines.add(next.getKey(), next.getValue(), 0, next.getValue(), false);
+                    next = extra.hasNext() ? extra.next() : null;
+                }
+                Part part = parts[i];
+                long required = gross[i - from];
+                long projected = part.getStock() - required;
+                if (required == 0 && projected >= part.getMin()) {
+                    continue;
+                }
+                long order = projected < part.getMin() ? part.getMax() - projected : 0;
+                lines.add(ids[i], required, part.getStock(), order, true);
+            }
+            while (next != null) {
+                lines.add(next.getKey(), next.getValue(), 0, next.getValue(), false);
+                next = extra.hasNext() ? extra.next() : null;
+            }
+            return lines;
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.kyancey.inventory.entities;
 
+import com.kyancey.inventory.util.Money;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+
 /**
  * <p>This class stores parts that are purchased from outside manufacturers.</p>
  * FUTURE ENHANCEMENT: Although part classes are currently protected from bad
@@ -7,7 +11,7 @@ package com.kyancey.inventory.entities;
  * in the class methods as well to protect against invalid data.
  */
 public class Outsourced extends Part {
-    private String companyName;
+    private final StringProperty companyName;
 
     /**
      * <p>Constructor</p>
@@ -20,8 +24,28 @@ public class Outsourced extends Part {
      * @param companyName Name of company that produces the part.
      */
     public Outsourced(int id, String name, double price, int stock, int min, int max, String companyName) {
-        super(id, name, price, stock, min, max);
-        this.companyName = companyName;
+        this(id, name, Money.fromDouble(price), stock, min, max, companyName);
+    }
+
+    private Outsourced(int id, String name, long priceCents, int stock, int min, int max, String companyName) {
+        super(id, name, priceCents, stock, min, max);
+        this.companyName = new SimpleStringProperty(this, "companyName", companyName);
+        watch(this.companyName);
+    }
+
+    /**
+     * <p>Creates an Outsourced part with its price given in cents.</p>
+     * @param id Part id.
+     * @param name Part name.
+     * @param priceCents Part price in cents.
+     * @param stock Number of part in stock.
+     * @param min Minimum number of part in stock.
+     * @param max Maximum number of part in stock.
+     * @param companyName Name of company that produces the part.
+     * @return New part.
+     */
+    public static Outsourced ofCents(int id, String name, long priceCents, int stock, int min, int max, String companyName) {
+        return new Outsourced(id, name, priceCents, stock, min, max, companyName);
     }
 
     /**
@@ -29,7 +53,7 @@ public class Outsourced extends Part {
      * @return Company name.
      */
     public String getCompanyName() {
-        return companyName;
+        return companyName.get();
     }
 
     /**
@@ -37,6 +61,14 @@ public class Outsourced extends Part {
      * @param companyName Company name.
      */
     public void setCompanyName(String companyName) {
-        this.companyName = companyName;
+        this.companyName.set(companyName);
+    }
+
+    /**
+     * <p>Gets the company name property.</p>
+     * @return Company name property.
+     */
+    public StringProperty companyNameProperty() {
+        return companyName;
     }
 }
@@ -0,0 +1,163 @@
+package com.kyancey.inventory.entities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * <p>Evaluates filters that no index can answer, such as arbitrary
+ * combinations of part fields, across all cores.</p>
+ * <p>The list is copied to an array, cut into fixed-size chunks, and the chunks
+ * are tested on a fork-join pool. Each chunk records its matches on its own,
+ * and the chunks are joined in order, so the result is in inventory order no
+ * matter which thread finished first. Small lists, and every list when the
+ * pool has a single thread, are scanned on the calling thread, where splitting
+ * would cost more than it saves.</p>
+ * <p>Call from the thread that edits the store. The scan blocks that thread
+ * until it is done, so nothing changes underneath it; the predicate itself
+ * must only read.</p>
+ * <p>The pool size defaults to the number of cores and can be set with the
+ * inventory.scan.parallelism system property.</p>
+ */
+public class ParallelScan {
+    /** Items tested per task. */
+    static final int CHUNK_SIZE = 8192;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(
+            Integer.getInteger("inventory.scan.parallelism", Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * <p>Gets the pool scans run on, for other bulk passes over inventory to
+     * share rather than starting threads of their own.</p>
+     * @return Fork-join pool.
+     */
+    static ForkJoinPool pool() {
+        return pool;
+    }
+
+    /**
+     * <p>Finds every part in the default store that matches a predicate.</p>
+     * @param predicate Filter to apply.
+     * @return Matching parts in inventory order.
+     */
+    public static List<Part> filterParts(Predicate<? super Part> predicate) {
+        return filterParts(InventoryRegistry.getDefault(), predicate);
+    }
+
+    /**
+     * <p>Finds every part in a store that matches a predicate.</p>
+     * @param store Store to scan.
+     * @param predicate Filter to apply.
+     * @return Matching parts in the store's order.
+     */
+    public static List<Part> filterParts(InventoryStore store, Predicate<? super Part> predicate) {
+        return filter(store.getAllPartsView().toArray(new Part[0]), predicate);
+    }
+
+    /**
+     * <p>Finds every product in the default store that matches a predicate.</p>
+     * @param predicate Filter to apply.
+     * @return Matching products in inventory order.
+     */
+    public static List<Product> filterProducts(Predicate<? super Product> predicate) {
+        return filterProducts(InventoryRegistry.getDefault(), predicate);
+    }
+
+    /**
+     * <p>Finds every product in a store that matches a predicate.</p>
+     * @param store Store to scan.
+     * @param predicate Filter to apply.
+     * @return Matching products in the store's order.
+     */
+    public static List<Product> filterProducts(InventoryStore store, Predicate<? super Product> predicate) {
+        return filter(store.getAllProductsView().toArray(new Product[0]), predicate);
+    }
+
+    /**
+     * <p>Finds every item of an array that matches a predicate.</p>
+     * @param items Items to test.
+     * @param predicate Filter to apply.
+     * @param <T> Item type.
+     * @return Matching items in array order.
+     */
+    public static <T> List<T> filter(T[] items, Predicate<? super T> predicate) {
+        int chunks = (items.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int[][] matches = new int[chunks][];
+        int[] counts = new int[chunks];
+        if (chunks <= 1 || pool.getParallelism() == 1) {
+            // Not compute(), which would still fork through invokeAll().
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                scan(items, predicate, matches, counts, chunk);
+            }
+        } else {
+            pool.invoke(new ScanTask<>(items, predicate, matches, counts, 0, chunks));
+        }
+
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        List<T> result = new ArrayList<>(total);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            for (int i = 0; i < counts[chunk]; i++) {
+                result.add(items[matches[chunk][i]]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * <p>Tests one chunk, recording the positions of its matches.</p>
+     */
+    private static <T> void scan(T[] items, Predicate<? super T> predicate, int[][] matches, int[] counts, int chunk) {
+        int from = chunk * CHUNK_SIZE;
+        int to = Math.min(items.length, from + CHUNK_SIZE);
+        int[] found = new int[to - from];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (predicate.test(items[i])) {
+                found[count++] = i;
+            }
+        }
+        matches[chunk] = found;
+        counts[chunk] = count;
+    }
+
+    /**
+     * <p>Tests a range of chunks, splitting it in half until one chunk is left.</p>
+     */
+    private static final class ScanTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final T[] items;
+        private final Predicate<? super T> predicate;
+        private final int[][] matches;
+        private final int[] counts;
+        private final int fromChunk;
+        private final int toChunk;
+
+        ScanTask(T[] items, Predicate<? super T> predicate, int[][] matches, int[] counts, int fromChunk, int toChunk) {
+            this.items = items;
+            this.predicate = predicate;
+            this.matches = matches;
+            this.counts = counts;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new ScanTask<>(items, predicate, matches, counts, fromChunk, middle),
+                        new ScanTask<>(items, predicate, matches, counts, middle, toChunk));
+                return;
+            }
+            for (int chunk = fromChunk; chunk < toChunk; chunk++) {
+                scan(items, predicate, matches, counts, chunk);
+            }
+        }
+    }
+}
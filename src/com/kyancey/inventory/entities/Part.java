@@ -1,107 +1,289 @@
 package com.kyancey.inventory.entities;
 
+import com.kyancey.inventory.util.Money;
+import javafx.beans.Observable;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.beans.value.ObservableValue;
+
 /**
- *
+ * <p>Fields are stored as JavaFX properties so tables, indexes and rollups can
+ * listen to exactly the field that changed instead of rebuilding lists. The
+ * price is stored as a whole number of cents; see Money.</p>
+ * <p>Every field change also moves a revision forward, which is what inventory
+ * lists watch. Changes made inside edit() move it once, so an edit of several
+ * fields is one update of the part rather than one per field.</p>
  * @author Place Your Name Here
  */
 public abstract class Part {
-    private int id;
-    private String name;
-    private double price;
-    private int stock;
-    private int min;
-    private int max;    
+    private final IntegerProperty id;
+    private final StringProperty name;
+    private final LongProperty priceCents;
+    private final IntegerProperty stock;
+    private final IntegerProperty min;
+    private final IntegerProperty max;
+    private final IntegerProperty revision;
+    private int editDepth;
+    private boolean editChanged;
+    // Id as of the last reported change, so listeners hearing of an update
+    // can tell the id it moved from.
+    private int reportedId;
+    private long version;
     public Part(int id, String name, double price, int stock, int min, int max) {
-        this.id = id;
-        this.name = name;
-        this.price = price;
-        this.stock = stock;
-        this.min = min;
-        this.max = max;
+        this(id, name, Money.fromDouble(price), stock, min, max);
+    }
+
+    /**
+     * <p>Constructor taking the price in cents. Not public: a call with a
+     * whole-number price such as 5 would pick this over the constructor taking
+     * dollars, so subclasses expose it through a factory named ofCents.</p>
+     * @param id Part id.
+     * @param name Part name.
+     * @param priceCents Part price in cents.
+     * @param stock Number of part in stock.
+     * @param min Minimum number of part in stock.
+     * @param max Maximum number of part in stock.
+     */
+    protected Part(int id, String name, long priceCents, int stock, int min, int max) {
+        this.id = new SimpleIntegerProperty(this, "id", id);
+        this.name = new SimpleStringProperty(this, "name", name);
+        this.priceCents = new SimpleLongProperty(this, "priceCents", priceCents);
+        this.stock = new SimpleIntegerProperty(this, "stock", stock);
+        this.min = new SimpleIntegerProperty(this, "min", min);
+        this.max = new SimpleIntegerProperty(this, "max", max);
+        this.revision = new SimpleIntegerProperty(this, "revision");
+        this.reportedId = id;
+        watch(this.id, this.name, this.priceCents, this.stock, this.min, this.max);
+    }
+
+    /**
+     * <p>Gets what inventory lists watch, as their extractor, to report a
+     * change to this part as an update of it: the revision, which moves once
+     * per edit however many fields the edit changes.</p>
+     * @return Array holding the revision property.
+     */
+    public Observable[] getFieldProperties() {
+        return new Observable[] {revision};
+    }
+
+    /**
+     * <p>Gets the id the part had when its previous change was reported.
+     * While inventory listeners hear of an update of it, this differs from
+     * getId() only if the update moved the id, so they can drop the old one.</p>
+     * @return Id before the change being reported.
+     */
+    public int getPreviousId() {
+        return reportedId;
+    }
+
+    /**
+     * <p>Makes several field changes as one edit. Inventory lists report a
+     * single update of this part when the change returns, or none if no field
+     * changed. Edits may nest; only the outermost one reports.</p>
+     * @param change Sets the fields.
+     */
+    public void edit(Runnable change) {
+        editDepth++;
+        try {
+            change.run();
+        } finally {
+            if (--editDepth == 0 && editChanged) {
+                editChanged = false;
+                report();
+            }
+        }
+    }
+
+    /**
+     * <p>Counts changes to fields as edits of this part. Subclasses call it
+     * for their own fields.</p>
+     * @param fields Field properties.
+     */
+    protected final void watch(ObservableValue<?>... fields) {
+        for (ObservableValue<?> field : fields) {
+            field.addListener((observable, oldValue, newValue) -> fieldChanged());
+        }
+    }
+
+    private void fieldChanged() {
+        if (editDepth > 0) {
+            editChanged = true;
+        } else {
+            report();
+        }
+    }
+
+    /**
+     * <p>Gets the version stamp of this part. When inventory adds or changes
+     * it, it is stamped with the store's new snapshot version, so stamps only
+     * grow and two reads with the same stamp saw the same data, even if the
+     * part was deleted and added again in between.</p>
+     * @return Version stamp, 0 for a part that has never been in inventory.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * <p>Sets the version stamp. Used for copies read from another process,
+     * so they carry the version they were read at. Inventory overwrites it
+     * when it adds or changes the part, and does not read it from update data.</p>
+     * @param version Version stamp.
+     */
+    public void setVersion(long version) {
+        this.version = version;
     }
 
     /**
      * @return the id
      */
     public int getId() {
-        return id;
+        return id.get();
     }
 
     /**
      * @param id the id to set
      */
     public void setId(int id) {
-        this.id = id;
+        this.id.set(id);
+    }
+
+    /**
+     * @return the id property
+     */
+    public IntegerProperty idProperty() {
+        return id;
     }
 
     /**
      * @return the name
      */
     public String getName() {
-        return name;
+        return name.get();
     }
 
     /**
      * @param name the name to set
      */
     public void setName(String name) {
-        this.name = name;
+        this.name.set(name);
+    }
+
+    /**
+     * @return the name property
+     */
+    public StringProperty nameProperty() {
+        return name;
     }
 
     /**
-     * @return the price
+     * @return the price, in dollars
      */
     public double getPrice() {
-        return price;
+        return Money.toDouble(priceCents.get());
     }
 
     /**
-     * @param price the price to set
+     * @param price the price to set, in dollars; rounded to the nearest cent
      */
     public void setPrice(double price) {
-        this.price = price;
+        priceCents.set(Money.fromDouble(price));
+    }
+
+    /**
+     * @return the price in cents, as it is stored
+     */
+    public long getPriceCents() {
+        return priceCents.get();
+    }
+
+    /**
+     * @param priceCents the price to set, in cents
+     */
+    public void setPriceCents(long priceCents) {
+        this.priceCents.set(priceCents);
+    }
+
+    /**
+     * @return the price in cents property
+     */
+    public LongProperty priceCentsProperty() {
+        return priceCents;
     }
     
     /**
      * @return the stock
      */
     public int getStock() {
-        return stock;
+        return stock.get();
     }
 
     /**
      * @param stock the stock to set
      */
     public void setStock(int stock) {
-        this.stock = stock;
+        this.stock.set(stock);
+    }
+
+    /**
+     * @return the stock property
+     */
+    public IntegerProperty stockProperty() {
+        return stock;
     }
 
     /**
      * @return the min
      */
     public int getMin() {
-        return min;
+        return min.get();
     }
 
     /**
      * @param min the min to set
      */
     public void setMin(int min) {
-        this.min = min;
+        this.min.set(min);
+    }
+
+    /**
+     * @return the min property
+     */
+    public IntegerProperty minProperty() {
+        return min;
     }
 
     /**
      * @return the max
      */
     public int getMax() {
-        return max;
+        return max.get();
     }
 
     /**
      * @param max the max to set
      */
     public void setMax(int max) {
-        this.max = max;
+        this.max.set(max);
     }
-    
-}
\ No newline at end of file
+
+    /**
+     * @return the max property
+     */
+    public IntegerProperty maxProperty() {
+        return max;
+    }
+
+    /**
+     * <p>Moves the revision, which reports the change to inventory lists, and
+     * then takes the id as reported.</p>
+     */
+    private void report() {
+        revision.set(revision.get() + 1);
+        reportedId = getId();
+    }
+}
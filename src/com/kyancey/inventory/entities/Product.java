@@ -1,42 +1,157 @@
 package com.kyancey.inventory.entities;
 
+import javafx.beans.Observable;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.beans.value.ObservableValue;
+import com.kyancey.inventory.util.IntIntMap;
+import com.kyancey.inventory.util.Money;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * <p>The product class stores the basic properties of a product.</p>
+ * <p>Associated parts are kept as a bill of materials: one line per part id,
+ * with the quantity of that part the product needs. Lines are held in
+ * primitive arrays, so checking, adding and removing a line are O(1), and the
+ * product never holds a Part object. Parts are looked up by id when asked
+ * for, so a part that is replaced in inventory is picked up without the
+ * product having to be told.</p>
+ * <p>A product can also be built from other products, its sub-assemblies,
+ * kept the same way by product id. Sub-assemblies must form a DAG, so adding
+ * one that already contains this product is refused. BomExplosion flattens
+ * the whole tree into part requirements.</p>
+ * <p>A change to any field, the parts or the sub-assemblies moves a revision
+ * forward, which is what inventory lists watch. Changes made inside edit()
+ * move it once, so an edit of several fields is one update of the product.</p>
  * FUTURE ENHANCEMENT: Data validation.
  * FUTURE ENHANCEMENT: Method to find a list of parts that are no
  * longer in inventory.
  */
 public class Product {
-    private ObservableList<Part> associatedParts;
-    private int id;
-    private String name;
-    private double price;
-    private int stock;
-    private int min;
-    private int max;
+    private final IntIntMap associatedParts = new IntIntMap();
+    private final IntIntMap subAssemblies = new IntIntMap();
+    private final IntegerProperty id;
+    private final StringProperty name;
+    private final LongProperty priceCents;
+    private final IntegerProperty stock;
+    private final IntegerProperty min;
+    private final IntegerProperty max;
+    private final IntegerProperty revision;
+    private int editDepth;
+    private boolean editChanged;
+    // Id as of the last reported change, so listeners hearing of an update
+    // can tell the id it moved from.
+    private int reportedId;
+    private long version;
 
     /**
      * <p>Constructor</p>
      * @param id Product Id.
      * @param name Product name.
-     * @param price Product price.
+     * @param price Product price, rounded to the nearest cent.
      * @param stock How much of product in stock.
      * @param min Minimum number of product that must be in inventory.
      * @param max Maximum number of product that can be in inventory.
      */
     public Product(int id, String name, double price, int stock, int min, int max) {
-        this.id = id;
-        this.name = name;
-        this.price = price;
-        this.stock = stock;
-        this.min = min;
-        this.max = max;
-        this.associatedParts = FXCollections.observableArrayList(new ArrayList<>());
+        this(id, name, Money.fromDouble(price), stock, min, max);
+    }
+
+    // Private for the same reason as Part's: a whole-number price would pick it.
+    private Product(int id, String name, long priceCents, int stock, int min, int max) {
+        this.id = new SimpleIntegerProperty(this, "id", id);
+        this.name = new SimpleStringProperty(this, "name", name);
+        this.priceCents = new SimpleLongProperty(this, "priceCents", priceCents);
+        this.stock = new SimpleIntegerProperty(this, "stock", stock);
+        this.min = new SimpleIntegerProperty(this, "min", min);
+        this.max = new SimpleIntegerProperty(this, "max", max);
+        this.revision = new SimpleIntegerProperty(this, "revision");
+        this.reportedId = id;
+        ObservableValue<?>[] fields = {this.id, this.name, this.priceCents, this.stock, this.min, this.max};
+        for (ObservableValue<?> field : fields) {
+            field.addListener((observable, oldValue, newValue) -> changed());
+        }
+    }
+
+    /**
+     * <p>Creates a product with its price given in cents.</p>
+     * @param id Product Id.
+     * @param name Product name.
+     * @param priceCents Product price in cents.
+     * @param stock How much of product in stock.
+     * @param min Minimum number of product that must be in inventory.
+     * @param max Maximum number of product that can be in inventory.
+     * @return New product.
+     */
+    public static Product ofCents(int id, String name, long priceCents, int stock, int min, int max) {
+        return new Product(id, name, priceCents, stock, min, max);
+    }
+
+    /**
+     * <p>Gets what inventory lists watch, as their extractor, to report a
+     * change to this product as an update of it: the revision, which moves
+     * once per edit however many fields, parts or sub-assemblies it changes.</p>
+     * @return Array holding the revision property.
+     */
+    public Observable[] getFieldProperties() {
+        return new Observable[] {revision};
+    }
+
+    /**
+     * <p>Gets the id the product had when its previous change was reported.
+     * While inventory listeners hear of an update of it, this differs from
+     * getId() only if the update moved the id, so they can drop the old one.</p>
+     * @return Id before the change being reported.
+     */
+    public int getPreviousId() {
+        return reportedId;
+    }
+
+    /**
+     * <p>Makes several changes as one edit. Inventory lists report a single
+     * update of this product when the change returns, or none if nothing
+     * changed. Edits may nest; only the outermost one reports.</p>
+     * @param change Sets the fields, parts or sub-assemblies.
+     */
+    public void edit(Runnable change) {
+        editDepth++;
+        try {
+            change.run();
+        } finally {
+            if (--editDepth == 0 && editChanged) {
+                editChanged = false;
+                report();
+            }
+        }
+    }
+
+    /**
+     * <p>Gets the version stamp of this product. When inventory adds or changes
+     * it, it is stamped with the store's new snapshot version, so stamps only
+     * grow and two reads with the same stamp saw the same data, even if the
+     * product was deleted and added again in between.</p>
+     * @return Version stamp, 0 for a product that has never been in inventory.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * <p>Sets the version stamp. Used for copies read from another process,
+     * so they carry the version they were read at. Inventory overwrites it
+     * when it adds or changes the product, and does not read it from update data.</p>
+     * @param version Version stamp.
+     */
+    public void setVersion(long version) {
+        this.version = version;
     }
 
     /**
@@ -44,7 +159,7 @@ public class Product {
      * @return Product Id.
      */
     public int getId() {
-        return id;
+        return id.get();
     }
 
     /**
@@ -52,7 +167,15 @@ public class Product {
      * @param id Product Id.
      */
     public void setId(int id) {
-        this.id = id;
+        this.id.set(id);
+    }
+
+    /**
+     * <p>Gets the product id property.</p>
+     * @return Product id property.
+     */
+    public IntegerProperty idProperty() {
+        return id;
     }
 
     /**
@@ -60,7 +183,7 @@ public class Product {
      * @return Product name.
      */
     public String getName() {
-        return name;
+        return name.get();
     }
 
     /**
@@ -68,23 +191,55 @@ public class Product {
      * @param name Product name.
      */
     public void setName(String name) {
-        this.name = name;
+        this.name.set(name);
+    }
+
+    /**
+     * <p>Gets the product name property.</p>
+     * @return Product name property.
+     */
+    public StringProperty nameProperty() {
+        return name;
     }
 
     /**
      * <p>Gets the product price.</p>
-     * @return Product price.
+     * @return Product price, in dollars.
      */
     public double getPrice() {
-        return price;
+        return Money.toDouble(priceCents.get());
     }
 
     /**
-     * <p>Sets the product price.</p>
-     * @param price Product price.
+     * <p>Sets the product price, rounded to the nearest cent.</p>
+     * @param price Product price, in dollars.
      */
     public void setPrice(double price) {
-        this.price = price;
+        priceCents.set(Money.fromDouble(price));
+    }
+
+    /**
+     * <p>Gets the product price as it is stored, in cents.</p>
+     * @return Product price in cents.
+     */
+    public long getPriceCents() {
+        return priceCents.get();
+    }
+
+    /**
+     * <p>Sets the product price in cents.</p>
+     * @param priceCents Product price in cents.
+     */
+    public void setPriceCents(long priceCents) {
+        this.priceCents.set(priceCents);
+    }
+
+    /**
+     * <p>Gets the product price property, in cents.</p>
+     * @return Product price in cents property.
+     */
+    public LongProperty priceCentsProperty() {
+        return priceCents;
     }
 
     /**
@@ -92,7 +247,7 @@ public class Product {
      * @return Number of product in stock.
      */
     public int getStock() {
-        return stock;
+        return stock.get();
     }
 
     /**
@@ -100,7 +255,15 @@ public class Product {
      * @param stock Number of product in stock.
      */
     public void setStock(int stock) {
-        this.stock = stock;
+        this.stock.set(stock);
+    }
+
+    /**
+     * <p>Gets the product stock property.</p>
+     * @return Product stock property.
+     */
+    public IntegerProperty stockProperty() {
+        return stock;
     }
 
     /**
@@ -108,7 +271,7 @@ public class Product {
      * @return Minimum number of product.
      */
     public int getMin() {
-        return min;
+        return min.get();
     }
 
     /**
@@ -116,7 +279,15 @@ public class Product {
      * @param min Minimum number of product.
      */
     public void setMin(int min) {
-        this.min = min;
+        this.min.set(min);
+    }
+
+    /**
+     * <p>Gets the product min property.</p>
+     * @return Product min property.
+     */
+    public IntegerProperty minProperty() {
+        return min;
     }
 
     /**
@@ -124,7 +295,7 @@ public class Product {
      * @return Maximum number of product.
      */
     public int getMax() {
-        return max;
+        return max.get();
     }
 
     /**
@@ -132,44 +303,374 @@ public class Product {
      * @param max Maximum number or product
      */
     public void setMax(int max) {
-        this.max = max;
+        this.max.set(max);
     }
 
     /**
-     * <p>Associates a part with the product.</p>
+     * <p>Gets the product max property.</p>
+     * @return Product max property.
+     */
+    public IntegerProperty maxProperty() {
+        return max;
+    }
+
+    /**
+     * <p>Associates one more of a part with the product.</p>
      * @param part Part to be added.
      */
     public void addAssociatedPart(Part part) {
-        associatedParts.add(part);
+        addAssociatedPart(part.getId(), 1);
     }
 
     /**
-     * <p>Deletes a part associated with the product.</p>
+     * <p>Associates a quantity of a part with the product, adding to any
+     * quantity already associated.</p>
+     * @param partId Id of the part.
+     * @param quantity Number of the part to add, at least 1.
+     * @throws IllegalArgumentException If quantity is less than 1.
+     */
+    public void addAssociatedPart(int partId, int quantity) {
+        if (quantity < 1) {
+            throw new IllegalArgumentException("Quantity of part " + partId + " must be at least 1, not " + quantity);
+        }
+        associatedParts.put(partId, associatedParts.get(partId, 0) + quantity);
+        changed();
+    }
+
+    /**
+     * <p>Sets how many of a part the product needs. Setting the quantity it
+     * already has is not a change.</p>
+     * @param partId Id of the part.
+     * @param quantity New quantity. 0 or less removes the part.
+     */
+    public void setAssociatedPartQuantity(int partId, int quantity) {
+        if (quantity <= 0) {
+            if (associatedParts.remove(partId)) {
+                changed();
+            }
+            return;
+        }
+        if (associatedParts.get(partId, 0) == quantity) {
+            return;
+        }
+        associatedParts.put(partId, quantity);
+        changed();
+    }
+
+    /**
+     * <p>Replaces the whole bill of materials in one change, or in none if
+     * it already has exactly these lines.</p>
+     * @param partIds Part ids, without repeats.
+     * @param quantities Quantity of each part, matching partIds.
+     */
+    public void setAssociatedParts(int[] partIds, int[] quantities) {
+        if (holds(associatedParts, partIds, quantities)) {
+            return;
+        }
+        associatedParts.clear();
+        for (int i = 0; i < partIds.length; i++) {
+            associatedParts.put(partIds[i], quantities[i]);
+        }
+        changed();
+    }
+
+    /**
+     * <p>Deletes a part associated with the product, whatever its quantity.</p>
      * @param selectedAssociatedPart Part to be deleted.
      * @return True if part existed. False if part was not found.
      */
     public boolean deleteAssociatedPart(Part selectedAssociatedPart) {
-        for (int i = 0; i < associatedParts.size(); i++) {
-            if(associatedParts.get(i).getId() == selectedAssociatedPart.getId()) {
-                associatedParts.remove(i);
-                return true;
-            }
+        if (!associatedParts.remove(selectedAssociatedPart.getId())) {
+            return false;
         }
-        return false;
+        changed();
+        return true;
+    }
+
+    /**
+     * <p>Checks whether a part is associated with the product.</p>
+     * @param partId Id of the part.
+     * @return True if associated.
+     */
+    public boolean hasAssociatedPart(int partId) {
+        return associatedParts.containsKey(partId);
+    }
+
+    /**
+     * <p>Gets how many of a part the product needs.</p>
+     * @param partId Id of the part.
+     * @return Quantity, 0 if the part is not associated.
+     */
+    public int getAssociatedPartQuantity(int partId) {
+        return associatedParts.get(partId, 0);
+    }
+
+    /**
+     * <p>Gets the number of distinct parts associated with the product.</p>
+     * @return Line count.
+     */
+    public int getAssociatedPartCount() {
+        return associatedParts.size();
+    }
+
+    /**
+     * <p>Gets the ids of the associated parts.</p>
+     * @return Copy of the part ids.
+     */
+    public int[] getAssociatedPartIds() {
+        return associatedParts.keys();
+    }
+
+    /**
+     * <p>Gets the quantities of the associated parts.</p>
+     * @return Copy of the quantities, matching getAssociatedPartIds().
+     */
+    public int[] getAssociatedPartQuantities() {
+        return associatedParts.values();
     }
 
     /**
-     * <p>Gets a list of associated parts.</p>
-     * @return ObservableList of associated parts.
+     * <p>Gets a list of associated parts, looked up in inventory by id. Parts
+     * that are no longer in inventory are left out.</p>
+     * @return ObservableList of associated parts, one per line.
      */
     public ObservableList<Part> getAllAssociatedParts() {
-        return FXCollections.observableArrayList(this.associatedParts);
+        return getAllAssociatedParts(InventoryRegistry.getDefault());
+    }
+
+    /**
+     * <p>Gets a list of associated parts, looked up by id in the store the
+     * product belongs to. Parts that are not in that store are left out.</p>
+     * @param store Store to look the parts up in.
+     * @return ObservableList of associated parts, one per line.
+     */
+    public ObservableList<Part> getAllAssociatedParts(InventoryStore store) {
+        ObservableList<Part> parts = FXCollections.observableArrayList(new ArrayList<>(associatedParts.size()));
+        for (int i = 0; i < associatedParts.size(); i++) {
+            Part part = store.lookupPart(associatedParts.keyAt(i));
+            if (part != null) {
+                parts.add(part);
+            }
+        }
+        return parts;
     }
 
     /**
      * <p>Clears entire list of associated parts.</p>
      */
     public void clearAssociatedParts() {
-        this.associatedParts.clear();
+        if (associatedParts.size() > 0) {
+            associatedParts.clear();
+            changed();
+        }
+    }
+
+    /**
+     * <p>Adds one more of a product as a sub-assembly of this one, checking
+     * for cycles among the products of the default store.</p>
+     * @param subAssembly Product to be added.
+     * @return True if added. False if it would make a cycle, because it is
+     * this product or already contains it.
+     */
+    public boolean addSubAssembly(Product subAssembly) {
+        return addSubAssembly(InventoryRegistry.getDefault(), subAssembly.getId(), 1);
+    }
+
+    /**
+     * <p>Adds a quantity of a product as a sub-assembly of this one, checking
+     * for cycles among the products of the default store.</p>
+     * @param productId Id of the sub-assembly.
+     * @param quantity Number of it to add, at least 1.
+     * @return True if added. False if it would make a cycle.
+     * @throws IllegalArgumentException If quantity is less than 1.
+     */
+    public boolean addSubAssembly(int productId, int quantity) {
+        return addSubAssembly(InventoryRegistry.getDefault(), productId, quantity);
+    }
+
+    /**
+     * <p>Adds a quantity of a product as a sub-assembly of this one, adding to
+     * any quantity already there.</p>
+     * @param store Store the product belongs to, where cycles are looked for.
+     * @param productId Id of the sub-assembly.
+     * @param quantity Number of it to add, at least 1.
+     * @return True if added. False if it would make a cycle.
+     * @throws IllegalArgumentException If quantity is less than 1.
+     */
+    public boolean addSubAssembly(InventoryStore store, int productId, int quantity) {
+        if (quantity < 1) {
+            throw new IllegalArgumentException("Quantity of sub-assembly " + productId + " must be at least 1, not " + quantity);
+        }
+        if (!subAssemblies.containsKey(productId) && BomExplosion.wouldCreateCycle(store, getId(), productId)) {
+            return false;
+        }
+        subAssemblies.put(productId, subAssemblies.get(productId, 0) + quantity);
+        changed();
+        return true;
+    }
+
+    /**
+     * <p>Sets how many of a sub-assembly the product needs, checking for
+     * cycles among the products of the default store.</p>
+     * @param productId Id of the sub-assembly.
+     * @param quantity New quantity. 0 or less removes it.
+     * @return True if set. False if it would make a cycle.
+     */
+    public boolean setSubAssemblyQuantity(int productId, int quantity) {
+        return setSubAssemblyQuantity(InventoryRegistry.getDefault(), productId, quantity);
+    }
+
+    /**
+     * <p>Sets how many of a sub-assembly the product needs. Setting the
+     * quantity it already has is not a change.</p>
+     * @param store Store the product belongs to, where cycles are looked for.
+     * @param productId Id of the sub-assembly.
+     * @param quantity New quantity. 0 or less removes it.
+     * @return True if set. False if it would make a cycle.
+     */
+    public boolean setSubAssemblyQuantity(InventoryStore store, int productId, int quantity) {
+        if (quantity <= 0) {
+            if (subAssemblies.remove(productId)) {
+                changed();
+            }
+            return true;
+        }
+        if (subAssemblies.get(productId, 0) == quantity) {
+            return true;
+        }
+        if (!subAssemblies.containsKey(productId) && BomExplosion.wouldCreateCycle(store, getId(), productId)) {
+            return false;
+        }
+        subAssemblies.put(productId, quantity);
+        changed();
+        return true;
+    }
+
+    /**
+     * <p>Replaces every sub-assembly in one change. Meant for copying a product
+     * whose sub-assemblies were already checked, so cycles are not checked
+     * here; BomExplosion still refuses to explode one.</p>
+     * @param productIds Sub-assembly ids, without repeats.
+     * @param quantities Quantity of each, matching productIds.
+     */
+    public void setSubAssemblies(int[] productIds, int[] quantities) {
+        if (holds(subAssemblies, productIds, quantities)) {
+            return;
+        }
+        subAssemblies.clear();
+        for (int i = 0; i < productIds.length; i++) {
+            subAssemblies.put(productIds[i], quantities[i]);
+        }
+        changed();
+    }
+
+    /**
+     * <p>Removes a sub-assembly, whatever its quantity.</p>
+     * @param subAssembly Product to be removed.
+     * @return True if it was a sub-assembly. False if it was not found.
+     */
+    public boolean deleteSubAssembly(Product subAssembly) {
+        if (!subAssemblies.remove(subAssembly.getId())) {
+            return false;
+        }
+        changed();
+        return true;
+    }
+
+    /**
+     * <p>Checks whether a product is a direct sub-assembly of this one.</p>
+     * @param productId Id of the product.
+     * @return True if it is.
+     */
+    public boolean hasSubAssembly(int productId) {
+        return subAssemblies.containsKey(productId);
+    }
+
+    /**
+     * <p>Gets how many of a sub-assembly the product needs.</p>
+     * @param productId Id of the sub-assembly.
+     * @return Quantity, 0 if it is not a sub-assembly.
+     */
+    public int getSubAssemblyQuantity(int productId) {
+        return subAssemblies.get(productId, 0);
+    }
+
+    /**
+     * <p>Gets the number of distinct direct sub-assemblies.</p>
+     * @return Line count.
+     */
+    public int getSubAssemblyCount() {
+        return subAssemblies.size();
+    }
+
+    /**
+     * <p>Gets the ids of the direct sub-assemblies.</p>
+     * @return Copy of the product ids.
+     */
+    public int[] getSubAssemblyIds() {
+        return subAssemblies.keys();
+    }
+
+    /**
+     * <p>Gets the quantities of the direct sub-assemblies.</p>
+     * @return Copy of the quantities, matching getSubAssemblyIds().
+     */
+    public int[] getSubAssemblyQuantities() {
+        return subAssemblies.values();
+    }
+
+    /**
+     * <p>Gets the direct sub-assemblies, looked up in inventory by id. Products
+     * that are no longer in inventory are left out.</p>
+     * @return ObservableList of sub-assemblies, one per line.
+     */
+    public ObservableList<Product> getAllSubAssemblies() {
+        return getAllSubAssemblies(InventoryRegistry.getDefault());
+    }
+
+    /**
+     * <p>Gets the direct sub-assemblies, looked up by id in the store the
+     * product belongs to. Products that are not in that store are left out.</p>
+     * @param store Store to look the sub-assemblies up in.
+     * @return ObservableList of sub-assemblies, one per line.
+     */
+    public ObservableList<Product> getAllSubAssemblies(InventoryStore store) {
+        ObservableList<Product> products = FXCollections.observableArrayList(new ArrayList<>(subAssemblies.size()));
+        for (int i = 0; i < subAssemblies.size(); i++) {
+            Product product = store.lookupProduct(subAssemblies.keyAt(i));
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * <p>Checks whether a map of lines already holds exactly these lines, in
+     * this order.</p>
+     */
+    private static boolean holds(IntIntMap lines, int[] ids, int[] quantities) {
+        return Arrays.equals(lines.keys(), ids) && Arrays.equals(lines.values(), quantities);
+    }
+
+    /**
+     * <p>Reports a change to a field, the associated parts or sub-assemblies
+     * to inventory list listeners, or holds it until the current edit ends.</p>
+     */
+    private void changed() {
+        if (editDepth > 0) {
+            editChanged = true;
+        } else {
+            report();
+        }
+    }
+
+    /**
+     * <p>Moves the revision, which reports the change to inventory lists, and
+     * then takes the id as reported.</p>
+     */
+    private void report() {
+        revision.set(revision.get() + 1);
+        reportedId = getId();
     }
 }
@@ -0,0 +1,11 @@
+package com.kyancey.inventory.entities;
+
+/**
+ * <p>Fields that inventory lists can be kept sorted by.</p>
+ */
+public enum SortKey {
+    ID,
+    NAME,
+    STOCK,
+    PRICE
+}
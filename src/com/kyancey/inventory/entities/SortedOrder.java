@@ -0,0 +1,231 @@
+package com.kyancey.inventory.entities;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * <p>A read-only list that holds the items of another list sorted by one field,
+ * and stays sorted as that list changes.</p>
+ * <p>The order is built once, then kept up to date one item at a time: an add,
+ * a delete, or a change to the sort field moves only that item, found by binary
+ * search on the key it was last sorted under. Ties are broken by id and then by
+ * when the item arrived, so the order is total and stable. Moving an item
+ * shifts the array behind it, which is a memory move rather than a re-sort.</p>
+ * <p>Each move is reported as a single add or remove, so a table showing this
+ * list redraws only what moved.</p>
+ * @param <T> Part or Product.
+ */
+public final class SortedOrder<T> extends ObservableListBase<T> {
+    /**
+     * <p>An item with the key it is currently sorted under.</p>
+     */
+    private static final class Entry<T> implements Comparable<Entry<T>> {
+        final T item;
+        final Comparable<Object> key;
+        final int id;
+        final long arrival;
+
+        Entry(T item, Comparable<Object> key, int id, long arrival) {
+            this.item = item;
+            this.key = key;
+            this.id = id;
+            this.arrival = arrival;
+        }
+
+        @Override
+        public int compareTo(Entry<T> other) {
+            int c = key.compareTo(other.key);
+            if (c != 0) {
+                return c;
+            }
+            c = Integer.compare(id, other.id);
+            return c != 0 ? c : Long.compare(arrival, other.arrival);
+        }
+    }
+
+    private final Function<T, Comparable<?>> keyOf;
+    private final ToIntFunction<T> idOf;
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+    private Entry<T>[] sorted;
+    private int size;
+    private long arrivals;
+    private ObservableList<T> descending;
+
+    /**
+     * <p>Constructor. Sorts the source once and then follows its changes.</p>
+     * @param source List to keep a sorted copy of.
+     * @param keyOf Gets the field to sort by.
+     * @param idOf Gets the id used to break ties.
+     */
+    @SuppressWarnings("unchecked")
+    public SortedOrder(ObservableList<T> source, Function<T, Comparable<?>> keyOf, ToIntFunction<T> idOf) {
+        this.keyOf = keyOf;
+        this.idOf = idOf;
+        sorted = (Entry<T>[]) new Entry<?>[Math.max(16, source.size())];
+        for (T item : source) {
+            Entry<T> entry = entryFor(item);
+            entries.put(item, entry);
+            sorted[size++] = entry;
+        }
+        Arrays.sort(sorted, 0, size);
+        source.addListener(this::onSourceChanged);
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return sorted[index].item;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * <p>Finds where a key would start in this order.</p>
+     * @param key Key of the sort field's type.
+     * @return Index of the first item whose key is not less than the given key,
+     * or size() if there is none.
+     */
+    public int lowerBound(Comparable<?> key) {
+        return bound(key, false);
+    }
+
+    /**
+     * <p>Finds where a key would end in this order.</p>
+     * @param key Key of the sort field's type.
+     * @return Index of the first item whose key is greater than the given key,
+     * or size() if there is none.
+     */
+    public int upperBound(Comparable<?> key) {
+        return bound(key, true);
+    }
+
+    private int bound(Comparable<?> key, boolean pastEqual) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int c = sorted[mid].key.compareTo(key);
+            if (c < 0 || (pastEqual && c == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * <p>Gets a live view of this order from last to first.</p>
+     * @return Read-only reversed list.
+     */
+    public ObservableList<T> descending() {
+        if (descending == null) {
+            descending = new Descending<>(this);
+        }
+        return descending;
+    }
+
+    private void onSourceChanged(ListChangeListener.Change<? extends T> c) {
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    T item = c.getList().get(i);
+                    Entry<T> old = entries.get(item);
+                    if (old != null && (old.id != idOf.applyAsInt(item) || old.key.compareTo(keyOf.apply(item)) != 0)) {
+                        removeItem(item);
+                        insertItem(item);
+                    }
+                }
+            } else {
+                for (T item : c.getRemoved()) {
+                    removeItem(item);
+                }
+                for (T item : c.getAddedSubList()) {
+                    insertItem(item);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<T> entryFor(T item) {
+        return new Entry<>(item, (Comparable<Object>) keyOf.apply(item), idOf.applyAsInt(item), arrivals++);
+    }
+
+    private void insertItem(T item) {
+        Entry<T> entry = entryFor(item);
+        entries.put(item, entry);
+        int index = -(Arrays.binarySearch(sorted, 0, size, entry) + 1);
+        if (size == sorted.length) {
+            sorted = Arrays.copyOf(sorted, size + (size >> 1));
+        }
+        System.arraycopy(sorted, index, sorted, index + 1, size - index);
+        sorted[index] = entry;
+        size++;
+        beginChange();
+        nextAdd(index, index + 1);
+        endChange();
+    }
+
+    private void removeItem(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry == null) {
+            return;
+        }
+        int index = Arrays.binarySearch(sorted, 0, size, entry);
+        System.arraycopy(sorted, index + 1, sorted, index, size - index - 1);
+        sorted[--size] = null;
+        beginChange();
+        nextRemove(index, entry.item);
+        endChange();
+    }
+
+    /**
+     * <p>Reversed view of a SortedOrder. Its changes are the order's changes
+     * with the positions mirrored.</p>
+     */
+    private static final class Descending<T> extends ObservableListBase<T> {
+        private final SortedOrder<T> order;
+
+        Descending(SortedOrder<T> order) {
+            this.order = order;
+            order.addListener(this::onOrderChanged);
+        }
+
+        @Override
+        public T get(int index) {
+            return order.get(order.size() - 1 - index);
+        }
+
+        @Override
+        public int size() {
+            return order.size();
+        }
+
+        private void onOrderChanged(ListChangeListener.Change<? extends T> c) {
+            // The order only ever reports one added or removed item per change.
+            beginChange();
+            while (c.next()) {
+                if (c.wasAdded()) {
+                    int index = order.size() - 1 - c.getFrom();
+                    nextAdd(index, index + 1);
+                } else if (c.wasRemoved()) {
+                    nextRemove(order.size() - c.getFrom(), c.getRemoved().get(0));
+                }
+            }
+            endChange();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.kyancey.inventory.entities;
+
+import javafx.collections.ListChangeListener;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Keeps the stock level history of every part and product so it can be asked
+ * what the stock was at a given time.</p>
+ * <p>Every change to a stock level made through Inventory, whether from a form,
+ * updatePart(), or a location adjustment, is appended to a ledger along with
+ * when it happened. Deleting a part or product is recorded too, and so is
+ * the old id of one whose id is changed in place.</p>
+ * <p>Each store has its own history, which starts the first time the store is
+ * asked about (for the default store, at startCompaction()); existing stock
+ * is recorded as of then. Start a store's history from the thread that edits
+ * it. The methods without a store use the default one.</p>
+ */
+public class StockHistory {
+    /** Returned by the as-of queries when the part or product did not exist. */
+    public static final int ABSENT = StockLedger.ABSENT;
+
+    private static ScheduledExecutorService compactor;
+
+    /**
+     * <p>The ledgers of one store.</p>
+     */
+    private static final class Index {
+        private final StockLedger partLedger = new StockLedger();
+        private final StockLedger productLedger = new StockLedger();
+
+        Index(InventoryStore store) {
+            for (Part p : store.getAllPartsView()) {
+                partLedger.record(p.getId(), p.getStock());
+            }
+            for (Product p : store.getAllProductsView()) {
+                productLedger.record(p.getId(), p.getStock());
+            }
+            store.getAllPartsView().addListener(this::onPartsChanged);
+            store.getAllProductsView().addListener(this::onProductsChanged);
+        }
+
+        /**
+         * <p>Records the stock of parts touched by a list change.</p>
+         * @param c Change from the parts list.
+         */
+        private void onPartsChanged(ListChangeListener.Change<? extends Part> c) {
+            while (c.next()) {
+                if (c.wasUpdated()) {
+                    for (int i = c.getFrom(); i < c.getTo(); i++) {
+                        Part p = c.getList().get(i);
+                        if (p.getPreviousId() != p.getId()) {
+                            partLedger.record(p.getPreviousId(), ABSENT);
+                        }
+                        partLedger.record(p.getId(), p.getStock());
+                    }
+                } else {
+                    Set<Integer> kept = new HashSet<>();
+                    for (Part p : c.getAddedSubList()) {
+                        kept.add(p.getId());
+                        partLedger.record(p.getId(), p.getStock());
+                    }
+                    for (Part p : c.getRemoved()) {
+                        if (!kept.contains(p.getId())) {
+                            partLedger.record(p.getId(), ABSENT);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * <p>Records the stock of products touched by a list change.</p>
+         * @param c Change from the products list.
+         */
+        private void onProductsChanged(ListChangeListener.Change<? extends Product> c) {
+            while (c.next()) {
+                if (c.wasUpdated()) {
+                    for (int i = c.getFrom(); i < c.getTo(); i++) {
+                        Product p = c.getList().get(i);
+                        if (p.getPreviousId() != p.getId()) {
+                            productLedger.record(p.getPreviousId(), ABSENT);
+                        }
+                        productLedger.record(p.getId(), p.getStock());
+                    }
+                } else {
+                    Set<Integer> kept = new HashSet<>();
+                    for (Product p : c.getAddedSubList()) {
+                        kept.add(p.getId());
+                        productLedger.record(p.getId(), p.getStock());
+                    }
+                    for (Product p : c.getRemoved()) {
+                        if (!kept.contains(p.getId())) {
+                            productLedger.record(p.getId(), ABSENT);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static Index index(InventoryStore store) {
+        return store.getIndex(Index.class, Index::new);
+    }
+
+    /**
+     * <p>Gets the stock a part in the default store had at a point in time.</p>
+     * @param partId Part id.
+     * @param time Milliseconds since the epoch.
+     * @return Stock level, or ABSENT if the part did not exist then.
+     */
+    public static int getPartStockAsOf(int partId, long time) {
+        return getPartStockAsOf(InventoryRegistry.getDefault(), partId, time);
+    }
+
+    /**
+     * <p>Gets the stock a part had at a point in time. Safe to call from any
+     * thread once the store's history has started.</p>
+     * @param store Store the part is in.
+     * @param partId Part id.
+     * @param time Milliseconds since the epoch.
+     * @return Stock level, or ABSENT if the part did not exist then.
+     */
+    public static int getPartStockAsOf(InventoryStore store, int partId, long time) {
+        return index(store).partLedger.levelAsOf(partId, time);
+    }
+
+    /**
+     * <p>Gets the stock a product in the default store had at a point in time.</p>
+     * @param productId Product id.
+     * @param time Milliseconds since the epoch.
+     * @return Stock level, or ABSENT if the product did not exist then.
+     */
+    public static int getProductStockAsOf(int productId, long time) {
+        return getProductStockAsOf(InventoryRegistry.getDefault(), productId, time);
+    }
+
+    /**
+     * <p>Gets the stock a product had at a point in time. Safe to call from any
+     * thread once the store's history has started.</p>
+     * @param store Store the product is in.
+     * @param productId Product id.
+     * @param time Milliseconds since the epoch.
+     * @return Stock level, or ABSENT if the product did not exist then.
+     */
+    public static int getProductStockAsOf(InventoryStore store, int productId, long time) {
+        return index(store).productLedger.levelAsOf(productId, time);
+    }
+
+    /**
+     * <p>Gets the number of stock movements recorded in the default store.</p>
+     * @return Movement count.
+     */
+    public static long getMovementCount() {
+        return getMovementCount(InventoryRegistry.getDefault());
+    }
+
+    /**
+     * <p>Gets the number of stock movements recorded for a store's parts and products.</p>
+     * @param store Store to count.
+     * @return Movement count.
+     */
+    public static long getMovementCount(InventoryStore store) {
+        Index history = index(store);
+        return history.partLedger.getMovementCount() + history.productLedger.getMovementCount();
+    }
+
+    /**
+     * <p>Starts the default store's history and merges the old ledger segments
+     * of every store with history on a background thread. Queries for times
+     * past the retention window stay exact; they just replay more.</p>
+     * @param retentionMillis How long segments keep all of their checkpoints.
+     * @param periodSeconds How often to compact.
+     */
+    public static synchronized void startCompaction(long retentionMillis, long periodSeconds) {
+        if (compactor != null) {
+            return;
+        }
+        index(InventoryRegistry.getDefault());
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stock-ledger-compaction");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            long before = System.currentTimeMillis() - retentionMillis;
+            for (String name : InventoryRegistry.getNames()) {
+                InventoryStore store = InventoryRegistry.lookup(name);
+                Index history = store == null ? null : store.findIndex(Index.class);
+                if (history != null) {
+                    history.partLedger.compact(before);
+                    history.productLedger.compact(before);
+                }
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+}
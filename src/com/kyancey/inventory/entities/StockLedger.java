@@ -0,0 +1,235 @@
+package com.kyancey.inventory.entities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>Append-only history of stock levels for one kind of entity (parts or products).</p>
+ * <p>Movements go into segments. Each segment starts with a checkpoint of every
+ * entity's level at that moment, so the level at time T is the last movement for
+ * that entity in the segment covering T, or the segment's checkpoint if it did
+ * not move. A query never looks past one segment.</p>
+ * <p>A segment is sealed once it holds a quarter as many movements as there are
+ * entities (but at least MIN_SEGMENT), which keeps the cost of writing the next
+ * checkpoint to a constant share per movement. Compaction later merges old
+ * segments and drops the checkpoints in between, trading a longer (but still
+ * bounded) scan for less memory.</p>
+ */
+final class StockLedger {
+    /** Level recorded for an entity that does not exist. */
+    static final int ABSENT = -1;
+
+    private static final int MIN_SEGMENT = 4096;
+    private static final int MAX_COMPACTED = 1 << 16;
+
+    /**
+     * <p>Movements from one checkpoint to the next.</p>
+     */
+    private static final class Segment {
+        final long startTime;
+        final int[] checkpointIds;
+        final int[] checkpointLevels;
+        long[] times;
+        int[] ids;
+        int[] levels;
+        int size;
+
+        Segment(long startTime, int[] checkpointIds, int[] checkpointLevels, int capacity) {
+            this.startTime = startTime;
+            this.checkpointIds = checkpointIds;
+            this.checkpointLevels = checkpointLevels;
+            times = new long[capacity];
+            ids = new int[capacity];
+            levels = new int[capacity];
+        }
+
+        void append(long time, int id, int level) {
+            if (size == times.length) {
+                int capacity = Math.max(16, size * 2);
+                times = Arrays.copyOf(times, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                levels = Arrays.copyOf(levels, capacity);
+            }
+            times[size] = time;
+            ids[size] = id;
+            levels[size] = level;
+            size++;
+        }
+
+        void trim() {
+            times = Arrays.copyOf(times, size);
+            ids = Arrays.copyOf(ids, size);
+            levels = Arrays.copyOf(levels, size);
+        }
+
+        int levelAsOf(int id, long time) {
+            // Last movement at or before the time, then back to the last one for this id.
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            for (int i = high; i >= 0; i--) {
+                if (ids[i] == id) {
+                    return levels[i];
+                }
+            }
+            int index = Arrays.binarySearch(checkpointIds, id);
+            return index >= 0 ? checkpointLevels[index] : ABSENT;
+        }
+    }
+
+    private final LongSupplier clock;
+    private final Map<Integer, Integer> current = new HashMap<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private long lastTime;
+
+    /**
+     * <p>Constructor. History starts now, with nothing in stock.</p>
+     */
+    StockLedger() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * <p>Constructor with its own clock, for tests.</p>
+     * @param clock Gives the time of each movement, in milliseconds since the epoch.
+     */
+    StockLedger(LongSupplier clock) {
+        this.clock = clock;
+        lastTime = clock.getAsLong();
+        active = new Segment(lastTime, new int[0], new int[0], MIN_SEGMENT);
+        segments.add(active);
+    }
+
+    /**
+     * <p>Records a new stock level if it differs from the last one recorded.</p>
+     * @param id Entity id.
+     * @param level New level, or ABSENT if the entity was deleted.
+     */
+    synchronized void record(int id, int level) {
+        Integer previous = current.get(id);
+        if (previous == null ? level == ABSENT : previous == level) {
+            return;
+        }
+        if (level == ABSENT) {
+            current.remove(id);
+        } else {
+            current.put(id, level);
+        }
+        // Clock steps backwards must not break the time order binary search relies on.
+        lastTime = Math.max(lastTime, clock.getAsLong());
+        active.append(lastTime, id, level);
+        if (active.size >= Math.max(MIN_SEGMENT, current.size() / 4)) {
+            seal();
+        }
+    }
+
+    /**
+     * <p>Gets the stock level an entity had at a point in time.</p>
+     * @param id Entity id.
+     * @param time Milliseconds since the epoch.
+     * @return Stock level, or ABSENT if the entity did not exist then or the time
+     * is before history starts.
+     */
+    synchronized int levelAsOf(int id, long time) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (segments.get(mid).startTime <= time) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high < 0 ? ABSENT : segments.get(high).levelAsOf(id, time);
+    }
+
+    /**
+     * <p>Gets the number of movements recorded.</p>
+     * @return Movement count.
+     */
+    synchronized long getMovementCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.size;
+        }
+        return count;
+    }
+
+    /**
+     * <p>Gets the number of segments, which is also the number of checkpoints kept.</p>
+     * @return Segment count.
+     */
+    synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * <p>Merges runs of adjacent sealed segments that started before a cutoff,
+     * keeping only the first checkpoint of each run, as long as a merged segment
+     * stays under MAX_COMPACTED movements.</p>
+     * @param before Segments starting before this time (milliseconds since the epoch) are merged.
+     */
+    void compact(long before) {
+        int i = 0;
+        while (true) {
+            synchronized (this) {
+                // The last segment is the active one; only sealed segments merge.
+                if (i + 2 >= segments.size()) {
+                    return;
+                }
+                Segment first = segments.get(i);
+                Segment second = segments.get(i + 1);
+                if (second.startTime >= before) {
+                    return;
+                }
+                if (first.size + second.size > MAX_COMPACTED) {
+                    i++;
+                    continue;
+                }
+                segments.set(i, merge(first, second));
+                segments.remove(i + 1);
+            }
+        }
+    }
+
+    private static Segment merge(Segment first, Segment second) {
+        Segment merged = new Segment(first.startTime, first.checkpointIds, first.checkpointLevels, 0);
+        merged.times = Arrays.copyOf(first.times, first.size + second.size);
+        merged.ids = Arrays.copyOf(first.ids, first.size + second.size);
+        merged.levels = Arrays.copyOf(first.levels, first.size + second.size);
+        System.arraycopy(second.times, 0, merged.times, first.size, second.size);
+        System.arraycopy(second.ids, 0, merged.ids, first.size, second.size);
+        System.arraycopy(second.levels, 0, merged.levels, first.size, second.size);
+        merged.size = first.size + second.size;
+        return merged;
+    }
+
+    private void seal() {
+        active.trim();
+        int[] ids = new int[current.size()];
+        int n = 0;
+        for (int id : current.keySet()) {
+            ids[n++] = id;
+        }
+        Arrays.sort(ids);
+        int[] levels = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            levels[i] = current.get(ids[i]);
+        }
+        active = new Segment(lastTime, ids, levels, MIN_SEGMENT);
+        segments.add(active);
+    }
+}
@@ -0,0 +1,236 @@
+package com.kyancey.inventory.entities;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Per-location stock counts for one kind of entity (parts or products).</p>
+ * <p>Each entity has a row holding an int per location, sized only up to the
+ * highest location it has ever had stock at, plus its running total. A row is
+ * locked on its own while it changes, so a transfer between two locations is
+ * atomic without any lock shared between entities. Unit totals per location
+ * are LongAdders updated in the same step, so every aggregate is O(1) to read.</p>
+ */
+final class StockMatrix {
+    private final ConcurrentHashMap<Integer, Row> rows = new ConcurrentHashMap<>();
+    private volatile LongAdder[] locationTotals = new LongAdder[0];
+
+    /**
+     * <p>Stock of one entity: counts indexed by location id, and their sum.</p>
+     */
+    private static final class Row {
+        int[] counts;
+        int total;
+
+        Row(int defaultLocation, int stock) {
+            counts = new int[defaultLocation + 1];
+            counts[defaultLocation] = stock;
+            total = stock;
+        }
+    }
+
+    /**
+     * <p>Makes room for a new location id.</p>
+     * @param locationId Highest location id in use.
+     */
+    synchronized void ensureLocation(int locationId) {
+        LongAdder[] current = locationTotals;
+        if (locationId < current.length) {
+            return;
+        }
+        LongAdder[] grown = Arrays.copyOf(current, locationId + 1);
+        for (int i = current.length; i < grown.length; i++) {
+            grown[i] = new LongAdder();
+        }
+        locationTotals = grown;
+    }
+
+    /**
+     * <p>Starts tracking an entity with all of its stock at one location.
+     * Does nothing if the entity is already tracked.</p>
+     * @param id Entity id.
+     * @param defaultLocation Location that holds the existing stock.
+     * @param stock Existing stock.
+     */
+    void track(int id, int defaultLocation, int stock) {
+        rows.computeIfAbsent(id, key -> {
+            locationTotals[defaultLocation].add(stock);
+            return new Row(defaultLocation, stock);
+        });
+    }
+
+    /**
+     * <p>Stops tracking an entity and removes its stock from the location totals.</p>
+     * @param id Entity id.
+     */
+    void remove(int id) {
+        Row row = rows.remove(id);
+        if (row == null) {
+            return;
+        }
+        synchronized (row) {
+            LongAdder[] totals = locationTotals;
+            for (int i = 0; i < row.counts.length; i++) {
+                totals[i].add(-row.counts[i]);
+            }
+            // A transfer still holding this row then finds nothing to move.
+            row.counts = new int[0];
+            row.total = 0;
+        }
+    }
+
+    /**
+     * <p>Moves an entity's row to a new id, as when its id changes in place.
+     * A row already under the new id is removed first.</p>
+     * @param oldId Id the entity had.
+     * @param newId Id it has now.
+     */
+    void move(int oldId, int newId) {
+        Row row = rows.remove(oldId);
+        if (row != null) {
+            remove(newId);
+            rows.put(newId, row);
+        }
+    }
+
+    /**
+     * <p>Gets the stock of an entity at one location.</p>
+     * @param id Entity id.
+     * @param locationId Location id.
+     * @return Stock, 0 if the entity is not tracked.
+     */
+    int get(int id, int locationId) {
+        Row row = rows.get(id);
+        if (row == null) {
+            return 0;
+        }
+        synchronized (row) {
+            return locationId >= 0 && locationId < row.counts.length ? row.counts[locationId] : 0;
+        }
+    }
+
+    /**
+     * <p>Gets the stock of an entity summed over all locations.</p>
+     * @param id Entity id.
+     * @return Total stock, 0 if the entity is not tracked.
+     */
+    int getTotal(int id) {
+        Row row = rows.get(id);
+        if (row == null) {
+            return 0;
+        }
+        synchronized (row) {
+            return row.total;
+        }
+    }
+
+    /**
+     * <p>Gets the units of all entities held at one location.</p>
+     * @param locationId Location id.
+     * @return Unit count.
+     */
+    long getLocationTotal(int locationId) {
+        LongAdder[] totals = locationTotals;
+        return locationId >= 0 && locationId < totals.length ? totals[locationId].sum() : 0;
+    }
+
+    /**
+     * <p>Adds to or removes from the stock at one location.</p>
+     * @param id Entity id.
+     * @param locationId Location id.
+     * @param delta Units to add, negative to remove.
+     * @return New total, or -1 if the entity is not tracked or the stock at the
+     * location would go negative.
+     */
+    int adjust(int id, int locationId, int delta) {
+        Row row = rows.get(id);
+        if (row == null) {
+            return -1;
+        }
+        synchronized (row) {
+            int[] counts = grow(row, locationId);
+            if (counts[locationId] + delta < 0) {
+                return -1;
+            }
+            counts[locationId] += delta;
+            row.total += delta;
+            locationTotals[locationId].add(delta);
+            return row.total;
+        }
+    }
+
+    /**
+     * <p>Brings the total of a tracked entity to a new value. Stock added goes to
+     * the default location; stock removed comes from the default location first
+     * and then from the other locations in id order.</p>
+     * @param id Entity id.
+     * @param defaultLocation Location that absorbs the difference.
+     * @param newTotal Total to reach, at least 0.
+     */
+    void setTotal(int id, int defaultLocation, int newTotal) {
+        Row row = rows.get(id);
+        if (row == null) {
+            return;
+        }
+        synchronized (row) {
+            int delta = newTotal - row.total;
+            if (delta == 0) {
+                return;
+            }
+            int[] counts = grow(row, defaultLocation);
+            LongAdder[] totals = locationTotals;
+            if (delta > 0) {
+                counts[defaultLocation] += delta;
+                totals[defaultLocation].add(delta);
+            } else {
+                int remaining = -delta;
+                int taken = Math.min(remaining, counts[defaultLocation]);
+                counts[defaultLocation] -= taken;
+                totals[defaultLocation].add(-taken);
+                remaining -= taken;
+                for (int i = 0; i < counts.length && remaining > 0; i++) {
+                    taken = Math.min(remaining, counts[i]);
+                    counts[i] -= taken;
+                    totals[i].add(-taken);
+                    remaining -= taken;
+                }
+            }
+            row.total = newTotal;
+        }
+    }
+
+    /**
+     * <p>Moves units of one entity between locations in one atomic step.</p>
+     * @param id Entity id.
+     * @param fromLocation Location to take units from.
+     * @param toLocation Location to put units in.
+     * @param quantity Units to move.
+     * @return True if moved. False if the source location did not have enough.
+     */
+    boolean transfer(int id, int fromLocation, int toLocation, int quantity) {
+        Row row = rows.get(id);
+        if (row == null) {
+            return false;
+        }
+        synchronized (row) {
+            int[] counts = grow(row, Math.max(fromLocation, toLocation));
+            if (quantity < 0 || counts[fromLocation] < quantity) {
+                return false;
+            }
+            counts[fromLocation] -= quantity;
+            counts[toLocation] += quantity;
+            LongAdder[] totals = locationTotals;
+            totals[fromLocation].add(-quantity);
+            totals[toLocation].add(quantity);
+            return true;
+        }
+    }
+
+    private static int[] grow(Row row, int locationId) {
+        if (locationId >= row.counts.length) {
+            row.counts = Arrays.copyOf(row.counts, locationId + 1);
+        }
+        return row.counts;
+    }
+}
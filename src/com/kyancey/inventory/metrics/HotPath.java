@@ -0,0 +1,52 @@
+package com.kyancey.inventory.metrics;
+
+/**
+ * <p>The instrumented code paths. Each one has its own latency histogram, and
+ * the histogram count doubles as the call counter.</p>
+ * <p>Usage on a hot path:</p>
+ * <pre>
+ *     long start = System.nanoTime();
+ *     ...
+ *     HotPath.INVENTORY_ADD_PART.recordSince(start);
+ * </pre>
+ */
+public enum HotPath {
+    INVENTORY_ADD_PART,
+    INVENTORY_ADD_PRODUCT,
+    INVENTORY_LOOKUP_PART_BY_ID,
+    INVENTORY_LOOKUP_PART_BY_NAME,
+    INVENTORY_LOOKUP_PRODUCT_BY_ID,
+    INVENTORY_LOOKUP_PRODUCT_BY_NAME,
+    INVENTORY_UPDATE_PART,
+    INVENTORY_UPDATE_PRODUCT,
+    INVENTORY_DELETE_PART,
+    INVENTORY_DELETE_PRODUCT,
+    INVENTORY_GENERATE_ID,
+    SEARCH_PARTS,
+    SEARCH_PRODUCTS,
+    QUERY_PARTS,
+    QUERY_PRODUCTS,
+    MATERIAL_PLAN,
+    FXML_LOAD,
+    PART_SAVE,
+    PRODUCT_SAVE,
+    FX_STALL;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * <p>Records the time elapsed since a System.nanoTime() reading.</p>
+     * @param startNanos Value of System.nanoTime() when the operation began.
+     */
+    public void recordSince(long startNanos) {
+        histogram.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * <p>Gets the histogram for this path.</p>
+     * @return Latency histogram.
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+}
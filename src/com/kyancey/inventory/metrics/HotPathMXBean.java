@@ -0,0 +1,24 @@
+package com.kyancey.inventory.metrics;
+
+/**
+ * <p>JMX view of one hot path. Registered under
+ * com.kyancey.inventory:type=HotPath,name=&lt;path&gt; so it shows up in
+ * JConsole and VisualVM. Latencies are in microseconds.</p>
+ */
+public interface HotPathMXBean {
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    double getTotalMillis();
+
+    void reset();
+}
@@ -0,0 +1,133 @@
+package com.kyancey.inventory.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A fixed size log-linear latency histogram in the style of HdrHistogram.
+ * Each power of two range is split into 16 linear buckets, which keeps every
+ * recorded value within about 6% of its true value from nanoseconds up to
+ * hours.</p>
+ * <p>Recording is lock-free and allocation-free, so it is safe to call from
+ * any thread on a hot path.</p>
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * <p>Records one value.</p>
+     * @param nanos Latency in nanoseconds. Negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long previous;
+        while (value > (previous = max.get()) && !max.compareAndSet(previous, value)) {
+            // Another thread raised max; try again against the new value.
+        }
+    }
+
+    /**
+     * <p>Gets the number of recorded values.</p>
+     * @return Count.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * <p>Gets the sum of all recorded values.</p>
+     * @return Total nanoseconds.
+     */
+    public long getTotalNanos() {
+        return total.get();
+    }
+
+    /**
+     * <p>Gets the largest recorded value.</p>
+     * @return Max nanoseconds.
+     */
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * <p>Gets the mean of all recorded values.</p>
+     * @return Mean nanoseconds, or 0 if nothing was recorded.
+     */
+    public double getMeanNanos() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+
+    /**
+     * <p>Estimates a percentile from the buckets. The result is the midpoint of
+     * the bucket holding the requested rank.</p>
+     * @param percentile Percentile between 0 and 100.
+     * @return Estimated nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(max.get(), (lowerBound(i) + upperBound(i)) / 2);
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * <p>Clears all recorded values. Values recorded while a reset is in progress
+     * may be partly kept.</p>
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BITS;
+        int sub = (int) (value >>> shift) - SUB_COUNT;
+        return SUB_COUNT + shift * SUB_COUNT + sub;
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_COUNT) / SUB_COUNT;
+        int sub = (bucket - SUB_COUNT) % SUB_COUNT;
+        return (long) (SUB_COUNT + sub) << shift;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_COUNT) / SUB_COUNT;
+        return lowerBound(bucket) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,138 @@
+package com.kyancey.inventory.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Publishes the hot path histograms. Call register() once at startup to expose
+ * them as platform MBeans, and optionally startLogging() to write a summary to the
+ * log at a fixed interval.</p>
+ */
+public final class Metrics {
+    private static final Logger LOGGER = Logger.getLogger(Metrics.class.getName());
+    private static final String DOMAIN = "com.kyancey.inventory";
+
+    private static ScheduledExecutorService logger;
+
+    private Metrics() {
+    }
+
+    /**
+     * <p>Registers an MBean for every hot path with the platform MBean server.
+     * Calling it again does nothing.</p>
+     */
+    public static synchronized void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (HotPath path : HotPath.values()) {
+            try {
+                ObjectName name = new ObjectName(DOMAIN + ":type=HotPath,name=" + path.name());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new HotPathStats(path), name);
+                }
+            } catch (JMException e) {
+                LOGGER.log(Level.WARNING, "Could not register MBean for " + path, e);
+            }
+        }
+    }
+
+    /**
+     * <p>Writes a summary of every hot path that has been called to the log at
+     * a fixed interval, on a daemon thread. Replaces any earlier schedule.</p>
+     * @param periodSeconds Seconds between summaries.
+     */
+    public static synchronized void startLogging(long periodSeconds) {
+        stopLogging();
+        logger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.scheduleAtFixedRate(() -> LOGGER.info(summary()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * <p>Stops periodic logging if it was started.</p>
+     */
+    public static synchronized void stopLogging() {
+        if (logger != null) {
+            logger.shutdownNow();
+            logger = null;
+        }
+    }
+
+    /**
+     * <p>Builds a one line per path summary of every hot path that has been called.</p>
+     * @return Summary text.
+     */
+    public static String summary() {
+        StringBuilder builder = new StringBuilder("Hot path latencies (us):");
+        for (HotPath path : HotPath.values()) {
+            LatencyHistogram h = path.getHistogram();
+            if (h.getCount() == 0) {
+                continue;
+            }
+            builder.append(String.format("%n  %-34s count=%d mean=%.1f p50=%.1f p99=%.1f max=%.1f",
+                    path, h.getCount(), h.getMeanNanos() / 1e3, h.getPercentileNanos(50) / 1e3,
+                    h.getPercentileNanos(99) / 1e3, h.getMaxNanos() / 1e3));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * <p>MBean implementation backed by one hot path's histogram.</p>
+     */
+    private static final class HotPathStats implements HotPathMXBean {
+        private final LatencyHistogram histogram;
+
+        HotPathStats(HotPath path) {
+            this.histogram = path.getHistogram();
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return histogram.getMeanNanos() / 1e3;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return histogram.getPercentileNanos(50) / 1e3;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return histogram.getPercentileNanos(99) / 1e3;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return histogram.getPercentileNanos(99.9) / 1e3;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return histogram.getMaxNanos() / 1e3;
+        }
+
+        @Override
+        public double getTotalMillis() {
+            return histogram.getTotalNanos() / 1e6;
+        }
+
+        @Override
+        public void reset() {
+            histogram.reset();
+        }
+    }
+}
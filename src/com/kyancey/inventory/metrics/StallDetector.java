@@ -0,0 +1,207 @@
+package com.kyancey.inventory.metrics;
+
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.event.EventDispatcher;
+import javafx.scene.Node;
+import javafx.stage.Window;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.FileHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * <p>Watchdog for the JavaFX Application Thread.</p>
+ * <p>A daemon thread posts a heartbeat to the FX thread with Platform.runLater()
+ * and timestamps when it runs. If a heartbeat waits longer than the threshold the
+ * FX thread is stalled: the watchdog captures the FX thread's stack while the
+ * stall is still in progress and writes it to a rotating log, and when the
+ * heartbeat finally runs the stall duration is recorded under HotPath.FX_STALL.</p>
+ * <p>watch() marks every event a window dispatches, so a stall can be blamed
+ * on the event whose handler was running without the handlers doing anything.
+ * Other long-running code can mark itself with enter() and exit(). A handler
+ * with a dialog open is not a stall, because dialogs keep processing events
+ * and heartbeats.</p>
+ */
+public final class StallDetector {
+    private static final Logger LOGGER = Logger.getLogger(StallDetector.class.getName());
+    private static final Logger STALL_LOG = Logger.getLogger(StallDetector.class.getName() + ".stalls");
+
+    private static volatile Thread fxThread;
+    private static volatile Thread watchdog;
+    // A handler name, or the Event being dispatched; only named when a stall is logged.
+    private static volatile Object currentHandler;
+    private static volatile long handlerEnteredNanos;
+    private static int handlerDepth;
+
+    // Heartbeat state. postedNanos is 0 while no heartbeat is outstanding.
+    private static volatile long postedNanos;
+    private static volatile boolean stackCaptured;
+
+    private StallDetector() {
+    }
+
+    /**
+     * <p>Starts the watchdog. Must be called on the FX thread. Stall stacks go to
+     * a rotating log at the given file pattern (see java.util.logging.FileHandler),
+     * keeping five files of up to 1 MB each.</p>
+     * @param thresholdMillis A heartbeat delayed longer than this is a stall.
+     * @param logPattern FileHandler pattern for the stall log, e.g. "stalls%g.log".
+     */
+    public static synchronized void start(long thresholdMillis, String logPattern) {
+        if (!Platform.isFxApplicationThread()) {
+            throw new IllegalStateException("StallDetector.start() must be called on the FX thread");
+        }
+        if (watchdog != null) {
+            return;
+        }
+        fxThread = Thread.currentThread();
+        openLog(logPattern);
+
+        long thresholdNanos = thresholdMillis * 1_000_000L;
+        // Check a few times per threshold so stacks are caught mid-stall.
+        long checkMillis = Math.max(10, thresholdMillis / 4);
+        Thread thread = new Thread(() -> watch(thresholdNanos, checkMillis), "fx-stall-detector");
+        thread.setDaemon(true);
+        watchdog = thread;
+        thread.start();
+    }
+
+    /**
+     * <p>Stops the watchdog.</p>
+     */
+    public static synchronized void stop() {
+        if (watchdog != null) {
+            watchdog.interrupt();
+            watchdog = null;
+        }
+    }
+
+    /**
+     * <p>Marks every event dispatched to a window, in every scene it shows,
+     * as a handler named after the event type and the fx:id of its target,
+     * such as "ACTION on partSaveButton". Call on the FX thread.</p>
+     * @param window Window to watch.
+     */
+    public static void watch(Window window) {
+        EventDispatcher dispatcher = window.getEventDispatcher();
+        window.setEventDispatcher((event, tail) -> {
+            mark(event);
+            try {
+                return dispatcher.dispatchEvent(event, tail);
+            } finally {
+                exit();
+            }
+        });
+    }
+
+    /**
+     * <p>Marks the start of an FX event handler. Nested calls are counted so
+     * only the outermost handler is reported.</p>
+     * @param handler Name of the handler, e.g. "PartController.onSaveButton".
+     */
+    public static void enter(String handler) {
+        mark(handler);
+    }
+
+    private static void mark(Object handler) {
+        if (handlerDepth++ == 0) {
+            handlerEnteredNanos = System.nanoTime();
+            currentHandler = handler;
+        }
+    }
+
+    /**
+     * <p>Marks the end of an FX event handler started with enter().</p>
+     */
+    public static void exit() {
+        if (handlerDepth > 0 && --handlerDepth == 0) {
+            currentHandler = null;
+        }
+    }
+
+    /**
+     * <p>Gets the number of stalls detected since startup.</p>
+     * @return Stall count.
+     */
+    public static long getStallCount() {
+        return HotPath.FX_STALL.getHistogram().getCount();
+    }
+
+    private static void watch(long thresholdNanos, long checkMillis) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long posted = postedNanos;
+                long now = System.nanoTime();
+                if (posted == 0) {
+                    postedNanos = now;
+                    stackCaptured = false;
+                    Platform.runLater(() -> heartbeat(now, thresholdNanos));
+                } else if (!stackCaptured && now - posted > thresholdNanos) {
+                    stackCaptured = true;
+                    logStack(now - posted);
+                }
+                Thread.sleep(checkMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void heartbeat(long posted, long thresholdNanos) {
+        long delay = System.nanoTime() - posted;
+        if (delay > thresholdNanos) {
+            HotPath.FX_STALL.getHistogram().record(delay);
+            STALL_LOG.warning(String.format("FX thread stall ended after %d ms", delay / 1_000_000));
+        }
+        postedNanos = 0;
+    }
+
+    private static void logStack(long stalledNanos) {
+        Thread thread = fxThread;
+        if (thread == null) {
+            return;
+        }
+        Object handler = currentHandler;
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("FX thread stalled for %d ms", stalledNanos / 1_000_000));
+        if (handler != null) {
+            builder.append(String.format(" in %s (running %d ms)", describe(handler),
+                    (System.nanoTime() - handlerEnteredNanos) / 1_000_000));
+        }
+        for (StackTraceElement element : thread.getStackTrace()) {
+            builder.append(System.lineSeparator()).append("    at ").append(element);
+        }
+        STALL_LOG.warning(builder.toString());
+    }
+
+    private static String describe(Object handler) {
+        if (!(handler instanceof Event)) {
+            return String.valueOf(handler);
+        }
+        Event event = (Event) handler;
+        Object target = event.getTarget();
+        String id = target instanceof Node ? ((Node) target).getId() : null;
+        return event.getEventType() + " on " + (id != null ? id
+                : target == null ? "nothing" : target.getClass().getSimpleName());
+    }
+
+    private static void openLog(String logPattern) {
+        try {
+            Path parent = Paths.get(logPattern).toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            FileHandler handler = new FileHandler(logPattern, 1024 * 1024, 5, true);
+            handler.setFormatter(new SimpleFormatter());
+            STALL_LOG.addHandler(handler);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not open stall log " + logPattern + ", logging to console only", e);
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.kyancey.inventory.query;
+
+import com.kyancey.inventory.entities.InventoryAggregates;
+import com.kyancey.inventory.entities.InventoryOrders;
+import com.kyancey.inventory.entities.InventoryRegistry;
+import com.kyancey.inventory.entities.InventoryStore;
+import com.kyancey.inventory.entities.ParallelScan;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+import com.kyancey.inventory.entities.SortKey;
+import com.kyancey.inventory.entities.SortedOrder;
+import com.kyancey.inventory.metrics.HotPath;
+import com.kyancey.inventory.util.Money;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * <p>Answers queries written in the QueryParser language against the inventory.</p>
+ * <p>The planner looks at each term that an index can answer and asks that
+ * index how many candidates it would give, which costs at most a binary
+ * search:</p>
+ * <ul>
+ *     <li><code>id=N</code> reads the id map.</li>
+ *     <li><code>id</code>, <code>price</code> and <code>stock</code> against a
+ *     number read a range of the sorted order for that field. Several terms on
+ *     the same field narrow one range.</li>
+ *     <li>A quoted <code>name</code> reads the name order; <code>name:x*</code>
+ *     reads a case-insensitive name order.</li>
+ *     <li>A quoted <code>company</code> and <code>machine=N</code> read the part
+ *     groups kept by InventoryAggregates.</li>
+ * </ul>
+ * <p>The index with the fewest candidates wins, and every other term is tested
+ * on those candidates only, cheapest first. With no usable index the query
+ * falls back to a ParallelScan.</p>
+ * <p>Each store is planned against its own indexes; the methods without a
+ * store use the default one. Call from the thread that edits the store.</p>
+ */
+public class InventoryQuery {
+    /**
+     * <p>The indexes of one inventory list.</p>
+     */
+    private static final class Catalog<T> {
+        final boolean parts;
+        final Function<SortKey, SortedOrder<T>> orders;
+        final Supplier<SortedOrder<T>> lowerNameFactory;
+        final IntFunction<T> byId;
+        final Function<String, Set<T>> bySupplier;
+        final IntFunction<Set<T>> byMachine;
+        final Function<Predicate<T>, List<T>> scan;
+        final IntSupplier size;
+        SortedOrder<T> lowerNames;
+
+        Catalog(boolean parts, Function<SortKey, SortedOrder<T>> orders, Supplier<SortedOrder<T>> lowerNameFactory,
+                IntFunction<T> byId, Function<String, Set<T>> bySupplier, IntFunction<Set<T>> byMachine,
+                Function<Predicate<T>, List<T>> scan, IntSupplier size) {
+            this.parts = parts;
+            this.orders = orders;
+            this.lowerNameFactory = lowerNameFactory;
+            this.byId = byId;
+            this.bySupplier = bySupplier;
+            this.byMachine = byMachine;
+            this.scan = scan;
+            this.size = size;
+        }
+
+        SortedOrder<T> lowerNames() {
+            if (lowerNames == null) {
+                lowerNames = lowerNameFactory.get();
+            }
+            return lowerNames;
+        }
+    }
+
+    /**
+     * <p>The catalogs of one store.</p>
+     */
+    private static final class Catalogs {
+        final Catalog<Part> parts;
+        final Catalog<Product> products;
+
+        Catalogs(InventoryStore store) {
+            parts = new Catalog<>(true, key -> InventoryOrders.parts(store, key),
+                    () -> new SortedOrder<>(store.getAllPartsView(), p -> p.getName().toLowerCase(Locale.ROOT), Part::getId),
+                    store::lookupPart, company -> InventoryAggregates.getSupplierParts(store, company),
+                    machine -> InventoryAggregates.getMachineParts(store, machine),
+                    predicate -> ParallelScan.filterParts(store, predicate),
+                    () -> store.getAllPartsView().size());
+            products = new Catalog<>(false, key -> InventoryOrders.products(store, key),
+                    () -> new SortedOrder<>(store.getAllProductsView(), p -> p.getName().toLowerCase(Locale.ROOT), Product::getId),
+                    store::lookupProduct, null, null,
+                    predicate -> ParallelScan.filterProducts(store, predicate),
+                    () -> store.getAllProductsView().size());
+        }
+    }
+
+    /**
+     * <p>One way to get candidates: which index, how many, and which terms it
+     * fully answers.</p>
+     */
+    private static final class Access<T> {
+        final String name;
+        final Collection<T> candidates;
+        final List<QueryTerm> answered;
+
+        Access(String name, Collection<T> candidates, List<QueryTerm> answered) {
+            this.name = name;
+            this.candidates = candidates;
+            this.answered = answered;
+        }
+    }
+
+    /**
+     * <p>Whether text uses the query language rather than being plain search
+     * text, meaning it has at least one field term or does not parse. Text
+     * that does not parse is taken as a mistyped query, so planning it reports
+     * what is wrong instead of searching for it as it is.</p>
+     * @param text Search field text.
+     * @return True if the text is a query.
+     */
+    public static boolean isQuery(String text) {
+        try {
+            for (QueryTerm term : QueryParser.parse(text)) {
+                if (term.getField() != null) {
+                    return true;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+        return false;
+    }
+
+    private static Catalogs catalogs(InventoryStore store) {
+        return store.getIndex(Catalogs.class, Catalogs::new);
+    }
+
+    /**
+     * <p>Plans a part query against the default store.</p>
+     * @param text Query text.
+     * @return Plan to run.
+     * @throws IllegalArgumentException If the text is not a valid query.
+     */
+    public static QueryPlan<Part> planParts(String text) {
+        return planParts(InventoryRegistry.getDefault(), text);
+    }
+
+    /**
+     * <p>Plans a part query.</p>
+     * @param store Store to query.
+     * @param text Query text.
+     * @return Plan to run.
+     * @throws IllegalArgumentException If the text is not a valid query.
+     */
+    public static QueryPlan<Part> planParts(InventoryStore store, String text) {
+        return plan(QueryParser.parse(text), catalogs(store).parts);
+    }
+
+    /**
+     * <p>Plans a product query against the default store.</p>
+     * @param text Query text.
+     * @return Plan to run.
+     * @throws IllegalArgumentException If the text is not a valid query, or
+     * uses a field products do not have.
+     */
+    public static QueryPlan<Product> planProducts(String text) {
+        return planProducts(InventoryRegistry.getDefault(), text);
+    }
+
+    /**
+     * <p>Plans a product query.</p>
+     * @param store Store to query.
+     * @param text Query text.
+     * @return Plan to run.
+     * @throws IllegalArgumentException If the text is not a valid query, or
+     * uses a field products do not have.
+     */
+    public static QueryPlan<Product> planProducts(InventoryStore store, String text) {
+        return plan(QueryParser.parse(text), catalogs(store).products);
+    }
+
+    /**
+     * <p>Finds the parts in the default store matching a query.</p>
+     * @param text Query text.
+     * @return Matching parts ordered by id.
+     * @throws IllegalArgumentException If the text is not a valid query.
+     */
+    public static List<Part> findParts(String text) {
+        return findParts(InventoryRegistry.getDefault(), text);
+    }
+
+    /**
+     * <p>Finds the parts matching a query.</p>
+     * @param store Store to query.
+     * @param text Query text.
+     * @return Matching parts ordered by id.
+     * @throws IllegalArgumentException If the text is not a valid query.
+     */
+    public static List<Part> findParts(InventoryStore store, String text) {
+        long start = System.nanoTime();
+        List<Part> result = planParts(store, text).execute();
+        result.sort(Comparator.comparingInt(Part::getId));
+        HotPath.QUERY_PARTS.recordSince(start);
+        return result;
+    }
+
+    /**
+     * <p>Finds the products in the default store matching a query.</p>
+     * @param text Query text.
+     * @return Matching products ordered by id.
+     * @throws IllegalArgumentException If the text is not a valid query, or
+     * uses a field products do not have.
+     */
+    public static List<Product> findProducts(String text) {
+        return findProducts(InventoryRegistry.getDefault(), text);
+    }
+
+    /**
+     * <p>Finds the products matching a query.</p>
+     * @param store Store to query.
+     * @param text Query text.
+     * @return Matching products ordered by id.
+     * @throws IllegalArgumentException If the text is not a valid query, or
+     * uses a field products do not have.
+     */
+    public static List<Product> findProducts(InventoryStore store, String text) {
+        long start = System.nanoTime();
+        List<Product> result = planProducts(store, text).execute();
+        result.sort(Comparator.comparingInt(Product::getId));
+        HotPath.QUERY_PRODUCTS.recordSince(start);
+        return result;
+    }
+
+    private static <T> QueryPlan<T> plan(List<QueryTerm> terms, Catalog<T> catalog) {
+        for (QueryTerm term : terms) {
+            checkApplies(term.getField(), catalog);
+            checkApplies(term.getOther(), catalog);
+        }
+
+        Access<T> best = null;
+        for (Access<T> access : accesses(terms, catalog)) {
+            if (best == null || access.candidates.size() < best.candidates.size()) {
+                best = access;
+            }
+        }
+
+        List<QueryTerm> ordered = new ArrayList<>(terms);
+        ordered.sort(Comparator.comparingInt(InventoryQuery::cost));
+        List<QueryTerm> residual = new ArrayList<>(ordered);
+        if (best == null) {
+            return new QueryPlan<>("full scan", catalog.size.getAsInt(), null, ordered, residual, catalog.scan);
+        }
+        residual.removeAll(best.answered);
+        // Terms the winning index answered are the most selective, so test them first.
+        List<QueryTerm> all = new ArrayList<>(best.answered);
+        all.addAll(residual);
+        return new QueryPlan<>(best.name, best.candidates.size(), best.candidates, all, residual, catalog.scan);
+    }
+
+    private static void checkApplies(QueryField field, Catalog<?> catalog) {
+        if (field != null && !catalog.parts && !field.appliesToProducts()) {
+            throw new IllegalArgumentException("Products have no " + field + " field");
+        }
+    }
+
+    /**
+     * <p>Rough cost of testing a term: numbers are cheapest, then text that can
+     * be compared as is, then text that has to be lowercased.</p>
+     */
+    private static int cost(QueryTerm term) {
+        if (term.getField() == null) {
+            return 3;
+        }
+        if (term.getField().isNumeric()) {
+            return term.getOther() == null ? 0 : 1;
+        }
+        return term.isQuoted() || term.getOp() != QueryTerm.Op.MATCH ? 1 : 2;
+    }
+
+    /**
+     * <p>Lists every index access the terms allow.</p>
+     */
+    @SuppressWarnings("fallthrough") // An id range uses the same path as a price or stock range.
+    private static <T> List<Access<T>> accesses(List<QueryTerm> terms, Catalog<T> catalog) {
+        List<Access<T>> accesses = new ArrayList<>();
+        Map<QueryField, int[]> ranges = new EnumMap<>(QueryField.class);
+        Map<QueryField, List<QueryTerm>> rangeTerms = new EnumMap<>(QueryField.class);
+        for (QueryTerm term : terms) {
+            QueryField field = term.getField();
+            if (field == null || term.getOther() != null) {
+                continue;
+            }
+            QueryTerm.Op op = term.getOp();
+            boolean equality = op == QueryTerm.Op.EQ || op == QueryTerm.Op.MATCH;
+            boolean exact = op == QueryTerm.Op.EQ || (op == QueryTerm.Op.MATCH && term.isQuoted());
+            switch (field) {
+                case ID:
+                    if (equality) {
+                        T item = isInt(term.getNumber()) ? catalog.byId.apply((int) term.getNumber()) : null;
+                        accesses.add(new Access<>("id lookup",
+                                item == null ? Collections.emptyList() : Collections.singletonList(item),
+                                Collections.singletonList(term)));
+                        break;
+                    }
+                    // Fall through to a range of the id order.
+                case PRICE:
+                case STOCK: {
+                    int[] range = range(term, order(field, catalog));
+                    if (range != null) {
+                        int[] current = ranges.get(field);
+                        if (current == null) {
+                            ranges.put(field, range);
+                            rangeTerms.put(field, new ArrayList<>());
+                        } else {
+                            current[0] = Math.max(current[0], range[0]);
+                            current[1] = Math.min(current[1], range[1]);
+                        }
+                        rangeTerms.get(field).add(term);
+                    }
+                    break;
+                }
+                case NAME:
+                    if (exact) {
+                        SortedOrder<T> order = catalog.orders.apply(SortKey.NAME);
+                        accesses.add(new Access<>("name lookup",
+                                order.subList(order.lowerBound(term.getText()), order.upperBound(term.getText())),
+                                Collections.singletonList(term)));
+                    } else if (term.isPrefix()) {
+                        // Anything starting with the prefix sorts before prefix + the last char.
+                        // The term is still tested, in case a name continues past that char.
+                        SortedOrder<T> order = catalog.lowerNames();
+                        String prefix = term.getText().toLowerCase(Locale.ROOT);
+                        accesses.add(new Access<>("name prefix",
+                                order.subList(order.lowerBound(prefix), order.lowerBound(prefix + Character.MAX_VALUE)),
+                                Collections.emptyList()));
+                    }
+                    break;
+                case COMPANY:
+                    if (exact) {
+                        accesses.add(new Access<>("supplier group", catalog.bySupplier.apply(term.getText()),
+                                Collections.singletonList(term)));
+                    }
+                    break;
+                case MACHINE:
+                    if (equality) {
+                        accesses.add(new Access<>("machine group",
+                                isInt(term.getNumber()) ? catalog.byMachine.apply((int) term.getNumber()) : Collections.emptySet(),
+                                Collections.singletonList(term)));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        for (Map.Entry<QueryField, int[]> entry : ranges.entrySet()) {
+            int[] range = entry.getValue();
+            SortedOrder<T> order = order(entry.getKey(), catalog);
+            accesses.add(new Access<>(entry.getKey() + " range",
+                    range[0] < range[1] ? order.subList(range[0], range[1]) : Collections.emptyList(),
+                    rangeTerms.get(entry.getKey())));
+        }
+        return accesses;
+    }
+
+    private static <T> SortedOrder<T> order(QueryField field, Catalog<T> catalog) {
+        return catalog.orders.apply(field == QueryField.ID ? SortKey.ID
+                : field == QueryField.PRICE ? SortKey.PRICE : SortKey.STOCK);
+    }
+
+    /**
+     * <p>Finds the positions in a sorted order that satisfy a comparison.</p>
+     * @return From and to index, or null if the comparison cannot use a range.
+     */
+    private static int[] range(QueryTerm term, SortedOrder<?> order) {
+        boolean price = term.getField() == QueryField.PRICE;
+        double value = term.getNumber();
+        int n = order.size();
+        switch (term.getOp()) {
+            case LT: return new int[] {0, atLeast(order, value, price)};
+            case LE: return new int[] {0, above(order, value, price)};
+            case GT: return new int[] {above(order, value, price), n};
+            case GE: return new int[] {atLeast(order, value, price), n};
+            case EQ:
+            case MATCH: return new int[] {atLeast(order, value, price), above(order, value, price)};
+            default: return null;
+        }
+    }
+
+    /**
+     * <p>Index of the first key that is at least value. Prices are sorted in
+     * cents and compared in dollars, as QueryTerm compares them.</p>
+     */
+    private static int atLeast(SortedOrder<?> order, double value, boolean price) {
+        if (price) {
+            if (value * 100 >= 0x1p63) {
+                return order.size();
+            }
+            return value * 100 < -0x1p63 ? 0 : order.lowerBound(firstCents(value, false));
+        }
+        if (value > Integer.MAX_VALUE) {
+            return order.size();
+        }
+        return value <= Integer.MIN_VALUE ? 0 : order.lowerBound((int) Math.ceil(value));
+    }
+
+    /**
+     * <p>Index of the first key that is greater than value.</p>
+     */
+    private static int above(SortedOrder<?> order, double value, boolean price) {
+        if (price) {
+            if (value * 100 >= 0x1p63) {
+                return order.size();
+            }
+            return value * 100 < -0x1p63 ? 0 : order.lowerBound(firstCents(value, true));
+        }
+        if (value >= Integer.MAX_VALUE) {
+            return order.size();
+        }
+        return value < Integer.MIN_VALUE ? 0 : order.upperBound((int) Math.floor(value));
+    }
+
+    /**
+     * <p>Finds the smallest price in cents that is at least, or greater than, a
+     * price in dollars. Starts from the nearest cent and steps at most a cent
+     * either way, so the bound agrees with comparing getPrice() directly.</p>
+     */
+    private static long firstCents(double dollars, boolean strictly) {
+        long cents = Money.fromDouble(dollars);
+        while (cents != Long.MAX_VALUE && !passes(Money.toDouble(cents), dollars, strictly)) {
+            cents++;
+        }
+        while (cents != Long.MIN_VALUE && passes(Money.toDouble(cents - 1), dollars, strictly)) {
+            cents--;
+        }
+        return cents;
+    }
+
+    private static boolean passes(double price, double dollars, boolean strictly) {
+        return strictly ? price > dollars : price >= dollars;
+    }
+
+    private static boolean isInt(double value) {
+        return value == Math.rint(value) && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+}
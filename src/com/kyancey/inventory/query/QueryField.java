@@ -0,0 +1,114 @@
+package com.kyancey.inventory.query;
+
+import com.kyancey.inventory.entities.InHouse;
+import com.kyancey.inventory.entities.Outsourced;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+
+import java.util.Locale;
+
+/**
+ * <p>Fields a query can test, with how to read each one from a part or product.</p>
+ */
+public enum QueryField {
+    ID(true, false),
+    NAME(false, false),
+    PRICE(true, false),
+    STOCK(true, false),
+    MIN(true, false),
+    MAX(true, false),
+    COMPANY(false, true),
+    MACHINE(true, true),
+    TYPE(false, true);
+
+    private final boolean numeric;
+    private final boolean partsOnly;
+
+    QueryField(boolean numeric, boolean partsOnly) {
+        this.numeric = numeric;
+        this.partsOnly = partsOnly;
+    }
+
+    /**
+     * <p>Finds a field by the name used in queries.</p>
+     * @param name Field name, any case.
+     * @return Field, or null if there is no such field.
+     */
+    public static QueryField forName(String name) {
+        for (QueryField field : values()) {
+            if (field.name().equalsIgnoreCase(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * <p>Whether the field holds a number rather than text.</p>
+     * @return True for numeric fields.
+     */
+    public boolean isNumeric() {
+        return numeric;
+    }
+
+    /**
+     * <p>Whether the field exists on products as well as parts.</p>
+     * @return True if products have the field.
+     */
+    public boolean appliesToProducts() {
+        return !partsOnly;
+    }
+
+    /**
+     * <p>Reads a numeric field. A part that does not have the field, such as the
+     * machine of an Outsourced part, reads as NaN and so matches no comparison.</p>
+     * @param item Part or Product.
+     * @return Field value.
+     */
+    double number(Object item) {
+        if (item instanceof Part) {
+            Part part = (Part) item;
+            switch (this) {
+                case ID: return part.getId();
+                case PRICE: return part.getPrice();
+                case STOCK: return part.getStock();
+                case MIN: return part.getMin();
+                case MAX: return part.getMax();
+                case MACHINE: return part instanceof InHouse ? ((InHouse) part).getMachineId() : Double.NaN;
+                default: return Double.NaN;
+            }
+        }
+        Product product = (Product) item;
+        switch (this) {
+            case ID: return product.getId();
+            case PRICE: return product.getPrice();
+            case STOCK: return product.getStock();
+            case MIN: return product.getMin();
+            case MAX: return product.getMax();
+            default: return Double.NaN;
+        }
+    }
+
+    /**
+     * <p>Reads a text field. Fields the item does not have read as null.</p>
+     * @param item Part or Product.
+     * @return Field value.
+     */
+    String text(Object item) {
+        switch (this) {
+            case NAME:
+                return item instanceof Part ? ((Part) item).getName() : ((Product) item).getName();
+            case COMPANY:
+                return item instanceof Outsourced ? ((Outsourced) item).getCompanyName() : null;
+            case TYPE:
+                return item instanceof InHouse ? "inhouse" : item instanceof Outsourced ? "outsourced" : null;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
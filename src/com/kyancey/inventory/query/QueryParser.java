@@ -0,0 +1,164 @@
+package com.kyancey.inventory.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Parses query text into terms.</p>
+ * <p>Terms are separated by spaces and must all match. A term is either a
+ * field, an operator and a value, as in <code>price&lt;10</code>,
+ * <code>stock&lt;=min</code>, <code>company:"Acme"</code> or
+ * <code>name:bolt*</code>, or plain search text. Values with spaces are
+ * quoted. The operators are &lt; &lt;= &gt; &gt;= = != and :.</p>
+ */
+public final class QueryParser {
+    private final String source;
+    private int pos;
+
+    private QueryParser(String source) {
+        this.source = source;
+    }
+
+    /**
+     * <p>Parses query text.</p>
+     * @param text Query text.
+     * @return Terms in the order written, empty for blank text.
+     * @throws IllegalArgumentException If the text is not a valid query. The
+     * message says what is wrong and where.
+     */
+    public static List<QueryTerm> parse(String text) {
+        QueryParser parser = new QueryParser(text == null ? "" : text);
+        List<QueryTerm> terms = new ArrayList<>();
+        while (parser.skipSpaces()) {
+            terms.add(parser.term());
+        }
+        return terms;
+    }
+
+    private boolean skipSpaces() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+        return pos < source.length();
+    }
+
+    private QueryTerm term() {
+        int start = pos;
+        while (pos < source.length() && Character.isLetter(source.charAt(pos))) {
+            pos++;
+        }
+        String fieldName = source.substring(start, pos);
+        QueryTerm.Op op = pos > start ? operator() : null;
+        if (op == null) {
+            pos = start;
+            return bare();
+        }
+        QueryField field = QueryField.forName(fieldName);
+        if (field == null) {
+            throw error(start, "Unknown field '" + fieldName + "'");
+        }
+        if (pos >= source.length() || Character.isWhitespace(source.charAt(pos))) {
+            throw error(pos, "Missing value for " + field);
+        }
+        return field.isNumeric() ? numeric(field, op) : text(field, op);
+    }
+
+    /**
+     * <p>Reads an operator at the current position, or returns null and leaves
+     * the position alone if there is none.</p>
+     */
+    private QueryTerm.Op operator() {
+        if (pos >= source.length()) {
+            return null;
+        }
+        char c = source.charAt(pos);
+        char next = pos + 1 < source.length() ? source.charAt(pos + 1) : 0;
+        switch (c) {
+            case '<':
+                pos += next == '=' ? 2 : 1;
+                return next == '=' ? QueryTerm.Op.LE : QueryTerm.Op.LT;
+            case '>':
+                pos += next == '=' ? 2 : 1;
+                return next == '=' ? QueryTerm.Op.GE : QueryTerm.Op.GT;
+            case '=':
+                pos++;
+                return QueryTerm.Op.EQ;
+            case ':':
+                pos++;
+                return QueryTerm.Op.MATCH;
+            case '!':
+                if (next == '=') {
+                    pos += 2;
+                    return QueryTerm.Op.NE;
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private QueryTerm numeric(QueryField field, QueryTerm.Op op) {
+        int start = pos;
+        String word = word();
+        QueryField other = QueryField.forName(word);
+        if (other != null) {
+            if (!other.isNumeric()) {
+                throw error(start, "Cannot compare " + field + " with " + other);
+            }
+            return new QueryTerm(field, op, null, Double.NaN, other, false, false);
+        }
+        try {
+            double number = Double.parseDouble(word);
+            if (Double.isNaN(number)) {
+                throw new NumberFormatException();
+            }
+            return new QueryTerm(field, op, null, number, null, false, false);
+        } catch (NumberFormatException e) {
+            throw error(start, "Expected a number or field after " + field + op);
+        }
+    }
+
+    private QueryTerm text(QueryField field, QueryTerm.Op op) {
+        if (op != QueryTerm.Op.MATCH && op != QueryTerm.Op.EQ && op != QueryTerm.Op.NE) {
+            throw error(pos, "Cannot use " + op + " with " + field);
+        }
+        if (source.charAt(pos) == '"') {
+            return new QueryTerm(field, op, quoted(), Double.NaN, null, true, false);
+        }
+        String word = word();
+        boolean prefix = op == QueryTerm.Op.MATCH && word.length() > 1 && word.endsWith("*");
+        if (prefix) {
+            word = word.substring(0, word.length() - 1);
+        }
+        return new QueryTerm(field, op, word, Double.NaN, null, false, prefix);
+    }
+
+    private QueryTerm bare() {
+        if (source.charAt(pos) == '"') {
+            return new QueryTerm(null, QueryTerm.Op.MATCH, quoted(), Double.NaN, null, true, false);
+        }
+        return new QueryTerm(null, QueryTerm.Op.MATCH, word(), Double.NaN, null, false, false);
+    }
+
+    private String word() {
+        int start = pos;
+        while (pos < source.length() && !Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+        return source.substring(start, pos);
+    }
+
+    private String quoted() {
+        int start = pos++;
+        int end = source.indexOf('"', pos);
+        if (end < 0) {
+            throw error(start, "Unclosed quote");
+        }
+        pos = end + 1;
+        return source.substring(start + 1, end);
+    }
+
+    private IllegalArgumentException error(int at, String message) {
+        return new IllegalArgumentException(message + " at position " + (at + 1));
+    }
+}
@@ -0,0 +1,118 @@
+package com.kyancey.inventory.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * <p>How a query will be answered: the index that supplies candidates, and the
+ * terms that are still tested on each candidate.</p>
+ * <p>A plan with no index scans the whole list. Plans are built by
+ * InventoryQuery and read the live indexes, so run one on the thread that
+ * edits Inventory, right after building it.</p>
+ * @param <T> Part or Product.
+ */
+public final class QueryPlan<T> {
+    private final String access;
+    private final int estimate;
+    private final Collection<T> candidates;
+    private final List<QueryTerm> terms;
+    private final List<QueryTerm> residual;
+    private final Function<Predicate<T>, List<T>> scan;
+
+    QueryPlan(String access, int estimate, Collection<T> candidates, List<QueryTerm> terms,
+              List<QueryTerm> residual, Function<Predicate<T>, List<T>> scan) {
+        this.access = access;
+        this.estimate = estimate;
+        this.candidates = candidates;
+        this.terms = terms;
+        this.residual = residual;
+        this.scan = scan;
+    }
+
+    /**
+     * <p>Describes the index the plan reads, such as "price range" or "full scan".</p>
+     * @return Access description.
+     */
+    public String getAccess() {
+        return access;
+    }
+
+    /**
+     * <p>Whether the plan reads every item rather than an index.</p>
+     * @return True for a full scan.
+     */
+    public boolean isFullScan() {
+        return candidates == null;
+    }
+
+    /**
+     * <p>Gets how many candidates the index supplies.</p>
+     * @return Candidate count, or the list size for a full scan.
+     */
+    public int getEstimate() {
+        return estimate;
+    }
+
+    /**
+     * <p>Gets the terms tested on each candidate, in the order they are tested.</p>
+     * @return Residual terms.
+     */
+    public List<QueryTerm> getResidual() {
+        return residual;
+    }
+
+    /**
+     * <p>Runs the plan.</p>
+     * @return Matching items, in the order of the index read, or in inventory
+     * order for a full scan.
+     */
+    public List<T> execute() {
+        if (candidates == null) {
+            return scan.apply(this::matchesResidual);
+        }
+        List<T> matches = new ArrayList<>(Math.min(candidates.size(), 1024));
+        for (T item : candidates) {
+            if (matchesResidual(item)) {
+                matches.add(item);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * <p>Tests any item against the whole query, most selective term first. For
+     * filters that must keep up with later edits, which the candidates taken
+     * from an index when the plan was built would not.</p>
+     * @param item Part or Product.
+     * @return True if every term matches.
+     */
+    public boolean test(T item) {
+        for (QueryTerm term : terms) {
+            if (!term.test(item)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p>Tests one item against the residual terms only. Used on candidates,
+     * which already satisfy the terms the index answered.</p>
+     */
+    private boolean matchesResidual(T item) {
+        for (QueryTerm term : residual) {
+            if (!term.test(item)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return access + " (" + estimate + " candidates)" + (residual.isEmpty() ? "" : " then " + residual);
+    }
+}
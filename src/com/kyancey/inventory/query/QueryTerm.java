@@ -0,0 +1,163 @@
+package com.kyancey.inventory.query;
+
+import java.util.Locale;
+
+/**
+ * <p>One condition of a query, such as <code>price&lt;10</code> or
+ * <code>name:bolt*</code>. A query matches an item when all of its terms do.</p>
+ * <p>A term without a field is plain search text, and matches the same way the
+ * search fields always have: by name substring or exact id.</p>
+ */
+public final class QueryTerm {
+    /**
+     * <p>Comparison a term makes. MATCH is the <code>:</code> operator: equality
+     * for numbers, and a case-insensitive substring, prefix (trailing *), or
+     * exact (quoted) match for text.</p>
+     */
+    public enum Op {
+        LT("<"), LE("<="), GT(">"), GE(">="), EQ("="), NE("!="), MATCH(":");
+
+        private final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+
+        @Override
+        public String toString() {
+            return symbol;
+        }
+    }
+
+    private final QueryField field;
+    private final Op op;
+    private final String text;
+    private final String lowerText;
+    private final double number;
+    private final QueryField other;
+    private final boolean quoted;
+    private final boolean prefix;
+
+    QueryTerm(QueryField field, Op op, String text, double number, QueryField other, boolean quoted, boolean prefix) {
+        this.field = field;
+        this.op = op;
+        this.text = text;
+        this.lowerText = text == null ? null : text.toLowerCase(Locale.ROOT);
+        this.number = number;
+        this.other = other;
+        this.quoted = quoted;
+        this.prefix = prefix;
+    }
+
+    /**
+     * <p>Gets the field tested.</p>
+     * @return Field, or null for plain search text.
+     */
+    public QueryField getField() {
+        return field;
+    }
+
+    /**
+     * <p>Gets the comparison made.</p>
+     * @return Operator.
+     */
+    public Op getOp() {
+        return op;
+    }
+
+    /**
+     * <p>Gets the text compared against, without quotes or the prefix *.</p>
+     * @return Text value, or null when the value is a number or a field.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * <p>Gets the number compared against.</p>
+     * @return Numeric value, NaN when the value is text or a field.
+     */
+    public double getNumber() {
+        return number;
+    }
+
+    /**
+     * <p>Gets the field compared against, as in <code>stock&lt;=min</code>.</p>
+     * @return Other field, or null when the value is a constant.
+     */
+    public QueryField getOther() {
+        return other;
+    }
+
+    /**
+     * <p>Whether the text value was quoted, meaning the whole field must equal it.</p>
+     * @return True if quoted.
+     */
+    public boolean isQuoted() {
+        return quoted;
+    }
+
+    /**
+     * <p>Whether the text value ended in *, meaning the field must start with it.</p>
+     * @return True for a prefix match.
+     */
+    public boolean isPrefix() {
+        return prefix;
+    }
+
+    /**
+     * <p>Tests a part or product against this term.</p>
+     * @param item Part or Product.
+     * @return True if the term matches.
+     */
+    public boolean test(Object item) {
+        if (field == null) {
+            String name = QueryField.NAME.text(item);
+            return name.toLowerCase(Locale.ROOT).contains(lowerText)
+                    || (!quoted && Integer.toString((int) QueryField.ID.number(item)).equals(text));
+        }
+        if (field.isNumeric()) {
+            double left = field.number(item);
+            double right = other != null ? other.number(item) : number;
+            if (Double.isNaN(left) || Double.isNaN(right)) {
+                return false;
+            }
+            switch (op) {
+                case LT: return left < right;
+                case LE: return left <= right;
+                case GT: return left > right;
+                case GE: return left >= right;
+                case NE: return left != right;
+                default: return left == right;
+            }
+        }
+        String value = field.text(item);
+        if (value == null) {
+            return false;
+        }
+        switch (op) {
+            case EQ: return value.equals(text);
+            case NE: return !value.equals(text);
+            default:
+                if (quoted) {
+                    return value.equals(text);
+                }
+                String lower = value.toLowerCase(Locale.ROOT);
+                return prefix ? lower.startsWith(lowerText) : lower.contains(lowerText);
+        }
+    }
+
+    @Override
+    public String toString() {
+        String value = other != null ? other.toString()
+                : text == null ? formatNumber(number)
+                : quoted ? '"' + text + '"'
+                : prefix ? text + '*'
+                : text;
+        return field == null ? value : field.toString() + op + value;
+    }
+
+    private static String formatNumber(double n) {
+        return n == Math.rint(n) && Math.abs(n) < 1e15 ? Long.toString((long) n) : Double.toString(n);
+    }
+}
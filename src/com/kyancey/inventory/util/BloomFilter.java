@@ -0,0 +1,114 @@
+package com.kyancey.inventory.util;
+
+/**
+ * <p>A fixed-size Bloom filter over int and String keys. mightContain() never
+ * returns false for a key that was added, and returns true for a key that was
+ * not added about 1% of the time while no more than the expected number of keys
+ * have been added. Keys cannot be removed; build a new filter instead.</p>
+ * <p>Uses ten bits and seven probes per expected key, with the probes derived
+ * from one 64-bit hash by double hashing.</p>
+ */
+public final class BloomFilter {
+    private static final int BITS_PER_KEY = 10;
+    private static final int PROBES = 7;
+
+    private final long[] words;
+    private final int bitCount;
+    private final int expectedKeys;
+
+    /**
+     * <p>Constructor</p>
+     * @param expectedKeys Number of keys the filter is sized for.
+     */
+    public BloomFilter(int expectedKeys) {
+        this.expectedKeys = Math.max(16, expectedKeys);
+        long bits = (long) this.expectedKeys * BITS_PER_KEY;
+        words = new long[(int) Math.min(Integer.MAX_VALUE / 64, (bits + 63) / 64)];
+        bitCount = words.length * 64;
+    }
+
+    /**
+     * <p>Gets the number of keys the filter was sized for.</p>
+     * @return Expected key count.
+     */
+    public int getExpectedKeys() {
+        return expectedKeys;
+    }
+
+    /**
+     * <p>Adds an int key.</p>
+     * @param key Key to add.
+     */
+    public void add(int key) {
+        set(hash(key));
+    }
+
+    /**
+     * <p>Adds a String key.</p>
+     * @param key Key to add.
+     */
+    public void add(String key) {
+        set(hash(key));
+    }
+
+    /**
+     * <p>Checks for an int key.</p>
+     * @param key Key to look for.
+     * @return False if the key was definitely never added.
+     */
+    public boolean mightContain(int key) {
+        return test(hash(key));
+    }
+
+    /**
+     * <p>Checks for a String key.</p>
+     * @param key Key to look for.
+     * @return False if the key was definitely never added.
+     */
+    public boolean mightContain(String key) {
+        return test(hash(key));
+    }
+
+    private void set(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < PROBES; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private boolean test(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < PROBES; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(int key) {
+        return mix(key * 0x9E3779B97F4A7C15L);
+    }
+
+    private static long hash(String key) {
+        // FNV-1a over the chars, then mixed so every bit depends on every char.
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,339 @@
+package com.kyancey.inventory.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * <p>Finds items whose names nearly match a query, tolerating typos.</p>
+ * <p>Names are split into lowercase words. Each distinct word is stored under
+ * every string that can be made by deleting up to two characters from its first
+ * seven (the SymSpell approach), so the words within edit distance 2 of a query
+ * word are found by generating the same deletions of the query word and looking
+ * them up, then checking the real distance. Work per query depends on the query,
+ * not on how many names are indexed.</p>
+ * <p>Short words get less leeway: single characters must match
+ * exactly, and words of two to four characters may be one edit off.</p>
+ * <p>Every word of the query must match some word of a result. Results are
+ * ranked by total edits, then by name length, then by name.</p>
+ * <p>Items are tracked by identity. Not thread safe.</p>
+ * @param <T> Item type.
+ */
+public final class FuzzyIndex<T> {
+    /** Largest edit distance ever allowed for one word. */
+    public static final int MAX_DISTANCE = 2;
+    private static final int PREFIX_LENGTH = 7;
+
+    private final Map<T, String> names = new IdentityHashMap<>();
+    private final Map<T, String[]> itemWords = new IdentityHashMap<>();
+    private final Map<String, Set<T>> postings = new HashMap<>();
+    private final Map<String, List<String>> deletions = new HashMap<>();
+
+    /**
+     * <p>Adds an item or re-indexes it under a new name.</p>
+     * @param item Item to index.
+     * @param name Item's name.
+     */
+    public void put(T item, String name) {
+        String old = names.get(item);
+        if (name.equals(old)) {
+            return;
+        }
+        if (old != null) {
+            remove(item);
+        }
+        names.put(item, name);
+        String[] wordsOfName = words(name);
+        itemWords.put(item, wordsOfName);
+        for (String word : wordsOfName) {
+            Set<T> items = postings.get(word);
+            if (items == null) {
+                items = Collections.newSetFromMap(new IdentityHashMap<>());
+                postings.put(word, items);
+                for (String deletion : deletions(word)) {
+                    deletions.computeIfAbsent(deletion, key -> new ArrayList<>(1)).add(word);
+                }
+            }
+            items.add(item);
+        }
+    }
+
+    /**
+     * <p>Removes an item.</p>
+     * @param item Item to remove.
+     */
+    public void remove(T item) {
+        String[] wordsOfName = itemWords.remove(item);
+        if (wordsOfName == null) {
+            return;
+        }
+        names.remove(item);
+        for (String word : wordsOfName) {
+            Set<T> items = postings.get(word);
+            items.remove(item);
+            if (items.isEmpty()) {
+                postings.remove(word);
+                for (String deletion : deletions(word)) {
+                    List<String> words = deletions.get(deletion);
+                    words.remove(word);
+                    if (words.isEmpty()) {
+                        deletions.remove(deletion);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Removes every item.</p>
+     */
+    public void clear() {
+        names.clear();
+        itemWords.clear();
+        postings.clear();
+        deletions.clear();
+    }
+
+    /**
+     * <p>Finds the items that best match a query.</p>
+     * @param query Search text.
+     * @param limit Most items to return.
+     * @return Matching items, best first.
+     */
+    public List<T> search(String query, int limit) {
+        String[] queryWords = words(query);
+        if (queryWords.length == 0) {
+            return new ArrayList<>();
+        }
+        List<Map<String, Integer>> matches = new ArrayList<>();
+        for (String word : queryWords) {
+            Map<String, Integer> wordMatches = similarWords(word);
+            if (wordMatches.isEmpty()) {
+                return new ArrayList<>();
+            }
+            matches.add(wordMatches);
+        }
+
+        // Start from the query word with the fewest candidate items, then check
+        // the others against each candidate's own words.
+        int narrowest = 0;
+        int narrowestCount = Integer.MAX_VALUE;
+        for (int i = 0; i < matches.size(); i++) {
+            int count = 0;
+            for (String word : matches.get(i).keySet()) {
+                count += postings.get(word).size();
+            }
+            if (count < narrowestCount) {
+                narrowest = i;
+                narrowestCount = count;
+            }
+        }
+        // Each candidate is scored once, under the first of its words that is
+        // closest to the narrowest query word. Only the best results seen so far
+        // are kept, worst at the head of the queue.
+        Map<String, Integer> narrowestMatches = matches.get(narrowest);
+        PriorityQueue<Scored<T>> best = new PriorityQueue<>(Collections.reverseOrder());
+        for (String matchedWord : narrowestMatches.keySet()) {
+            for (T item : postings.get(matchedWord)) {
+                String[] wordsOfItem = itemWords.get(item);
+                if (!matchedWord.equals(closestWord(narrowestMatches, wordsOfItem))) {
+                    continue;
+                }
+                int total = narrowestMatches.get(matchedWord);
+                for (int i = 0; i < matches.size() && total >= 0; i++) {
+                    if (i != narrowest) {
+                        String word = closestWord(matches.get(i), wordsOfItem);
+                        total = word == null ? -1 : total + matches.get(i).get(word);
+                    }
+                }
+                if (total < 0) {
+                    continue;
+                }
+                String name = names.get(item);
+                if (best.size() == limit) {
+                    Scored<T> worst = best.peek();
+                    if (total > worst.total || (total == worst.total && name.length() > worst.name.length())) {
+                        continue;
+                    }
+                }
+                best.add(new Scored<>(item, name, total));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        List<Scored<T>> ranked = new ArrayList<>(best);
+        Collections.sort(ranked);
+        List<T> results = new ArrayList<>(ranked.size());
+        for (Scored<T> scored : ranked) {
+            results.add(scored.item);
+        }
+        return results;
+    }
+
+    /**
+     * <p>A search result with what it is ranked by.</p>
+     */
+    private static final class Scored<T> implements Comparable<Scored<T>> {
+        final T item;
+        final String name;
+        final int total;
+
+        Scored(T item, String name, int total) {
+            this.item = item;
+            this.name = name;
+            this.total = total;
+        }
+
+        @Override
+        public int compareTo(Scored<T> other) {
+            if (total != other.total) {
+                return Integer.compare(total, other.total);
+            }
+            if (name.length() != other.name.length()) {
+                return Integer.compare(name.length(), other.name.length());
+            }
+            return name.compareTo(other.name);
+        }
+    }
+
+    /**
+     * <p>Gets the first of an item's words that is closest to a query word.</p>
+     * @param matches Indexed words near the query word, with their distances.
+     * @param wordsOfItem The item's words.
+     * @return Closest word, or null if none of the item's words are near.
+     */
+    private static String closestWord(Map<String, Integer> matches, String[] wordsOfItem) {
+        String best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (String word : wordsOfItem) {
+            Integer distance = matches.get(word);
+            if (distance != null && distance < bestDistance) {
+                best = word;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * <p>Gets the indexed words within the allowed distance of a query word.</p>
+     * @param word Lowercase query word.
+     * @return Indexed word to edit distance.
+     */
+    private Map<String, Integer> similarWords(String word) {
+        int allowed = allowedDistance(word);
+        Map<String, Integer> found = new HashMap<>();
+        for (String deletion : deletions(word)) {
+            List<String> candidates = deletions.get(deletion);
+            if (candidates == null) {
+                continue;
+            }
+            for (String candidate : candidates) {
+                if (found.containsKey(candidate) || Math.abs(candidate.length() - word.length()) > allowed) {
+                    continue;
+                }
+                int distance = distance(word, candidate, allowed);
+                if (distance <= allowed) {
+                    found.put(candidate, distance);
+                }
+            }
+        }
+        return found;
+    }
+
+    private static int allowedDistance(String word) {
+        if (word.length() == 1) {
+            return 0;
+        }
+        return word.length() <= 4 ? 1 : MAX_DISTANCE;
+    }
+
+    /**
+     * <p>Gets a word's prefix and every string made by deleting up to
+     * MAX_DISTANCE characters from it.</p>
+     */
+    private static Set<String> deletions(String word) {
+        Set<String> result = new HashSet<>();
+        String prefix = word.length() > PREFIX_LENGTH ? word.substring(0, PREFIX_LENGTH) : word;
+        result.add(prefix);
+        List<String> level = Collections.singletonList(prefix);
+        for (int d = 0; d < MAX_DISTANCE; d++) {
+            List<String> next = new ArrayList<>();
+            for (String s : level) {
+                for (int i = 0; i < s.length(); i++) {
+                    String deleted = s.substring(0, i) + s.substring(i + 1);
+                    if (result.add(deleted)) {
+                        next.add(deleted);
+                    }
+                }
+            }
+            level = next;
+        }
+        return result;
+    }
+
+    /**
+     * <p>Edit distance counting insertions, deletions, substitutions, and swaps
+     * of adjacent characters, giving up once it must exceed max.</p>
+     * @return Distance, or max + 1 if it is larger than max.
+     */
+    static int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        int[] twoBack = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, twoBack[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = twoBack;
+            twoBack = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[m], max + 1);
+    }
+
+    /**
+     * <p>Splits a name into distinct lowercase words of letters and digits.</p>
+     */
+    private static String[] words(String text) {
+        List<String> words = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = text.substring(start, i).toLowerCase();
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+}
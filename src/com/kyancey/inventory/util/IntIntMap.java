@@ -0,0 +1,212 @@
+package com.kyancey.inventory.util;
+
+import java.util.Arrays;
+
+/**
+ * <p>A map from int keys to int values stored in primitive arrays.</p>
+ * <p>Entries sit densely in two parallel arrays, so iterating by position is a
+ * plain array walk and an entry costs eight bytes plus its index slot. An
+ * open-addressing index with linear probing maps keys to positions, so get,
+ * put and remove are O(1). Remove moves the last entry into the hole, so
+ * positions are not stable across removals.</p>
+ * <p>Not thread safe.</p>
+ */
+public final class IntIntMap {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int[] index;
+    private int size;
+
+    /**
+     * <p>Constructor for an empty map.</p>
+     */
+    public IntIntMap() {
+        keys = new int[0];
+        values = new int[0];
+        index = new int[0];
+    }
+
+    /**
+     * <p>Gets the number of entries.</p>
+     * @return Entry count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * <p>Whether a key is present.</p>
+     * @param key Key to look for.
+     * @return True if present.
+     */
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * <p>Gets the value of a key.</p>
+     * @param key Key to look up.
+     * @param missing Value to return when the key is absent.
+     * @return Value, or missing.
+     */
+    public int get(int key, int missing) {
+        int position = find(key);
+        return position >= 0 ? values[position] : missing;
+    }
+
+    /**
+     * <p>Sets the value of a key, adding the key at the end if it is new.</p>
+     * @param key Key.
+     * @param value Value.
+     */
+    public void put(int key, int value) {
+        int position = find(key);
+        if (position >= 0) {
+            values[position] = value;
+            return;
+        }
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        if ((size + 1) * 4 > index.length * 3) {
+            rebuildIndex(Math.max(8, Integer.highestOneBit(size + 1) * 4));
+        }
+        keys[size] = key;
+        values[size] = value;
+        insertSlot(key, size);
+        size++;
+    }
+
+    /**
+     * <p>Removes a key.</p>
+     * @param key Key to remove.
+     * @return True if the key was present.
+     */
+    public boolean remove(int key) {
+        if (size == 0) {
+            return false;
+        }
+        int mask = index.length - 1;
+        int slot = slotOf(key, mask);
+        while (index[slot] != EMPTY && keys[index[slot]] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (index[slot] == EMPTY) {
+            return false;
+        }
+        int position = index[slot];
+        deleteSlot(slot, mask);
+
+        // Move the last entry into the hole and repoint its slot.
+        int last = --size;
+        if (position != last) {
+            int moved = keys[last];
+            keys[position] = moved;
+            values[position] = values[last];
+            int movedSlot = slotOf(moved, mask);
+            while (index[movedSlot] != last) {
+                movedSlot = (movedSlot + 1) & mask;
+            }
+            index[movedSlot] = position;
+        }
+        return true;
+    }
+
+    /**
+     * <p>Removes every entry, keeping the allocated arrays.</p>
+     */
+    public void clear() {
+        Arrays.fill(index, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * <p>Gets the key at a position.</p>
+     * @param position Position from 0 to size() - 1.
+     * @return Key.
+     */
+    public int keyAt(int position) {
+        return keys[position];
+    }
+
+    /**
+     * <p>Gets the value at a position.</p>
+     * @param position Position from 0 to size() - 1.
+     * @return Value.
+     */
+    public int valueAt(int position) {
+        return values[position];
+    }
+
+    /**
+     * <p>Copies the keys out.</p>
+     * @return Keys in position order.
+     */
+    public int[] keys() {
+        return Arrays.copyOf(keys, size);
+    }
+
+    /**
+     * <p>Copies the values out.</p>
+     * @return Values in position order, matching keys().
+     */
+    public int[] values() {
+        return Arrays.copyOf(values, size);
+    }
+
+    private int find(int key) {
+        if (size == 0) {
+            return -1;
+        }
+        int mask = index.length - 1;
+        for (int slot = slotOf(key, mask); index[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[index[slot]] == key) {
+                return index[slot];
+            }
+        }
+        return -1;
+    }
+
+    private void insertSlot(int key, int position) {
+        int mask = index.length - 1;
+        int slot = slotOf(key, mask);
+        while (index[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = position;
+    }
+
+    /**
+     * <p>Empties a slot and shifts later slots of the same probe run back, so
+     * lookups never stop early at the hole.</p>
+     */
+    private void deleteSlot(int slot, int mask) {
+        int hole = slot;
+        for (int next = (hole + 1) & mask; index[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slotOf(keys[index[next]], mask);
+            // Move the entry back if its home is not cyclically between the hole and where it sits.
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                index[hole] = index[next];
+                hole = next;
+            }
+        }
+        index[hole] = EMPTY;
+    }
+
+    private void rebuildIndex(int capacity) {
+        index = new int[capacity];
+        Arrays.fill(index, EMPTY);
+        for (int i = 0; i < size; i++) {
+            insertSlot(keys[i], i);
+        }
+    }
+
+    private static int slotOf(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,181 @@
+package com.kyancey.inventory.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * <p>Fixed-point money: amounts are held as a long number of cents, so sums
+ * and products of prices are exact and comparing two prices is comparing two
+ * longs.</p>
+ * <p>Parsing and formatting work on the digits directly, without Formatter,
+ * regular expressions or an intermediate double, and always use '.' as the
+ * decimal point. format() builds its string from one char array; appendTo()
+ * allocates nothing beyond what the StringBuilder needs to grow.</p>
+ */
+public final class Money {
+    // Long.MIN_VALUE is "-92233720368547758.08", 21 characters.
+    private static final int MAX_LENGTH = 21;
+
+    private Money() {
+    }
+
+    /**
+     * <p>Converts an amount in dollars to cents, rounding to the nearest cent
+     * and halves away from zero, as parse() does.</p>
+     * <p>Rounds the shortest decimal that reads back as the same double, the
+     * digits Double.toString() prints, rather than the binary value itself. So
+     * 1.005, stored as just under 1.005, is 101 cents like parse("1.005").</p>
+     * @param amount Amount, such as 12.34.
+     * @return Cents, such as 1234.
+     * @throws IllegalArgumentException If the amount is not finite or does
+     * not fit in a long number of cents.
+     */
+    public static long fromDouble(double amount) {
+        if (!Double.isFinite(amount)) {
+            throw new IllegalArgumentException("Not a money amount: " + amount);
+        }
+        try {
+            return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Not a money amount: " + amount);
+        }
+    }
+
+    /**
+     * <p>Converts cents to dollars. fromDouble() gets the same cents back for
+     * any amount under about 45 trillion dollars.</p>
+     * @param cents Cents.
+     * @return Amount in dollars.
+     */
+    public static double toDouble(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * <p>Parses an amount such as "12", "12.5", "-0.99" or ".5". Surrounding
+     * spaces are ignored. Digits past the second decimal are rounded half away
+     * from zero, so "1.005" is 1.01 and "-1.005" is -1.01.</p>
+     * @param text Amount in dollars.
+     * @return Cents.
+     * @throws NumberFormatException If the text is not an amount or does not
+     * fit in a long number of cents.
+     */
+    public static long parse(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+        int i = start;
+        boolean negative = false;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        // Accumulate negatively so Long.MIN_VALUE cents parses like any other amount.
+        long cents = 0;
+        int digits = 0;
+        int decimals = -1;
+        boolean roundUp = false;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Not a money amount: \"" + text + "\"");
+            }
+            digits++;
+            if (decimals >= 2) {
+                if (decimals++ == 2) {
+                    roundUp = c >= '5';
+                }
+                continue;
+            }
+            if (decimals >= 0) {
+                decimals++;
+            }
+            cents = accumulate(cents, c - '0', text);
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Not a money amount: \"" + text + "\"");
+        }
+        for (int d = Math.max(decimals, 0); d < 2; d++) {
+            cents = accumulate(cents, 0, text);
+        }
+        if (roundUp) {
+            if (cents == Long.MIN_VALUE) {
+                throw new NumberFormatException("Money amount out of range: \"" + text + "\"");
+            }
+            cents--;
+        }
+        if (!negative) {
+            if (cents == Long.MIN_VALUE) {
+                throw new NumberFormatException("Money amount out of range: \"" + text + "\"");
+            }
+            cents = -cents;
+        }
+        return cents;
+    }
+
+    /**
+     * <p>Formats cents with two decimals, such as "12.34" or "-0.05", the way
+     * "%.2f" formats in an English locale.</p>
+     * @param cents Cents.
+     * @return Formatted amount.
+     */
+    public static String format(long cents) {
+        char[] buffer = new char[MAX_LENGTH];
+        int start = fill(buffer, cents);
+        return new String(buffer, start, MAX_LENGTH - start);
+    }
+
+    /**
+     * <p>Appends cents formatted as by format().</p>
+     * @param builder Builder to append to.
+     * @param cents Cents.
+     * @return The builder.
+     */
+    public static StringBuilder appendTo(StringBuilder builder, long cents) {
+        // Negate so Long.MIN_VALUE needs no special case.
+        long negated = cents > 0 ? -cents : cents;
+        if (cents < 0) {
+            builder.append('-');
+        }
+        long whole = negated / 100;
+        int fraction = (int) -(negated % 100);
+        builder.append(-whole);
+        return builder.append('.').append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+    }
+
+    /**
+     * <p>Writes cents right-aligned into a buffer.</p>
+     * @return Index of the first character written.
+     */
+    private static int fill(char[] buffer, long cents) {
+        long negated = cents > 0 ? -cents : cents;
+        int at = MAX_LENGTH;
+        for (int place = 0; place <= 2 || negated != 0; place++) {
+            if (place == 2) {
+                buffer[--at] = '.';
+            }
+            buffer[--at] = (char) ('0' - negated % 10);
+            negated /= 10;
+        }
+        if (cents < 0) {
+            buffer[--at] = '-';
+        }
+        return at;
+    }
+
+    private static long accumulate(long cents, int digit, CharSequence text) {
+        if (cents < Long.MIN_VALUE / 10 || cents * 10 < Long.MIN_VALUE + digit) {
+            throw new NumberFormatException("Money amount out of range: \"" + text + "\"");
+        }
+        return cents * 10 - digit;
+    }
+}
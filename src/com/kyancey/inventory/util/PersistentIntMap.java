@@ -0,0 +1,189 @@
+package com.kyancey.inventory.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * <p>An immutable map from int keys to values. Every put or remove returns a new
+ * map that shares all untouched nodes with the old one, so keeping an old version
+ * around costs nothing until it is modified, and an old version is reclaimed by
+ * the garbage collector as soon as nobody holds on to it.</p>
+ * <p>Internally this is a 32-way trie indexed by five bits of the key per level,
+ * with bitmap-compressed nodes. Lookups and updates touch at most seven nodes.
+ * Iteration visits keys in ascending order for non-negative keys.</p>
+ * @param <V> Value type.
+ */
+public final class PersistentIntMap<V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int TOP_SHIFT = 30;
+
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * <p>Gets the empty map.</p>
+     * @param <V> Value type.
+     * @return Empty map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    /**
+     * <p>Gets the number of entries.</p>
+     * @return Number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * <p>Gets the value stored for a key.</p>
+     * @param key Key to look up.
+     * @return Value or null if the key is not present.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Node node = root;
+        for (int shift = TOP_SHIFT; node != null; shift -= BITS) {
+            int bit = 1 << ((key >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object child = node.children[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (shift == 0) {
+                return (V) child;
+            }
+            node = (Node) child;
+        }
+        return null;
+    }
+
+    /**
+     * <p>Returns a map with the key set to the value.</p>
+     * @param key Key.
+     * @param value Value, must not be null.
+     * @return New map. This map is unchanged.
+     */
+    public PersistentIntMap<V> put(int key, V value) {
+        boolean[] added = new boolean[1];
+        Node newRoot = put(root, TOP_SHIFT, key, value, added);
+        return new PersistentIntMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * <p>Returns a map without the key.</p>
+     * @param key Key.
+     * @return New map, or this map if the key was not present.
+     */
+    public PersistentIntMap<V> remove(int key) {
+        if (get(key) == null) {
+            return this;
+        }
+        return new PersistentIntMap<>(remove(root, TOP_SHIFT, key), size - 1);
+    }
+
+    /**
+     * <p>Visits every value in key order.</p>
+     * @param action Action run for each value.
+     */
+    public void forEach(Consumer<? super V> action) {
+        forEach(root, TOP_SHIFT, action);
+    }
+
+    /**
+     * <p>Copies the values into a list in key order.</p>
+     * @return List of values.
+     */
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size);
+        forEach(result::add);
+        return result;
+    }
+
+    private static Node put(Node node, int shift, int key, Object value, boolean[] added) {
+        int bit = 1 << ((key >>> shift) & MASK);
+        if (node == null) {
+            Object child = shift == 0 ? value : put(null, shift - BITS, key, value, added);
+            if (shift == 0) {
+                added[0] = true;
+            }
+            return new Node(bit, new Object[] {child});
+        }
+
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            Object child = shift == 0 ? value : put(null, shift - BITS, key, value, added);
+            if (shift == 0) {
+                added[0] = true;
+            }
+            Object[] children = new Object[node.children.length + 1];
+            System.arraycopy(node.children, 0, children, 0, index);
+            children[index] = child;
+            System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+            return new Node(node.bitmap | bit, children);
+        }
+
+        Object[] children = node.children.clone();
+        children[index] = shift == 0 ? value : put((Node) node.children[index], shift - BITS, key, value, added);
+        return new Node(node.bitmap, children);
+    }
+
+    private static Node remove(Node node, int shift, int key) {
+        int bit = 1 << ((key >>> shift) & MASK);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+
+        Node child = shift == 0 ? null : remove((Node) node.children[index], shift - BITS, key);
+        if (child != null) {
+            Object[] children = node.children.clone();
+            children[index] = child;
+            return new Node(node.bitmap, children);
+        }
+
+        if (node.children.length == 1) {
+            return null;
+        }
+        Object[] children = new Object[node.children.length - 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        System.arraycopy(node.children, index + 1, children, index, children.length - index);
+        return new Node(node.bitmap & ~bit, children);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void forEach(Node node, int shift, Consumer<? super V> action) {
+        if (node == null) {
+            return;
+        }
+        for (Object child : node.children) {
+            if (shift == 0) {
+                action.accept((V) child);
+            } else {
+                forEach((Node) child, shift - BITS, action);
+            }
+        }
+    }
+
+    /**
+     * <p>Trie node. Children are stored densely; the bitmap records which of the
+     * 32 slots are present.</p>
+     */
+    private static final class Node {
+        final int bitmap;
+        final Object[] children;
+
+        Node(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+    }
+}
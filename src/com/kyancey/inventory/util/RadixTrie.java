@@ -0,0 +1,285 @@
+package com.kyancey.inventory.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Compressed prefix tree that answers "best k items whose key starts with
+ * this prefix" without looking at more than one path.</p>
+ * <p>Each edge holds a run of characters, so a node exists only where keys
+ * branch or end. Every node caches the k best items in its subtree, ranked by
+ * a number given with the item (higher first) and then by how recently the item
+ * was put (newer first). A lookup walks down the prefix and returns that cache,
+ * so it costs O(prefix length) however many keys there are. Putting or removing
+ * an item rebuilds the caches on its path from the child caches, which costs
+ * O(key length &times; fan-out &times; k).</p>
+ * <p>Items are tracked by identity and keys are matched ignoring case. Not
+ * thread safe.</p>
+ * @param <T> Item type.
+ */
+public final class RadixTrie<T> {
+    /**
+     * <p>An item with the key and rank it was put with.</p>
+     */
+    private static final class Entry<T> {
+        final T item;
+        final String key;
+        final long rank;
+        final long sequence;
+
+        Entry(T item, String key, long rank, long sequence) {
+            this.item = item;
+            this.key = key;
+            this.rank = rank;
+            this.sequence = sequence;
+        }
+
+        boolean isBetterThan(Entry<T> other) {
+            return rank != other.rank ? rank > other.rank : sequence > other.sequence;
+        }
+    }
+
+    /**
+     * <p>A node reached by its edge label. Children are kept sorted by the first
+     * character of their labels.</p>
+     */
+    private static final class Node<T> {
+        String label;
+        Node<T> parent;
+        List<Node<T>> children = new ArrayList<>(2);
+        List<Entry<T>> entries = new ArrayList<>(1);
+        List<Entry<T>> top = new ArrayList<>(0);
+
+        Node(String label, Node<T> parent) {
+            this.label = label;
+            this.parent = parent;
+        }
+
+        Node<T> child(char first) {
+            int index = childIndex(first);
+            return index >= 0 ? children.get(index) : null;
+        }
+
+        int childIndex(char first) {
+            int low = 0;
+            int high = children.size() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char c = children.get(mid).label.charAt(0);
+                if (c < first) {
+                    low = mid + 1;
+                } else if (c > first) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        void addChild(Node<T> child) {
+            child.parent = this;
+            children.add(-(childIndex(child.label.charAt(0)) + 1), child);
+        }
+    }
+
+    private final int k;
+    private final Node<T> root = new Node<>("", null);
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+    private long sequence;
+
+    /**
+     * <p>Constructor</p>
+     * @param k Number of items cached per node and returned per lookup.
+     */
+    public RadixTrie(int k) {
+        this.k = k;
+    }
+
+    /**
+     * <p>Adds an item, or moves it to a new key or rank.</p>
+     * @param item Item.
+     * @param key Key to find it by.
+     * @param rank Rank, higher is suggested first.
+     */
+    public void put(T item, String key, long rank) {
+        Entry<T> old = entries.get(item);
+        if (old != null && old.key.equals(key) && old.rank == rank) {
+            return;
+        }
+        if (old != null) {
+            remove(item);
+        }
+        Entry<T> entry = new Entry<>(item, key, rank, ++sequence);
+        entries.put(item, entry);
+        Node<T> node = insert(key.toLowerCase());
+        node.entries.add(entry);
+        refreshPath(node);
+    }
+
+    /**
+     * <p>Removes an item.</p>
+     * @param item Item.
+     */
+    public void remove(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry == null) {
+            return;
+        }
+        Node<T> node = find(entry.key.toLowerCase(), true);
+        node.entries.remove(entry);
+        refreshPath(prune(node));
+    }
+
+    /**
+     * <p>Removes every item.</p>
+     */
+    public void clear() {
+        entries.clear();
+        root.children.clear();
+        root.entries.clear();
+        root.top = new ArrayList<>(0);
+    }
+
+    /**
+     * <p>Gets the best items whose keys start with a prefix.</p>
+     * @param prefix Prefix, matched ignoring case.
+     * @return Up to k items, best first.
+     */
+    public List<T> top(String prefix) {
+        Node<T> node = find(prefix.toLowerCase(), false);
+        List<T> result = new ArrayList<>();
+        if (node != null) {
+            for (Entry<T> entry : node.top) {
+                result.add(entry.item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * <p>Finds the node for a key, or for a prefix the first node whose path
+     * starts with it.</p>
+     * @param key Lowercase key or prefix.
+     * @param exact True to require a node that ends exactly at the key.
+     * @return Node, or null if nothing matches.
+     */
+    private Node<T> find(String key, boolean exact) {
+        Node<T> node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node<T> child = node.child(key.charAt(i));
+            if (child == null) {
+                return null;
+            }
+            String label = child.label;
+            int n = Math.min(label.length(), key.length() - i);
+            if (!key.regionMatches(i, label, 0, n)) {
+                return null;
+            }
+            if (n < label.length()) {
+                return exact ? null : child;
+            }
+            i += n;
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * <p>Gets the node for a key, splitting an edge or adding a leaf as needed.</p>
+     * @param key Lowercase key.
+     * @return Node that ends at the key.
+     */
+    private Node<T> insert(String key) {
+        Node<T> node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node<T> child = node.child(key.charAt(i));
+            if (child == null) {
+                Node<T> leaf = new Node<>(key.substring(i), node);
+                node.addChild(leaf);
+                return leaf;
+            }
+            String label = child.label;
+            int common = 0;
+            while (common < label.length() && i + common < key.length()
+                    && label.charAt(common) == key.charAt(i + common)) {
+                common++;
+            }
+            if (common < label.length()) {
+                // Split the edge where the key leaves it.
+                Node<T> middle = new Node<>(label.substring(0, common), node);
+                node.children.set(node.childIndex(label.charAt(0)), middle);
+                child.label = label.substring(common);
+                middle.addChild(child);
+                middle.top = child.top;
+                child = middle;
+            }
+            i += common;
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * <p>Removes a node that no longer holds anything, and merges a node left
+     * with one child into that child.</p>
+     * @param node Node whose entries just changed.
+     * @return Lowest node whose cache needs rebuilding.
+     */
+    private Node<T> prune(Node<T> node) {
+        if (node == root || !node.entries.isEmpty()) {
+            return node;
+        }
+        Node<T> parent = node.parent;
+        if (node.children.isEmpty()) {
+            parent.children.remove(parent.childIndex(node.label.charAt(0)));
+            if (parent != root && parent.entries.isEmpty() && parent.children.size() == 1) {
+                return merge(parent);
+            }
+            return parent;
+        }
+        if (node.children.size() == 1) {
+            return merge(node);
+        }
+        return node;
+    }
+
+    /**
+     * <p>Replaces a node that has one child and no entries with that child.</p>
+     * @return The parent of the merged node.
+     */
+    private Node<T> merge(Node<T> node) {
+        Node<T> parent = node.parent;
+        Node<T> child = node.children.get(0);
+        child.label = node.label + child.label;
+        child.parent = parent;
+        parent.children.set(parent.childIndex(node.label.charAt(0)), child);
+        return parent;
+    }
+
+    /**
+     * <p>Rebuilds the caches from a node up to the root.</p>
+     */
+    private void refreshPath(Node<T> node) {
+        for (; node != null; node = node.parent) {
+            List<Entry<T>> candidates = new ArrayList<>(node.entries);
+            for (Node<T> child : node.children) {
+                candidates.addAll(child.top);
+            }
+            node.top = best(candidates);
+        }
+    }
+
+    /**
+     * <p>Picks the k best entries, best first.</p>
+     */
+    private List<Entry<T>> best(List<Entry<T>> candidates) {
+        List<Entry<T>> sorted = new ArrayList<>(candidates);
+        sorted.sort((a, b) -> a.isBetterThan(b) ? -1 : b.isBetterThan(a) ? 1 : 0);
+        return new ArrayList<>(sorted.subList(0, Math.min(k, sorted.size())));
+    }
+}
@@ -0,0 +1,60 @@
+package com.kyancey.inventory.cluster;
+
+import com.kyancey.inventory.entities.InHouse;
+import com.kyancey.inventory.entities.Inventory;
+import com.kyancey.inventory.entities.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ChangeFeedTest {
+    private ChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        Inventory.clear();
+        feed = new ChangeFeed(100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        feed.close();
+        Inventory.clear();
+    }
+
+    @Test
+    void idChangeDeletesTheOldId() throws InterruptedException {
+        Inventory.addPart(InHouse.ofCents(1, "gear", 100, 1, 0, 5, 1));
+        Inventory.addProduct(Product.ofCents(1, "bike", 100, 1, 0, 5));
+        long seq = feed.getHeadSeq();
+
+        Inventory.lookupPart(1).setId(2);
+        Inventory.lookupProduct(1).setId(3);
+
+        List<Change> changes = feed.poll(seq, 10, 0);
+        assertEquals(4, changes.size());
+        assertEquals(Change.Kind.DELETE, changes.get(0).getKind());
+        assertEquals(1, changes.get(0).getId());
+        assertEquals(Change.Kind.INSERT, changes.get(1).getKind());
+        assertEquals("gear", changes.get(1).getName());
+        assertEquals(Change.Kind.DELETE, changes.get(2).getKind());
+        assertEquals(1, changes.get(2).getId());
+        assertEquals(3, changes.get(3).getId());
+    }
+
+    @Test
+    void everyFeedHasItsOwnEpoch() {
+        ChangeFeed other = new ChangeFeed(100);
+        try {
+            assertNotEquals(0, feed.getEpoch());
+            assertNotEquals(feed.getEpoch(), other.getEpoch());
+        } finally {
+            other.close();
+        }
+    }
+}
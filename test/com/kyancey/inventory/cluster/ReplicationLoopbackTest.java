@@ -0,0 +1,106 @@
+package com.kyancey.inventory.cluster;
+
+import com.kyancey.inventory.entities.InHouse;
+import com.kyancey.inventory.entities.Inventory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * <p>Talks to a replication primary on loopback the way a replica does.</p>
+ */
+class ReplicationLoopbackTest {
+    private ReplicationPrimary primary;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Inventory.clear();
+        primary = new ReplicationPrimary(0, 100);
+        Inventory.addPart(InHouse.ofCents(1, "gear", 100, 1, 0, 5, 1));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        primary.close();
+        Inventory.clear();
+    }
+
+    @Test
+    void positionFromAnotherLogGetsASnapshot() throws IOException {
+        long epoch;
+        try (Socket socket = connect(42, 1)) {
+            DataInputStream in = input(socket);
+            assertEquals(ReplicationPrimary.FRAME_SNAPSHOT, in.readByte());
+            epoch = in.readLong();
+        }
+        try (Socket socket = connect(epoch, 1)) {
+            assertEquals(ReplicationPrimary.FRAME_HEARTBEAT, input(socket).readByte());
+        }
+        // Ahead of the head, as after a restart that has not caught up yet.
+        try (Socket socket = connect(epoch, 99)) {
+            assertEquals(ReplicationPrimary.FRAME_SNAPSHOT, input(socket).readByte());
+        }
+    }
+
+    @Test
+    void idChangeDeletesTheOldId() throws IOException {
+        try (Socket socket = connect(0, 0)) {
+            DataInputStream in = input(socket);
+            assertEquals(ReplicationPrimary.FRAME_SNAPSHOT, in.readByte());
+            in.readLong();
+            in.readLong();
+            in.readLong();
+            for (int n = WireFormat.readCount(in); n > 0; n--) {
+                WireFormat.readPart(in);
+            }
+            assertEquals(0, WireFormat.readCount(in));
+
+            Inventory.lookupPart(1).setId(2);
+
+            DataInputStream delete = nextEntry(in, ReplicationPrimary.DELETE_PART);
+            assertEquals(1, delete.readInt());
+            DataInputStream upsert = nextEntry(in, ReplicationPrimary.UPSERT_PART);
+            assertEquals(2, WireFormat.readPart(upsert).getId());
+        }
+    }
+
+    private Socket connect(long epoch, long seq) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), primary.getPort());
+        socket.setSoTimeout(5000);
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeLong(epoch);
+        out.writeLong(seq);
+        out.flush();
+        return socket;
+    }
+
+    private static DataInputStream input(Socket socket) throws IOException {
+        return new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    /**
+     * <p>Skips heartbeats and returns the payload of the next entry, which must have the given op.</p>
+     */
+    private static DataInputStream nextEntry(DataInputStream in, byte op) throws IOException {
+        byte frame;
+        while ((frame = in.readByte()) == ReplicationPrimary.FRAME_HEARTBEAT) {
+            in.readLong();
+            in.readLong();
+        }
+        assertEquals(ReplicationPrimary.FRAME_ENTRY, frame);
+        in.readLong();
+        in.readLong();
+        assertEquals(op, in.readByte());
+        return new DataInputStream(new ByteArrayInputStream(WireFormat.readPayload(in)));
+    }
+}
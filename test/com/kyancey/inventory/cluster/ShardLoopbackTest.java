@@ -0,0 +1,224 @@
+package com.kyancey.inventory.cluster;
+
+import com.kyancey.inventory.entities.InHouse;
+import com.kyancey.inventory.entities.InventoryRegistry;
+import com.kyancey.inventory.entities.InventoryStore;
+import com.kyancey.inventory.entities.Outsourced;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <p>Round trips through two shard servers and a router on loopback, in this
+ * process. Each shard serves its own store.</p>
+ */
+class ShardLoopbackTest {
+    private static final String[] STORES = {"shard-0", "shard-1"};
+
+    private final ShardServer[] servers = new ShardServer[STORES.length];
+    private ShardRouter router;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        for (int i = 0; i < servers.length; i++) {
+            servers[i] = new ShardServer(InventoryRegistry.create(STORES[i], InventoryStore.Budget.UNLIMITED), 0);
+        }
+        router = new ShardRouter(Arrays.asList(address(servers[0]), address(servers[1])));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        router.close();
+        for (int i = 0; i < servers.length; i++) {
+            servers[i].close();
+            InventoryRegistry.remove(STORES[i]);
+        }
+    }
+
+    @Test
+    void partsAndProductsRoundTrip() throws IOException {
+        router.addPart(InHouse.ofCents(1, "gear", 1999, 5, 1, 10, 7));
+        router.addPart(Outsourced.ofCents(2, "bolt", -5, 0, 0, 3, "Acme"));
+        Product bike = Product.ofCents(1, "bike", 25000, 2, 0, 4);
+        bike.addAssociatedPart(1, 3);
+        bike.addAssociatedPart(2, 1);
+        router.addProduct(bike);
+
+        Part gear = router.lookupPart(1);
+        assertEquals("gear", gear.getName());
+        assertEquals(1999, gear.getPriceCents());
+        assertEquals(7, ((InHouse) gear).getMachineId());
+        assertEquals("Acme", ((Outsourced) router.lookupPart(2)).getCompanyName());
+        assertEquals(-5, router.lookupPart(2).getPriceCents());
+
+        Product product = router.lookupProduct(1);
+        assertArrayEquals(new int[] {1, 2}, product.getAssociatedPartIds());
+        assertArrayEquals(new int[] {3, 1}, product.getAssociatedPartQuantities());
+        assertEquals(2, router.lookupAssociatedParts(product).size());
+        assertEquals(1, router.queryParts("price<10").size());
+        assertNull(router.lookupPart(3));
+    }
+
+    @Test
+    void idsAreStoredOnTheirOwningShard() throws IOException {
+        for (int id = 1; id <= 20; id++) {
+            router.addPart(InHouse.ofCents(id, "gear", 100, 1, 0, 5, 1));
+        }
+
+        for (int i = 0; i < servers.length; i++) {
+            InventoryStore store = servers[i].getStore();
+            assertFalse(store.getAllParts().isEmpty());
+            for (Part part : store.getAllParts()) {
+                assertEquals(i, router.shardFor(part.getId()));
+            }
+        }
+        List<Part> found = router.lookupPart("gear");
+        assertEquals(20, found.size());
+        for (int i = 0; i < found.size(); i++) {
+            assertEquals(i + 1, found.get(i).getId());
+        }
+    }
+
+    @Test
+    void associatedPartsResolveAcrossShards() throws IOException {
+        int productId = 1;
+        int remote = idOn(1 - router.shardFor(productId), 1);
+        int local = idOn(router.shardFor(productId), 1);
+        router.addPart(InHouse.ofCents(remote, "remote", 100, 1, 0, 5, 1));
+        router.addPart(InHouse.ofCents(local, "local", 100, 1, 0, 5, 1));
+        Product bike = Product.ofCents(productId, "bike", 100, 1, 0, 5);
+        bike.addAssociatedPart(remote, 1);
+        bike.addAssociatedPart(local, 2);
+        router.addProduct(bike);
+
+        List<Part> parts = router.lookupAssociatedParts(router.lookupProduct(productId));
+        assertEquals(2, parts.size());
+        assertEquals("remote", parts.get(0).getName());
+        assertEquals("local", parts.get(1).getName());
+    }
+
+    @Test
+    void partUsedOnAnotherShardIsNotDeleted() throws IOException {
+        int productId = 1;
+        int partId = idOn(1 - router.shardFor(productId), 1);
+        assertNotEquals(router.shardFor(productId), router.shardFor(partId));
+        router.addPart(InHouse.ofCents(partId, "gear", 100, 1, 0, 5, 1));
+        Product bike = Product.ofCents(productId, "bike", 100, 1, 0, 5);
+        bike.addAssociatedPart(partId, 1);
+        router.addProduct(bike);
+        int frameId = idOn(1 - router.shardFor(productId), partId + 1);
+        Product frame = Product.ofCents(frameId, "frame", 100, 1, 0, 5);
+        router.addProduct(frame);
+        bike.addSubAssembly(frameId, 1);
+        router.updateProduct(bike);
+
+        assertFalse(router.deletePart(partId));
+        assertFalse(router.deleteProduct(frameId));
+        assertEquals("gear", router.lookupPart(partId).getName());
+
+        assertTrue(router.deleteProduct(productId));
+        assertTrue(router.deletePart(partId));
+        assertTrue(router.deleteProduct(frameId));
+    }
+
+    @Test
+    void stringsLongerThan64KbRoundTrip() throws IOException {
+        StringBuilder name = new StringBuilder();
+        while (name.length() < 100_000) {
+            name.append("gear é中 ");
+        }
+        router.addPart(InHouse.ofCents(1, name.toString(), 100, 1, 0, 1, 1));
+
+        assertEquals(name.toString(), router.lookupPart(1).getName());
+        List<Part> found = router.lookupPart(name.toString());
+        assertEquals(1, found.size());
+    }
+
+    @Test
+    void updatesAndDeletesReachTheShard() throws IOException {
+        router.addPart(InHouse.ofCents(1, "gear", 100, 1, 0, 5, 1));
+        long version = router.lookupPart(1).getVersion();
+
+        assertTrue(router.compareAndUpdatePart(InHouse.ofCents(1, "gear", 200, 1, 0, 5, 1), version));
+        assertFalse(router.compareAndUpdatePart(InHouse.ofCents(1, "gear", 300, 1, 0, 5, 1), version));
+        assertEquals(200, router.lookupPart(1).getPriceCents());
+        assertTrue(router.deletePart(1));
+        assertFalse(router.deletePart(1));
+    }
+
+    @Test
+    void serverClosesConnectionOnUnknownOperation() throws IOException {
+        assertClosedAfter(new byte[] {99});
+    }
+
+    @Test
+    void serverClosesConnectionOnBadStringLength() throws IOException {
+        // FIND_PARTS_BY_NAME with a negative length.
+        assertClosedAfter(new byte[] {ShardServer.FIND_PARTS_BY_NAME, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff});
+    }
+
+    @Test
+    void serverClosesConnectionOnBadCount() throws IOException {
+        // LOOKUP_PARTS with a negative number of ids.
+        assertClosedAfter(new byte[] {ShardServer.LOOKUP_PARTS, (byte) 0x80, 0, 0, 0});
+    }
+
+    @Test
+    void clientClosesConnectionWhenReplyDoesNotDecode() throws IOException {
+        router.addPart(InHouse.ofCents(1, "gear", 100, 1, 0, 5, 1));
+        try (ShardClient client = new ShardClient(address(servers[router.shardFor(1)]))) {
+            // Stop part way through the reply, leaving the rest unread.
+            assertThrows(IOException.class, () -> client.call(ShardServer.LOOKUP_PART, out -> out.writeInt(1), in -> {
+                in.readBoolean();
+                throw new IOException("Bad reply");
+            }));
+            assertThrows(IOException.class, () -> client.call(ShardServer.LOOKUP_PART, out -> out.writeInt(1),
+                    DataInputStream::readBoolean));
+        }
+    }
+
+    private static InetSocketAddress address(ShardServer server) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+    }
+
+    /**
+     * <p>Finds the first id from a starting point that the router sends to a shard.</p>
+     */
+    private int idOn(int shard, int from) {
+        int id = from;
+        while (router.shardFor(id) != shard) {
+            id++;
+        }
+        return id;
+    }
+
+    private void assertClosedAfter(byte[] request) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(address(servers[0]));
+            socket.setSoTimeout(5000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.write(request);
+            out.flush();
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.kyancey.inventory.entities;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventoryStoreTest {
+    private final InventoryStore store = new InventoryStore("test", InventoryStore.Budget.UNLIMITED);
+
+    private static InHouse part(int id, String name, int stock) {
+        return InHouse.ofCents(id, name, 100, stock, 0, 100, 1);
+    }
+
+    private static List<String> record(ObservableList<?> list) {
+        List<String> events = new ArrayList<>();
+        list.addListener((ListChangeListener<Object>) c -> {
+            while (c.next()) {
+                events.add(c.wasUpdated() ? "update " + c.getFrom()
+                        : c.wasReplaced() ? "replace " + c.getFrom()
+                        : c.wasAdded() ? "add " + c.getFrom() : "remove " + c.getFrom());
+            }
+        });
+        return events;
+    }
+
+    @Test
+    void partUpdateIsOneEvent() {
+        InHouse stored = part(1, "Bolt", 5);
+        store.addPart(stored);
+        List<String> events = record(store.getAllPartsView());
+
+        InHouse edit = part(1, "Hex bolt", 7);
+        edit.setPriceCents(250);
+        edit.setMin(2);
+        edit.setMax(50);
+        edit.setMachineId(9);
+        assertTrue(store.updatePart(edit));
+
+        assertEquals(List.of("update 0"), events);
+        assertEquals("Hex bolt", stored.getName());
+        assertEquals(9, stored.getMachineId());
+    }
+
+    @Test
+    void unchangedUpdateIsNoEvent() {
+        store.addPart(part(1, "Bolt", 5));
+        List<String> events = record(store.getAllPartsView());
+
+        assertTrue(store.updatePart(part(1, "Bolt", 5)));
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void typeChangeIsOneReplace() {
+        store.addPart(part(1, "Bolt", 5));
+        List<String> events = record(store.getAllPartsView());
+
+        Outsourced bought = Outsourced.ofCents(1, "Bolt", 100, 5, 0, 100, "Acme");
+        assertTrue(store.updatePart(bought));
+
+        assertEquals(List.of("replace 0"), events);
+        assertSame(bought, store.lookupPart(1));
+    }
+
+    @Test
+    void productUpdateIsOneEvent() {
+        Product stored = Product.ofCents(1, "Bike", 10_000, 1, 0, 10);
+        store.addProduct(stored);
+        List<String> events = record(store.getAllProductsView());
+
+        Product edit = Product.ofCents(1, "Road bike", 12_000, 2, 1, 5);
+        edit.setAssociatedParts(new int[] {4, 5}, new int[] {2, 1});
+        assertTrue(store.updateProduct(edit));
+
+        assertEquals(List.of("update 0"), events);
+        assertEquals(2, stored.getAssociatedPartQuantity(4));
+    }
+
+    @Test
+    void directSetterIsOneEventEach() {
+        InHouse stored = part(1, "Bolt", 5);
+        store.addPart(stored);
+        List<String> events = record(store.getAllPartsView());
+
+        stored.setStock(6);
+        stored.setMachineId(3);
+        stored.edit(() -> {
+            stored.setStock(7);
+            stored.edit(() -> stored.setName("Nested"));
+        });
+
+        assertEquals(List.of("update 0", "update 0", "update 0"), events);
+    }
+
+    @Test
+    void idChangeIsOneVersion() {
+        store.addPart(part(1, "Bolt", 5));
+        long before = store.snapshot().getVersion();
+
+        store.updatePart(0, part(2, "Bolt", 6));
+
+        InventorySnapshot after = store.snapshot();
+        assertEquals(before + 1, after.getVersion());
+        assertNull(after.lookupPart(1));
+        assertEquals(6, after.lookupPart(2).getStock());
+    }
+
+    @Test
+    void setIdMovesTheLookup() {
+        InHouse bolt = part(1, "Bolt", 5);
+        store.addPart(bolt);
+        Product bike = Product.ofCents(1, "Bike", 100, 1, 0, 10);
+        store.addProduct(bike);
+
+        bolt.setId(2);
+        bike.setId(3);
+
+        assertNull(store.lookupPart(1));
+        assertSame(bolt, store.lookupPart(2));
+        assertNull(store.lookupProduct(1));
+        assertSame(bike, store.lookupProduct(3));
+        assertEquals(4, store.generateProductID());
+        assertTrue(store.deletePart(bolt));
+        assertTrue(store.deleteProduct(bike));
+        assertTrue(store.getAllParts().isEmpty());
+        assertTrue(store.getAllProducts().isEmpty());
+    }
+
+    @Test
+    void clearIsOneVersionPublishedFirst() {
+        store.addPart(part(1, "Bolt", 5));
+        store.addProduct(Product.ofCents(1, "Bike", 100, 1, 0, 10));
+        long before = store.snapshot().getVersion();
+        List<Integer> seen = new ArrayList<>();
+        store.getAllProductsView().addListener((ListChangeListener<Product>) c ->
+                seen.add(store.snapshot().getPartCount()));
+
+        store.clear();
+
+        assertEquals(List.of(0), seen);
+        assertEquals(before + 1, store.snapshot().getVersion());
+        assertEquals(0, store.snapshot().getProductCount());
+    }
+
+    @Test
+    void versionsComeFromTheStore() {
+        InHouse bolt = part(1, "Bolt", 5);
+        InHouse nut = part(2, "Nut", 5);
+        store.addPart(bolt);
+        store.addPart(nut);
+
+        assertEquals(store.snapshot().getVersion(), nut.getVersion());
+        assertTrue(bolt.getVersion() < nut.getVersion());
+        bolt.setStock(6);
+        assertEquals(store.snapshot().getVersion(), bolt.getVersion());
+        assertEquals(bolt.getVersion(), store.snapshot().lookupPart(1).getVersion());
+    }
+
+    @Test
+    void readdedPartNeverRepeatsAVersion() {
+        InHouse bolt = part(1, "Bolt", 5);
+        store.addPart(bolt);
+        long read = bolt.getVersion();
+
+        store.deletePart(bolt);
+        InHouse again = part(1, "Bolt", 5);
+        store.addPart(again);
+
+        assertTrue(again.getVersion() > read);
+        assertFalse(store.compareAndUpdatePart(part(1, "Bolt", 9), read));
+        assertTrue(store.compareAndUpdatePart(part(1, "Bolt", 9), again.getVersion()));
+        assertEquals(9, again.getStock());
+    }
+
+    @Test
+    void indexesArePerStore() {
+        InventoryStore other = new InventoryStore("other", InventoryStore.Budget.UNLIMITED);
+        store.addPart(part(1, "Bolt", 5));
+        other.addPart(part(1, "Nut", 9));
+        other.addPart(part(2, "Axle", 1));
+
+        assertEquals(5, InventoryAggregates.getMachineTotals(store, 1).getUnits());
+        assertEquals(10, InventoryAggregates.getMachineTotals(other, 1).getUnits());
+        assertEquals("Bolt", InventoryOrders.parts(store, SortKey.NAME).get(0).getName());
+        assertEquals("Axle", InventoryOrders.parts(other, SortKey.NAME).get(0).getName());
+        assertSame(InventoryOrders.parts(store, SortKey.NAME), InventoryOrders.parts(store, SortKey.NAME));
+
+        Product bike = Product.ofCents(1, "Bike", 100, 1, 0, 10);
+        bike.setAssociatedParts(new int[] {1}, new int[] {2});
+        store.addProduct(bike);
+        assertEquals(200, BomExplosion.getMaterialCostCents(store, bike));
+        assertEquals(2, BomExplosion.getBuildableCount(store, bike));
+        assertEquals(4, BomExplosion.getBuildableCount(other, bike));
+    }
+
+    @Test
+    void cycleCheckUsesTheGivenStore() {
+        InventoryStore other = new InventoryStore("other", InventoryStore.Budget.UNLIMITED);
+        Product frame = Product.ofCents(1, "Frame", 100, 1, 0, 10);
+        Product bike = Product.ofCents(2, "Bike", 100, 1, 0, 10);
+        store.addProduct(frame);
+        store.addProduct(bike);
+        assertTrue(bike.addSubAssembly(store, 1, 1));
+
+        assertFalse(frame.addSubAssembly(store, 2, 1));
+        assertTrue(BomExplosion.isUsedAsSubAssembly(store, 1));
+        assertFalse(BomExplosion.isUsedAsSubAssembly(other, 1));
+        assertFalse(BomExplosion.wouldCreateCycle(other, 1, 2));
+    }
+
+    @Test
+    void partInUseIsNotDeleted() {
+        InHouse bolt = part(1, "Bolt", 5);
+        store.addPart(bolt);
+        Product bike = Product.ofCents(1, "Bike", 100, 1, 0, 10);
+        bike.setAssociatedParts(new int[] {1}, new int[] {2});
+        store.addProduct(bike);
+
+        assertFalse(store.deletePart(bolt));
+        assertSame(bolt, store.lookupPart(1));
+        assertEquals(0, store.getRejectedCount());
+
+        bike.setAssociatedParts(new int[0], new int[0]);
+        assertTrue(store.deletePart(bolt));
+    }
+
+    @Test
+    void subAssemblyInUseIsNotDeleted() {
+        Product frame = Product.ofCents(1, "Frame", 100, 1, 0, 10);
+        Product bike = Product.ofCents(2, "Bike", 100, 1, 0, 10);
+        store.addProduct(frame);
+        store.addProduct(bike);
+        assertTrue(bike.addSubAssembly(store, 1, 1));
+
+        assertFalse(store.deleteProduct(frame));
+        assertSame(frame, store.lookupProduct(1));
+
+        assertTrue(store.deleteProduct(bike));
+        assertTrue(store.deleteProduct(frame));
+    }
+
+    @Test
+    void linesNeedAPositiveQuantity() {
+        Product bike = Product.ofCents(1, "Bike", 100, 1, 0, 10);
+
+        assertThrows(IllegalArgumentException.class, () -> bike.addAssociatedPart(4, 0));
+        assertThrows(IllegalArgumentException.class, () -> bike.addSubAssembly(store, 2, -1));
+        assertEquals(0, bike.getAssociatedPartCount());
+        assertEquals(0, bike.getSubAssemblyIds().length);
+    }
+
+    @Test
+    void forcedDeleteSkipsTheInUseCheck() {
+        InHouse bolt = part(1, "Bolt", 5);
+        store.addPart(bolt);
+        Product bike = Product.ofCents(1, "Bike", 100, 1, 0, 10);
+        bike.setAssociatedParts(new int[] {1}, new int[] {2});
+        store.addProduct(bike);
+
+        assertTrue(store.forceDeletePart(bolt));
+        assertNull(store.lookupPart(1));
+        assertNull(store.snapshot().lookupPart(1));
+    }
+
+    @Test
+    void generatedIdsAreNotReused() {
+        assertEquals(0, store.generatePartID());
+        store.addPart(part(0, "Bolt", 5));
+        store.addPart(part(7, "Nut", 5));
+        assertEquals(8, store.generatePartID());
+
+        store.deletePart(store.lookupPart(7));
+        assertEquals(8, store.generatePartID());
+        store.addPart(part(Integer.MAX_VALUE, "Last", 1));
+        assertEquals(Integer.MAX_VALUE, store.generatePartID());
+
+        store.addProduct(Product.ofCents(3, "Bike", 100, 1, 0, 10));
+        store.deleteProduct(store.lookupProduct(3));
+        assertEquals(4, store.generateProductID());
+    }
+
+    @Test
+    void unchangedBillOfMaterialsIsNoEvent() {
+        Product bike = Product.ofCents(1, "Bike", 100, 1, 0, 10);
+        bike.setAssociatedParts(new int[] {4, 5}, new int[] {2, 1});
+        bike.setSubAssemblies(new int[] {2}, new int[] {1});
+        store.addProduct(bike);
+        long version = bike.getVersion();
+        List<String> events = record(store.getAllProductsView());
+
+        bike.setAssociatedPartQuantity(4, 2);
+        bike.setAssociatedParts(new int[] {4, 5}, new int[] {2, 1});
+        bike.setSubAssemblyQuantity(store, 2, 1);
+        bike.setSubAssemblies(new int[] {2}, new int[] {1});
+
+        assertTrue(events.isEmpty());
+        assertEquals(version, bike.getVersion());
+        bike.setAssociatedPartQuantity(4, 3);
+        assertEquals(List.of("update 0"), events);
+    }
+
+    @Test
+    void idChangeEndsTheOldIdsHistory() {
+        store.addPart(part(1, "Bolt", 5));
+        store.addProduct(Product.ofCents(1, "Bike", 100, 3, 0, 10));
+        StockHistory.getMovementCount(store);
+
+        store.updatePart(0, part(2, "Bolt", 6));
+        store.updateProduct(0, Product.ofCents(4, "Bike", 100, 3, 0, 10));
+
+        long now = System.currentTimeMillis();
+        assertEquals(StockHistory.ABSENT, StockHistory.getPartStockAsOf(store, 1, now));
+        assertEquals(6, StockHistory.getPartStockAsOf(store, 2, now));
+        assertEquals(StockHistory.ABSENT, StockHistory.getProductStockAsOf(store, 1, now));
+        assertEquals(3, StockHistory.getProductStockAsOf(store, 4, now));
+        assertEquals(2, store.lookupPart(2).getPreviousId());
+    }
+}
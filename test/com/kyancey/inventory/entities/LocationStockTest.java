@@ -0,0 +1,92 @@
+package com.kyancey.inventory.entities;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocationStockTest {
+    private final Location main = LocationStock.getLocations().get(LocationStock.DEFAULT_LOCATION);
+    private Part bolt;
+
+    @BeforeEach
+    void setUp() {
+        Inventory.clear();
+        bolt = InHouse.ofCents(1, "Bolt", 100, 10, 5, 20, 1);
+        Inventory.addPart(bolt);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Inventory.clear();
+    }
+
+    @Test
+    void adjustmentsStayWithinMinAndMax() {
+        assertFalse(LocationStock.adjustStock(bolt, main, 11));
+        assertFalse(LocationStock.adjustStock(bolt, main, -6));
+        assertEquals(10, bolt.getStock());
+
+        assertTrue(LocationStock.adjustStock(bolt, main, 10));
+        assertEquals(20, bolt.getStock());
+        assertEquals(20, LocationStock.getStock(bolt, main));
+    }
+
+    @Test
+    void unknownLocationsAreRefused() {
+        Location negative = new Location(-1, "Nowhere");
+        Location unknown = new Location(LocationStock.getLocations().size(), "Not added");
+
+        assertFalse(LocationStock.adjustStock(bolt, negative, 1));
+        assertFalse(LocationStock.adjustStock(bolt, unknown, 1));
+        assertFalse(LocationStock.transfer(bolt, main, negative, 1));
+        assertFalse(LocationStock.transfer(bolt, unknown, main, 1));
+        assertEquals(0, LocationStock.getStock(bolt, negative));
+        assertEquals(10, LocationStock.getStock(bolt, main));
+    }
+
+    @Test
+    void transfersReachTheListeners() {
+        Location shelf = LocationStock.addLocation("Shelf");
+        long[] heard = {0};
+        Runnable listener = () -> heard[0] = LocationStock.getTransferCount();
+        LocationStock.addTransferListener(listener);
+        try {
+            assertTrue(LocationStock.transfer(bolt, main, shelf, 4));
+            assertFalse(LocationStock.transfer(bolt, main, shelf, 7));
+
+            assertEquals(LocationStock.getTransferCount(), heard[0]);
+            assertEquals(4, LocationStock.getStock(bolt, shelf));
+            assertEquals(10, bolt.getStock());
+        } finally {
+            LocationStock.removeTransferListener(listener);
+        }
+    }
+
+    @Test
+    void partsOutsideInventoryAreRefused() {
+        Location shelf = LocationStock.addLocation("Shelf");
+        Part loose = InHouse.ofCents(2, "Nut", 100, 10, 0, 20, 1);
+
+        assertFalse(LocationStock.adjustStock(loose, main, 1));
+        assertFalse(LocationStock.transfer(loose, main, shelf, 1));
+        assertEquals(0, LocationStock.getStock(loose, main));
+        assertEquals(10, LocationStock.getPartUnits(main));
+    }
+
+    @Test
+    void idChangeMovesTheRow() {
+        Part gone = InHouse.ofCents(1, "Gone", 100, 0, 0, 20, 1);
+
+        bolt.setId(2);
+
+        assertEquals(0, LocationStock.getStock(gone, main));
+        assertEquals(10, LocationStock.getStock(bolt, main));
+        assertEquals(10, LocationStock.getPartUnits(main));
+        assertTrue(Inventory.deletePart(bolt));
+        assertEquals(0, LocationStock.getPartUnits(main));
+    }
+}
@@ -0,0 +1,135 @@
+package com.kyancey.inventory.entities;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SortedOrderTest {
+    private final ObservableList<Part> parts = FXCollections.observableArrayList(Part::getFieldProperties);
+
+    private static Part part(int id, int stock) {
+        return InHouse.ofCents(id, "Part " + id, 100, stock, 0, 1_000, 1);
+    }
+
+    private SortedOrder<Part> byStock() {
+        return new SortedOrder<>(parts, Part::getStock, Part::getId);
+    }
+
+    @Test
+    void sortsByKeyThenId() {
+        parts.addAll(part(3, 5), part(1, 5), part(2, 1));
+
+        assertEquals(List.of(2, 1, 3), ids(byStock()));
+    }
+
+    @Test
+    void followsAddsRemovesAndKeyChanges() {
+        Part moving = part(1, 10);
+        parts.addAll(moving, part(2, 20), part(3, 30));
+        SortedOrder<Part> order = byStock();
+
+        parts.add(part(4, 15));
+        assertEquals(List.of(1, 4, 2, 3), ids(order));
+        moving.setStock(25);
+        assertEquals(List.of(4, 2, 1, 3), ids(order));
+        parts.remove(0);
+        assertEquals(List.of(4, 2, 3), ids(order));
+        parts.get(0).setId(9);
+        assertEquals(List.of(4, 9, 3), ids(order));
+    }
+
+    @Test
+    void boundsFindKeyRanges() {
+        parts.addAll(part(1, 10), part(2, 20), part(3, 20), part(4, 30));
+        SortedOrder<Part> order = byStock();
+
+        assertEquals(0, order.lowerBound(5));
+        assertEquals(1, order.lowerBound(20));
+        assertEquals(3, order.upperBound(20));
+        assertEquals(3, order.lowerBound(25));
+        assertEquals(4, order.upperBound(30));
+    }
+
+    @Test
+    void reportsOneMovePerChange() {
+        Part moving = part(1, 10);
+        parts.addAll(moving, part(2, 20), part(3, 30));
+        SortedOrder<Part> order = byStock();
+        List<String> changes = new ArrayList<>();
+        order.addListener((ListChangeListener<Part>) c -> {
+            while (c.next()) {
+                changes.add((c.wasRemoved() ? "-" : "+") + c.getFrom());
+            }
+        });
+
+        moving.setStock(25);
+        moving.setName("Renamed");
+
+        assertEquals(List.of("-0", "+1"), changes);
+    }
+
+    @Test
+    void descendingMirrorsTheOrder() {
+        parts.addAll(part(1, 10), part(2, 20));
+        SortedOrder<Part> order = byStock();
+        ObservableList<Part> descending = order.descending();
+        List<String> changes = new ArrayList<>();
+        descending.addListener((ListChangeListener<Part>) c -> {
+            while (c.next()) {
+                changes.add((c.wasRemoved() ? "-" : "+") + c.getFrom());
+            }
+        });
+
+        parts.add(part(3, 15));
+        parts.get(0).setStock(30);
+
+        assertEquals(List.of(1, 2, 3), ids(descending));
+        assertEquals(List.of("+1", "-2", "+0"), changes);
+    }
+
+    @Test
+    void matchesAFullSortAfterRandomEdits() {
+        Random random = new Random(42);
+        for (int id = 0; id < 200; id++) {
+            parts.add(part(id, random.nextInt(50)));
+        }
+        SortedOrder<Part> order = byStock();
+        ObservableList<Part> descending = order.descending();
+        int nextId = 200;
+        for (int step = 0; step < 2_000; step++) {
+            int op = random.nextInt(4);
+            if (op == 0) {
+                parts.add(part(nextId++, random.nextInt(50)));
+            } else if (op == 1 && !parts.isEmpty()) {
+                parts.remove(random.nextInt(parts.size()));
+            } else if (!parts.isEmpty()) {
+                parts.get(random.nextInt(parts.size())).setStock(random.nextInt(50));
+            }
+            if (step % 100 == 0) {
+                List<Part> expected = new ArrayList<>(parts);
+                expected.sort(Comparator.comparingInt(Part::getStock).thenComparingInt(Part::getId));
+                assertEquals(ids(expected), ids(order));
+                List<Part> reversed = new ArrayList<>(order);
+                Collections.reverse(reversed);
+                assertEquals(ids(reversed), ids(descending));
+            }
+        }
+    }
+
+    private static List<Integer> ids(List<Part> list) {
+        List<Integer> ids = new ArrayList<>();
+        for (Part part : list) {
+            ids.add(part.getId());
+        }
+        return ids;
+    }
+}
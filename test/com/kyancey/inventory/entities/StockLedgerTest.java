@@ -0,0 +1,133 @@
+package com.kyancey.inventory.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockLedgerTest {
+    private long now = 1_000;
+
+    private final StockLedger ledger = new StockLedger(() -> now);
+    private final List<long[]> history = new ArrayList<>();
+
+    @Test
+    void levelsAsOfEachTime() {
+        record(1, 5);
+        now = 1_010;
+        record(1, 7);
+        record(2, 3);
+        now = 1_020;
+        record(1, StockLedger.ABSENT);
+
+        assertEquals(StockLedger.ABSENT, ledger.levelAsOf(1, 999));
+        assertEquals(5, ledger.levelAsOf(1, 1_000));
+        assertEquals(5, ledger.levelAsOf(1, 1_009));
+        assertEquals(7, ledger.levelAsOf(1, 1_010));
+        assertEquals(3, ledger.levelAsOf(2, 1_015));
+        assertEquals(StockLedger.ABSENT, ledger.levelAsOf(1, 1_020));
+        assertEquals(StockLedger.ABSENT, ledger.levelAsOf(3, Long.MAX_VALUE));
+    }
+
+    @Test
+    void unchangedLevelsAreNotRecorded() {
+        record(1, 5);
+        record(1, 5);
+        record(2, StockLedger.ABSENT);
+
+        assertEquals(1, ledger.getMovementCount());
+    }
+
+    @Test
+    void clockSteppingBackKeepsTimesInOrder() {
+        now = 2_000;
+        record(1, 5);
+        now = 1_500;
+        record(1, 6);
+
+        assertEquals(6, ledger.levelAsOf(1, 2_000));
+        assertEquals(StockLedger.ABSENT, ledger.levelAsOf(1, 1_999));
+    }
+
+    @Test
+    void checkpointsCarryLevelsAcrossSegments() {
+        record(1, 42);
+        fill(10_000, 1_000);
+        assertTrue(ledger.getSegmentCount() > 2);
+
+        // Id 1 never moved after the first segment; later segments answer from their checkpoint.
+        assertEquals(42, ledger.levelAsOf(1, Long.MAX_VALUE));
+        assertMatchesHistory();
+    }
+
+    @Test
+    void compactionMergesOldSegmentsWithoutChangingAnswers() {
+        fill(30_000, 500);
+        int before = ledger.getSegmentCount();
+        long movements = ledger.getMovementCount();
+
+        ledger.compact(now / 2);
+        assertTrue(ledger.getSegmentCount() < before);
+        assertTrue(ledger.getSegmentCount() > 1);
+        assertEquals(movements, ledger.getMovementCount());
+        assertMatchesHistory();
+
+        ledger.compact(Long.MAX_VALUE);
+        // Everything sealed fits one merged segment; the active one stays separate.
+        assertEquals(2, ledger.getSegmentCount());
+        assertMatchesHistory();
+    }
+
+    @Test
+    void compactionStopsAtTheSizeLimit() {
+        fill(200_000, 100);
+        ledger.compact(Long.MAX_VALUE);
+
+        // 200,000 movements need at least four segments of at most 65,536.
+        assertTrue(ledger.getSegmentCount() >= 4);
+        assertMatchesHistory();
+    }
+
+    private void record(int id, int level) {
+        ledger.record(id, level);
+        history.add(new long[] {now, id, level});
+    }
+
+    /**
+     * <p>Records random movements over a few ids, one millisecond apart.</p>
+     */
+    private void fill(int movements, int ids) {
+        Random random = new Random(7);
+        for (int i = 0; i < movements; i++) {
+            now++;
+            record(100 + random.nextInt(ids), random.nextInt(50));
+        }
+    }
+
+    private void assertMatchesHistory() {
+        Random random = new Random(3);
+        long start = history.get(0)[0];
+        for (int i = 0; i < 2_000; i++) {
+            long time = start - 1 + random.nextInt((int) (now - start + 2));
+            int id = (int) history.get(random.nextInt(history.size()))[1];
+            assertEquals(expected(id, time), ledger.levelAsOf(id, time), "id " + id + " at " + time);
+        }
+    }
+
+    private int expected(int id, long time) {
+        int level = StockLedger.ABSENT;
+        for (long[] movement : history) {
+            if (movement[0] > time) {
+                break;
+            }
+            if (movement[1] == id) {
+                level = (int) movement[2];
+            }
+        }
+        return level;
+    }
+}
@@ -0,0 +1,47 @@
+package com.kyancey.inventory.query;
+
+import com.kyancey.inventory.entities.InHouse;
+import com.kyancey.inventory.entities.InventoryRegistry;
+import com.kyancey.inventory.entities.InventoryStore;
+import com.kyancey.inventory.entities.Part;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventoryQueryTest {
+    private final InventoryStore store = InventoryRegistry.create("query-test", InventoryStore.Budget.UNLIMITED);
+
+    @AfterEach
+    void tearDown() {
+        InventoryRegistry.remove("query-test");
+    }
+
+    @Test
+    void malformedTextIsAMistypedQuery() {
+        assertFalse(InventoryQuery.isQuery("hex bolt"));
+        assertTrue(InventoryQuery.isQuery("price<3"));
+        assertTrue(InventoryQuery.isQuery("price<abc"));
+        assertEquals("Expected a number or field after price< at position 7",
+                assertThrows(IllegalArgumentException.class, () -> InventoryQuery.planParts(store, "price<abc")).getMessage());
+    }
+
+    @Test
+    void indexedPlansAnswerFromTheIndex() {
+        for (int id = 1; id <= 10; id++) {
+            store.addPart(InHouse.ofCents(id, "Part " + id, id * 100, id, 0, 100, 1));
+        }
+
+        QueryPlan<Part> range = InventoryQuery.planParts(store, "price<3");
+        assertFalse(range.isFullScan());
+        assertEquals(2, range.getEstimate());
+        List<Part> found = range.execute();
+        assertEquals(List.of(1, 2), List.of(found.get(0).getId(), found.get(1).getId()));
+        assertTrue(InventoryQuery.planParts(store, "stock<=min").isFullScan());
+    }
+}
@@ -0,0 +1,135 @@
+package com.kyancey.inventory.query;
+
+import com.kyancey.inventory.entities.InHouse;
+import com.kyancey.inventory.entities.Outsourced;
+import com.kyancey.inventory.entities.Part;
+import com.kyancey.inventory.entities.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryParserTest {
+    private final Part bolt = InHouse.ofCents(7, "Hex Bolt", 250, 3, 5, 100, 12);
+    private final Part nut = Outsourced.ofCents(8, "Nut", 10, 40, 5, 100, "Acme Corp");
+    private final Product bike = Product.ofCents(1, "Bike", 19_999, 2, 1, 10);
+
+    @Test
+    void blankTextHasNoTerms() {
+        assertTrue(QueryParser.parse("").isEmpty());
+        assertTrue(QueryParser.parse("   ").isEmpty());
+        assertTrue(QueryParser.parse(null).isEmpty());
+    }
+
+    @Test
+    void parsesEveryOperator() {
+        List<QueryTerm> terms = QueryParser.parse("price<1 price<=2 price>3 price>=4 price=5 price!=6 price:7");
+
+        QueryTerm.Op[] ops = {QueryTerm.Op.LT, QueryTerm.Op.LE, QueryTerm.Op.GT, QueryTerm.Op.GE,
+                QueryTerm.Op.EQ, QueryTerm.Op.NE, QueryTerm.Op.MATCH};
+        assertEquals(ops.length, terms.size());
+        for (int i = 0; i < ops.length; i++) {
+            assertEquals(QueryField.PRICE, terms.get(i).getField());
+            assertEquals(ops[i], terms.get(i).getOp());
+            assertEquals(i + 1, terms.get(i).getNumber());
+        }
+    }
+
+    @Test
+    void parsesTextValues() {
+        List<QueryTerm> terms = QueryParser.parse("NAME:bolt* company:\"Acme Corp\" type=inhouse");
+
+        assertEquals(QueryField.NAME, terms.get(0).getField());
+        assertEquals("bolt", terms.get(0).getText());
+        assertTrue(terms.get(0).isPrefix());
+        assertEquals("Acme Corp", terms.get(1).getText());
+        assertTrue(terms.get(1).isQuoted());
+        assertEquals(QueryTerm.Op.EQ, terms.get(2).getOp());
+        assertFalse(terms.get(2).isPrefix());
+    }
+
+    @Test
+    void parsesFieldComparisons() {
+        QueryTerm term = QueryParser.parse("stock<=min").get(0);
+
+        assertEquals(QueryField.STOCK, term.getField());
+        assertEquals(QueryField.MIN, term.getOther());
+        assertTrue(Double.isNaN(term.getNumber()));
+    }
+
+    @Test
+    void bareWordsAreSearchText() {
+        List<QueryTerm> terms = QueryParser.parse("bolt \"hex bolt\" 12 <3");
+
+        assertEquals(4, terms.size());
+        assertNull(terms.get(0).getField());
+        assertEquals("hex bolt", terms.get(1).getText());
+        assertTrue(terms.get(1).isQuoted());
+        assertEquals("12", terms.get(2).getText());
+        assertEquals("<3", terms.get(3).getText());
+    }
+
+    @Test
+    void rejectsMalformedQueries() {
+        assertEquals("Expected a number or field after price< at position 7",
+                error("price<abc"));
+        assertEquals("Unknown field 'size' at position 1", error("size<3"));
+        assertEquals("Missing value for stock at position 7", error("stock> 3"));
+        assertEquals("Cannot compare stock with name at position 7", error("stock<name"));
+        assertEquals("Cannot use < with name at position 6", error("name<x"));
+        assertEquals("Unclosed quote at position 6", error("name:\"bolt"));
+        assertEquals("Expected a number or field after price= at position 7", error("price=NaN"));
+    }
+
+    @Test
+    void termsTestItems() {
+        assertTrue(test("price<2.51", bolt));
+        assertFalse(test("price<2.50", bolt));
+        assertTrue(test("stock<=min", bolt));
+        assertFalse(test("stock<=min", nut));
+        assertTrue(test("name:BOLT", bolt));
+        assertTrue(test("name:hex*", bolt));
+        assertFalse(test("name:bolt*", bolt));
+        assertTrue(test("name:\"Hex Bolt\"", bolt));
+        assertFalse(test("name:\"hex bolt\"", bolt));
+        assertTrue(test("company:acme", nut));
+        assertFalse(test("company:acme", bolt));
+        assertTrue(test("machine=12", bolt));
+        assertFalse(test("machine!=12", nut));
+        assertTrue(test("type=outsourced", nut));
+        assertTrue(test("7", bolt));
+        assertTrue(test("olt", bolt));
+        assertTrue(test("price>=199.99 stock=2", bike));
+        assertFalse(test("company:acme", bike));
+    }
+
+    @Test
+    void toStringRoundTrips() {
+        String text = "price<=2.5 stock<min name:bolt* company:\"Acme Corp\" id=7 nut";
+        List<QueryTerm> terms = QueryParser.parse(text);
+        StringBuilder written = new StringBuilder();
+        for (QueryTerm term : terms) {
+            written.append(written.length() == 0 ? "" : " ").append(term);
+        }
+
+        assertEquals(text, written.toString());
+    }
+
+    private static boolean test(String query, Object item) {
+        for (QueryTerm term : QueryParser.parse(query)) {
+            if (!term.test(item)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String error(String query) {
+        return assertThrows(IllegalArgumentException.class, () -> QueryParser.parse(query)).getMessage();
+    }
+}
@@ -0,0 +1,74 @@
+package com.kyancey.inventory.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+    @Test
+    void addedKeysAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(i * 31);
+            filter.add("part " + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(i * 31));
+            assertTrue(filter.mightContain("part " + i));
+        }
+    }
+
+    @Test
+    void falsePositivesNearOnePercentAtCapacity() {
+        BloomFilter filter = new BloomFilter(50_000);
+        for (int i = 0; i < 50_000; i++) {
+            filter.add(i);
+        }
+        assertTrue(falsePositives(filter) < 2_000);
+    }
+
+    @Test
+    void falsePositivesStayBoundedWhenOverfilled() {
+        BloomFilter filter = new BloomFilter(50_000);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add(i);
+        }
+        // Five bits per key gives about 14%; a broken probe sequence is far above this.
+        assertTrue(falsePositives(filter) < 20_000);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(0);
+        assertEquals(16, filter.getExpectedKeys());
+        assertFalse(filter.mightContain(0));
+        assertFalse(filter.mightContain(""));
+        assertFalse(filter.mightContain(Integer.MIN_VALUE));
+    }
+
+    @Test
+    void extremeKeys() {
+        BloomFilter filter = new BloomFilter(16);
+        filter.add(Integer.MIN_VALUE);
+        filter.add(Integer.MAX_VALUE);
+        filter.add("");
+        assertTrue(filter.mightContain(Integer.MIN_VALUE));
+        assertTrue(filter.mightContain(Integer.MAX_VALUE));
+        assertTrue(filter.mightContain(""));
+    }
+
+    /**
+     * <p>Counts hits among 100,000 negative ids, none of which were added.</p>
+     */
+    private static int falsePositives(BloomFilter filter) {
+        int hits = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(-1 - i)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,175 @@
+package com.kyancey.inventory.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FuzzyIndexTest {
+    private final FuzzyIndex<String> index = new FuzzyIndex<>();
+
+    @Test
+    void distanceCountsEditsAndAdjacentSwaps() {
+        assertEquals(0, FuzzyIndex.distance("gear", "gear", 2));
+        assertEquals(1, FuzzyIndex.distance("gear", "bear", 2));
+        assertEquals(1, FuzzyIndex.distance("gear", "ger", 2));
+        assertEquals(1, FuzzyIndex.distance("gear", "gears", 2));
+        assertEquals(1, FuzzyIndex.distance("gear", "gaer", 2));
+        assertEquals(2, FuzzyIndex.distance("gear", "aegr", 2));
+        assertEquals(2, FuzzyIndex.distance("", "ab", 2));
+        assertEquals(0, FuzzyIndex.distance("", "", 2));
+    }
+
+    @Test
+    void distanceStopsAtItsBound() {
+        assertEquals(3, FuzzyIndex.distance("gear", "gearbox", 2));
+        assertEquals(3, FuzzyIndex.distance("", "abc", 2));
+        assertEquals(2, FuzzyIndex.distance("sprocket", "rocket", 1));
+        assertEquals(1, FuzzyIndex.distance("abc", "xyz", 0));
+        // Swaps are only of adjacent characters and are not edited again, so
+        // "ca" to "abc" is three edits, not the two of unrestricted Damerau.
+        assertEquals(3, FuzzyIndex.distance("ca", "abc", 3));
+    }
+
+    @Test
+    void findsTyposWithinTheAllowedDistance() {
+        index.put("gear", "Gear");
+        index.put("sprocket", "Sprocket Large");
+        index.put("nut", "Hex Nut");
+
+        assertEquals(Collections.singletonList("gear"), index.search("gaer", 10));
+        assertEquals(Collections.singletonList("sprocket"), index.search("sprokcet", 10));
+        assertEquals(Collections.singletonList("sprocket"), index.search("sprcket lrge", 10));
+        assertEquals(Collections.singletonList("nut"), index.search("nit", 10));
+        assertTrue(index.search("nxx", 10).isEmpty());
+    }
+
+    @Test
+    void shortWordsGetLessLeeway() {
+        index.put("a", "A Frame");
+        index.put("b", "B Frame");
+        index.put("bolt", "Bolt");
+
+        assertEquals(Collections.singletonList("a"), index.search("a", 10));
+        // Four letters allow one edit, five allow two.
+        assertEquals(Collections.singletonList("bolt"), index.search("boot", 10));
+        assertTrue(index.search("bxxt", 10).isEmpty());
+        assertEquals(Collections.singletonList("bolt"), index.search("bolts", 10));
+    }
+
+    @Test
+    void longWordsMatchPastTheIndexedPrefix() {
+        index.put("bars", "Handlebars");
+
+        assertEquals(Collections.singletonList("bars"), index.search("handlebrs", 10));
+        assertEquals(Collections.singletonList("bars"), index.search("handlebarz", 10));
+        assertTrue(index.search("handlexxxs", 10).isEmpty());
+    }
+
+    @Test
+    void everyQueryWordMustMatch() {
+        index.put("big", "Big Gear");
+        index.put("small", "Small Gear");
+
+        assertEquals(Collections.singletonList("small"), index.search("gear smal", 10));
+        assertTrue(index.search("gear tiny", 10).isEmpty());
+    }
+
+    @Test
+    void ranksByEditsThenLengthThenName() {
+        index.put("exact", "Gear");
+        index.put("typo", "Gears");
+        index.put("longer", "Gear Box");
+        index.put("tie", "Gear Bag");
+
+        assertEquals(Arrays.asList("exact", "tie", "longer", "typo"), index.search("gear", 10));
+        assertEquals(Arrays.asList("exact", "tie"), index.search("gear", 2));
+    }
+
+    @Test
+    void putReindexesAndRemoveForgets() {
+        index.put("item", "Gear");
+        index.put("item", "Bolt");
+        assertTrue(index.search("gear", 10).isEmpty());
+        assertEquals(Collections.singletonList("item"), index.search("bolt", 10));
+
+        index.remove("item");
+        assertTrue(index.search("bolt", 10).isEmpty());
+        index.remove("item");
+        index.put("other", "Bolt");
+        assertEquals(Collections.singletonList("other"), index.search("blot", 10));
+    }
+
+    @Test
+    void findsTheSameWordsAsABruteForceScan() {
+        Random random = new Random(5);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            String name = randomWord(random) + " " + randomWord(random);
+            names.add(name);
+            index.put(name, name);
+        }
+        for (int i = 0; i < 500; i++) {
+            String query = mutate(randomWord(random), random);
+            if (random.nextBoolean()) {
+                query = mutate(names.get(random.nextInt(names.size())).split(" ")[0], random);
+            }
+            int allowed = query.length() == 1 ? 0 : query.length() <= 4 ? 1 : FuzzyIndex.MAX_DISTANCE;
+            Set<String> expected = new HashSet<>();
+            for (String name : names) {
+                for (String word : name.split(" ")) {
+                    if (FuzzyIndex.distance(query, word, allowed) <= allowed) {
+                        expected.add(name);
+                    }
+                }
+            }
+            assertEquals(expected, new HashSet<>(index.search(query, Integer.MAX_VALUE)), query);
+        }
+    }
+
+    private static String randomWord(Random random) {
+        char[] word = new char[1 + random.nextInt(10)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(4));
+        }
+        return new String(word);
+    }
+
+    /**
+     * <p>Applies up to two random edits, keeping at least one character.</p>
+     */
+    private static String mutate(String word, Random random) {
+        StringBuilder builder = new StringBuilder(word);
+        for (int edits = random.nextInt(3); edits > 0; edits--) {
+            int at = random.nextInt(builder.length());
+            switch (random.nextInt(4)) {
+                case 0:
+                    builder.setCharAt(at, (char) ('a' + random.nextInt(4)));
+                    break;
+                case 1:
+                    builder.insert(at, (char) ('a' + random.nextInt(4)));
+                    break;
+                case 2:
+                    if (builder.length() > 1) {
+                        builder.deleteCharAt(at);
+                    }
+                    break;
+                default:
+                    if (at + 1 < builder.length()) {
+                        char c = builder.charAt(at);
+                        builder.setCharAt(at, builder.charAt(at + 1));
+                        builder.setCharAt(at + 1, c);
+                    }
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,118 @@
+package com.kyancey.inventory.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntIntMapTest {
+    private final IntIntMap map = new IntIntMap();
+
+    @Test
+    void emptyMapHasNothing() {
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(0));
+        assertEquals(-7, map.get(0, -7));
+        assertFalse(map.remove(0));
+        assertEquals(0, map.keys().length);
+    }
+
+    @Test
+    void putOverwritesAndKeepsPosition() {
+        map.put(5, 50);
+        map.put(6, 60);
+        map.put(5, 55);
+
+        assertEquals(2, map.size());
+        assertEquals(55, map.get(5, -1));
+        assertEquals(5, map.keyAt(0));
+        assertEquals(55, map.valueAt(0));
+    }
+
+    @Test
+    void removeMovesLastEntryIntoTheHole() {
+        map.put(1, 10);
+        map.put(2, 20);
+        map.put(3, 30);
+
+        assertTrue(map.remove(1));
+
+        assertArrayEquals(new int[] {3, 2}, map.keys());
+        assertArrayEquals(new int[] {30, 20}, map.values());
+        assertEquals(30, map.get(3, -1));
+        assertFalse(map.containsKey(1));
+    }
+
+    @Test
+    void extremeKeysAndValues() {
+        map.put(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        map.put(Integer.MAX_VALUE, Integer.MIN_VALUE);
+        map.put(-1, -1);
+        map.put(0, 0);
+
+        assertEquals(Integer.MAX_VALUE, map.get(Integer.MIN_VALUE, 7));
+        assertEquals(Integer.MIN_VALUE, map.get(Integer.MAX_VALUE, 7));
+        assertEquals(-1, map.get(-1, 7));
+        assertEquals(0, map.get(0, 7));
+    }
+
+    @Test
+    void clearThenReuse() {
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        map.clear();
+
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(50));
+        map.put(50, 5);
+        assertEquals(5, map.get(50, -1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 200_000; step++) {
+            // A small key range makes probe runs collide and wrap often.
+            int key = random.nextInt(2_000) - 1_000;
+            int op = random.nextInt(3);
+            if (op == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else if (op == 1) {
+                int value = random.nextInt();
+                expected.put(key, value);
+                map.put(key, value);
+            } else {
+                assertEquals(expected.getOrDefault(key, -1), map.get(key, -1));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int i = 0; i < map.size(); i++) {
+            assertEquals(expected.get(map.keyAt(i)), map.valueAt(i));
+        }
+    }
+
+    @Test
+    void collidingKeysSurviveRemoval() {
+        // Multiples of a large power of two share their low bits before hashing.
+        for (int i = 0; i < 1_000; i++) {
+            map.put(i << 20, i);
+        }
+        for (int i = 0; i < 1_000; i += 2) {
+            assertTrue(map.remove(i << 20));
+        }
+
+        assertEquals(500, map.size());
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(i % 2 == 0 ? -1 : i, map.get(i << 20, -1));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.kyancey.inventory.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+    @Test
+    void formatsLikePercentTwoF() {
+        assertEquals("0.00", Money.format(0));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("12.34", Money.format(1234));
+        assertEquals("-100.00", Money.format(-10_000));
+    }
+
+    @Test
+    void formatsTheExtremes() {
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+        assertEquals("92233720368547758.07", Money.format(Long.MAX_VALUE));
+        assertEquals("-92233720368547758.08", Money.appendTo(new StringBuilder(), Long.MIN_VALUE).toString());
+        assertEquals("92233720368547758.07", Money.appendTo(new StringBuilder(), Long.MAX_VALUE).toString());
+    }
+
+    @Test
+    void appendToMatchesFormat() {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            long cents = i % 2 == 0 ? random.nextLong() : random.nextInt(20_001) - 10_000;
+            builder.setLength(0);
+            assertEquals(Money.format(cents), Money.appendTo(builder, cents).toString());
+        }
+    }
+
+    @Test
+    void parsesAmounts() {
+        assertEquals(1200, Money.parse("12"));
+        assertEquals(1250, Money.parse("12.5"));
+        assertEquals(-99, Money.parse("-0.99"));
+        assertEquals(50, Money.parse(".5"));
+        assertEquals(700, Money.parse(" +7. "));
+        assertEquals(101, Money.parse("1.005"));
+        assertEquals(-101, Money.parse("-1.005"));
+        assertEquals(100, Money.parse("1.0049"));
+    }
+
+    @Test
+    void parsesTheExtremes() {
+        assertEquals(Long.MIN_VALUE, Money.parse("-92233720368547758.08"));
+        assertEquals(Long.MAX_VALUE, Money.parse("92233720368547758.07"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("92233720368547758.08"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("-92233720368547758.085"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("92233720368547758.075"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1000000000000000000"));
+    }
+
+    @Test
+    void rejectsNonAmounts() {
+        for (String text : new String[] {"", " ", "-", ".", "1.2.3", "1,5", "abc", "1e3", "--1"}) {
+            assertThrows(NumberFormatException.class, () -> Money.parse(text), text);
+        }
+    }
+
+    @Test
+    void formatThenParseRoundTrips() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            long cents = random.nextLong();
+            assertEquals(cents, Money.parse(Money.format(cents)));
+        }
+    }
+
+    @Test
+    void fromDoubleAgreesWithParse() {
+        assertEquals(101, Money.fromDouble(1.005));
+        assertEquals(-101, Money.fromDouble(-1.005));
+        assertEquals(1234, Money.fromDouble(12.34));
+        assertEquals(0, Money.fromDouble(-0.0));
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            double amount = (random.nextInt(2_000_001) - 1_000_000) / 1000.0;
+            assertEquals(Money.parse(Double.toString(amount)), Money.fromDouble(amount), Double.toString(amount));
+        }
+    }
+
+    @Test
+    void fromDoubleRejectsWhatCannotBeCents() {
+        assertThrows(IllegalArgumentException.class, () -> Money.fromDouble(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> Money.fromDouble(Double.POSITIVE_INFINITY));
+        assertThrows(IllegalArgumentException.class, () -> Money.fromDouble(1e18));
+    }
+
+    @Test
+    void toDoubleRoundTripsThroughFromDouble() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            long cents = random.nextLong() % 4_000_000_000_000_000L;
+            assertEquals(cents, Money.fromDouble(Money.toDouble(cents)));
+            assertEquals(String.format(Locale.ROOT, "%.2f", Money.toDouble(cents % 1_000_000_000L)),
+                    Money.format(cents % 1_000_000_000L));
+        }
+    }
+}
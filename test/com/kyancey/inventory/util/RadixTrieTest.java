@@ -0,0 +1,152 @@
+package com.kyancey.inventory.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RadixTrieTest {
+    private final RadixTrie<String> trie = new RadixTrie<>(3);
+
+    @Test
+    void findsKeysByPrefixAcrossSplitEdges() {
+        trie.put("gear", "gear", 0);
+        trie.put("gearbox", "gearbox", 0);
+        trie.put("geography", "geography", 0);
+
+        assertEquals(Arrays.asList("geography", "gearbox", "gear"), trie.top("ge"));
+        assertEquals(Arrays.asList("gearbox", "gear"), trie.top("gea"));
+        assertEquals(Collections.singletonList("gearbox"), trie.top("gearb"));
+        assertEquals(Collections.singletonList("geography"), trie.top("geog"));
+        assertTrue(trie.top("gx").isEmpty());
+        assertTrue(trie.top("gearboxes").isEmpty());
+    }
+
+    @Test
+    void removingMergesEdgesBackTogether() {
+        trie.put("gear", "gear", 0);
+        trie.put("gearbox", "gearbox", 0);
+        trie.put("gearing", "gearing", 0);
+
+        trie.remove("gear");
+        trie.remove("gearing");
+        assertEquals(Collections.singletonList("gearbox"), trie.top("gear"));
+        assertEquals(Collections.singletonList("gearbox"), trie.top("g"));
+
+        // The merged edge splits again at a different place.
+        trie.put("geared", "geared", 0);
+        assertEquals(Arrays.asList("geared", "gearbox"), trie.top("gear"));
+        assertEquals(Collections.singletonList("geared"), trie.top("geare"));
+    }
+
+    @Test
+    void removingTheLastItemEmptiesTheTrie() {
+        trie.put("a", "bolt", 0);
+        trie.remove("a");
+        trie.remove("a");
+
+        assertTrue(trie.top("").isEmpty());
+        assertTrue(trie.top("b").isEmpty());
+        trie.put("b", "bolt", 0);
+        assertEquals(Collections.singletonList("b"), trie.top("BO"));
+    }
+
+    @Test
+    void ranksByRankThenRecencyAndKeepsTheBestK() {
+        trie.put("low", "gear low", 1);
+        trie.put("high", "gear high", 5);
+        trie.put("older", "gear older", 3);
+        trie.put("newer", "gear newer", 3);
+
+        assertEquals(Arrays.asList("high", "newer", "older"), trie.top("gear"));
+
+        // Putting the same key and rank again does not make it newer.
+        trie.put("older", "gear older", 3);
+        assertEquals(Arrays.asList("high", "newer", "older"), trie.top("gear"));
+        trie.put("low", "gear low", 9);
+        assertEquals(Arrays.asList("low", "high", "newer"), trie.top("gear"));
+    }
+
+    @Test
+    void matchesIgnoringCaseAndMovesItemsToNewKeys() {
+        trie.put("item", "Gear", 0);
+        assertEquals(Collections.singletonList("item"), trie.top("gEA"));
+
+        trie.put("item", "Bolt", 0);
+        assertTrue(trie.top("g").isEmpty());
+        assertEquals(Collections.singletonList("item"), trie.top("b"));
+    }
+
+    @Test
+    void emptyKeyIsFoundByEmptyPrefix() {
+        trie.put("blank", "", 0);
+        trie.put("gear", "gear", 0);
+
+        assertEquals(Arrays.asList("gear", "blank"), trie.top(""));
+        assertEquals(Collections.singletonList("gear"), trie.top("g"));
+    }
+
+    @Test
+    void agreesWithABruteForceModel() {
+        Random random = new Random(9);
+        // Items are tracked by identity, so each one is a single String object.
+        String[] items = new String[300];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = "i" + i;
+        }
+        Map<String, Object[]> model = new HashMap<>();
+        long sequence = 0;
+        for (int step = 0; step < 20_000; step++) {
+            String item = items[random.nextInt(items.length)];
+            if (random.nextInt(4) == 0) {
+                trie.remove(item);
+                model.remove(item);
+            } else {
+                String key = randomKey(random);
+                long rank = random.nextInt(4);
+                trie.put(item, key, rank);
+                Object[] old = model.get(item);
+                if (old == null || !old[0].equals(key) || (long) old[1] != rank) {
+                    model.put(item, new Object[] {key, rank, ++sequence});
+                }
+            }
+            if (step % 10 == 0) {
+                String prefix = randomKey(random);
+                prefix = prefix.substring(0, random.nextInt(prefix.length() + 1));
+                assertEquals(expected(model, prefix), trie.top(prefix), prefix);
+            }
+        }
+    }
+
+    private static String randomKey(Random random) {
+        char[] key = new char[random.nextInt(6)];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (char) ('a' + random.nextInt(3));
+        }
+        return new String(key);
+    }
+
+    private static List<String> expected(Map<String, Object[]> model, String prefix) {
+        List<String> matches = new ArrayList<>();
+        for (Map.Entry<String, Object[]> entry : model.entrySet()) {
+            if (((String) entry.getValue()[0]).startsWith(prefix)) {
+                matches.add(entry.getKey());
+            }
+        }
+        matches.sort((a, b) -> {
+            Object[] x = model.get(a);
+            Object[] y = model.get(b);
+            int byRank = Long.compare((long) y[1], (long) x[1]);
+            return byRank != 0 ? byRank : Long.compare((long) y[2], (long) x[2]);
+        });
+        return matches.subList(0, Math.min(3, matches.size()));
+    }
+}